@@ -24,10 +24,14 @@ import com.google.android.exoplayer2.util.Util;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.nio.ShortBuffer;
 
 /**
  * An {@link AudioProcessor} that uses the Sonic library to modify audio speed/pitch/sample rate.
+ *
+ * <p>Input can be {@link C#ENCODING_PCM_16BIT} or {@link C#ENCODING_PCM_FLOAT}, and the output has
+ * the same encoding as the input. Float input is processed without conversion to 16-bit.
  */
 public class SonicAudioProcessor implements AudioProcessor {
 
@@ -54,8 +58,10 @@ public class SonicAudioProcessor implements AudioProcessor {
 
   private boolean pendingSonicRecreation;
   @Nullable private Sonic sonic;
+  @Nullable private FloatSonic floatSonic;
   private ByteBuffer buffer;
   private ShortBuffer shortBuffer;
+  private FloatBuffer floatBuffer;
   private ByteBuffer outputBuffer;
   private long inputBytes;
   private long outputBytes;
@@ -71,6 +77,7 @@ public class SonicAudioProcessor implements AudioProcessor {
     outputAudioFormat = AudioFormat.NOT_SET;
     buffer = EMPTY_BUFFER;
     shortBuffer = buffer.asShortBuffer();
+    floatBuffer = buffer.asFloatBuffer();
     outputBuffer = EMPTY_BUFFER;
     pendingOutputSampleRate = SAMPLE_RATE_NO_CHANGE;
   }
@@ -128,7 +135,7 @@ public class SonicAudioProcessor implements AudioProcessor {
    */
   public final long getMediaDuration(long playoutDuration) {
     if (outputBytes >= MIN_BYTES_FOR_DURATION_SCALING_CALCULATION) {
-      long processedInputBytes = inputBytes - checkNotNull(sonic).getPendingInputBytes();
+      long processedInputBytes = inputBytes - getPendingInputBytes();
       return outputAudioFormat.sampleRate == inputAudioFormat.sampleRate
           ? Util.scaleLargeTimestamp(playoutDuration, processedInputBytes, outputBytes)
           : Util.scaleLargeTimestamp(
@@ -144,7 +151,8 @@ public class SonicAudioProcessor implements AudioProcessor {
   @CanIgnoreReturnValue
   public final AudioFormat configure(AudioFormat inputAudioFormat)
       throws UnhandledAudioFormatException {
-    if (inputAudioFormat.encoding != C.ENCODING_PCM_16BIT) {
+    if (inputAudioFormat.encoding != C.ENCODING_PCM_16BIT
+        && inputAudioFormat.encoding != C.ENCODING_PCM_FLOAT) {
       throw new UnhandledAudioFormatException(inputAudioFormat);
     }
     int outputSampleRateHz =
@@ -153,7 +161,8 @@ public class SonicAudioProcessor implements AudioProcessor {
             : pendingOutputSampleRate;
     pendingInputAudioFormat = inputAudioFormat;
     pendingOutputAudioFormat =
-        new AudioFormat(outputSampleRateHz, inputAudioFormat.channelCount, C.ENCODING_PCM_16BIT);
+        new AudioFormat(
+            outputSampleRateHz, inputAudioFormat.channelCount, inputAudioFormat.encoding);
     pendingSonicRecreation = true;
     return pendingOutputAudioFormat;
   }
@@ -171,18 +180,22 @@ public class SonicAudioProcessor implements AudioProcessor {
     if (!inputBuffer.hasRemaining()) {
       return;
     }
-    Sonic sonic = checkNotNull(this.sonic);
-    ShortBuffer shortBuffer = inputBuffer.asShortBuffer();
     int inputSize = inputBuffer.remaining();
     inputBytes += inputSize;
-    sonic.queueInput(shortBuffer);
+    if (floatSonic != null) {
+      floatSonic.queueInput(inputBuffer.asFloatBuffer());
+    } else {
+      checkNotNull(sonic).queueInput(inputBuffer.asShortBuffer());
+    }
     inputBuffer.position(inputBuffer.position() + inputSize);
   }
 
   @Override
   public final void queueEndOfStream() {
     // TODO(internal b/174554082): assert sonic is non-null here and in getOutput.
-    if (sonic != null) {
+    if (floatSonic != null) {
+      floatSonic.queueEndOfStream();
+    } else if (sonic != null) {
       sonic.queueEndOfStream();
     }
     inputEnded = true;
@@ -190,22 +203,25 @@ public class SonicAudioProcessor implements AudioProcessor {
 
   @Override
   public final ByteBuffer getOutput() {
-    @Nullable Sonic sonic = this.sonic;
-    if (sonic != null) {
-      int outputSize = sonic.getOutputSize();
-      if (outputSize > 0) {
-        if (buffer.capacity() < outputSize) {
-          buffer = ByteBuffer.allocateDirect(outputSize).order(ByteOrder.nativeOrder());
-          shortBuffer = buffer.asShortBuffer();
-        } else {
-          buffer.clear();
-          shortBuffer.clear();
-        }
-        sonic.getOutput(shortBuffer);
-        outputBytes += outputSize;
-        buffer.limit(outputSize);
-        outputBuffer = buffer;
+    int outputSize = getOutputSize();
+    if (outputSize > 0) {
+      if (buffer.capacity() < outputSize) {
+        buffer = ByteBuffer.allocateDirect(outputSize).order(ByteOrder.nativeOrder());
+        shortBuffer = buffer.asShortBuffer();
+        floatBuffer = buffer.asFloatBuffer();
+      } else {
+        buffer.clear();
+        shortBuffer.clear();
+        floatBuffer.clear();
+      }
+      if (floatSonic != null) {
+        floatSonic.getOutput(floatBuffer);
+      } else {
+        checkNotNull(sonic).getOutput(shortBuffer);
       }
+      outputBytes += outputSize;
+      buffer.limit(outputSize);
+      outputBuffer = buffer;
     }
     ByteBuffer outputBuffer = this.outputBuffer;
     this.outputBuffer = EMPTY_BUFFER;
@@ -214,7 +230,7 @@ public class SonicAudioProcessor implements AudioProcessor {
 
   @Override
   public final boolean isEnded() {
-    return inputEnded && (sonic == null || sonic.getOutputSize() == 0);
+    return inputEnded && getOutputSize() == 0;
   }
 
   @Override
@@ -223,13 +239,27 @@ public class SonicAudioProcessor implements AudioProcessor {
       inputAudioFormat = pendingInputAudioFormat;
       outputAudioFormat = pendingOutputAudioFormat;
       if (pendingSonicRecreation) {
-        sonic =
-            new Sonic(
-                inputAudioFormat.sampleRate,
-                inputAudioFormat.channelCount,
-                speed,
-                pitch,
-                outputAudioFormat.sampleRate);
+        if (inputAudioFormat.encoding == C.ENCODING_PCM_FLOAT) {
+          sonic = null;
+          floatSonic =
+              new FloatSonic(
+                  inputAudioFormat.sampleRate,
+                  inputAudioFormat.channelCount,
+                  speed,
+                  pitch,
+                  outputAudioFormat.sampleRate);
+        } else {
+          floatSonic = null;
+          sonic =
+              new Sonic(
+                  inputAudioFormat.sampleRate,
+                  inputAudioFormat.channelCount,
+                  speed,
+                  pitch,
+                  outputAudioFormat.sampleRate);
+        }
+      } else if (floatSonic != null) {
+        floatSonic.flush();
       } else if (sonic != null) {
         sonic.flush();
       }
@@ -250,12 +280,27 @@ public class SonicAudioProcessor implements AudioProcessor {
     outputAudioFormat = AudioFormat.NOT_SET;
     buffer = EMPTY_BUFFER;
     shortBuffer = buffer.asShortBuffer();
+    floatBuffer = buffer.asFloatBuffer();
     outputBuffer = EMPTY_BUFFER;
     pendingOutputSampleRate = SAMPLE_RATE_NO_CHANGE;
     pendingSonicRecreation = false;
     sonic = null;
+    floatSonic = null;
     inputBytes = 0;
     outputBytes = 0;
     inputEnded = false;
   }
+
+  private int getPendingInputBytes() {
+    return floatSonic != null
+        ? floatSonic.getPendingInputBytes()
+        : checkNotNull(sonic).getPendingInputBytes();
+  }
+
+  private int getOutputSize() {
+    if (floatSonic != null) {
+      return floatSonic.getOutputSize();
+    }
+    return sonic != null ? sonic.getOutputSize() : 0;
+  }
 }
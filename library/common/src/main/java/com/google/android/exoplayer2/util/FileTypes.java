@@ -118,6 +118,23 @@ public final class FileTypes {
   private static final String EXTENSION_JPEG = ".jpeg";
   private static final String EXTENSION_AVI = ".avi";
 
+  private static final byte[] SIGNATURE_AMR = new byte[] {'#', '!', 'A', 'M', 'R'};
+  private static final byte[] SIGNATURE_AVI = new byte[] {'A', 'V', 'I', ' '};
+  private static final byte[] SIGNATURE_FLAC = new byte[] {'f', 'L', 'a', 'C'};
+  private static final byte[] SIGNATURE_FLV = new byte[] {'F', 'L', 'V'};
+  private static final byte[] SIGNATURE_JPEG = new byte[] {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+  private static final byte[] SIGNATURE_MATROSKA =
+      new byte[] {(byte) 0x1A, (byte) 0x45, (byte) 0xDF, (byte) 0xA3};
+  private static final byte[] SIGNATURE_OGG = new byte[] {'O', 'g', 'g', 'S'};
+  private static final byte[] SIGNATURE_RIFF = new byte[] {'R', 'I', 'F', 'F'};
+  private static final byte[] SIGNATURE_WAVE = new byte[] {'W', 'A', 'V', 'E'};
+  private static final byte[][] SIGNATURES_MP4_BOX_TYPES =
+      new byte[][] {
+        {'f', 't', 'y', 'p'}, {'s', 't', 'y', 'p'}, {'m', 'o', 'o', 'v'}, {'m', 'o', 'o', 'f'}
+      };
+  private static final int TS_PACKET_SIZE = 188;
+  private static final int TS_SYNC_BYTE = 0x47;
+
   private FileTypes() {}
 
   /** Returns the {@link Type} corresponding to the response headers provided. */
@@ -253,4 +270,73 @@ public final class FileTypes {
       return FileTypes.UNKNOWN;
     }
   }
+
+  /**
+   * Returns the {@link Type} indicated by the signature at the start of the data provided.
+   *
+   * <p>Only file types with a distinctive signature are detected, so the returned type is a hint
+   * about which extractor is likely to read the data, rather than a guarantee. Returns {@link
+   * #UNKNOWN} if no signature is recognized, including for MP3 data that starts with an ID3 tag,
+   * since other audio formats may be prefixed with one too.
+   *
+   * @param data An array containing the data from the start of the file.
+   * @param length The number of valid bytes in {@code data}.
+   */
+  public static @FileTypes.Type int inferFileTypeFromSignature(byte[] data, int length) {
+    if (hasAnySignatureAt(data, length, /* offset= */ 4, SIGNATURES_MP4_BOX_TYPES)) {
+      return FileTypes.MP4;
+    } else if (hasSignatureAt(data, length, /* offset= */ 0, SIGNATURE_MATROSKA)) {
+      return FileTypes.MATROSKA;
+    } else if (hasSignatureAt(data, length, /* offset= */ 0, SIGNATURE_FLAC)) {
+      return FileTypes.FLAC;
+    } else if (hasSignatureAt(data, length, /* offset= */ 0, SIGNATURE_OGG)) {
+      return FileTypes.OGG;
+    } else if (hasSignatureAt(data, length, /* offset= */ 0, SIGNATURE_RIFF)) {
+      if (hasSignatureAt(data, length, /* offset= */ 8, SIGNATURE_WAVE)) {
+        return FileTypes.WAV;
+      } else if (hasSignatureAt(data, length, /* offset= */ 8, SIGNATURE_AVI)) {
+        return FileTypes.AVI;
+      }
+      return FileTypes.UNKNOWN;
+    } else if (hasSignatureAt(data, length, /* offset= */ 0, SIGNATURE_AMR)) {
+      return FileTypes.AMR;
+    } else if (hasSignatureAt(data, length, /* offset= */ 0, SIGNATURE_FLV)) {
+      return FileTypes.FLV;
+    } else if (hasSignatureAt(data, length, /* offset= */ 0, SIGNATURE_JPEG)) {
+      return FileTypes.JPEG;
+    } else if (length > TS_PACKET_SIZE
+        && data[0] == TS_SYNC_BYTE
+        && data[TS_PACKET_SIZE] == TS_SYNC_BYTE) {
+      return FileTypes.TS;
+    } else if (length >= 2
+        && (data[0] & 0xFF) == 0xFF
+        && (data[1] & 0xE0) == 0xE0
+        && (data[1] & 0x06) != 0) {
+      // An MPEG audio frame header. ADTS headers have the same sync word, but a layer of 0.
+      return FileTypes.MP3;
+    }
+    return FileTypes.UNKNOWN;
+  }
+
+  private static boolean hasAnySignatureAt(
+      byte[] data, int length, int offset, byte[][] signatures) {
+    for (byte[] signature : signatures) {
+      if (hasSignatureAt(data, length, offset, signature)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean hasSignatureAt(byte[] data, int length, int offset, byte[] signature) {
+    if (length < offset + signature.length) {
+      return false;
+    }
+    for (int i = 0; i < signature.length; i++) {
+      if (data[offset + i] != signature[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
 }
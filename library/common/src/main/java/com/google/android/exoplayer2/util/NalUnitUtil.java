@@ -189,58 +189,36 @@ public final class NalUnitUtil {
   private static final int H264_NAL_UNIT_TYPE_SPS = 7; // Sequence parameter set
   private static final int H265_NAL_UNIT_TYPE_PREFIX_SEI = 39;
 
-  private static final Object scratchEscapePositionsLock = new Object();
-
   /**
-   * Temporary store for positions of escape codes in {@link #unescapeStream(byte[], int)}. Guarded
-   * by {@link #scratchEscapePositionsLock}.
+   * The minimum search length for which {@link #findNalUnit(byte[], int, int, boolean[])} scans
+   * eight bytes at a time.
    */
-  private static int[] scratchEscapePositions = new int[10];
+  private static final int MIN_WORD_SCAN_LENGTH = 64;
 
   /**
    * Unescapes {@code data} up to the specified limit, replacing occurrences of [0, 0, 3] with [0,
    * 0]. The unescaped data is returned in-place, with the return value indicating its length.
    *
-   * <p>Executions of this method are mutually exclusive, so it should not be called with very large
-   * buffers.
-   *
    * @param data The data to unescape.
    * @param limit The limit (exclusive) of the data to unescape.
    * @return The length of the unescaped data.
    */
   public static int unescapeStream(byte[] data, int limit) {
-    synchronized (scratchEscapePositionsLock) {
-      int position = 0;
-      int scratchEscapeCount = 0;
-      while (position < limit) {
-        position = findNextUnescapeIndex(data, position, limit);
-        if (position < limit) {
-          if (scratchEscapePositions.length <= scratchEscapeCount) {
-            // Grow scratchEscapePositions to hold a larger number of positions.
-            scratchEscapePositions =
-                Arrays.copyOf(scratchEscapePositions, scratchEscapePositions.length * 2);
-          }
-          scratchEscapePositions[scratchEscapeCount++] = position;
-          position += 3;
-        }
-      }
-
-      int unescapedLength = limit - scratchEscapeCount;
-      int escapedPosition = 0; // The position being read from.
-      int unescapedPosition = 0; // The position being written to.
-      for (int i = 0; i < scratchEscapeCount; i++) {
-        int nextEscapePosition = scratchEscapePositions[i];
-        int copyLength = nextEscapePosition - escapedPosition;
-        System.arraycopy(data, escapedPosition, data, unescapedPosition, copyLength);
-        unescapedPosition += copyLength;
-        data[unescapedPosition++] = 0;
-        data[unescapedPosition++] = 0;
-        escapedPosition += copyLength + 3;
+    // The unescaped data is never longer than the escaped data read so far, so it can be written
+    // in-place without overwriting data that hasn't been searched yet.
+    int escapedPosition = 0; // The position being read from.
+    int unescapedPosition = 0; // The position being written to.
+    while (true) {
+      int nextEscapePosition = findNextUnescapeIndex(data, escapedPosition, limit);
+      int copyLength = nextEscapePosition - escapedPosition;
+      System.arraycopy(data, escapedPosition, data, unescapedPosition, copyLength);
+      unescapedPosition += copyLength;
+      if (nextEscapePosition == limit) {
+        return unescapedPosition;
       }
-
-      int remainingLength = unescapedLength - unescapedPosition;
-      System.arraycopy(data, escapedPosition, data, unescapedPosition, remainingLength);
-      return unescapedLength;
+      data[unescapedPosition++] = 0;
+      data[unescapedPosition++] = 0;
+      escapedPosition = nextEscapePosition + 3;
     }
   }
 
@@ -721,9 +699,30 @@ public final class NalUnitUtil {
     }
 
     int limit = endOffset - 1;
+    int scanOffset = startOffset;
+    if (length >= MIN_WORD_SCAN_LENGTH) {
+      // A NAL unit start code prefix can't start in a run of eight bytes none of which is zero, so
+      // skip such runs eight bytes at a time. Runs containing a zero byte are searched bytewise.
+      int wordScanLimit = endOffset - 8;
+      int byteScanLimit = endOffset - 3;
+      while (scanOffset <= wordScanLimit) {
+        if (!hasZeroByte(readWord(data, scanOffset))) {
+          scanOffset += 8;
+          continue;
+        }
+        int wordEnd = min(scanOffset + 8, byteScanLimit);
+        for (; scanOffset < wordEnd; scanOffset++) {
+          if (data[scanOffset] == 0 && data[scanOffset + 1] == 0 && data[scanOffset + 2] == 1) {
+            clearPrefixFlags(prefixFlags);
+            return scanOffset;
+          }
+        }
+      }
+    }
+
     // We're looking for the NAL unit start code prefix 0x000001. The value of i tracks the index of
     // the third byte.
-    for (int i = startOffset + 2; i < limit; i += 3) {
+    for (int i = scanOffset + 2; i < limit; i += 3) {
       if ((data[i] & 0xFE) != 0) {
         // There isn't a NAL prefix here, or at the next two positions. Do nothing and let the
         // loop advance the index by three.
@@ -766,6 +765,28 @@ public final class NalUnitUtil {
     prefixFlags[2] = false;
   }
 
+  /**
+   * Returns the eight bytes of {@code data} starting at {@code offset} as a little endian word.
+   *
+   * <p>The word is assembled from the bytes directly, rather than through a {@link ByteBuffer}
+   * view, to avoid allocating a view per search and bounds checking each load.
+   */
+  private static long readWord(byte[] data, int offset) {
+    return (data[offset] & 0xFFL)
+        | (data[offset + 1] & 0xFFL) << 8
+        | (data[offset + 2] & 0xFFL) << 16
+        | (data[offset + 3] & 0xFFL) << 24
+        | (data[offset + 4] & 0xFFL) << 32
+        | (data[offset + 5] & 0xFFL) << 40
+        | (data[offset + 6] & 0xFFL) << 48
+        | (data[offset + 7] & 0xFFL) << 56;
+  }
+
+  /** Returns whether any of the eight bytes in {@code word} is zero. */
+  private static boolean hasZeroByte(long word) {
+    return ((word - 0x0101010101010101L) & ~word & 0x8080808080808080L) != 0;
+  }
+
   private static int findNextUnescapeIndex(byte[] bytes, int offset, int limit) {
     for (int i = offset; i < limit - 2; i++) {
       if (bytes[i] == 0x00 && bytes[i + 1] == 0x00 && bytes[i + 2] == 0x03) {
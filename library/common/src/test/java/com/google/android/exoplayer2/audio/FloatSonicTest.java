@@ -0,0 +1,85 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.nio.FloatBuffer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link FloatSonic}. */
+@RunWith(AndroidJUnit4.class)
+public final class FloatSonicTest {
+
+  private static final int SAMPLE_RATE_HZ = 44_100;
+  private static final int CHANNEL_COUNT = 2;
+  private static final float AMPLITUDE = 0.5f;
+
+  @Test
+  public void queueInput_atDoubleSpeedWithPitchJump_keepsAmplitudeAfterJump() {
+    // Both tones have a period of a whole number of frames, so that skipping whole pitch periods
+    // doesn't change the waveform if the periods are found correctly. The high tone's period is
+    // too far from the low tone's to be found by searching around it.
+    int lowTonePeriodFrames = 630;
+    int highTonePeriodFrames = 392;
+    int toneFrameCount = SAMPLE_RATE_HZ / 2;
+    FloatBuffer input = FloatBuffer.allocate(2 * toneFrameCount * CHANNEL_COUNT);
+    putTone(input, lowTonePeriodFrames, toneFrameCount);
+    putTone(input, highTonePeriodFrames, toneFrameCount);
+    input.flip();
+    FloatSonic floatSonic =
+        new FloatSonic(
+            SAMPLE_RATE_HZ,
+            CHANNEL_COUNT,
+            /* speed= */ 2f,
+            /* pitch= */ 1f,
+            /* outputSampleRateHz= */ SAMPLE_RATE_HZ);
+
+    floatSonic.queueInput(input);
+    floatSonic.queueEndOfStream();
+    FloatBuffer output = FloatBuffer.allocate(floatSonic.getOutputSize() / 4);
+    floatSonic.getOutput(output);
+
+    // Skip the transition between the tones and the end of the stream. Using the low tone's period
+    // for the high tone would overlap-add out of phase samples, lowering the peak amplitude.
+    int outputFrameCount = output.position() / CHANNEL_COUNT;
+    int highToneStartFrame = toneFrameCount / 2 + 2_000;
+    int highToneEndFrame = outputFrameCount - 2_000;
+    assertThat(highToneEndFrame - highToneStartFrame).isGreaterThan(highTonePeriodFrames);
+    float minPeakAmplitude = Float.MAX_VALUE;
+    for (int startFrame = highToneStartFrame;
+        startFrame + highTonePeriodFrames <= highToneEndFrame;
+        startFrame += highTonePeriodFrames) {
+      float peakAmplitude = 0;
+      for (int frame = startFrame; frame < startFrame + highTonePeriodFrames; frame++) {
+        peakAmplitude = Math.max(peakAmplitude, Math.abs(output.get(frame * CHANNEL_COUNT)));
+      }
+      minPeakAmplitude = Math.min(minPeakAmplitude, peakAmplitude);
+    }
+    assertThat(minPeakAmplitude).isWithin(0.05f).of(AMPLITUDE);
+  }
+
+  private static void putTone(FloatBuffer buffer, int periodFrames, int frameCount) {
+    for (int i = 0; i < frameCount; i++) {
+      float sample = AMPLITUDE * (float) Math.sin(2 * Math.PI * i / periodFrames);
+      for (int channel = 0; channel < CHANNEL_COUNT; channel++) {
+        buffer.put(sample);
+      }
+    }
+  }
+}
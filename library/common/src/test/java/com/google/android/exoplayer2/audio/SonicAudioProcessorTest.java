@@ -22,6 +22,9 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.audio.AudioProcessor.AudioFormat;
 import com.google.android.exoplayer2.audio.AudioProcessor.UnhandledAudioFormatException;
+import com.google.common.collect.Range;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -40,6 +43,10 @@ public final class SonicAudioProcessorTest {
       new AudioFormat(
           /* sampleRate= */ 48000, /* channelCount= */ 2, /* encoding= */ C.ENCODING_PCM_16BIT);
 
+  private static final AudioFormat AUDIO_FORMAT_44100_HZ_FLOAT =
+      new AudioFormat(
+          /* sampleRate= */ 44100, /* channelCount= */ 2, /* encoding= */ C.ENCODING_PCM_FLOAT);
+
   private SonicAudioProcessor sonicAudioProcessor;
 
   @Before
@@ -122,4 +129,49 @@ public final class SonicAudioProcessorTest {
       // Expected.
     }
   }
+
+  @Test
+  public void configureWithFloatInput_outputsFloat() throws Exception {
+    sonicAudioProcessor.setSpeed(1.5f);
+
+    AudioFormat outputAudioFormat = sonicAudioProcessor.configure(AUDIO_FORMAT_44100_HZ_FLOAT);
+
+    assertThat(outputAudioFormat.encoding).isEqualTo(C.ENCODING_PCM_FLOAT);
+    assertThat(outputAudioFormat.channelCount).isEqualTo(2);
+    assertThat(sonicAudioProcessor.isActive()).isTrue();
+  }
+
+  @Test
+  public void processFloatInputAtDoubleSpeed_outputsHalfTheFrames() throws Exception {
+    int inputFrameCount = 44100;
+    sonicAudioProcessor.setSpeed(2f);
+    sonicAudioProcessor.configure(AUDIO_FORMAT_44100_HZ_FLOAT);
+    sonicAudioProcessor.flush();
+    ByteBuffer inputBuffer =
+        ByteBuffer.allocateDirect(inputFrameCount * AUDIO_FORMAT_44100_HZ_FLOAT.bytesPerFrame)
+            .order(ByteOrder.nativeOrder());
+    for (int i = 0; i < inputFrameCount; i++) {
+      // A 220 Hz sine wave, at half volume.
+      float sample = 0.5f * (float) Math.sin(2 * Math.PI * 220 * i / 44100);
+      inputBuffer.putFloat(sample).putFloat(sample);
+    }
+    inputBuffer.flip();
+
+    sonicAudioProcessor.queueInput(inputBuffer);
+    sonicAudioProcessor.queueEndOfStream();
+    long outputBytes = 0;
+    float maxAbsSample = 0;
+    while (!sonicAudioProcessor.isEnded()) {
+      ByteBuffer outputBuffer = sonicAudioProcessor.getOutput();
+      outputBytes += outputBuffer.remaining();
+      while (outputBuffer.hasRemaining()) {
+        maxAbsSample = Math.max(maxAbsSample, Math.abs(outputBuffer.getFloat()));
+      }
+    }
+
+    assertThat(inputBuffer.hasRemaining()).isFalse();
+    assertThat(outputBytes / AUDIO_FORMAT_44100_HZ_FLOAT.bytesPerFrame)
+        .isIn(Range.closed((long) inputFrameCount / 2 - 100, (long) inputFrameCount / 2 + 100));
+    assertThat(maxAbsSample).isWithin(0.01f).of(0.5f);
+  }
 }
@@ -17,6 +17,7 @@ package com.google.android.exoplayer2.util;
 
 import static com.google.android.exoplayer2.util.FileTypes.HEADER_CONTENT_TYPE;
 import static com.google.android.exoplayer2.util.FileTypes.inferFileTypeFromMimeType;
+import static com.google.android.exoplayer2.util.FileTypes.inferFileTypeFromSignature;
 import static com.google.android.exoplayer2.util.FileTypes.inferFileTypeFromUri;
 import static com.google.common.truth.Truth.assertThat;
 
@@ -94,4 +95,36 @@ public class FileTypesTest {
   public void inferFileFormat_fromEmptyUri_returnsUnknownFormat() {
     assertThat(inferFileTypeFromUri(Uri.EMPTY)).isEqualTo(FileTypes.UNKNOWN);
   }
+
+  @Test
+  public void inferFileFormat_fromSignature_returnsExpectedFormat() {
+    byte[] mp4 = Util.getBytesFromHexString("000000206674797069736F6D");
+    byte[] wav = Util.getBytesFromHexString("52494646240800005741564566");
+    byte[] avi = Util.getBytesFromHexString("5249464624080000415649204C");
+    byte[] mp3 = Util.getBytesFromHexString("FFFB9064");
+
+    assertThat(inferFileTypeFromSignature(mp4, mp4.length)).isEqualTo(FileTypes.MP4);
+    assertThat(inferFileTypeFromSignature(wav, wav.length)).isEqualTo(FileTypes.WAV);
+    assertThat(inferFileTypeFromSignature(avi, avi.length)).isEqualTo(FileTypes.AVI);
+    assertThat(inferFileTypeFromSignature(mp3, mp3.length)).isEqualTo(FileTypes.MP3);
+  }
+
+  @Test
+  public void inferFileFormat_fromTsSignature_requiresTwoSyncBytes() {
+    byte[] data = new byte[189];
+    data[0] = 0x47;
+    data[188] = 0x47;
+
+    assertThat(inferFileTypeFromSignature(data, /* length= */ 189)).isEqualTo(FileTypes.TS);
+    assertThat(inferFileTypeFromSignature(data, /* length= */ 188)).isEqualTo(FileTypes.UNKNOWN);
+  }
+
+  @Test
+  public void inferFileFormat_fromAmbiguousSignature_returnsUnknownFormat() {
+    byte[] id3 = Util.getBytesFromHexString("4944330400");
+    byte[] adts = Util.getBytesFromHexString("FFF15080");
+
+    assertThat(inferFileTypeFromSignature(id3, id3.length)).isEqualTo(FileTypes.UNKNOWN);
+    assertThat(inferFileTypeFromSignature(adts, adts.length)).isEqualTo(FileTypes.UNKNOWN);
+  }
 }
@@ -56,6 +56,33 @@ public final class NalUnitUtilTest {
     assertThat(result).isEqualTo(data.length);
   }
 
+  @Test
+  public void findNalUnit_inLongData_findsNalUnitAtEachPosition() {
+    int length = 100;
+    for (int nalPosition = 0; nalPosition < length - 2; nalPosition++) {
+      byte[] data = new byte[length];
+      Arrays.fill(data, (byte) 0xFF);
+      // Insert incomplete NAL unit start codes before and after the NAL unit.
+      if (nalPosition >= 4) {
+        data[nalPosition - 4] = 0;
+        data[nalPosition - 3] = 0;
+      }
+      if (nalPosition + 5 < length) {
+        data[nalPosition + 4] = 0;
+        data[nalPosition + 5] = 0;
+      }
+      data[nalPosition] = 0;
+      data[nalPosition + 1] = 0;
+      data[nalPosition + 2] = 1;
+
+      int result = NalUnitUtil.findNalUnit(data, 0, length, new boolean[3]);
+
+      // NAL units whose prefix ends at the limit are only found by the next call.
+      int expectedResult = nalPosition + 3 < length ? nalPosition : length;
+      assertThat(result).isEqualTo(expectedResult);
+    }
+  }
+
   @Test
   public void findNalUnitWithPrefix() {
     byte[] data = buildTestData();
@@ -149,6 +176,8 @@ public final class NalUnitUtilTest {
   public void unescapeModifiesBuffersWithStartCodes() {
     assertUnescapeMatchesExpected("00000301", "000001");
     assertUnescapeMatchesExpected("0000030200000300", "000002000000");
+    assertUnescapeMatchesExpected("000003000003", "00000000");
+    assertUnescapeMatchesExpected("FF000003000000030103", "FF00000000000103");
   }
 
   @Test
@@ -0,0 +1,560 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+import static com.google.android.exoplayer2.util.Assertions.checkState;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.os.Handler;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.source.MediaPeriodId;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.ExoTrackSelection;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
+import com.google.android.exoplayer2.util.Util;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
+
+/**
+ * A {@link LoadControl} that adapts its buffering thresholds to the network and the device.
+ *
+ * <ul>
+ *   <li>The duration of media that must be buffered before playback starts is derived from the
+ *       bitrate of the selected tracks and the {@link BandwidthMeter#getBitrateEstimate() bitrate
+ *       estimate}. If the network is fast enough to sustain the selected tracks, playback starts
+ *       after the minimum duration. Otherwise playback starts once enough media is buffered to
+ *       cover the expected download deficit over the buffering horizon (the maximum buffer
+ *       duration, or the period duration if shorter).
+ *   <li>The target buffer size in bytes is derived from the selected tracks as in {@link
+ *       DefaultLoadControl}, but is capped at a fraction of the application's {@link
+ *       ActivityManager#getMemoryClass() memory class}.
+ * </ul>
+ *
+ * <p>The decisions are reported to registered {@link EventListener EventListeners}, for example to
+ * forward them to analytics.
+ */
+public final class AdaptiveLoadControl implements LoadControl {
+
+  /** Listener of {@link AdaptiveLoadControl} decisions. */
+  public interface EventListener {
+
+    /**
+     * Called when the duration of media required to start or resume playback changes.
+     *
+     * @param startThresholdUs The duration of media required to start or resume playback, in
+     *     microseconds.
+     * @param selectedBitrate The sum of the bitrates of the selected tracks, or {@link
+     *     Format#NO_VALUE} if unknown.
+     * @param bitrateEstimate The bitrate estimate used for the decision, in bits per second.
+     */
+    default void onStartThresholdChanged(
+        long startThresholdUs, int selectedBitrate, long bitrateEstimate) {}
+
+    /**
+     * Called when the target buffer size changes.
+     *
+     * @param targetBufferBytes The target buffer size in bytes.
+     */
+    default void onTargetBufferBytesChanged(int targetBufferBytes) {}
+  }
+
+  /**
+   * The default minimum duration of media that the player will attempt to ensure is buffered at all
+   * times, in milliseconds.
+   */
+  public static final int DEFAULT_MIN_BUFFER_MS = DefaultLoadControl.DEFAULT_MIN_BUFFER_MS;
+
+  /**
+   * The default maximum duration of media that the player will attempt to buffer, in milliseconds.
+   */
+  public static final int DEFAULT_MAX_BUFFER_MS = DefaultLoadControl.DEFAULT_MAX_BUFFER_MS;
+
+  /**
+   * The default minimum duration of media that must be buffered for playback to start, in
+   * milliseconds.
+   */
+  public static final int DEFAULT_MIN_BUFFER_FOR_PLAYBACK_MS = 1000;
+
+  /**
+   * The default maximum duration of media that must be buffered for playback to start, in
+   * milliseconds.
+   */
+  public static final int DEFAULT_MAX_BUFFER_FOR_PLAYBACK_MS = 10_000;
+
+  /**
+   * The default fraction of the bitrate estimate that is assumed to be available for loading the
+   * selected tracks.
+   */
+  public static final float DEFAULT_BANDWIDTH_FRACTION = 0.7f;
+
+  /**
+   * The default fraction of the application's memory class that the target buffer size may not
+   * exceed.
+   */
+  public static final float DEFAULT_MAX_MEMORY_FRACTION = 0.25f;
+
+  /** Builder for {@link AdaptiveLoadControl}. */
+  public static final class Builder {
+
+    private final Context context;
+
+    @Nullable private DefaultAllocator allocator;
+    @Nullable private BandwidthMeter bandwidthMeter;
+    private int minBufferMs;
+    private int maxBufferMs;
+    private int minBufferForPlaybackMs;
+    private int maxBufferForPlaybackMs;
+    private float bandwidthFraction;
+    private float maxMemoryFraction;
+    private int backBufferDurationMs;
+    private boolean retainBackBufferFromKeyframe;
+    private boolean buildCalled;
+
+    /**
+     * Creates a builder.
+     *
+     * @param context A {@link Context}, used to obtain the memory class and the default {@link
+     *     BandwidthMeter}.
+     */
+    public Builder(Context context) {
+      this.context = context.getApplicationContext();
+      minBufferMs = DEFAULT_MIN_BUFFER_MS;
+      maxBufferMs = DEFAULT_MAX_BUFFER_MS;
+      minBufferForPlaybackMs = DEFAULT_MIN_BUFFER_FOR_PLAYBACK_MS;
+      maxBufferForPlaybackMs = DEFAULT_MAX_BUFFER_FOR_PLAYBACK_MS;
+      bandwidthFraction = DEFAULT_BANDWIDTH_FRACTION;
+      maxMemoryFraction = DEFAULT_MAX_MEMORY_FRACTION;
+      backBufferDurationMs = DefaultLoadControl.DEFAULT_BACK_BUFFER_DURATION_MS;
+      retainBackBufferFromKeyframe = DefaultLoadControl.DEFAULT_RETAIN_BACK_BUFFER_FROM_KEYFRAME;
+    }
+
+    /**
+     * Sets the {@link DefaultAllocator} used by the loader.
+     *
+     * @param allocator The {@link DefaultAllocator}.
+     * @return This builder, for convenience.
+     * @throws IllegalStateException If {@link #build()} has already been called.
+     */
+    @CanIgnoreReturnValue
+    public Builder setAllocator(DefaultAllocator allocator) {
+      checkState(!buildCalled);
+      this.allocator = allocator;
+      return this;
+    }
+
+    /**
+     * Sets the {@link BandwidthMeter} whose bitrate estimate is used to derive the start threshold.
+     * The default is the {@link DefaultBandwidthMeter#getSingletonInstance(Context) singleton}
+     * {@link DefaultBandwidthMeter}, which is also used by the player by default.
+     *
+     * @param bandwidthMeter The {@link BandwidthMeter}.
+     * @return This builder, for convenience.
+     * @throws IllegalStateException If {@link #build()} has already been called.
+     */
+    @CanIgnoreReturnValue
+    public Builder setBandwidthMeter(BandwidthMeter bandwidthMeter) {
+      checkState(!buildCalled);
+      this.bandwidthMeter = bandwidthMeter;
+      return this;
+    }
+
+    /**
+     * Sets the buffer duration parameters.
+     *
+     * @param minBufferMs The minimum duration of media that the player will attempt to ensure is
+     *     buffered at all times, in milliseconds.
+     * @param maxBufferMs The maximum duration of media that the player will attempt to buffer, in
+     *     milliseconds.
+     * @param minBufferForPlaybackMs The minimum duration of media that must be buffered for
+     *     playback to start or resume, in milliseconds. This is doubled after a rebuffer.
+     * @param maxBufferForPlaybackMs The maximum duration of media that must be buffered for
+     *     playback to start or resume, in milliseconds.
+     * @return This builder, for convenience.
+     * @throws IllegalStateException If {@link #build()} has already been called.
+     */
+    @CanIgnoreReturnValue
+    public Builder setBufferDurationsMs(
+        int minBufferMs, int maxBufferMs, int minBufferForPlaybackMs, int maxBufferForPlaybackMs) {
+      checkState(!buildCalled);
+      checkArgument(minBufferForPlaybackMs >= 0);
+      checkArgument(maxBufferForPlaybackMs >= minBufferForPlaybackMs);
+      checkArgument(minBufferMs >= maxBufferForPlaybackMs);
+      checkArgument(maxBufferMs >= minBufferMs);
+      this.minBufferMs = minBufferMs;
+      this.maxBufferMs = maxBufferMs;
+      this.minBufferForPlaybackMs = minBufferForPlaybackMs;
+      this.maxBufferForPlaybackMs = maxBufferForPlaybackMs;
+      return this;
+    }
+
+    /**
+     * Sets the fraction of the bitrate estimate that is assumed to be available for loading the
+     * selected tracks. The default is {@link #DEFAULT_BANDWIDTH_FRACTION}.
+     *
+     * @param bandwidthFraction The bandwidth fraction. Must be greater than zero.
+     * @return This builder, for convenience.
+     * @throws IllegalStateException If {@link #build()} has already been called.
+     */
+    @CanIgnoreReturnValue
+    public Builder setBandwidthFraction(float bandwidthFraction) {
+      checkState(!buildCalled);
+      checkArgument(bandwidthFraction > 0);
+      this.bandwidthFraction = bandwidthFraction;
+      return this;
+    }
+
+    /**
+     * Sets the fraction of the application's memory class that the target buffer size may not
+     * exceed. The default is {@link #DEFAULT_MAX_MEMORY_FRACTION}.
+     *
+     * @param maxMemoryFraction The memory fraction. Must be greater than zero.
+     * @return This builder, for convenience.
+     * @throws IllegalStateException If {@link #build()} has already been called.
+     */
+    @CanIgnoreReturnValue
+    public Builder setMaxMemoryFraction(float maxMemoryFraction) {
+      checkState(!buildCalled);
+      checkArgument(maxMemoryFraction > 0);
+      this.maxMemoryFraction = maxMemoryFraction;
+      return this;
+    }
+
+    /**
+     * Sets the back buffer duration, and whether the back buffer is retained from the previous
+     * keyframe.
+     *
+     * @param backBufferDurationMs The back buffer duration in milliseconds.
+     * @param retainBackBufferFromKeyframe Whether the back buffer is retained from the previous
+     *     keyframe.
+     * @return This builder, for convenience.
+     * @throws IllegalStateException If {@link #build()} has already been called.
+     */
+    @CanIgnoreReturnValue
+    public Builder setBackBuffer(int backBufferDurationMs, boolean retainBackBufferFromKeyframe) {
+      checkState(!buildCalled);
+      checkArgument(backBufferDurationMs >= 0);
+      this.backBufferDurationMs = backBufferDurationMs;
+      this.retainBackBufferFromKeyframe = retainBackBufferFromKeyframe;
+      return this;
+    }
+
+    /** Creates an {@link AdaptiveLoadControl}. */
+    public AdaptiveLoadControl build() {
+      checkState(!buildCalled);
+      buildCalled = true;
+      if (allocator == null) {
+        allocator = new DefaultAllocator(/* trimOnReset= */ true, C.DEFAULT_BUFFER_SEGMENT_SIZE);
+      }
+      if (bandwidthMeter == null) {
+        bandwidthMeter = DefaultBandwidthMeter.getSingletonInstance(context);
+      }
+      return new AdaptiveLoadControl(this, allocator, bandwidthMeter);
+    }
+  }
+
+  private final DefaultAllocator allocator;
+  private final BandwidthMeter bandwidthMeter;
+  private final long minBufferUs;
+  private final long maxBufferUs;
+  private final long minBufferForPlaybackUs;
+  private final long maxBufferForPlaybackUs;
+  private final float bandwidthFraction;
+  private final long maxTargetBufferBytes;
+  private final long backBufferDurationUs;
+  private final boolean retainBackBufferFromKeyframe;
+  private final CopyOnWriteArrayList<HandlerAndListener> listeners;
+  private final Timeline.Period period;
+
+  private @NullableType ExoTrackSelection[] trackSelections;
+  private int targetBufferBytes;
+  private long lastReportedStartThresholdUs;
+  private boolean isLoading;
+
+  private AdaptiveLoadControl(
+      Builder builder, DefaultAllocator allocator, BandwidthMeter bandwidthMeter) {
+    this.allocator = allocator;
+    this.bandwidthMeter = bandwidthMeter;
+    minBufferUs = Util.msToUs(builder.minBufferMs);
+    maxBufferUs = Util.msToUs(builder.maxBufferMs);
+    minBufferForPlaybackUs = Util.msToUs(builder.minBufferForPlaybackMs);
+    maxBufferForPlaybackUs = Util.msToUs(builder.maxBufferForPlaybackMs);
+    bandwidthFraction = builder.bandwidthFraction;
+    maxTargetBufferBytes = getMaxTargetBufferBytes(builder.context, builder.maxMemoryFraction);
+    backBufferDurationUs = Util.msToUs(builder.backBufferDurationMs);
+    retainBackBufferFromKeyframe = builder.retainBackBufferFromKeyframe;
+    listeners = new CopyOnWriteArrayList<>();
+    period = new Timeline.Period();
+    trackSelections = new ExoTrackSelection[0];
+    targetBufferBytes = DefaultLoadControl.DEFAULT_MIN_BUFFER_SIZE;
+    lastReportedStartThresholdUs = C.TIME_UNSET;
+  }
+
+  /**
+   * Adds an {@link EventListener}.
+   *
+   * @param eventHandler A handler on which the listener is called.
+   * @param eventListener The listener.
+   */
+  public void addEventListener(Handler eventHandler, EventListener eventListener) {
+    checkNotNull(eventHandler);
+    checkNotNull(eventListener);
+    removeEventListener(eventListener);
+    listeners.add(new HandlerAndListener(eventHandler, eventListener));
+  }
+
+  /**
+   * Removes an {@link EventListener}.
+   *
+   * @param eventListener The listener to remove.
+   */
+  public void removeEventListener(EventListener eventListener) {
+    for (HandlerAndListener handlerAndListener : listeners) {
+      if (handlerAndListener.listener == eventListener) {
+        listeners.remove(handlerAndListener);
+      }
+    }
+  }
+
+  /** Returns the current target buffer size in bytes. */
+  public int getTargetBufferBytes() {
+    return targetBufferBytes;
+  }
+
+  @Override
+  public void onPrepared() {
+    reset(/* resetAllocator= */ false);
+  }
+
+  @Override
+  public void onTracksSelected(
+      Timeline timeline,
+      MediaPeriodId mediaPeriodId,
+      Renderer[] renderers,
+      TrackGroupArray trackGroups,
+      ExoTrackSelection[] trackSelections) {
+    this.trackSelections = trackSelections;
+    long targetBufferBytes = 0;
+    for (int i = 0; i < renderers.length; i++) {
+      if (trackSelections[i] != null) {
+        targetBufferBytes += getDefaultBufferSize(renderers[i].getTrackType());
+      }
+    }
+    targetBufferBytes = min(targetBufferBytes, maxTargetBufferBytes);
+    setTargetBufferBytes(
+        (int) max(DefaultLoadControl.DEFAULT_MIN_BUFFER_SIZE, targetBufferBytes));
+  }
+
+  @Override
+  public void onStopped() {
+    reset(/* resetAllocator= */ true);
+  }
+
+  @Override
+  public void onReleased() {
+    reset(/* resetAllocator= */ true);
+  }
+
+  @Override
+  public Allocator getAllocator() {
+    return allocator;
+  }
+
+  @Override
+  public long getBackBufferDurationUs() {
+    return backBufferDurationUs;
+  }
+
+  @Override
+  public boolean retainBackBufferFromKeyframe() {
+    return retainBackBufferFromKeyframe;
+  }
+
+  @Override
+  public boolean shouldContinueLoading(
+      long playbackPositionUs, long bufferedDurationUs, float playbackSpeed) {
+    boolean targetBufferSizeReached = allocator.getTotalBytesAllocated() >= targetBufferBytes;
+    long minBufferUs = this.minBufferUs;
+    if (playbackSpeed > 1) {
+      // The playback speed is faster than real time, so scale up the minimum required media
+      // duration to keep enough media buffered for a playout duration of minBufferUs.
+      long mediaDurationMinBufferUs =
+          Util.getMediaDurationForPlayoutDuration(minBufferUs, playbackSpeed);
+      minBufferUs = min(mediaDurationMinBufferUs, maxBufferUs);
+    }
+    // Prevent playback from getting stuck if minBufferUs is too small.
+    minBufferUs = max(minBufferUs, 500_000);
+    if (bufferedDurationUs < minBufferUs) {
+      isLoading = !targetBufferSizeReached;
+    } else if (bufferedDurationUs >= maxBufferUs || targetBufferSizeReached) {
+      isLoading = false;
+    } // Else don't change the loading state.
+    return isLoading;
+  }
+
+  @Override
+  public boolean shouldStartPlayback(
+      Timeline timeline,
+      MediaPeriodId mediaPeriodId,
+      long bufferedDurationUs,
+      float playbackSpeed,
+      boolean rebuffering,
+      long targetLiveOffsetUs) {
+    bufferedDurationUs = Util.getPlayoutDurationForMediaDuration(bufferedDurationUs, playbackSpeed);
+    long startThresholdUs = getStartThresholdUs(timeline, mediaPeriodId, rebuffering);
+    if (targetLiveOffsetUs != C.TIME_UNSET) {
+      startThresholdUs = min(targetLiveOffsetUs / 2, startThresholdUs);
+    }
+    return startThresholdUs <= 0
+        || bufferedDurationUs >= startThresholdUs
+        || allocator.getTotalBytesAllocated() >= targetBufferBytes;
+  }
+
+  private long getStartThresholdUs(
+      Timeline timeline, MediaPeriodId mediaPeriodId, boolean rebuffering) {
+    long minStartThresholdUs =
+        rebuffering
+            ? min(2 * minBufferForPlaybackUs, maxBufferForPlaybackUs)
+            : minBufferForPlaybackUs;
+    int selectedBitrate = getSelectedBitrate();
+    long bitrateEstimate = bandwidthMeter.getBitrateEstimate();
+    long startThresholdUs;
+    if (selectedBitrate == Format.NO_VALUE) {
+      startThresholdUs = maxBufferForPlaybackUs;
+    } else {
+      double availableBitrate = bitrateEstimate * (double) bandwidthFraction;
+      if (availableBitrate >= selectedBitrate) {
+        startThresholdUs = minStartThresholdUs;
+      } else {
+        // Buffer enough to cover the download deficit over the buffering horizon, so that the
+        // horizon can be played out without rebuffering at the current throughput.
+        long horizonUs = maxBufferUs;
+        if (!timeline.isEmpty()) {
+          long periodDurationUs =
+              timeline.getPeriodByUid(mediaPeriodId.periodUid, period).durationUs;
+          if (periodDurationUs != C.TIME_UNSET) {
+            horizonUs = min(horizonUs, periodDurationUs);
+          }
+        }
+        startThresholdUs = (long) (horizonUs * (1 - availableBitrate / selectedBitrate));
+      }
+    }
+    startThresholdUs =
+        Util.constrainValue(startThresholdUs, minStartThresholdUs, maxBufferForPlaybackUs);
+    if (startThresholdUs != lastReportedStartThresholdUs) {
+      lastReportedStartThresholdUs = startThresholdUs;
+      long reportedStartThresholdUs = startThresholdUs;
+      for (HandlerAndListener handlerAndListener : listeners) {
+        handlerAndListener.handler.post(
+            () ->
+                handlerAndListener.listener.onStartThresholdChanged(
+                    reportedStartThresholdUs, selectedBitrate, bitrateEstimate));
+      }
+    }
+    return startThresholdUs;
+  }
+
+  private int getSelectedBitrate() {
+    int selectedBitrate = 0;
+    for (@Nullable ExoTrackSelection trackSelection : trackSelections) {
+      if (trackSelection == null) {
+        continue;
+      }
+      int bitrate = trackSelection.getSelectedFormat().bitrate;
+      if (bitrate == Format.NO_VALUE) {
+        return Format.NO_VALUE;
+      }
+      selectedBitrate += bitrate;
+    }
+    return selectedBitrate > 0 ? selectedBitrate : Format.NO_VALUE;
+  }
+
+  private void setTargetBufferBytes(int targetBufferBytes) {
+    allocator.setTargetBufferSize(targetBufferBytes);
+    if (this.targetBufferBytes == targetBufferBytes) {
+      return;
+    }
+    this.targetBufferBytes = targetBufferBytes;
+    for (HandlerAndListener handlerAndListener : listeners) {
+      handlerAndListener.handler.post(
+          () -> handlerAndListener.listener.onTargetBufferBytesChanged(targetBufferBytes));
+    }
+  }
+
+  private void reset(boolean resetAllocator) {
+    trackSelections = new ExoTrackSelection[0];
+    targetBufferBytes = DefaultLoadControl.DEFAULT_MIN_BUFFER_SIZE;
+    lastReportedStartThresholdUs = C.TIME_UNSET;
+    isLoading = false;
+    if (resetAllocator) {
+      allocator.reset();
+    }
+  }
+
+  private static long getMaxTargetBufferBytes(Context context, float maxMemoryFraction) {
+    @Nullable
+    ActivityManager activityManager =
+        (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+    int memoryClassMb = activityManager != null ? activityManager.getMemoryClass() : 0;
+    if (memoryClassMb <= 0) {
+      return Long.MAX_VALUE;
+    }
+    return (long) (memoryClassMb * 1024L * 1024L * maxMemoryFraction);
+  }
+
+  private static int getDefaultBufferSize(@C.TrackType int trackType) {
+    switch (trackType) {
+      case C.TRACK_TYPE_DEFAULT:
+        return DefaultLoadControl.DEFAULT_MUXED_BUFFER_SIZE;
+      case C.TRACK_TYPE_AUDIO:
+        return DefaultLoadControl.DEFAULT_AUDIO_BUFFER_SIZE;
+      case C.TRACK_TYPE_VIDEO:
+        return DefaultLoadControl.DEFAULT_VIDEO_BUFFER_SIZE;
+      case C.TRACK_TYPE_TEXT:
+        return DefaultLoadControl.DEFAULT_TEXT_BUFFER_SIZE;
+      case C.TRACK_TYPE_METADATA:
+        return DefaultLoadControl.DEFAULT_METADATA_BUFFER_SIZE;
+      case C.TRACK_TYPE_CAMERA_MOTION:
+        return DefaultLoadControl.DEFAULT_CAMERA_MOTION_BUFFER_SIZE;
+      case C.TRACK_TYPE_IMAGE:
+        return DefaultLoadControl.DEFAULT_IMAGE_BUFFER_SIZE;
+      case C.TRACK_TYPE_NONE:
+        return 0;
+      case C.TRACK_TYPE_UNKNOWN:
+      default:
+        throw new IllegalArgumentException();
+    }
+  }
+
+  private static final class HandlerAndListener {
+
+    private final Handler handler;
+    private final EventListener listener;
+
+    public HandlerAndListener(Handler handler, EventListener listener) {
+      this.handler = handler;
+      this.listener = listener;
+    }
+  }
+}
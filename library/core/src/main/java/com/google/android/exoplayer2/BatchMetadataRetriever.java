@@ -0,0 +1,435 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+
+import android.content.Context;
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
+import com.google.android.exoplayer2.extractor.DummyTrackOutput;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.extractor.TrackOutput;
+import com.google.android.exoplayer2.extractor.mp4.Mp4Extractor;
+import com.google.android.exoplayer2.metadata.Metadata;
+import com.google.android.exoplayer2.source.BundledExtractorsAdapter;
+import com.google.android.exoplayer2.source.TrackGroup;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.upstream.DataReader;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceUtil;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultDataSource;
+import com.google.android.exoplayer2.util.Clock;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Retrieves the static metadata of many local {@link MediaItem MediaItems} concurrently, for
+ * example to index a media library.
+ *
+ * <p>Unlike {@link MetadataRetriever}, no {@link com.google.android.exoplayer2.source.MediaSource}
+ * is created. Each item is read by running the extractors directly over a {@link DataSource}, on
+ * one of a fixed number of worker threads. Reading stops as soon as all the tracks and their
+ * formats are known, so that typically only the headers of a file are read (for example the moov
+ * box of an MP4 file, the EBML header and tracks of a Matroska file, ID3 tags or Vorbis comments).
+ * Sample data read before that point is discarded.
+ *
+ * <p>Only progressive media that can be read by the {@link ExtractorsFactory} is supported.
+ *
+ * <p>This class is thread-safe. Instances must be {@link #release() released} when no longer
+ * needed.
+ */
+public final class BatchMetadataRetriever {
+
+  /** The metadata of a {@link MediaItem}, and statistics about its retrieval. */
+  public static final class Result {
+
+    /** The {@link TrackGroupArray} of the media, with one {@link TrackGroup} per track. */
+    public final TrackGroupArray trackGroups;
+    /** The {@link MediaMetadata} populated from the {@link Metadata} of the tracks. */
+    public final MediaMetadata mediaMetadata;
+    /** The number of bytes read from the {@link DataSource} to retrieve the metadata. */
+    public final long bytesRead;
+    /** The time taken to retrieve the metadata, in milliseconds. */
+    public final long loadDurationMs;
+
+    /* package */ Result(
+        TrackGroupArray trackGroups,
+        MediaMetadata mediaMetadata,
+        long bytesRead,
+        long loadDurationMs) {
+      this.trackGroups = trackGroups;
+      this.mediaMetadata = mediaMetadata;
+      this.bytesRead = bytesRead;
+      this.loadDurationMs = loadDurationMs;
+    }
+  }
+
+  /** Builder for {@link BatchMetadataRetriever}. */
+  public static final class Builder {
+
+    private final Context context;
+
+    @Nullable private DataSource.Factory dataSourceFactory;
+    @Nullable private ExtractorsFactory extractorsFactory;
+    private int threadCount;
+    private Clock clock;
+
+    /**
+     * Creates a builder.
+     *
+     * @param context A {@link Context}.
+     */
+    public Builder(Context context) {
+      this.context = context.getApplicationContext();
+      threadCount = DEFAULT_THREAD_COUNT;
+      clock = Clock.DEFAULT;
+    }
+
+    /**
+     * Sets the {@link DataSource.Factory} used to read the media. The default is a {@link
+     * DefaultDataSource.Factory}, which reads local files with a {@link
+     * com.google.android.exoplayer2.upstream.FileDataSource}.
+     *
+     * @param dataSourceFactory The {@link DataSource.Factory}.
+     * @return This builder.
+     */
+    @CanIgnoreReturnValue
+    public Builder setDataSourceFactory(DataSource.Factory dataSourceFactory) {
+      this.dataSourceFactory = dataSourceFactory;
+      return this;
+    }
+
+    /**
+     * Sets the {@link ExtractorsFactory} providing the extractors to read the media with. The
+     * default is a {@link DefaultExtractorsFactory} with {@link
+     * Mp4Extractor#FLAG_READ_MOTION_PHOTO_METADATA} and {@link Mp4Extractor#FLAG_READ_SEF_DATA}
+     * set, as used by {@link MetadataRetriever#retrieveMetadata(Context, MediaItem)}.
+     *
+     * @param extractorsFactory The {@link ExtractorsFactory}.
+     * @return This builder.
+     */
+    @CanIgnoreReturnValue
+    public Builder setExtractorsFactory(ExtractorsFactory extractorsFactory) {
+      this.extractorsFactory = extractorsFactory;
+      return this;
+    }
+
+    /**
+     * Sets the number of worker threads that read media concurrently. The default is {@link
+     * #DEFAULT_THREAD_COUNT}.
+     *
+     * @param threadCount The number of worker threads.
+     * @return This builder.
+     */
+    @CanIgnoreReturnValue
+    public Builder setThreadCount(int threadCount) {
+      checkArgument(threadCount > 0);
+      this.threadCount = threadCount;
+      return this;
+    }
+
+    /**
+     * Sets the {@link Clock} used to measure {@link Result#loadDurationMs}. Should only be set for
+     * testing purposes.
+     *
+     * @param clock A {@link Clock}.
+     * @return This builder.
+     */
+    @CanIgnoreReturnValue
+    @VisibleForTesting
+    public Builder setClock(Clock clock) {
+      this.clock = clock;
+      return this;
+    }
+
+    /** Builds the {@link BatchMetadataRetriever}. */
+    public BatchMetadataRetriever build() {
+      return new BatchMetadataRetriever(this);
+    }
+  }
+
+  /** The default number of worker threads. */
+  public static final int DEFAULT_THREAD_COUNT = 4;
+
+  private static final String THREAD_NAME_PREFIX = "ExoPlayer:BatchMetadataRetriever:";
+
+  private final DataSource.Factory dataSourceFactory;
+  private final ExtractorsFactory extractorsFactory;
+  private final ListeningExecutorService executorService;
+  private final Clock clock;
+
+  private BatchMetadataRetriever(Builder builder) {
+    dataSourceFactory =
+        builder.dataSourceFactory != null
+            ? builder.dataSourceFactory
+            : new DefaultDataSource.Factory(builder.context);
+    extractorsFactory =
+        builder.extractorsFactory != null
+            ? builder.extractorsFactory
+            : new DefaultExtractorsFactory()
+                .setMp4ExtractorFlags(
+                    Mp4Extractor.FLAG_READ_MOTION_PHOTO_METADATA
+                        | Mp4Extractor.FLAG_READ_SEF_DATA);
+    AtomicInteger threadIndex = new AtomicInteger();
+    ThreadFactory threadFactory =
+        runnable -> new Thread(runnable, THREAD_NAME_PREFIX + threadIndex.getAndIncrement());
+    executorService =
+        MoreExecutors.listeningDecorator(
+            Executors.newFixedThreadPool(builder.threadCount, threadFactory));
+    clock = builder.clock;
+  }
+
+  /**
+   * Retrieves the metadata of a {@link MediaItem}.
+   *
+   * <p>If the returned future is cancelled with {@code mayInterruptIfRunning} set to {@code true},
+   * reading the media is interrupted. Otherwise a read that has already started runs to completion
+   * and its result is discarded.
+   *
+   * @param mediaItem The {@link MediaItem}, which must have a {@link
+   *     MediaItem#localConfiguration}.
+   * @return A {@link ListenableFuture} of the {@link Result}.
+   */
+  public ListenableFuture<Result> retrieveMetadata(MediaItem mediaItem) {
+    Uri uri = checkNotNull(mediaItem.localConfiguration).uri;
+    return executorService.submit(() -> retrieveMetadata(uri));
+  }
+
+  /**
+   * Retrieves the metadata of each of the given {@link MediaItem MediaItems}.
+   *
+   * @param mediaItems The {@link MediaItem MediaItems}, which must each have a {@link
+   *     MediaItem#localConfiguration}.
+   * @return A {@link ListenableFuture} of the {@link Result} for each item, in the same order as
+   *     {@code mediaItems}.
+   */
+  public ImmutableList<ListenableFuture<Result>> retrieveMetadata(List<MediaItem> mediaItems) {
+    ImmutableList.Builder<ListenableFuture<Result>> futures = ImmutableList.builder();
+    for (int i = 0; i < mediaItems.size(); i++) {
+      futures.add(retrieveMetadata(mediaItems.get(i)));
+    }
+    return futures.build();
+  }
+
+  /**
+   * Releases the retriever. Pending retrievals are cancelled, and no further metadata can be
+   * retrieved.
+   */
+  public void release() {
+    executorService.shutdownNow();
+  }
+
+  private Result retrieveMetadata(Uri uri) throws IOException {
+    long startTimeMs = clock.elapsedRealtime();
+    DataSource dataSource = dataSourceFactory.createDataSource();
+    CountingDataReader dataReader = new CountingDataReader(dataSource);
+    BundledExtractorsAdapter extractorAdapter = new BundledExtractorsAdapter(extractorsFactory);
+    MetadataExtractorOutput extractorOutput = new MetadataExtractorOutput();
+    PositionHolder positionHolder = new PositionHolder();
+    int result = Extractor.RESULT_CONTINUE;
+    try {
+      while (result != Extractor.RESULT_END_OF_INPUT && !extractorOutput.isComplete()) {
+        long position = positionHolder.position;
+        try {
+          long length =
+              dataSource.open(new DataSpec.Builder().setUri(uri).setPosition(position).build());
+          if (length != C.LENGTH_UNSET) {
+            length += position;
+          }
+          extractorAdapter.init(
+              dataReader,
+              uri,
+              dataSource.getResponseHeaders(),
+              position,
+              length,
+              extractorOutput);
+          result = Extractor.RESULT_CONTINUE;
+          while (result == Extractor.RESULT_CONTINUE && !extractorOutput.isComplete()) {
+            if (Thread.interrupted()) {
+              throw new InterruptedIOException();
+            }
+            result = extractorAdapter.read(positionHolder);
+          }
+        } finally {
+          DataSourceUtil.closeQuietly(dataSource);
+        }
+      }
+    } finally {
+      extractorAdapter.release();
+    }
+    if (!extractorOutput.tracksEnded) {
+      throw ParserException.createForMalformedContainer(
+          "The end of the input was reached before the tracks were found.", /* cause= */ null);
+    }
+    return new Result(
+        extractorOutput.buildTrackGroups(),
+        extractorOutput.buildMediaMetadata(),
+        dataReader.bytesRead,
+        clock.elapsedRealtime() - startTimeMs);
+  }
+
+  /** A {@link DataReader} that counts the bytes read from a {@link DataSource}. */
+  private static final class CountingDataReader implements DataReader {
+
+    private final DataSource dataSource;
+
+    private long bytesRead;
+
+    public CountingDataReader(DataSource dataSource) {
+      this.dataSource = dataSource;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      int bytesRead = dataSource.read(buffer, offset, length);
+      if (bytesRead != C.RESULT_END_OF_INPUT) {
+        this.bytesRead += bytesRead;
+      }
+      return bytesRead;
+    }
+  }
+
+  /** An {@link ExtractorOutput} that records the track formats and discards the samples. */
+  private static final class MetadataExtractorOutput implements ExtractorOutput {
+
+    private final List<FormatTrackOutput> trackOutputs;
+
+    private boolean tracksEnded;
+
+    public MetadataExtractorOutput() {
+      trackOutputs = new ArrayList<>();
+    }
+
+    /** Returns whether all the tracks and their formats are known. */
+    public boolean isComplete() {
+      if (!tracksEnded) {
+        return false;
+      }
+      for (int i = 0; i < trackOutputs.size(); i++) {
+        if (trackOutputs.get(i).format == null) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    public TrackGroupArray buildTrackGroups() {
+      List<TrackGroup> trackGroups = new ArrayList<>();
+      for (int i = 0; i < trackOutputs.size(); i++) {
+        FormatTrackOutput trackOutput = trackOutputs.get(i);
+        @Nullable Format format = trackOutput.format;
+        if (format != null) {
+          trackGroups.add(new TrackGroup(Integer.toString(trackOutput.id), format));
+        }
+      }
+      return new TrackGroupArray(trackGroups.toArray(new TrackGroup[0]));
+    }
+
+    public MediaMetadata buildMediaMetadata() {
+      MediaMetadata.Builder mediaMetadata = new MediaMetadata.Builder();
+      for (int i = 0; i < trackOutputs.size(); i++) {
+        @Nullable Format format = trackOutputs.get(i).format;
+        if (format != null && format.metadata != null) {
+          mediaMetadata.populateFromMetadata(format.metadata);
+        }
+      }
+      return mediaMetadata.build();
+    }
+
+    @Override
+    public TrackOutput track(int id, @C.TrackType int type) {
+      for (int i = 0; i < trackOutputs.size(); i++) {
+        if (trackOutputs.get(i).id == id) {
+          return trackOutputs.get(i);
+        }
+      }
+      FormatTrackOutput trackOutput = new FormatTrackOutput(id);
+      trackOutputs.add(trackOutput);
+      return trackOutput;
+    }
+
+    @Override
+    public void endTracks() {
+      tracksEnded = true;
+    }
+
+    @Override
+    public void seekMap(SeekMap seekMap) {
+      // Do nothing.
+    }
+  }
+
+  /** A {@link TrackOutput} that records the format of the track and discards the samples. */
+  private static final class FormatTrackOutput implements TrackOutput {
+
+    private final int id;
+    private final DummyTrackOutput dummyTrackOutput;
+
+    @Nullable private Format format;
+
+    public FormatTrackOutput(int id) {
+      this.id = id;
+      dummyTrackOutput = new DummyTrackOutput();
+    }
+
+    @Override
+    public void format(Format format) {
+      this.format = format;
+    }
+
+    @Override
+    public int sampleData(
+        DataReader input, int length, boolean allowEndOfInput, @SampleDataPart int sampleDataPart)
+        throws IOException {
+      return dummyTrackOutput.sampleData(input, length, allowEndOfInput, sampleDataPart);
+    }
+
+    @Override
+    public void sampleData(ParsableByteArray data, int length, @SampleDataPart int sampleDataPart) {
+      data.skipBytes(length);
+    }
+
+    @Override
+    public void sampleMetadata(
+        long timeUs,
+        @C.BufferFlags int flags,
+        int size,
+        int offset,
+        @Nullable CryptoData cryptoData) {
+      // Do nothing.
+    }
+  }
+}
@@ -0,0 +1,621 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import android.content.Context;
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
+import com.google.android.exoplayer2.extractor.DummyTrackOutput;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.extractor.SeekPoint;
+import com.google.android.exoplayer2.extractor.TrackOutput;
+import com.google.android.exoplayer2.source.BundledExtractorsAdapter;
+import com.google.android.exoplayer2.upstream.DataReader;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceUtil;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultDataSource;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Retrieves the compressed video key frames of a {@link MediaItem} at a sparse set of times, for
+ * example to generate previews for a scrub bar.
+ *
+ * <p>No {@link com.google.android.exoplayer2.source.MediaSource} is created, and the samples
+ * between the requested key frames are not read. Instead the extractors run directly over a
+ * {@link DataSource}, and each time is reached by seeking with the {@link SeekMap} output by the
+ * extractor (for example the sync samples of an MP4 file, or the cues of a Matroska file), after
+ * which reading stops at the first key frame of the video track. The requested times are split
+ * between a fixed number of worker threads, each of which reads the headers of the media once.
+ *
+ * <p>The retrieved {@link Keyframe Keyframes} can be queued to a video decoder configured with
+ * their {@link Keyframe#format}.
+ *
+ * <p>Only progressive media that can be read by the {@link ExtractorsFactory} and has a seekable
+ * {@link SeekMap} is supported.
+ *
+ * <p>This class is thread-safe. Instances must be {@link #release() released} when no longer
+ * needed.
+ */
+public final class KeyframeRetriever {
+
+  /** A compressed video key frame. */
+  public static final class Keyframe {
+
+    /** The {@link Format} of the video track. */
+    public final Format format;
+    /** The presentation time of the key frame, in microseconds. */
+    public final long timeUs;
+    /** The compressed data of the key frame. */
+    public final byte[] data;
+
+    /* package */ Keyframe(Format format, long timeUs, byte[] data) {
+      this.format = format;
+      this.timeUs = timeUs;
+      this.data = data;
+    }
+  }
+
+  /** Builder for {@link KeyframeRetriever}. */
+  public static final class Builder {
+
+    private final Context context;
+
+    @Nullable private DataSource.Factory dataSourceFactory;
+    @Nullable private ExtractorsFactory extractorsFactory;
+    private int threadCount;
+
+    /**
+     * Creates a builder.
+     *
+     * @param context A {@link Context}.
+     */
+    public Builder(Context context) {
+      this.context = context.getApplicationContext();
+      threadCount = DEFAULT_THREAD_COUNT;
+    }
+
+    /**
+     * Sets the {@link DataSource.Factory} used to read the media. The default is a {@link
+     * DefaultDataSource.Factory}.
+     *
+     * @param dataSourceFactory The {@link DataSource.Factory}.
+     * @return This builder.
+     */
+    @CanIgnoreReturnValue
+    public Builder setDataSourceFactory(DataSource.Factory dataSourceFactory) {
+      this.dataSourceFactory = dataSourceFactory;
+      return this;
+    }
+
+    /**
+     * Sets the {@link ExtractorsFactory} providing the extractors to read the media with. The
+     * default is a {@link DefaultExtractorsFactory}.
+     *
+     * @param extractorsFactory The {@link ExtractorsFactory}.
+     * @return This builder.
+     */
+    @CanIgnoreReturnValue
+    public Builder setExtractorsFactory(ExtractorsFactory extractorsFactory) {
+      this.extractorsFactory = extractorsFactory;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of worker threads that read key frames concurrently. The default is
+     * {@link #DEFAULT_THREAD_COUNT}.
+     *
+     * @param threadCount The number of worker threads.
+     * @return This builder.
+     */
+    @CanIgnoreReturnValue
+    public Builder setThreadCount(int threadCount) {
+      checkArgument(threadCount > 0);
+      this.threadCount = threadCount;
+      return this;
+    }
+
+    /** Builds the {@link KeyframeRetriever}. */
+    public KeyframeRetriever build() {
+      return new KeyframeRetriever(this);
+    }
+  }
+
+  /** The default number of worker threads. */
+  public static final int DEFAULT_THREAD_COUNT = 4;
+
+  private static final String THREAD_NAME_PREFIX = "ExoPlayer:KeyframeRetriever:";
+
+  private final DataSource.Factory dataSourceFactory;
+  private final ExtractorsFactory extractorsFactory;
+  private final int threadCount;
+  private final ListeningExecutorService executorService;
+
+  private KeyframeRetriever(Builder builder) {
+    dataSourceFactory =
+        builder.dataSourceFactory != null
+            ? builder.dataSourceFactory
+            : new DefaultDataSource.Factory(builder.context);
+    extractorsFactory =
+        builder.extractorsFactory != null
+            ? builder.extractorsFactory
+            : new DefaultExtractorsFactory();
+    threadCount = builder.threadCount;
+    AtomicInteger threadIndex = new AtomicInteger();
+    ThreadFactory threadFactory =
+        runnable -> new Thread(runnable, THREAD_NAME_PREFIX + threadIndex.getAndIncrement());
+    executorService =
+        MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(threadCount, threadFactory));
+  }
+
+  /**
+   * Retrieves a key frame at each of the given times.
+   *
+   * <p>The key frame retrieved for a time is the first key frame read after seeking to it. For
+   * media whose {@link SeekMap} points at key frames, such as MP4 and Matroska files, this is the
+   * key frame at or before the time.
+   *
+   * <p>The times don't need to be sorted. They are read in increasing order, so that each worker
+   * only seeks forward through the media. If no key frame can be retrieved for a time, only the
+   * future for that time fails.
+   *
+   * @param mediaItem The {@link MediaItem}, which must have a {@link
+   *     MediaItem#localConfiguration}.
+   * @param timesUs The times at which to retrieve key frames, in microseconds.
+   * @return A {@link ListenableFuture} of the {@link Keyframe} for each time, in the same order as
+   *     {@code timesUs}.
+   */
+  public ImmutableList<ListenableFuture<Keyframe>> retrieveKeyframes(
+      MediaItem mediaItem, List<Long> timesUs) {
+    Uri uri = checkNotNull(mediaItem.localConfiguration).uri;
+    ImmutableList<Long> requestedTimesUs = ImmutableList.copyOf(timesUs);
+    List<SettableFuture<Keyframe>> futures = new ArrayList<>(requestedTimesUs.size());
+    List<Integer> sortedIndices = new ArrayList<>(requestedTimesUs.size());
+    for (int i = 0; i < requestedTimesUs.size(); i++) {
+      futures.add(SettableFuture.create());
+      sortedIndices.add(i);
+    }
+    Collections.sort(
+        sortedIndices, (i, j) -> Long.compare(requestedTimesUs.get(i), requestedTimesUs.get(j)));
+    List<Long> sortedTimesUs = new ArrayList<>(sortedIndices.size());
+    List<SettableFuture<Keyframe>> sortedFutures = new ArrayList<>(sortedIndices.size());
+    for (int i = 0; i < sortedIndices.size(); i++) {
+      sortedTimesUs.add(requestedTimesUs.get(sortedIndices.get(i)));
+      sortedFutures.add(futures.get(sortedIndices.get(i)));
+    }
+    // Give each worker a contiguous range of the sorted times, so that it reads the headers once
+    // and then seeks forward through the media.
+    int workerCount = min(threadCount, sortedTimesUs.size());
+    for (int i = 0; i < workerCount; i++) {
+      int fromIndex = i * sortedTimesUs.size() / workerCount;
+      int toIndex = (i + 1) * sortedTimesUs.size() / workerCount;
+      executorService.execute(
+          new ReadKeyframesTask(
+              uri,
+              sortedTimesUs.subList(fromIndex, toIndex),
+              sortedFutures.subList(fromIndex, toIndex)));
+    }
+    return ImmutableList.copyOf(futures);
+  }
+
+  /**
+   * Retrieves key frames spaced by (at least) a given interval over the duration of the media.
+   *
+   * <p>A key frame is retrieved as by {@link #retrieveKeyframes(MediaItem, List)} at each multiple
+   * of {@code intervalUs}. Key frames retrieved for more than one time are only included once.
+   * Times for which no key frame can be retrieved, for example because no key frame follows the
+   * seek point, are skipped. The returned future only fails if no key frame can be retrieved.
+   *
+   * @param mediaItem The {@link MediaItem}, which must have a {@link
+   *     MediaItem#localConfiguration}.
+   * @param intervalUs The interval between the times at which key frames are retrieved, in
+   *     microseconds.
+   * @return A {@link ListenableFuture} of the {@link Keyframe Keyframes}, in increasing time order.
+   */
+  public ListenableFuture<ImmutableList<Keyframe>> retrieveKeyframes(
+      MediaItem mediaItem, long intervalUs) {
+    checkArgument(intervalUs > 0);
+    Uri uri = checkNotNull(mediaItem.localConfiguration).uri;
+    ListenableFuture<Long> durationUsFuture =
+        executorService.submit(
+            () -> {
+              KeyframeReader reader = new KeyframeReader(uri);
+              try {
+                return reader.prepare().getDurationUs();
+              } finally {
+                reader.release();
+              }
+            });
+    return Futures.transformAsync(
+        durationUsFuture,
+        durationUs -> {
+          if (durationUs == C.TIME_UNSET) {
+            throw ParserException.createForUnsupportedContainerFeature("Unknown duration.");
+          }
+          List<Long> timesUs = new ArrayList<>();
+          for (long timeUs = 0; timeUs < durationUs; timeUs += intervalUs) {
+            timesUs.add(timeUs);
+          }
+          ImmutableList<ListenableFuture<Keyframe>> keyframeFutures =
+              retrieveKeyframes(mediaItem, timesUs);
+          return Futures.whenAllComplete(keyframeFutures)
+              .call(() -> getUniqueKeyframes(keyframeFutures), MoreExecutors.directExecutor());
+        },
+        MoreExecutors.directExecutor());
+  }
+
+  /**
+   * Releases the retriever. Pending retrievals are cancelled or fail, and no further key frames
+   * can be retrieved.
+   */
+  public void release() {
+    List<Runnable> pendingTasks = executorService.shutdownNow();
+    for (int i = 0; i < pendingTasks.size(); i++) {
+      Runnable pendingTask = pendingTasks.get(i);
+      if (pendingTask instanceof ReadKeyframesTask) {
+        ((ReadKeyframesTask) pendingTask).cancel();
+      } else if (pendingTask instanceof Future) {
+        // The duration read of an interval retrieval.
+        ((Future<?>) pendingTask).cancel(/* mayInterruptIfRunning= */ false);
+      }
+    }
+  }
+
+  /**
+   * Returns the distinct key frames of the given completed futures, skipping failed futures unless
+   * they all failed.
+   */
+  private static ImmutableList<Keyframe> getUniqueKeyframes(
+      List<ListenableFuture<Keyframe>> keyframeFutures) throws Exception {
+    ImmutableList.Builder<Keyframe> uniqueKeyframes = ImmutableList.builder();
+    @Nullable Exception firstException = null;
+    long lastTimeUs = C.TIME_UNSET;
+    for (int i = 0; i < keyframeFutures.size(); i++) {
+      Keyframe keyframe;
+      try {
+        keyframe = Futures.getDone(keyframeFutures.get(i));
+      } catch (ExecutionException e) {
+        if (firstException == null) {
+          firstException = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+        continue;
+      }
+      if (keyframe.timeUs != lastTimeUs) {
+        uniqueKeyframes.add(keyframe);
+        lastTimeUs = keyframe.timeUs;
+      }
+    }
+    ImmutableList<Keyframe> keyframes = uniqueKeyframes.build();
+    if (keyframes.isEmpty() && firstException != null) {
+      throw firstException;
+    }
+    return keyframes;
+  }
+
+  /** Reads the key frames at a range of times with a single {@link KeyframeReader}. */
+  private final class ReadKeyframesTask implements Runnable {
+
+    private final Uri uri;
+    private final List<Long> timesUs;
+    private final List<SettableFuture<Keyframe>> futures;
+
+    public ReadKeyframesTask(Uri uri, List<Long> timesUs, List<SettableFuture<Keyframe>> futures) {
+      this.uri = uri;
+      this.timesUs = timesUs;
+      this.futures = futures;
+    }
+
+    @Override
+    public void run() {
+      KeyframeReader reader = new KeyframeReader(uri);
+      int index = 0;
+      try {
+        reader.prepare();
+        for (; index < timesUs.size(); index++) {
+          try {
+            futures.get(index).set(reader.readKeyframe(timesUs.get(index)));
+          } catch (InterruptedIOException e) {
+            throw e;
+          } catch (IOException e) {
+            // Other times may still be reachable, for example if this one has no key frame after
+            // its seek point.
+            futures.get(index).setException(e);
+          }
+        }
+      } catch (IOException | RuntimeException e) {
+        for (; index < futures.size(); index++) {
+          futures.get(index).setException(e);
+        }
+      } finally {
+        reader.release();
+      }
+    }
+
+    /** Cancels the futures of a task that won't run. */
+    public void cancel() {
+      for (int i = 0; i < futures.size(); i++) {
+        futures.get(i).cancel(/* mayInterruptIfRunning= */ false);
+      }
+    }
+  }
+
+  /** Reads key frames of a single piece of media. Must be used on a single thread. */
+  private final class KeyframeReader implements ExtractorOutput {
+
+    private final Uri uri;
+    private final DataSource dataSource;
+    private final BundledExtractorsAdapter extractorAdapter;
+    private final PositionHolder positionHolder;
+    private final List<TrackOutput> trackOutputs;
+    private final List<Integer> trackIds;
+
+    @Nullable private KeyframeTrackOutput videoTrackOutput;
+    @Nullable private SeekMap seekMap;
+    private boolean tracksEnded;
+    private boolean readingKeyframe;
+    private long lastSeekPosition;
+    @Nullable private Keyframe lastKeyframe;
+
+    public KeyframeReader(Uri uri) {
+      this.uri = uri;
+      dataSource = dataSourceFactory.createDataSource();
+      extractorAdapter = new BundledExtractorsAdapter(extractorsFactory);
+      positionHolder = new PositionHolder();
+      trackOutputs = new ArrayList<>();
+      trackIds = new ArrayList<>();
+      lastSeekPosition = C.INDEX_UNSET;
+    }
+
+    /**
+     * Reads the start of the media until the format of the video track and the {@link SeekMap}
+     * are known.
+     *
+     * @return The {@link SeekMap}.
+     * @throws IOException If an error occurs reading the media, or if it has no video track or
+     *     isn't seekable.
+     */
+    public SeekMap prepare() throws IOException {
+      if (!read(/* seekTimeUs= */ C.TIME_UNSET)) {
+        throw ParserException.createForMalformedContainer(
+            "The end of the input was reached before the tracks were found.", /* cause= */ null);
+      }
+      SeekMap seekMap = checkNotNull(this.seekMap);
+      if (videoTrackOutput == null) {
+        throw ParserException.createForUnsupportedContainerFeature("No video track.");
+      }
+      if (!seekMap.isSeekable()) {
+        throw ParserException.createForUnsupportedContainerFeature("Unseekable media.");
+      }
+      return seekMap;
+    }
+
+    /**
+     * Seeks to the given time and reads the first key frame of the video track after it. Must be
+     * called after {@link #prepare()}.
+     *
+     * @throws EOFException If the end of the input is reached before a key frame.
+     * @throws IOException If an error occurs reading the media.
+     */
+    public Keyframe readKeyframe(long timeUs) throws IOException {
+      SeekPoint seekPoint = checkNotNull(seekMap).getSeekPoints(timeUs).first;
+      if (seekPoint.position == lastSeekPosition && lastKeyframe != null) {
+        // The same key frame would be read again.
+        return lastKeyframe;
+      }
+      KeyframeTrackOutput videoTrackOutput = checkNotNull(this.videoTrackOutput);
+      videoTrackOutput.reset();
+      positionHolder.position = seekPoint.position;
+      readingKeyframe = true;
+      boolean readKeyframe;
+      try {
+        readKeyframe = read(timeUs);
+      } finally {
+        readingKeyframe = false;
+      }
+      if (!readKeyframe) {
+        throw new EOFException();
+      }
+      lastSeekPosition = seekPoint.position;
+      lastKeyframe = checkNotNull(videoTrackOutput.keyframe);
+      return lastKeyframe;
+    }
+
+    public void release() {
+      extractorAdapter.release();
+    }
+
+    /**
+     * Reads from {@link #positionHolder} until the current read is done, seeking the extractor to
+     * {@code seekTimeUs} first unless it's {@link C#TIME_UNSET}. Returns whether the read is done,
+     * or {@code false} if the end of the input was reached first.
+     */
+    private boolean read(long seekTimeUs) throws IOException {
+      boolean seekPending = seekTimeUs != C.TIME_UNSET;
+      int result = Extractor.RESULT_CONTINUE;
+      while (result != Extractor.RESULT_END_OF_INPUT && !isReadDone()) {
+        long position = positionHolder.position;
+        try {
+          long length =
+              dataSource.open(new DataSpec.Builder().setUri(uri).setPosition(position).build());
+          if (length != C.LENGTH_UNSET) {
+            length += position;
+          }
+          extractorAdapter.init(
+              dataSource, uri, dataSource.getResponseHeaders(), position, length, this);
+          if (seekPending) {
+            extractorAdapter.seek(position, seekTimeUs);
+            seekPending = false;
+          }
+          result = Extractor.RESULT_CONTINUE;
+          while (result == Extractor.RESULT_CONTINUE && !isReadDone()) {
+            if (Thread.interrupted()) {
+              throw new InterruptedIOException();
+            }
+            result = extractorAdapter.read(positionHolder);
+          }
+        } finally {
+          DataSourceUtil.closeQuietly(dataSource);
+        }
+      }
+      return isReadDone();
+    }
+
+    private boolean isReadDone() {
+      if (readingKeyframe) {
+        return checkNotNull(videoTrackOutput).keyframe != null;
+      }
+      return tracksEnded
+          && seekMap != null
+          && (videoTrackOutput == null || videoTrackOutput.format != null);
+    }
+
+    // ExtractorOutput implementation.
+
+    @Override
+    public TrackOutput track(int id, @C.TrackType int type) {
+      int index = trackIds.indexOf(id);
+      if (index != C.INDEX_UNSET) {
+        return trackOutputs.get(index);
+      }
+      TrackOutput trackOutput;
+      if (type == C.TRACK_TYPE_VIDEO && videoTrackOutput == null) {
+        videoTrackOutput = new KeyframeTrackOutput();
+        trackOutput = videoTrackOutput;
+      } else {
+        trackOutput = new DummyTrackOutput();
+      }
+      trackIds.add(id);
+      trackOutputs.add(trackOutput);
+      return trackOutput;
+    }
+
+    @Override
+    public void endTracks() {
+      tracksEnded = true;
+    }
+
+    @Override
+    public void seekMap(SeekMap seekMap) {
+      this.seekMap = seekMap;
+    }
+  }
+
+  /** A {@link TrackOutput} that keeps the data of the first key frame output after a reset. */
+  private static final class KeyframeTrackOutput implements TrackOutput {
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    @Nullable private Format format;
+    @Nullable private Keyframe keyframe;
+    private byte[] buffer;
+    private int bufferLength;
+
+    public KeyframeTrackOutput() {
+      buffer = new byte[INITIAL_BUFFER_SIZE];
+    }
+
+    /** Discards the buffered data and any key frame, before reading from a new position. */
+    public void reset() {
+      keyframe = null;
+      bufferLength = 0;
+    }
+
+    @Override
+    public void format(Format format) {
+      this.format = format;
+    }
+
+    @Override
+    public int sampleData(
+        DataReader input, int length, boolean allowEndOfInput, @SampleDataPart int sampleDataPart)
+        throws IOException {
+      ensureCapacity(length);
+      int bytesRead = input.read(buffer, bufferLength, length);
+      if (bytesRead == C.RESULT_END_OF_INPUT) {
+        if (allowEndOfInput) {
+          return C.RESULT_END_OF_INPUT;
+        }
+        throw new EOFException();
+      }
+      bufferLength += bytesRead;
+      return bytesRead;
+    }
+
+    @Override
+    public void sampleData(ParsableByteArray data, int length, @SampleDataPart int sampleDataPart) {
+      ensureCapacity(length);
+      data.readBytes(buffer, bufferLength, length);
+      bufferLength += length;
+    }
+
+    @Override
+    public void sampleMetadata(
+        long timeUs,
+        @C.BufferFlags int flags,
+        int size,
+        int offset,
+        @Nullable CryptoData cryptoData) {
+      @Nullable Format format = this.format;
+      int sampleEnd = bufferLength - offset;
+      int sampleStart = sampleEnd - size;
+      // The start of the sample may have been output before a reset.
+      if (keyframe == null
+          && format != null
+          && (flags & C.BUFFER_FLAG_KEY_FRAME) != 0
+          && sampleStart >= 0) {
+        keyframe = new Keyframe(format, timeUs, Arrays.copyOfRange(buffer, sampleStart, sampleEnd));
+      }
+      // Discard the sample, keeping any data already output for the following samples.
+      System.arraycopy(buffer, sampleEnd, buffer, /* destPos= */ 0, offset);
+      bufferLength = offset;
+    }
+
+    private void ensureCapacity(int length) {
+      if (bufferLength + length > buffer.length) {
+        buffer = Arrays.copyOf(buffer, max(buffer.length * 2, bufferLength + length));
+      }
+    }
+  }
+}
@@ -33,6 +33,7 @@ import com.google.android.exoplayer2.drm.DrmSessionEventListener;
 import com.google.android.exoplayer2.source.MediaSource.MediaPeriodId;
 import com.google.android.exoplayer2.source.MediaSourceEventListener;
 import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.util.FlagSet;
 import com.google.android.exoplayer2.video.VideoDecoderOutputBufferRenderer;
 import java.util.List;
 
@@ -53,6 +54,23 @@ public interface AnalyticsCollector
    */
   void addListener(AnalyticsListener listener);
 
+  /**
+   * Adds a listener that only receives the given analytics events.
+   *
+   * <p>Events that no registered listener receives may not be generated at all, which avoids the
+   * cost of creating their {@link AnalyticsListener.EventTime} for high-frequency events. {@link
+   * AnalyticsListener#onEvents} is still called for the listener and may report events that it
+   * didn't request. {@link AnalyticsListener#onPlayerReleased} is always received.
+   *
+   * <p>The default implementation ignores the filter and delivers all events.
+   *
+   * @param listener The listener to add.
+   * @param eventFlags The {@link AnalyticsListener.EventFlags} of the events to receive.
+   */
+  default void addListener(AnalyticsListener listener, FlagSet eventFlags) {
+    addListener(listener);
+  }
+
   /**
    * Removes a previously added analytics event listener.
    *
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.analytics;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+
+import java.util.AbstractList;
+
+/**
+ * A list backed by a fixed-size ring buffer. When the list is full, adding an element removes the
+ * oldest one.
+ */
+/* package */ final class BoundedHistoryList<E> extends AbstractList<E> {
+
+  private final Object[] elements;
+
+  private int start;
+  private int size;
+
+  /**
+   * Creates an instance.
+   *
+   * @param capacity The maximum number of elements kept.
+   */
+  public BoundedHistoryList(int capacity) {
+    checkArgument(capacity > 0);
+    elements = new Object[capacity];
+  }
+
+  @Override
+  public boolean add(E element) {
+    if (size < elements.length) {
+      elements[(start + size) % elements.length] = element;
+      size++;
+    } else {
+      elements[start] = element;
+      start = (start + 1) % elements.length;
+    }
+    modCount++;
+    return true;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException();
+    }
+    return (E) elements[(start + index) % elements.length];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+}
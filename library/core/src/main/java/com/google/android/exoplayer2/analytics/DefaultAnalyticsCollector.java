@@ -51,6 +51,7 @@ import com.google.android.exoplayer2.text.Cue;
 import com.google.android.exoplayer2.text.CueGroup;
 import com.google.android.exoplayer2.trackselection.TrackSelectionParameters;
 import com.google.android.exoplayer2.util.Clock;
+import com.google.android.exoplayer2.util.FlagSet;
 import com.google.android.exoplayer2.util.HandlerWrapper;
 import com.google.android.exoplayer2.util.ListenerSet;
 import com.google.android.exoplayer2.util.Util;
@@ -60,7 +61,9 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 import org.checkerframework.checker.nullness.qual.RequiresNonNull;
 
@@ -74,6 +77,7 @@ public class DefaultAnalyticsCollector implements AnalyticsCollector {
   private final Window window;
   private final MediaPeriodQueueTracker mediaPeriodQueueTracker;
   private final SparseArray<EventTime> eventTimes;
+  private final Map<AnalyticsListener, FlagSet> listenerEventFilters;
 
   private ListenerSet<AnalyticsListener> listeners;
   private @MonotonicNonNull Player player;
@@ -92,6 +96,7 @@ public class DefaultAnalyticsCollector implements AnalyticsCollector {
     window = new Window();
     mediaPeriodQueueTracker = new MediaPeriodQueueTracker(period);
     eventTimes = new SparseArray<>();
+    listenerEventFilters = new HashMap<>();
   }
 
   /**
@@ -115,10 +120,19 @@ public class DefaultAnalyticsCollector implements AnalyticsCollector {
     listeners.add(listener);
   }
 
+  @Override
+  @CallSuper
+  public void addListener(AnalyticsListener listener, FlagSet eventFlags) {
+    checkNotNull(listener);
+    listenerEventFilters.put(listener, eventFlags);
+    listeners.add(listener);
+  }
+
   @Override
   @CallSuper
   public void removeListener(AnalyticsListener listener) {
     listeners.remove(listener);
+    listenerEventFilters.remove(listener);
   }
 
   @Override
@@ -210,6 +224,9 @@ public class DefaultAnalyticsCollector implements AnalyticsCollector {
 
   @Override
   public final void onAudioPositionAdvancing(long playoutStartSystemTimeMs) {
+    if (!hasListenerForEvent(AnalyticsListener.EVENT_AUDIO_POSITION_ADVANCING)) {
+      return;
+    }
     EventTime eventTime = generateReadingMediaPeriodEventTime();
     sendEvent(
         eventTime,
@@ -326,6 +343,9 @@ public class DefaultAnalyticsCollector implements AnalyticsCollector {
 
   @Override
   public final void onDroppedFrames(int count, long elapsedMs) {
+    if (!hasListenerForEvent(AnalyticsListener.EVENT_DROPPED_VIDEO_FRAMES)) {
+      return;
+    }
     EventTime eventTime = generatePlayingMediaPeriodEventTime();
     sendEvent(
         eventTime,
@@ -366,6 +386,9 @@ public class DefaultAnalyticsCollector implements AnalyticsCollector {
 
   @Override
   public final void onVideoFrameProcessingOffset(long totalProcessingOffsetUs, int frameCount) {
+    if (!hasListenerForEvent(AnalyticsListener.EVENT_VIDEO_FRAME_PROCESSING_OFFSET)) {
+      return;
+    }
     EventTime eventTime = generatePlayingMediaPeriodEventTime();
     sendEvent(
         eventTime,
@@ -400,6 +423,9 @@ public class DefaultAnalyticsCollector implements AnalyticsCollector {
       @Nullable MediaPeriodId mediaPeriodId,
       LoadEventInfo loadEventInfo,
       MediaLoadData mediaLoadData) {
+    if (!hasListenerForEvent(AnalyticsListener.EVENT_LOAD_STARTED)) {
+      return;
+    }
     EventTime eventTime = generateMediaPeriodEventTime(windowIndex, mediaPeriodId);
     sendEvent(
         eventTime,
@@ -413,6 +439,9 @@ public class DefaultAnalyticsCollector implements AnalyticsCollector {
       @Nullable MediaPeriodId mediaPeriodId,
       LoadEventInfo loadEventInfo,
       MediaLoadData mediaLoadData) {
+    if (!hasListenerForEvent(AnalyticsListener.EVENT_LOAD_COMPLETED)) {
+      return;
+    }
     EventTime eventTime = generateMediaPeriodEventTime(windowIndex, mediaPeriodId);
     sendEvent(
         eventTime,
@@ -426,6 +455,9 @@ public class DefaultAnalyticsCollector implements AnalyticsCollector {
       @Nullable MediaPeriodId mediaPeriodId,
       LoadEventInfo loadEventInfo,
       MediaLoadData mediaLoadData) {
+    if (!hasListenerForEvent(AnalyticsListener.EVENT_LOAD_CANCELED)) {
+      return;
+    }
     EventTime eventTime = generateMediaPeriodEventTime(windowIndex, mediaPeriodId);
     sendEvent(
         eventTime,
@@ -818,6 +850,9 @@ public class DefaultAnalyticsCollector implements AnalyticsCollector {
 
   @Override
   public final void onBandwidthSample(int elapsedMs, long bytesTransferred, long bitrateEstimate) {
+    if (!hasListenerForEvent(AnalyticsListener.EVENT_BANDWIDTH_ESTIMATE)) {
+      return;
+    }
     EventTime eventTime = generateLoadingMediaPeriodEventTime();
     sendEvent(
         eventTime,
@@ -901,7 +936,44 @@ public class DefaultAnalyticsCollector implements AnalyticsCollector {
   protected final void sendEvent(
       EventTime eventTime, int eventFlag, ListenerSet.Event<AnalyticsListener> eventInvocation) {
     eventTimes.put(eventFlag, eventTime);
-    listeners.sendEvent(eventFlag, eventInvocation);
+    if (listenerEventFilters.isEmpty()) {
+      listeners.sendEvent(eventFlag, eventInvocation);
+    } else {
+      listeners.sendEvent(
+          eventFlag,
+          listener -> {
+            if (isEventRequested(listener, eventFlag)) {
+              eventInvocation.invoke(listener);
+            }
+          });
+    }
+  }
+
+  /**
+   * Returns whether any registered listener receives the given event. Generating and sending events
+   * can be skipped if no listener receives them.
+   *
+   * @param eventFlag The {@link AnalyticsListener.EventFlags event flag}.
+   * @return Whether any registered listener receives the event.
+   */
+  protected final boolean hasListenerForEvent(@AnalyticsListener.EventFlags int eventFlag) {
+    if (listeners.size() > listenerEventFilters.size()) {
+      // At least one listener receives all events.
+      return true;
+    }
+    for (FlagSet eventFilter : listenerEventFilters.values()) {
+      if (eventFilter.contains(eventFlag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean isEventRequested(AnalyticsListener listener, int eventFlag) {
+    @Nullable FlagSet eventFilter = listenerEventFilters.get(listener);
+    return eventFilter == null
+        || eventFilter.contains(eventFlag)
+        || eventFlag == AnalyticsListener.EVENT_PLAYER_RELEASED;
   }
 
   /** Generates an {@link EventTime} for the currently playing item in the player. */
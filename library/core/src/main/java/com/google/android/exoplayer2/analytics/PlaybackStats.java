@@ -271,6 +271,17 @@ public final class PlaybackStats {
     int fatalErrorPlaybackCount = 0;
     int fatalErrorCount = 0;
     int nonFatalErrorCount = 0;
+    PlaybackStatsHistogram[] joinTimeHistogramsMs =
+        new PlaybackStatsHistogram[playbackStats.length];
+    PlaybackStatsHistogram[] rebufferTimeHistogramsMs =
+        new PlaybackStatsHistogram[playbackStats.length];
+    PlaybackStatsHistogram[] videoFormatBitrateHistograms =
+        new PlaybackStatsHistogram[playbackStats.length];
+    for (int i = 0; i < playbackStats.length; i++) {
+      joinTimeHistogramsMs[i] = playbackStats[i].joinTimeHistogramMs;
+      rebufferTimeHistogramsMs[i] = playbackStats[i].rebufferTimeHistogramMs;
+      videoFormatBitrateHistograms[i] = playbackStats[i].videoFormatBitrateHistogram;
+    }
     for (PlaybackStats stats : playbackStats) {
       playbackCount += stats.playbackCount;
       for (int i = 0; i < PLAYBACK_STATE_COUNT; i++) {
@@ -345,11 +356,13 @@ public final class PlaybackStats {
         backgroundJoiningCount,
         totalValidJoinTimeMs,
         validJoinTimeCount,
+        PlaybackStatsHistogram.merge(joinTimeHistogramsMs),
         totalPauseCount,
         totalPauseBufferCount,
         totalSeekCount,
         totalRebufferCount,
         maxRebufferTimeMs,
+        PlaybackStatsHistogram.merge(rebufferTimeHistogramsMs),
         adPlaybackCount,
         /* videoFormatHistory= */ Collections.emptyList(),
         /* audioFormatHistory= */ Collections.emptyList(),
@@ -357,6 +370,7 @@ public final class PlaybackStats {
         totalVideoFormatHeightTimeProduct,
         totalVideoFormatBitrateTimeMs,
         totalVideoFormatBitrateTimeProduct,
+        PlaybackStatsHistogram.merge(videoFormatBitrateHistograms),
         totalAudioFormatTimeMs,
         totalAudioFormatBitrateTimeProduct,
         initialVideoFormatHeightCount,
@@ -418,6 +432,11 @@ public final class PlaybackStats {
    * The number of playbacks with a valid join time as documented in {@link #totalValidJoinTimeMs}.
    */
   public final int validJoinTimeCount;
+  /**
+   * The distribution of valid join times of individual playbacks, in milliseconds, as documented in
+   * {@link #totalValidJoinTimeMs}.
+   */
+  public final PlaybackStatsHistogram joinTimeHistogramMs;
   /** The total number of times a playback has been paused. */
   public final int totalPauseCount;
   /** The total number of times a playback has been paused while rebuffering. */
@@ -437,6 +456,11 @@ public final class PlaybackStats {
    * rebuffer occurred.
    */
   public final long maxRebufferTimeMs;
+  /**
+   * The distribution of the durations of completed rebuffers, in milliseconds. Rebuffers that are
+   * still ongoing are not included.
+   */
+  public final PlaybackStatsHistogram rebufferTimeHistogramMs;
   /** The number of ad playbacks. */
   public final int adPlaybackCount;
 
@@ -466,6 +490,11 @@ public final class PlaybackStats {
    * was used for playback, in milliseconds.
    */
   public final long totalVideoFormatBitrateTimeProduct;
+  /**
+   * The distribution of video format bitrates, in bits per second, weighted by the media time the
+   * format was used for playback, in milliseconds.
+   */
+  public final PlaybackStatsHistogram videoFormatBitrateHistogram;
   /** The total media time for which audio format data is available, in milliseconds. */
   public final long totalAudioFormatTimeMs;
   /**
@@ -549,11 +578,13 @@ public final class PlaybackStats {
       int backgroundJoiningCount,
       long totalValidJoinTimeMs,
       int validJoinTimeCount,
+      PlaybackStatsHistogram joinTimeHistogramMs,
       int totalPauseCount,
       int totalPauseBufferCount,
       int totalSeekCount,
       int totalRebufferCount,
       long maxRebufferTimeMs,
+      PlaybackStatsHistogram rebufferTimeHistogramMs,
       int adPlaybackCount,
       List<EventTimeAndFormat> videoFormatHistory,
       List<EventTimeAndFormat> audioFormatHistory,
@@ -561,6 +592,7 @@ public final class PlaybackStats {
       long totalVideoFormatHeightTimeProduct,
       long totalVideoFormatBitrateTimeMs,
       long totalVideoFormatBitrateTimeProduct,
+      PlaybackStatsHistogram videoFormatBitrateHistogram,
       long totalAudioFormatTimeMs,
       long totalAudioFormatBitrateTimeProduct,
       int initialVideoFormatHeightCount,
@@ -589,11 +621,13 @@ public final class PlaybackStats {
     this.backgroundJoiningCount = backgroundJoiningCount;
     this.totalValidJoinTimeMs = totalValidJoinTimeMs;
     this.validJoinTimeCount = validJoinTimeCount;
+    this.joinTimeHistogramMs = joinTimeHistogramMs;
     this.totalPauseCount = totalPauseCount;
     this.totalPauseBufferCount = totalPauseBufferCount;
     this.totalSeekCount = totalSeekCount;
     this.totalRebufferCount = totalRebufferCount;
     this.maxRebufferTimeMs = maxRebufferTimeMs;
+    this.rebufferTimeHistogramMs = rebufferTimeHistogramMs;
     this.adPlaybackCount = adPlaybackCount;
     this.videoFormatHistory = Collections.unmodifiableList(videoFormatHistory);
     this.audioFormatHistory = Collections.unmodifiableList(audioFormatHistory);
@@ -601,6 +635,7 @@ public final class PlaybackStats {
     this.totalVideoFormatHeightTimeProduct = totalVideoFormatHeightTimeProduct;
     this.totalVideoFormatBitrateTimeMs = totalVideoFormatBitrateTimeMs;
     this.totalVideoFormatBitrateTimeProduct = totalVideoFormatBitrateTimeProduct;
+    this.videoFormatBitrateHistogram = videoFormatBitrateHistogram;
     this.totalAudioFormatTimeMs = totalAudioFormatTimeMs;
     this.totalAudioFormatBitrateTimeProduct = totalAudioFormatBitrateTimeProduct;
     this.initialVideoFormatHeightCount = initialVideoFormatHeightCount;
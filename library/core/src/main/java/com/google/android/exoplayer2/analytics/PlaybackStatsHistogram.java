@@ -0,0 +1,187 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.analytics;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+
+/**
+ * A distribution of non-negative values in {@link PlaybackStats}, stored in a fixed number of
+ * buckets.
+ *
+ * <p>Values below 16 are counted exactly. Larger values are counted in logarithmic buckets, eight
+ * per power of two, so that percentiles have a relative error of at most 12.5%. The memory used by
+ * a histogram doesn't depend on the number of values added to it, and histograms of several
+ * playbacks can be combined with {@link #merge(PlaybackStatsHistogram...)}.
+ */
+public final class PlaybackStatsHistogram {
+
+  private static final int LINEAR_BUCKET_COUNT = 16;
+  private static final int LINEAR_BUCKET_EXPONENT = 4;
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  // Values up to Long.MAX_VALUE have exponents up to 62.
+  private static final int BUCKET_COUNT =
+      LINEAR_BUCKET_COUNT + (63 - LINEAR_BUCKET_EXPONENT) * SUB_BUCKET_COUNT;
+
+  /**
+   * Returns the combined histogram of all input histograms.
+   *
+   * @param histograms The histograms to combine.
+   * @return The combined histogram.
+   */
+  public static PlaybackStatsHistogram merge(PlaybackStatsHistogram... histograms) {
+    PlaybackStatsHistogram merged = new PlaybackStatsHistogram();
+    for (PlaybackStatsHistogram histogram : histograms) {
+      merged.addAll(histogram);
+    }
+    return merged;
+  }
+
+  // Allocated when the first value is added.
+  @Nullable private long[] bucketCounts;
+  private long count;
+  private long sum;
+  private long min;
+  private long max;
+
+  /* package */ PlaybackStatsHistogram() {
+    min = Long.MAX_VALUE;
+    max = Long.MIN_VALUE;
+  }
+
+  /** Returns the number of values in the histogram, taking weights into account. */
+  public long getCount() {
+    return count;
+  }
+
+  /** Returns the smallest value, or {@link C#LENGTH_UNSET} if the histogram is empty. */
+  public long getMin() {
+    return count == 0 ? C.LENGTH_UNSET : min;
+  }
+
+  /** Returns the largest value, or {@link C#LENGTH_UNSET} if the histogram is empty. */
+  public long getMax() {
+    return count == 0 ? C.LENGTH_UNSET : max;
+  }
+
+  /**
+   * Returns the mean of the values, taking weights into account, or {@link C#LENGTH_UNSET} if the
+   * histogram is empty.
+   */
+  public long getMean() {
+    return count == 0 ? C.LENGTH_UNSET : sum / count;
+  }
+
+  /**
+   * Returns an estimate of the given percentile of the values, or {@link C#LENGTH_UNSET} if the
+   * histogram is empty.
+   *
+   * @param percentile The percentile, between 0 and 100.
+   * @return The estimated value below or at which {@code percentile} percent of the values lie.
+   */
+  public long getPercentile(float percentile) {
+    checkArgument(percentile >= 0 && percentile <= 100);
+    if (count == 0 || bucketCounts == null) {
+      return C.LENGTH_UNSET;
+    }
+    long rank = max(1, (long) Math.ceil(percentile / 100d * count));
+    if (rank == 1) {
+      return min;
+    } else if (rank >= count) {
+      return max;
+    }
+    long cumulativeCount = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      cumulativeCount += bucketCounts[i];
+      if (cumulativeCount >= rank) {
+        return min(max, max(min, getBucketMidpoint(i)));
+      }
+    }
+    return max;
+  }
+
+  /** Adds a value. Negative values are counted as zero. */
+  /* package */ void add(long value) {
+    add(value, /* weight= */ 1);
+  }
+
+  /**
+   * Adds a value as if it were added {@code weight} times. Negative values are counted as zero.
+   * Does nothing if {@code weight} is not positive.
+   */
+  /* package */ void add(long value, long weight) {
+    if (weight <= 0) {
+      return;
+    }
+    value = max(0, value);
+    if (bucketCounts == null) {
+      bucketCounts = new long[BUCKET_COUNT];
+    }
+    bucketCounts[getBucketIndex(value)] += weight;
+    count += weight;
+    sum += value * weight;
+    min = min(min, value);
+    max = max(max, value);
+  }
+
+  /** Returns a copy of this histogram that isn't affected by further changes to it. */
+  /* package */ PlaybackStatsHistogram copy() {
+    PlaybackStatsHistogram copy = new PlaybackStatsHistogram();
+    copy.addAll(this);
+    return copy;
+  }
+
+  private void addAll(PlaybackStatsHistogram other) {
+    if (other.count == 0 || other.bucketCounts == null) {
+      return;
+    }
+    if (bucketCounts == null) {
+      bucketCounts = new long[BUCKET_COUNT];
+    }
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      bucketCounts[i] += other.bucketCounts[i];
+    }
+    count += other.count;
+    sum += other.sum;
+    min = min(min, other.min);
+    max = max(max, other.max);
+  }
+
+  private static int getBucketIndex(long value) {
+    if (value < LINEAR_BUCKET_COUNT) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+    return LINEAR_BUCKET_COUNT + (exponent - LINEAR_BUCKET_EXPONENT) * SUB_BUCKET_COUNT + subBucket;
+  }
+
+  private static long getBucketMidpoint(int bucketIndex) {
+    if (bucketIndex < LINEAR_BUCKET_COUNT) {
+      return bucketIndex;
+    }
+    int logarithmicIndex = bucketIndex - LINEAR_BUCKET_COUNT;
+    int exponent = logarithmicIndex / SUB_BUCKET_COUNT + LINEAR_BUCKET_EXPONENT;
+    long subBucket = logarithmicIndex % SUB_BUCKET_COUNT;
+    long bucketWidth = 1L << (exponent - SUB_BUCKET_BITS);
+    return (1L << exponent) + subBucket * bucketWidth + bucketWidth / 2;
+  }
+}
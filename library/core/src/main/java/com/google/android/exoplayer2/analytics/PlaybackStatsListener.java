@@ -76,6 +76,7 @@ public final class PlaybackStatsListener
   private final Map<String, EventTime> sessionStartEventTimes;
   @Nullable private final Callback callback;
   private final boolean keepHistory;
+  private final int maxHistorySize;
   private final Period period;
 
   private PlaybackStats finishedPlaybackStats;
@@ -99,8 +100,30 @@ public final class PlaybackStatsListener
    * @param callback An optional callback for finished {@link PlaybackStats}.
    */
   public PlaybackStatsListener(boolean keepHistory, @Nullable Callback callback) {
+    this(keepHistory, /* maxHistorySize= */ C.LENGTH_UNSET, callback);
+  }
+
+  /**
+   * Creates listener for playback stats.
+   *
+   * <p>Use a bounded {@code maxHistorySize}, or {@code keepHistory=false}, for long-running
+   * playbacks such as live streams, so that memory usage doesn't grow with the playback duration.
+   * Aggregate statistics, including the {@link PlaybackStatsHistogram histograms}, are unaffected
+   * by the history size and can be polled periodically with {@link #getCombinedPlaybackStats()}.
+   *
+   * @param keepHistory Whether the reported {@link PlaybackStats} should keep the history of
+   *     events.
+   * @param maxHistorySize The maximum number of events kept in each history of the reported {@link
+   *     PlaybackStats}, or {@link C#LENGTH_UNSET} to keep the full history. When a history is full,
+   *     its oldest event is dropped. Ignored if {@code keepHistory} is false.
+   * @param callback An optional callback for finished {@link PlaybackStats}.
+   */
+  public PlaybackStatsListener(
+      boolean keepHistory, int maxHistorySize, @Nullable Callback callback) {
+    Assertions.checkArgument(maxHistorySize == C.LENGTH_UNSET || maxHistorySize > 0);
     this.callback = callback;
     this.keepHistory = keepHistory;
+    this.maxHistorySize = maxHistorySize;
     sessionManager = new DefaultPlaybackSessionManager();
     playbackStatsTrackers = new HashMap<>();
     sessionStartEventTimes = new HashMap<>();
@@ -147,7 +170,7 @@ public final class PlaybackStatsListener
 
   @Override
   public void onSessionCreated(EventTime eventTime, String sessionId) {
-    PlaybackStatsTracker tracker = new PlaybackStatsTracker(keepHistory, eventTime);
+    PlaybackStatsTracker tracker = new PlaybackStatsTracker(keepHistory, maxHistorySize, eventTime);
     playbackStatsTrackers.put(sessionId, tracker);
     sessionStartEventTimes.put(sessionId, eventTime);
   }
@@ -362,6 +385,8 @@ public final class PlaybackStatsListener
     private final List<EventTimeAndException> fatalErrorHistory;
     private final List<EventTimeAndException> nonFatalErrorHistory;
     private final boolean isAd;
+    private final PlaybackStatsHistogram rebufferTimeHistogramMs;
+    private final PlaybackStatsHistogram videoFormatBitrateHistogram;
 
     private long firstReportedTimeMs;
     private boolean hasBeenReady;
@@ -406,18 +431,22 @@ public final class PlaybackStatsListener
     /**
      * Creates a tracker for playback stats.
      *
-     * @param keepHistory Whether to keep a full history of events.
+     * @param keepHistory Whether to keep a history of events.
+     * @param maxHistorySize The maximum number of events kept in each history, or {@link
+     *     C#LENGTH_UNSET} to keep the full history.
      * @param startTime The {@link EventTime} at which the playback stats start.
      */
-    public PlaybackStatsTracker(boolean keepHistory, EventTime startTime) {
+    public PlaybackStatsTracker(boolean keepHistory, int maxHistorySize, EventTime startTime) {
       this.keepHistory = keepHistory;
       playbackStateDurationsMs = new long[PlaybackStats.PLAYBACK_STATE_COUNT];
-      playbackStateHistory = keepHistory ? new ArrayList<>() : Collections.emptyList();
-      mediaTimeHistory = keepHistory ? new ArrayList<>() : Collections.emptyList();
-      videoFormatHistory = keepHistory ? new ArrayList<>() : Collections.emptyList();
-      audioFormatHistory = keepHistory ? new ArrayList<>() : Collections.emptyList();
-      fatalErrorHistory = keepHistory ? new ArrayList<>() : Collections.emptyList();
-      nonFatalErrorHistory = keepHistory ? new ArrayList<>() : Collections.emptyList();
+      playbackStateHistory = createHistory(keepHistory, maxHistorySize);
+      mediaTimeHistory = createHistory(keepHistory, maxHistorySize);
+      videoFormatHistory = createHistory(keepHistory, maxHistorySize);
+      audioFormatHistory = createHistory(keepHistory, maxHistorySize);
+      fatalErrorHistory = createHistory(keepHistory, maxHistorySize);
+      nonFatalErrorHistory = createHistory(keepHistory, maxHistorySize);
+      rebufferTimeHistogramMs = new PlaybackStatsHistogram();
+      videoFormatBitrateHistogram = new PlaybackStatsHistogram();
       currentPlaybackState = PlaybackStats.PLAYBACK_STATE_NOT_STARTED;
       currentPlaybackStateStartTimeMs = startTime.realtimeMs;
       firstReportedTimeMs = C.TIME_UNSET;
@@ -607,6 +636,10 @@ public final class PlaybackStatsListener
               : playbackStateDurationsMs[PlaybackStats.PLAYBACK_STATE_JOINING_FOREGROUND];
       boolean hasBackgroundJoin =
           playbackStateDurationsMs[PlaybackStats.PLAYBACK_STATE_JOINING_BACKGROUND] > 0;
+      PlaybackStatsHistogram joinTimeHistogramMs = new PlaybackStatsHistogram();
+      if (!isJoinTimeInvalid) {
+        joinTimeHistogramMs.add(validJoinTimeMs);
+      }
       List<EventTimeAndFormat> videoHistory =
           isFinal ? videoFormatHistory : new ArrayList<>(videoFormatHistory);
       List<EventTimeAndFormat> audioHistory =
@@ -623,11 +656,13 @@ public final class PlaybackStatsListener
           /* backgroundJoiningCount= */ hasBackgroundJoin ? 1 : 0,
           validJoinTimeMs,
           /* validJoinTimeCount= */ isJoinTimeInvalid ? 0 : 1,
+          joinTimeHistogramMs,
           pauseCount,
           pauseBufferCount,
           seekCount,
           rebufferCount,
           maxRebufferTimeMs,
+          isFinal ? rebufferTimeHistogramMs : rebufferTimeHistogramMs.copy(),
           /* adPlaybackCount= */ isAd ? 1 : 0,
           videoHistory,
           audioHistory,
@@ -635,6 +670,7 @@ public final class PlaybackStatsListener
           videoFormatHeightTimeProduct,
           videoFormatBitrateTimeMs,
           videoFormatBitrateTimeProduct,
+          isFinal ? videoFormatBitrateHistogram : videoFormatBitrateHistogram.copy(),
           audioFormatTimeMs,
           audioFormatBitrateTimeProduct,
           /* initialVideoFormatHeightCount= */ initialVideoFormatHeight == C.LENGTH_UNSET ? 0 : 1,
@@ -674,6 +710,9 @@ public final class PlaybackStatsListener
         rebufferCount++;
         lastRebufferStartTimeMs = eventTime.realtimeMs;
       }
+      if (isRebufferingState(currentPlaybackState) && !isRebufferingState(newPlaybackState)) {
+        rebufferTimeHistogramMs.add(eventTime.realtimeMs - lastRebufferStartTimeMs);
+      }
       if (isRebufferingState(currentPlaybackState)
           && currentPlaybackState != PlaybackStats.PLAYBACK_STATE_PAUSED_BUFFERING
           && newPlaybackState == PlaybackStats.PLAYBACK_STATE_PAUSED_BUFFERING) {
@@ -821,6 +860,8 @@ public final class PlaybackStatsListener
         if (currentVideoFormat.bitrate != Format.NO_VALUE) {
           videoFormatBitrateTimeMs += mediaDurationMs;
           videoFormatBitrateTimeProduct += mediaDurationMs * currentVideoFormat.bitrate;
+          videoFormatBitrateHistogram.add(
+              currentVideoFormat.bitrate, /* weight= */ mediaDurationMs);
         }
       }
       lastVideoFormatStartTimeMs = nowMs;
@@ -837,6 +878,15 @@ public final class PlaybackStatsListener
       lastAudioFormatStartTimeMs = nowMs;
     }
 
+    private static <T> List<T> createHistory(boolean keepHistory, int maxHistorySize) {
+      if (!keepHistory) {
+        return Collections.emptyList();
+      }
+      return maxHistorySize == C.LENGTH_UNSET
+          ? new ArrayList<>()
+          : new BoundedHistoryList<>(maxHistorySize);
+    }
+
     private static boolean isReadyState(@PlaybackState int state) {
       return state == PlaybackStats.PLAYBACK_STATE_PLAYING
           || state == PlaybackStats.PLAYBACK_STATE_PAUSED
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.analytics;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Player;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * {@link AnalyticsListener} that periodically reports the stage latency histograms recorded by
+ * {@link StageLatencyTracer}.
+ *
+ * <p>Tracing is process-wide, so the listener doesn't enable it. Callers must call {@link
+ * StageLatencyTracer#setEnabled(boolean) StageLatencyTracer.setEnabled(true)} for anything to be
+ * recorded, and disable tracing again when they no longer need it. The reported histograms are
+ * cumulative since tracing was last {@link StageLatencyTracer#reset() reset}, and include all
+ * players in the process.
+ */
+public final class StageLatencyListener implements AnalyticsListener {
+
+  /** A listener for stage latency reports. */
+  public interface Callback {
+
+    /**
+     * Called when stage latency histograms are reported.
+     *
+     * @param eventTime The {@link EventTime} of the event that triggered the report.
+     * @param histogramsUs The histograms, in microseconds, indexed by {@link
+     *     StageLatencyTracer.Stage}.
+     */
+    void onStageLatencyReport(
+        EventTime eventTime, ImmutableList<PlaybackStatsHistogram> histogramsUs);
+  }
+
+  private final long reportIntervalMs;
+  private final Callback callback;
+
+  private long lastReportRealtimeMs;
+
+  /**
+   * Creates an instance.
+   *
+   * @param reportIntervalMs The minimum interval between reports, in milliseconds. A final report
+   *     is always made when the player is released.
+   * @param callback The {@link Callback} for reports.
+   */
+  public StageLatencyListener(long reportIntervalMs, Callback callback) {
+    this.reportIntervalMs = reportIntervalMs;
+    this.callback = callback;
+    lastReportRealtimeMs = C.TIME_UNSET;
+  }
+
+  /**
+   * Returns the current histograms, in microseconds, indexed by {@link StageLatencyTracer.Stage}.
+   */
+  public ImmutableList<PlaybackStatsHistogram> getHistograms() {
+    return StageLatencyTracer.getHistograms();
+  }
+
+  // AnalyticsListener implementation.
+
+  @Override
+  public void onEvents(Player player, Events events) {
+    if (events.size() == 0) {
+      return;
+    }
+    EventTime eventTime = events.getEventTime(events.get(events.size() - 1));
+    if (lastReportRealtimeMs == C.TIME_UNSET) {
+      lastReportRealtimeMs = eventTime.realtimeMs;
+    } else if (eventTime.realtimeMs - lastReportRealtimeMs >= reportIntervalMs) {
+      report(eventTime);
+    }
+  }
+
+  @Override
+  public void onPlayerReleased(EventTime eventTime) {
+    report(eventTime);
+  }
+
+  private void report(EventTime eventTime) {
+    lastReportRealtimeMs = eventTime.realtimeMs;
+    callback.onStageLatencyReport(eventTime, StageLatencyTracer.getHistograms());
+  }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.analytics;
+
+import static java.lang.annotation.ElementType.TYPE_USE;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.IntDef;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.common.collect.ImmutableList;
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
+
+/**
+ * Records the latency of hot-path playback stages into {@link PlaybackStatsHistogram histograms}.
+ *
+ * <p>Tracing is disabled by default, in which case recording costs a single volatile read. When
+ * enabled, each thread records into its own histograms, so recording doesn't take locks or contend
+ * with other threads. The histograms of all threads are combined when read, for example by a
+ * {@link StageLatencyListener}. Values read while other threads are recording are approximate.
+ *
+ * <p>Typical usage at a call site:
+ *
+ * <pre>{@code
+ * long startTimeNs = StageLatencyTracer.startTimeNs();
+ * doWork();
+ * StageLatencyTracer.recordSince(StageLatencyTracer.STAGE_EXTRACTOR_READ, startTimeNs);
+ * }</pre>
+ */
+public final class StageLatencyTracer {
+
+  /**
+   * A traced playback stage. One of {@link #STAGE_EXTRACTOR_READ}, {@link
+   * #STAGE_SAMPLE_QUEUE_WRITE}, {@link #STAGE_SAMPLE_QUEUE_READ}, {@link
+   * #STAGE_DECODER_QUEUE_INPUT}, {@link #STAGE_DECODER_DEQUEUE_OUTPUT}, {@link
+   * #STAGE_AUDIO_SINK_WRITE}, {@link #STAGE_VIDEO_FRAME_RELEASE_LATENESS} or {@link
+   * #STAGE_LOAD_TIME_TO_FIRST_BYTE}.
+   */
+  @Documented
+  @Retention(RetentionPolicy.SOURCE)
+  @Target(TYPE_USE)
+  @IntDef({
+    STAGE_EXTRACTOR_READ,
+    STAGE_SAMPLE_QUEUE_WRITE,
+    STAGE_SAMPLE_QUEUE_READ,
+    STAGE_DECODER_QUEUE_INPUT,
+    STAGE_DECODER_DEQUEUE_OUTPUT,
+    STAGE_AUDIO_SINK_WRITE,
+    STAGE_VIDEO_FRAME_RELEASE_LATENESS,
+    STAGE_LOAD_TIME_TO_FIRST_BYTE
+  })
+  public @interface Stage {}
+  /** A single call to read from an extractor during progressive playback. */
+  public static final int STAGE_EXTRACTOR_READ = 0;
+  /** Writing sample data or metadata to a {@code SampleQueue}. */
+  public static final int STAGE_SAMPLE_QUEUE_WRITE = 1;
+  /** Reading a sample from a {@code SampleQueue}. */
+  public static final int STAGE_SAMPLE_QUEUE_READ = 2;
+  /** Queuing an input buffer to a {@code MediaCodec} decoder. */
+  public static final int STAGE_DECODER_QUEUE_INPUT = 3;
+  /** Dequeuing an output buffer from a {@code MediaCodec} decoder. */
+  public static final int STAGE_DECODER_DEQUEUE_OUTPUT = 4;
+  /** Writing data to an {@code AudioTrack} in {@code DefaultAudioSink}. */
+  public static final int STAGE_AUDIO_SINK_WRITE = 5;
+  /**
+   * How late video frames are relative to their release time, when they're rendered or dropped.
+   * Frames that are early count as zero.
+   */
+  public static final int STAGE_VIDEO_FRAME_RELEASE_LATENESS = 6;
+  /** The time taken to open the data source of a media load, until the first byte can be read. */
+  public static final int STAGE_LOAD_TIME_TO_FIRST_BYTE = 7;
+
+  /* package */ static final int STAGE_COUNT = 8;
+
+  private static final ThreadLocal<@NullableType ThreadHistograms> currentThreadHistograms =
+      new ThreadLocal<>();
+
+  @GuardedBy("StageLatencyTracer.class")
+  private static final List<ThreadHistograms> allThreadHistograms = new ArrayList<>();
+
+  @GuardedBy("StageLatencyTracer.class")
+  private static PlaybackStatsHistogram[] finishedThreadHistograms = createHistograms();
+
+  private static volatile boolean enabled;
+  private static volatile int generation;
+
+  private StageLatencyTracer() {}
+
+  /**
+   * Sets whether tracing is enabled. Disabling tracing keeps the values recorded so far.
+   *
+   * @param enabled Whether tracing is enabled.
+   */
+  public static void setEnabled(boolean enabled) {
+    StageLatencyTracer.enabled = enabled;
+  }
+
+  /** Returns whether tracing is enabled. */
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Returns the start time of a stage to pass to {@link #recordSince(int, long)}, in nanoseconds,
+   * or {@link C#TIME_UNSET} if tracing is disabled.
+   */
+  public static long startTimeNs() {
+    return enabled ? System.nanoTime() : C.TIME_UNSET;
+  }
+
+  /**
+   * Records the time elapsed since {@code startTimeNs} for a stage. Does nothing if {@code
+   * startTimeNs} is {@link C#TIME_UNSET}.
+   *
+   * @param stage The {@link Stage}.
+   * @param startTimeNs The start time returned by {@link #startTimeNs()}.
+   */
+  public static void recordSince(@Stage int stage, long startTimeNs) {
+    if (startTimeNs != C.TIME_UNSET) {
+      record(stage, (System.nanoTime() - startTimeNs) / 1000);
+    }
+  }
+
+  /**
+   * Records a value for a stage, if tracing is enabled.
+   *
+   * @param stage The {@link Stage}.
+   * @param valueUs The value, in microseconds.
+   */
+  public static void record(@Stage int stage, long valueUs) {
+    if (!enabled) {
+      return;
+    }
+    @Nullable ThreadHistograms threadHistograms = currentThreadHistograms.get();
+    int generation = StageLatencyTracer.generation;
+    if (threadHistograms == null || threadHistograms.generation != generation) {
+      threadHistograms = registerCurrentThread(generation);
+      currentThreadHistograms.set(threadHistograms);
+    }
+    threadHistograms.histograms[stage].add(valueUs);
+  }
+
+  /**
+   * Returns the combined histograms of all threads, in microseconds, indexed by {@link Stage}.
+   * The returned histograms aren't affected by further recording.
+   */
+  public static synchronized ImmutableList<PlaybackStatsHistogram> getHistograms() {
+    ImmutableList.Builder<PlaybackStatsHistogram> histograms = ImmutableList.builder();
+    collectFinishedThreads();
+    for (int stage = 0; stage < STAGE_COUNT; stage++) {
+      PlaybackStatsHistogram[] stageHistograms =
+          new PlaybackStatsHistogram[allThreadHistograms.size() + 1];
+      stageHistograms[0] = finishedThreadHistograms[stage];
+      for (int i = 0; i < allThreadHistograms.size(); i++) {
+        stageHistograms[i + 1] = allThreadHistograms.get(i).histograms[stage];
+      }
+      histograms.add(PlaybackStatsHistogram.merge(stageHistograms));
+    }
+    return histograms.build();
+  }
+
+  /** Discards all recorded values. */
+  public static synchronized void reset() {
+    // Threads notice the new generation on their next recording and start new histograms.
+    generation++;
+    allThreadHistograms.clear();
+    finishedThreadHistograms = createHistograms();
+  }
+
+  private static synchronized ThreadHistograms registerCurrentThread(int generation) {
+    collectFinishedThreads();
+    ThreadHistograms threadHistograms = new ThreadHistograms(Thread.currentThread(), generation);
+    if (generation == StageLatencyTracer.generation) {
+      allThreadHistograms.add(threadHistograms);
+    }
+    return threadHistograms;
+  }
+
+  /** Moves the histograms of terminated threads into {@link #finishedThreadHistograms}. */
+  @GuardedBy("StageLatencyTracer.class")
+  private static void collectFinishedThreads() {
+    Iterator<ThreadHistograms> iterator = allThreadHistograms.iterator();
+    while (iterator.hasNext()) {
+      ThreadHistograms threadHistograms = iterator.next();
+      @Nullable Thread thread = threadHistograms.thread.get();
+      if (thread == null || !thread.isAlive()) {
+        for (int stage = 0; stage < STAGE_COUNT; stage++) {
+          finishedThreadHistograms[stage] =
+              PlaybackStatsHistogram.merge(
+                  finishedThreadHistograms[stage], threadHistograms.histograms[stage]);
+        }
+        iterator.remove();
+      }
+    }
+  }
+
+  private static PlaybackStatsHistogram[] createHistograms() {
+    PlaybackStatsHistogram[] histograms = new PlaybackStatsHistogram[STAGE_COUNT];
+    for (int i = 0; i < STAGE_COUNT; i++) {
+      histograms[i] = new PlaybackStatsHistogram();
+    }
+    return histograms;
+  }
+
+  private static final class ThreadHistograms {
+
+    public final WeakReference<Thread> thread;
+    public final int generation;
+    public final PlaybackStatsHistogram[] histograms;
+
+    public ThreadHistograms(Thread thread, int generation) {
+      this.thread = new WeakReference<>(thread);
+      this.generation = generation;
+      histograms = createHistograms();
+    }
+  }
+}
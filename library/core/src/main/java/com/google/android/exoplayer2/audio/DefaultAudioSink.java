@@ -47,6 +47,7 @@ import com.google.android.exoplayer2.ExoPlayer.AudioOffloadListener;
 import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.PlaybackParameters;
 import com.google.android.exoplayer2.analytics.PlayerId;
+import com.google.android.exoplayer2.analytics.StageLatencyTracer;
 import com.google.android.exoplayer2.audio.AudioProcessor.UnhandledAudioFormatException;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Clock;
@@ -1109,6 +1110,7 @@ public final class DefaultAudioSink implements AudioSink {
     }
     int bytesRemaining = buffer.remaining();
     int bytesWrittenOrError = 0; // Error if negative
+    long writeStartTimeNs = StageLatencyTracer.startTimeNs();
     if (Util.SDK_INT < 21) { // outputMode == OUTPUT_MODE_PCM.
       // Work out how many bytes we can write without the risk of blocking.
       int bytesToWrite = audioTrackPositionTracker.getAvailableBufferSize(writtenPcmBytes);
@@ -1137,6 +1139,7 @@ public final class DefaultAudioSink implements AudioSink {
     } else {
       bytesWrittenOrError = writeNonBlockingV21(audioTrack, buffer, bytesRemaining);
     }
+    StageLatencyTracer.recordSince(StageLatencyTracer.STAGE_AUDIO_SINK_WRITE, writeStartTimeNs);
 
     lastFeedElapsedRealtimeMs = SystemClock.elapsedRealtime();
 
@@ -1564,7 +1567,9 @@ public final class DefaultAudioSink implements AudioSink {
     //   https://github.com/google/ExoPlayer/issues/4803);
     // - when playing encoded audio via passthrough/offload, because modifying the audio stream
     //   would require decoding/re-encoding; and
-    // - when outputting float PCM audio, because SonicAudioProcessor outputs 16-bit integer PCM.
+    // - when outputting float PCM audio, because the audio processor chain isn't part of the float
+    //   output pipeline. SonicAudioProcessor can process float PCM, but the chain's other
+    //   processors, such as SilenceSkippingAudioProcessor, only handle 16-bit integer PCM.
     return !tunneling
         && configuration.outputMode == OUTPUT_MODE_PCM
         && !shouldUseFloatOutput(configuration.inputFormat.pcmEncoding);
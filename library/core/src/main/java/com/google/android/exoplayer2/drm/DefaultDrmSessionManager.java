@@ -53,6 +53,7 @@ import java.lang.annotation.Target;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -64,7 +65,11 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
  * A {@link DrmSessionManager} that supports playbacks using {@link ExoMediaDrm}.
  *
  * <p>This implementation supports pre-acquisition of sessions using {@link
- * #preacquireSession(DrmSessionEventListener.EventDispatcher, Format)}.
+ * #preacquireSession(DrmSessionEventListener.EventDispatcher, Format)}, and prefetching of licenses
+ * for upcoming content using {@link #prefetchSession(DrmInitData)}.
+ *
+ * <p>An instance can be shared by several players that use the same playback {@link Looper}, in
+ * which case sessions that are kept alive are reused across the players.
  */
 @RequiresApi(18)
 public class DefaultDrmSessionManager implements DrmSessionManager {
@@ -84,6 +89,7 @@ public class DefaultDrmSessionManager implements DrmSessionManager {
     private boolean playClearSamplesWithoutKeys;
     private LoadErrorHandlingPolicy loadErrorHandlingPolicy;
     private long sessionKeepaliveMs;
+    private int maxKeepaliveSessionCount;
 
     /**
      * Creates a builder with default values. The default values are:
@@ -98,6 +104,9 @@ public class DefaultDrmSessionManager implements DrmSessionManager {
      *   <li>{@link #setPlayClearSamplesWithoutKeys playClearSamplesWithoutKeys}: {@code false}.
      *   <li>{@link #setLoadErrorHandlingPolicy LoadErrorHandlingPolicy}: {@link
      *       DefaultLoadErrorHandlingPolicy}.
+     *   <li>{@link #setSessionKeepaliveMs sessionKeepaliveMs}: {@link
+     *       #DEFAULT_SESSION_KEEPALIVE_MS}.
+     *   <li>{@link #setMaxKeepaliveSessionCount maxKeepaliveSessionCount}: Unlimited.
      * </ul>
      */
     public Builder() {
@@ -107,6 +116,7 @@ public class DefaultDrmSessionManager implements DrmSessionManager {
       loadErrorHandlingPolicy = new DefaultLoadErrorHandlingPolicy();
       useDrmSessionsForClearContentTrackTypes = new int[0];
       sessionKeepaliveMs = DEFAULT_SESSION_KEEPALIVE_MS;
+      maxKeepaliveSessionCount = Integer.MAX_VALUE;
     }
 
     /**
@@ -232,6 +242,27 @@ public class DefaultDrmSessionManager implements DrmSessionManager {
       return this;
     }
 
+    /**
+     * Sets the maximum number of {@link DrmSession DrmSessions} that are kept alive when they're
+     * not in use. When the limit is exceeded, the session that has been unused for the longest time
+     * is released before its keep-alive timeout. Has no effect if keep-alive is disabled.
+     *
+     * <p>Devices support a limited number of open DRM sessions, so this limit helps to keep room
+     * for sessions that are in use, for example when licenses are prefetched for several upcoming
+     * items.
+     *
+     * <p>Defaults to no limit.
+     *
+     * @param maxKeepaliveSessionCount The maximum number of sessions to keep alive. Must be &gt; 0.
+     * @return This builder.
+     */
+    @CanIgnoreReturnValue
+    public Builder setMaxKeepaliveSessionCount(int maxKeepaliveSessionCount) {
+      checkArgument(maxKeepaliveSessionCount > 0);
+      this.maxKeepaliveSessionCount = maxKeepaliveSessionCount;
+      return this;
+    }
+
     /** Builds a {@link DefaultDrmSessionManager} instance. */
     public DefaultDrmSessionManager build(MediaDrmCallback mediaDrmCallback) {
       return new DefaultDrmSessionManager(
@@ -243,7 +274,8 @@ public class DefaultDrmSessionManager implements DrmSessionManager {
           useDrmSessionsForClearContentTrackTypes,
           playClearSamplesWithoutKeys,
           loadErrorHandlingPolicy,
-          sessionKeepaliveMs);
+          sessionKeepaliveMs,
+          maxKeepaliveSessionCount);
     }
   }
 
@@ -302,12 +334,15 @@ public class DefaultDrmSessionManager implements DrmSessionManager {
   private final LoadErrorHandlingPolicy loadErrorHandlingPolicy;
   private final ReferenceCountListenerImpl referenceCountListener;
   private final long sessionKeepaliveMs;
+  private final int maxKeepaliveSessionCount;
 
   private final List<DefaultDrmSession> sessions;
   private final Set<PreacquiredSessionReference> preacquiredSessionReferences;
   private final Set<DefaultDrmSession> keepaliveSessions;
 
-  private int prepareCallsCount;
+  // Only written on the playback thread, but read from any thread by preacquireSession and
+  // prefetchSession.
+  private volatile int prepareCallsCount;
   @Nullable private ExoMediaDrm exoMediaDrm;
   @Nullable private DefaultDrmSession placeholderDrmSession;
   @Nullable private DefaultDrmSession noMultiSessionDrmSession;
@@ -399,7 +434,8 @@ public class DefaultDrmSessionManager implements DrmSessionManager {
         /* useDrmSessionsForClearContentTrackTypes= */ new int[0],
         /* playClearSamplesWithoutKeys= */ false,
         new DefaultLoadErrorHandlingPolicy(initialDrmRequestRetryCount),
-        DEFAULT_SESSION_KEEPALIVE_MS);
+        DEFAULT_SESSION_KEEPALIVE_MS,
+        /* maxKeepaliveSessionCount= */ Integer.MAX_VALUE);
   }
 
   private DefaultDrmSessionManager(
@@ -411,7 +447,8 @@ public class DefaultDrmSessionManager implements DrmSessionManager {
       @C.TrackType int[] useDrmSessionsForClearContentTrackTypes,
       boolean playClearSamplesWithoutKeys,
       LoadErrorHandlingPolicy loadErrorHandlingPolicy,
-      long sessionKeepaliveMs) {
+      long sessionKeepaliveMs,
+      int maxKeepaliveSessionCount) {
     checkNotNull(uuid);
     checkArgument(!C.COMMON_PSSH_UUID.equals(uuid), "Use C.CLEARKEY_UUID instead");
     this.uuid = uuid;
@@ -427,8 +464,11 @@ public class DefaultDrmSessionManager implements DrmSessionManager {
     mode = MODE_PLAYBACK;
     sessions = new ArrayList<>();
     preacquiredSessionReferences = Sets.newIdentityHashSet();
-    keepaliveSessions = Sets.newIdentityHashSet();
+    // Iteration order is the order in which sessions started being kept alive. DefaultDrmSession
+    // doesn't override equals, so this behaves like an identity set.
+    keepaliveSessions = new LinkedHashSet<>();
     this.sessionKeepaliveMs = sessionKeepaliveMs;
+    this.maxKeepaliveSessionCount = maxKeepaliveSessionCount;
   }
 
   /**
@@ -521,6 +561,52 @@ public class DefaultDrmSessionManager implements DrmSessionManager {
     return preacquiredSessionReference;
   }
 
+  /**
+   * Prefetches the license for content with the given {@link DrmInitData}, so that a later {@link
+   * #acquireSession(DrmSessionEventListener.EventDispatcher, Format)} for a {@link Format} with
+   * matching {@link Format#drmInitData} doesn't need to wait for a key request.
+   *
+   * <p>The prefetched session is opened and its keys are requested asynchronously. It's then kept
+   * alive like any other unused session, so it's released after the {@link
+   * Builder#setSessionKeepaliveMs keep-alive timeout} or when the {@link
+   * Builder#setMaxKeepaliveSessionCount maximum number of kept alive sessions} is exceeded. Sessions
+   * are matched by their scheme data, so multi-session mode must be enabled to prefetch licenses for
+   * content that uses different keys from the content that is currently playing.
+   *
+   * <p>This method can be called from any thread, but only while the manager is prepared and after
+   * {@link #setPlayer(Looper, PlayerId)}.
+   *
+   * @param drmInitData The {@link DrmInitData} of the content, for example parsed from the PSSH
+   *     boxes of the upcoming media item.
+   * @throws IllegalStateException If keep-alive is disabled, or the manager isn't prepared.
+   */
+  public void prefetchSession(DrmInitData drmInitData) {
+    checkState(sessionKeepaliveMs != C.TIME_UNSET, "Prefetching requires session keep-alive");
+    checkState(prepareCallsCount > 0);
+    checkStateNotNull(playbackLooper);
+    Format format = new Format.Builder().setDrmInitData(drmInitData).build();
+    checkNotNull(playbackHandler)
+        .post(
+            () -> {
+              if (prepareCallsCount == 0) {
+                // The manager has been released. Abort the prefetch.
+                return;
+              }
+              @Nullable
+              DrmSession session =
+                  acquireSession(
+                      checkNotNull(playbackLooper),
+                      /* eventDispatcher= */ null,
+                      format,
+                      /* shouldReleasePreacquiredSessionsBeforeRetrying= */ false);
+              if (session != null) {
+                // Only the keep-alive reference remains, which keeps the session open while its
+                // keys are loaded.
+                session.release(/* eventDispatcher= */ null);
+              }
+            });
+  }
+
   @Override
   @Nullable
   public DrmSession acquireSession(
@@ -756,6 +842,13 @@ public class DefaultDrmSessionManager implements DrmSessionManager {
     }
   }
 
+  private void maybeReleaseOldestKeepaliveSessions() {
+    while (keepaliveSessions.size() > maxKeepaliveSessionCount) {
+      // Releasing the session removes it from keepaliveSessions (via callback).
+      keepaliveSessions.iterator().next().release(/* eventDispatcher= */ null);
+    }
+  }
+
   private void releaseAllPreacquiredSessions() {
     // Make a local copy, because sessions are removed from this.preacquiredSessionReferences
     // during release (via callback).
@@ -966,6 +1059,7 @@ public class DefaultDrmSessionManager implements DrmSessionManager {
                 () -> session.release(/* eventDispatcher= */ null),
                 session,
                 /* uptimeMillis= */ SystemClock.uptimeMillis() + sessionKeepaliveMs);
+        maybeReleaseOldestKeepaliveSessions();
       } else if (newReferenceCount == 0) {
         // This session is fully released.
         sessions.remove(session);
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.drm;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static java.lang.Math.max;
+
+import android.content.Context;
+import android.os.Handler;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.database.DatabaseIOException;
+import com.google.android.exoplayer2.scheduler.Requirements;
+import com.google.android.exoplayer2.scheduler.RequirementsWatcher;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableList;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Renews licenses in an {@link OfflineLicenseStore} in the background before they expire.
+ *
+ * <p>Renewal runs in batches on a background thread, and only while the given {@link Requirements}
+ * are met (for example, while the device is on an unmetered network). Consecutive batches are
+ * separated by a minimum interval, so that a large number of expiring licenses doesn't flood the
+ * license server. Each renewal is only waited for up to a timeout, so that a slow key request
+ * doesn't hold up the rest of its batch.
+ *
+ * <p>Methods must be called on the thread on which the instance was created, which must have a
+ * {@link android.os.Looper}.
+ */
+@RequiresApi(18)
+public final class OfflineLicenseRenewer {
+
+  private static final String TAG = "OfflineLicenseRenewer";
+
+  private final Context context;
+  private final OfflineLicenseStore offlineLicenseStore;
+  private final Requirements requirements;
+  private final long renewalWindowMs;
+  private final int maxLicensesPerBatch;
+  private final int maxParallelRequests;
+  private final long renewalTimeoutMs;
+  private final long minBatchIntervalMs;
+  private final Handler handler;
+  private final ExecutorService executorService;
+  private final Runnable runBatchRunnable;
+
+  @Nullable private RequirementsWatcher requirementsWatcher;
+  private boolean requirementsMet;
+  private boolean batchInProgress;
+  private boolean released;
+
+  /**
+   * Creates an instance.
+   *
+   * @param context Any context.
+   * @param offlineLicenseStore The store whose licenses are renewed.
+   * @param requirements The requirements that must be met for renewal to run.
+   * @param renewalWindowMs How long before their expiry licenses are renewed, in milliseconds.
+   * @param maxLicensesPerBatch The maximum number of licenses renewed in each batch.
+   * @param maxParallelRequests The maximum number of key requests to run at the same time.
+   * @param renewalTimeoutMs The maximum time to wait for the renewal of each license, in
+   *     milliseconds. A license whose renewal times out is retried in a later batch.
+   * @param minBatchIntervalMs The minimum interval between the starts of consecutive batches, in
+   *     milliseconds.
+   */
+  public OfflineLicenseRenewer(
+      Context context,
+      OfflineLicenseStore offlineLicenseStore,
+      Requirements requirements,
+      long renewalWindowMs,
+      int maxLicensesPerBatch,
+      int maxParallelRequests,
+      long renewalTimeoutMs,
+      long minBatchIntervalMs) {
+    checkArgument(renewalWindowMs >= 0);
+    checkArgument(maxLicensesPerBatch > 0);
+    checkArgument(maxParallelRequests > 0);
+    checkArgument(renewalTimeoutMs > 0);
+    checkArgument(minBatchIntervalMs >= 0);
+    this.context = context.getApplicationContext();
+    this.offlineLicenseStore = offlineLicenseStore;
+    this.requirements = requirements;
+    this.renewalWindowMs = renewalWindowMs;
+    this.maxLicensesPerBatch = maxLicensesPerBatch;
+    this.maxParallelRequests = maxParallelRequests;
+    this.renewalTimeoutMs = renewalTimeoutMs;
+    this.minBatchIntervalMs = minBatchIntervalMs;
+    handler = Util.createHandlerForCurrentOrMainLooper();
+    executorService = Util.newSingleThreadExecutor("ExoPlayer:OfflineLicenseRenewer");
+    runBatchRunnable = this::maybeRunBatch;
+  }
+
+  /** Starts renewing licenses whenever the requirements are met. */
+  public void start() {
+    if (released || requirementsWatcher != null) {
+      return;
+    }
+    requirementsWatcher =
+        new RequirementsWatcher(context, this::onRequirementsStateChanged, requirements);
+    requirementsMet = requirementsWatcher.start() == 0;
+    if (requirementsMet) {
+      handler.post(runBatchRunnable);
+    }
+  }
+
+  /**
+   * Stops renewing licenses. A batch that's already in progress is allowed to complete, but no
+   * further batches are started until {@link #start()} is called again.
+   */
+  public void stop() {
+    if (requirementsWatcher == null) {
+      return;
+    }
+    requirementsWatcher.stop();
+    requirementsWatcher = null;
+    requirementsMet = false;
+    handler.removeCallbacks(runBatchRunnable);
+  }
+
+  /** Stops renewing licenses and releases the background thread. */
+  public void release() {
+    stop();
+    released = true;
+    executorService.shutdown();
+  }
+
+  private void onRequirementsStateChanged(
+      RequirementsWatcher requirementsWatcher,
+      @Requirements.RequirementFlags int notMetRequirements) {
+    boolean requirementsMet = notMetRequirements == 0;
+    if (this.requirementsMet == requirementsMet) {
+      return;
+    }
+    this.requirementsMet = requirementsMet;
+    handler.removeCallbacks(runBatchRunnable);
+    if (requirementsMet) {
+      handler.post(runBatchRunnable);
+    }
+  }
+
+  private void maybeRunBatch() {
+    if (!requirementsMet || batchInProgress) {
+      return;
+    }
+    batchInProgress = true;
+    executorService.execute(
+        () -> {
+          long nextBatchTimeMs = runBatch();
+          handler.post(() -> onBatchCompleted(nextBatchTimeMs));
+        });
+  }
+
+  private void onBatchCompleted(long nextBatchTimeMs) {
+    batchInProgress = false;
+    if (!requirementsMet || nextBatchTimeMs == C.TIME_UNSET) {
+      return;
+    }
+    long delayMs = max(minBatchIntervalMs, nextBatchTimeMs - System.currentTimeMillis());
+    handler.postDelayed(runBatchRunnable, delayMs);
+  }
+
+  /**
+   * Renews a batch of licenses that are about to expire. Called on the background thread.
+   *
+   * @return The time at which the next batch should run, in milliseconds since the epoch, or {@link
+   *     C#TIME_UNSET} if there are no licenses that will need renewing.
+   */
+  private long runBatch() {
+    try {
+      long nowMs = System.currentTimeMillis();
+      ImmutableList<OfflineLicenseStore.License> licenses =
+          offlineLicenseStore.getLicensesExpiringBefore(
+              nowMs + renewalWindowMs, maxLicensesPerBatch);
+      if (!licenses.isEmpty()) {
+        offlineLicenseStore.renewLicenses(licenses, maxParallelRequests, renewalTimeoutMs);
+      }
+      ImmutableList<OfflineLicenseStore.License> nextLicense =
+          offlineLicenseStore.getLicensesExpiringBefore(Long.MAX_VALUE, /* maxCount= */ 1);
+      if (nextLicense.isEmpty()) {
+        return C.TIME_UNSET;
+      }
+      // Licenses that failed or timed out keep their old expiry time, so they're retried after the
+      // minimum batch interval along with any licenses that didn't fit in this batch.
+      return nextLicense.get(0).expiryTimeMs - renewalWindowMs;
+    } catch (DatabaseIOException e) {
+      Log.e(TAG, "Failed to access offline license store", e);
+      return C.TIME_UNSET;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return C.TIME_UNSET;
+    }
+  }
+}
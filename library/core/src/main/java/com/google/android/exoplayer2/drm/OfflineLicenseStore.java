@@ -0,0 +1,580 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.drm;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.util.Pair;
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import androidx.annotation.VisibleForTesting;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.database.DatabaseIOException;
+import com.google.android.exoplayer2.database.DatabaseProvider;
+import com.google.android.exoplayer2.database.VersionTable;
+import com.google.android.exoplayer2.drm.DrmSession.DrmSessionException;
+import com.google.android.exoplayer2.util.Clock;
+import com.google.android.exoplayer2.util.Log;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists offline license key set ids in an SQLite database provided by a {@link
+ * DatabaseProvider}, indexed by license expiry time.
+ *
+ * <p>Licenses are downloaded, renewed and released with {@link OfflineLicenseHelper} instances
+ * obtained from a {@link Supplier}. Bulk operations use several helpers, so that their key
+ * requests run concurrently. Use {@link OfflineLicenseRenewer} to renew licenses in the background
+ * before they expire.
+ *
+ * <p>Methods of this class are blocking and must not be called on the application's main thread.
+ */
+@RequiresApi(18)
+public final class OfflineLicenseStore {
+
+  /** An offline license stored in an {@link OfflineLicenseStore}. */
+  public static final class License {
+
+    /** The id of the content the license is for, as chosen by the application. */
+    public final String id;
+    /** The key set id of the license. */
+    public final byte[] keySetId;
+    /**
+     * The time at which the license expires, in milliseconds since the epoch, or {@link
+     * C#TIME_UNSET} if the license doesn't expire or its expiry time is unknown.
+     */
+    public final long expiryTimeMs;
+
+    /**
+     * Creates an instance.
+     *
+     * @param id The id of the content the license is for.
+     * @param keySetId The key set id of the license.
+     * @param expiryTimeMs The time at which the license expires, in milliseconds since the epoch,
+     *     or {@link C#TIME_UNSET} if the license doesn't expire or its expiry time is unknown.
+     */
+    public License(String id, byte[] keySetId, long expiryTimeMs) {
+      this.id = id;
+      this.keySetId = keySetId;
+      this.expiryTimeMs = expiryTimeMs;
+    }
+  }
+
+  private static final String TAG = "OfflineLicenseStore";
+
+  private static final String TABLE_PREFIX = DatabaseProvider.TABLE_PREFIX + "OfflineLicenses";
+
+  @VisibleForTesting /* package */ static final int TABLE_VERSION = 1;
+
+  private static final String COLUMN_ID = "id";
+  private static final String COLUMN_KEY_SET_ID = "key_set_id";
+  private static final String COLUMN_EXPIRY_TIME_MS = "expiry_time_ms";
+
+  private static final int COLUMN_INDEX_ID = 0;
+  private static final int COLUMN_INDEX_KEY_SET_ID = 1;
+  private static final int COLUMN_INDEX_EXPIRY_TIME_MS = 2;
+
+  private static final String[] COLUMNS =
+      new String[] {COLUMN_ID, COLUMN_KEY_SET_ID, COLUMN_EXPIRY_TIME_MS};
+
+  private static final String TABLE_SCHEMA =
+      "("
+          + COLUMN_ID
+          + " TEXT PRIMARY KEY NOT NULL,"
+          + COLUMN_KEY_SET_ID
+          + " BLOB NOT NULL,"
+          + COLUMN_EXPIRY_TIME_MS
+          + " INTEGER NOT NULL)";
+
+  private static final String WHERE_ID_EQUALS = COLUMN_ID + " = ?";
+  private static final String WHERE_EXPIRES_BEFORE =
+      COLUMN_EXPIRY_TIME_MS + " != " + C.TIME_UNSET + " AND " + COLUMN_EXPIRY_TIME_MS + " < ?";
+
+  private final String name;
+  private final String tableName;
+  private final DatabaseProvider databaseProvider;
+  private final Supplier<OfflineLicenseHelper> offlineLicenseHelperSupplier;
+  private final Clock clock;
+  private final Object initializationLock;
+
+  @GuardedBy("initializationLock")
+  private boolean initialized;
+
+  /**
+   * Creates an instance.
+   *
+   * <p>Equivalent to calling {@link #OfflineLicenseStore(DatabaseProvider, String, Supplier)} with
+   * {@code name=""}.
+   *
+   * @param databaseProvider Provides the SQLite database in which licenses are persisted.
+   * @param offlineLicenseHelperSupplier Supplies a new {@link OfflineLicenseHelper} each time it's
+   *     called. Helpers are released by the store when they're no longer needed.
+   */
+  public OfflineLicenseStore(
+      DatabaseProvider databaseProvider,
+      Supplier<OfflineLicenseHelper> offlineLicenseHelperSupplier) {
+    this(databaseProvider, /* name= */ "", offlineLicenseHelperSupplier);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param databaseProvider Provides the SQLite database in which licenses are persisted.
+   * @param name The name of the store. This name is incorporated into the name of the SQLite table
+   *     in which licenses are persisted.
+   * @param offlineLicenseHelperSupplier Supplies a new {@link OfflineLicenseHelper} each time it's
+   *     called. Helpers are released by the store when they're no longer needed.
+   */
+  public OfflineLicenseStore(
+      DatabaseProvider databaseProvider,
+      String name,
+      Supplier<OfflineLicenseHelper> offlineLicenseHelperSupplier) {
+    this(databaseProvider, name, offlineLicenseHelperSupplier, Clock.DEFAULT);
+  }
+
+  @VisibleForTesting
+  /* package */ OfflineLicenseStore(
+      DatabaseProvider databaseProvider,
+      String name,
+      Supplier<OfflineLicenseHelper> offlineLicenseHelperSupplier,
+      Clock clock) {
+    this.databaseProvider = databaseProvider;
+    this.name = name;
+    this.offlineLicenseHelperSupplier = offlineLicenseHelperSupplier;
+    this.clock = clock;
+    tableName = TABLE_PREFIX + name;
+    initializationLock = new Object();
+  }
+
+  /**
+   * Returns the license for the content with the given id, or null if there's no such license.
+   *
+   * @throws DatabaseIOException If an error occurs reading from the database.
+   */
+  @Nullable
+  public License getLicense(String id) throws DatabaseIOException {
+    ensureInitialized();
+    try (Cursor cursor =
+        query(WHERE_ID_EQUALS, new String[] {id}, /* orderBy= */ null, /* limit= */ null)) {
+      return cursor.moveToNext() ? getLicenseForCurrentRow(cursor) : null;
+    } catch (SQLiteException e) {
+      throw new DatabaseIOException(e);
+    }
+  }
+
+  /**
+   * Returns up to {@code maxCount} licenses that expire before {@code timeMs}, ordered by
+   * increasing expiry time. Licenses whose expiry time is {@link C#TIME_UNSET} are not returned.
+   *
+   * @param timeMs The time, in milliseconds since the epoch.
+   * @param maxCount The maximum number of licenses to return.
+   * @throws DatabaseIOException If an error occurs reading from the database.
+   */
+  public ImmutableList<License> getLicensesExpiringBefore(long timeMs, int maxCount)
+      throws DatabaseIOException {
+    ensureInitialized();
+    ImmutableList.Builder<License> licenses = ImmutableList.builder();
+    try (Cursor cursor =
+        query(
+            WHERE_EXPIRES_BEFORE,
+            new String[] {Long.toString(timeMs)},
+            /* orderBy= */ COLUMN_EXPIRY_TIME_MS + " ASC",
+            /* limit= */ Integer.toString(maxCount))) {
+      while (cursor.moveToNext()) {
+        licenses.add(getLicenseForCurrentRow(cursor));
+      }
+    } catch (SQLiteException e) {
+      throw new DatabaseIOException(e);
+    }
+    return licenses.build();
+  }
+
+  /**
+   * Adds or replaces a license, for example one that was downloaded before the store was used.
+   *
+   * @throws DatabaseIOException If an error occurs writing to the database.
+   */
+  public void putLicense(License license) throws DatabaseIOException {
+    ensureInitialized();
+    try {
+      ContentValues values = new ContentValues();
+      values.put(COLUMN_ID, license.id);
+      values.put(COLUMN_KEY_SET_ID, license.keySetId);
+      values.put(COLUMN_EXPIRY_TIME_MS, license.expiryTimeMs);
+      databaseProvider
+          .getWritableDatabase()
+          .replaceOrThrow(tableName, /* nullColumnHack= */ null, values);
+    } catch (SQLException e) {
+      throw new DatabaseIOException(e);
+    }
+  }
+
+  /**
+   * Removes the license for the content with the given id from the store, without releasing it.
+   *
+   * @throws DatabaseIOException If an error occurs writing to the database.
+   */
+  public void removeLicense(String id) throws DatabaseIOException {
+    ensureInitialized();
+    try {
+      databaseProvider.getWritableDatabase().delete(tableName, WHERE_ID_EQUALS, new String[] {id});
+    } catch (SQLiteException e) {
+      throw new DatabaseIOException(e);
+    }
+  }
+
+  /**
+   * Downloads licenses and stores them.
+   *
+   * @param formats The {@link Format Formats} of the content to download licenses for, keyed by
+   *     content id. Each format must have non-null {@link Format#drmInitData}.
+   * @param maxParallelRequests The maximum number of key requests to run at the same time.
+   * @return The downloaded licenses, keyed by content id. Content whose license couldn't be
+   *     downloaded or stored is omitted.
+   * @throws InterruptedException If the calling thread is interrupted while waiting.
+   */
+  public ImmutableMap<String, License> downloadLicenses(
+      Map<String, Format> formats, int maxParallelRequests) throws InterruptedException {
+    List<Pair<String, Format>> items = new ArrayList<>();
+    for (Map.Entry<String, Format> entry : formats.entrySet()) {
+      checkArgument(entry.getValue().drmInitData != null);
+      items.add(Pair.create(entry.getKey(), entry.getValue()));
+    }
+    return runConcurrently(
+        items,
+        maxParallelRequests,
+        /* timeoutMs= */ C.TIME_UNSET,
+        (helper, item) -> storeLicense(helper, item.first, helper.downloadLicense(item.second)));
+  }
+
+  /**
+   * Renews licenses and stores the renewed licenses.
+   *
+   * <p>Equivalent to calling {@link #renewLicenses(List, int, long)} with {@code
+   * timeoutMs=C.TIME_UNSET}.
+   *
+   * @param licenses The licenses to renew.
+   * @param maxParallelRequests The maximum number of key requests to run at the same time.
+   * @return The renewed licenses, keyed by content id. Licenses that couldn't be renewed or stored
+   *     are omitted.
+   * @throws InterruptedException If the calling thread is interrupted while waiting.
+   */
+  public ImmutableMap<String, License> renewLicenses(
+      List<License> licenses, int maxParallelRequests) throws InterruptedException {
+    return renewLicenses(licenses, maxParallelRequests, /* timeoutMs= */ C.TIME_UNSET);
+  }
+
+  /**
+   * Renews licenses and stores the renewed licenses.
+   *
+   * <p>If the renewal of a license takes longer than {@code timeoutMs}, it's no longer waited for,
+   * and the remaining licenses are renewed with a new {@link OfflineLicenseHelper}. The key request
+   * can't be interrupted, so it completes in the background, and its result may still be stored.
+   *
+   * @param licenses The licenses to renew.
+   * @param maxParallelRequests The maximum number of key requests to run at the same time.
+   * @param timeoutMs The maximum time to wait for the renewal of each license, in milliseconds, or
+   *     {@link C#TIME_UNSET} to wait for as long as it takes.
+   * @return The renewed licenses, keyed by content id. Licenses that couldn't be renewed or stored,
+   *     or whose renewal timed out, are omitted.
+   * @throws InterruptedException If the calling thread is interrupted while waiting.
+   */
+  public ImmutableMap<String, License> renewLicenses(
+      List<License> licenses, int maxParallelRequests, long timeoutMs)
+      throws InterruptedException {
+    return runConcurrently(
+        licenses,
+        maxParallelRequests,
+        timeoutMs,
+        (helper, license) ->
+            storeLicense(helper, license.id, helper.renewLicense(license.keySetId)));
+  }
+
+  /**
+   * Releases the license for the content with the given id, and removes it from the store. Does
+   * nothing if there's no such license.
+   *
+   * @throws DrmSessionException If a DRM error occurs releasing the license.
+   * @throws DatabaseIOException If an error occurs accessing the database.
+   */
+  public void releaseLicense(String id) throws DrmSessionException, DatabaseIOException {
+    @Nullable License license = getLicense(id);
+    if (license == null) {
+      return;
+    }
+    OfflineLicenseHelper helper = offlineLicenseHelperSupplier.get();
+    try {
+      helper.releaseLicense(license.keySetId);
+    } finally {
+      helper.release();
+    }
+    removeLicense(id);
+  }
+
+  private License storeLicense(OfflineLicenseHelper helper, String id, byte[] keySetId)
+      throws DrmSessionException, DatabaseIOException {
+    long nowMs = clock.currentTimeMillis();
+    long licenseDurationRemainingSec = helper.getLicenseDurationRemainingSec(keySetId).first;
+    long expiryTimeMs =
+        licenseDurationRemainingSec == C.TIME_UNSET
+                || licenseDurationRemainingSec >= (Long.MAX_VALUE - nowMs) / 1000
+            ? C.TIME_UNSET
+            : nowMs + licenseDurationRemainingSec * 1000;
+    License license = new License(id, keySetId, expiryTimeMs);
+    putLicense(license);
+    return license;
+  }
+
+  /**
+   * Runs {@code operation} for each item, running up to {@code maxParallelRequests} operations at
+   * the same time, each with its own {@link OfflineLicenseHelper}. An operation that takes longer
+   * than {@code timeoutMs} is abandoned, and its helper is replaced.
+   */
+  private <T> ImmutableMap<String, License> runConcurrently(
+      List<T> items, int maxParallelRequests, long timeoutMs, LicenseOperation<T> operation)
+      throws InterruptedException {
+    checkArgument(maxParallelRequests > 0);
+    checkArgument(timeoutMs == C.TIME_UNSET || timeoutMs > 0);
+    if (items.isEmpty()) {
+      return ImmutableMap.of();
+    }
+    // Several operations may return a license for the same content id. Keep the last one.
+    Map<String, License> licenses = new LinkedHashMap<>();
+    List<OfflineLicenseHelper> idleHelpers = new ArrayList<>();
+    List<LicenseTask<T>> runningTasks = new ArrayList<>();
+    ExecutorService executorService = Executors.newCachedThreadPool();
+    CompletionService<LicenseTask<T>> completionService =
+        new ExecutorCompletionService<>(executorService);
+    try {
+      int nextItemIndex = 0;
+      while (nextItemIndex < items.size() || !runningTasks.isEmpty()) {
+        while (nextItemIndex < items.size() && runningTasks.size() < maxParallelRequests) {
+          OfflineLicenseHelper helper =
+              idleHelpers.isEmpty()
+                  ? offlineLicenseHelperSupplier.get()
+                  : idleHelpers.remove(idleHelpers.size() - 1);
+          long deadlineMs =
+              timeoutMs == C.TIME_UNSET ? Long.MAX_VALUE : clock.elapsedRealtime() + timeoutMs;
+          LicenseTask<T> task =
+              new LicenseTask<>(helper, items.get(nextItemIndex++), operation, deadlineMs);
+          runningTasks.add(task);
+          completionService.submit(task, task);
+        }
+
+        long earliestDeadlineMs = Long.MAX_VALUE;
+        for (int i = 0; i < runningTasks.size(); i++) {
+          earliestDeadlineMs = min(earliestDeadlineMs, runningTasks.get(i).deadlineMs);
+        }
+        @Nullable Future<LicenseTask<T>> completedFuture;
+        if (earliestDeadlineMs == Long.MAX_VALUE) {
+          completedFuture = completionService.take();
+        } else {
+          long waitTimeMs = max(0, earliestDeadlineMs - clock.elapsedRealtime());
+          completedFuture = completionService.poll(waitTimeMs, TimeUnit.MILLISECONDS);
+        }
+
+        if (completedFuture != null) {
+          LicenseTask<T> task = getDone(completedFuture);
+          if (runningTasks.remove(task)) {
+            idleHelpers.add(task.helper);
+            @Nullable License license = task.license;
+            if (license != null) {
+              licenses.put(license.id, license);
+            }
+          }
+        } else {
+          long nowMs = clock.elapsedRealtime();
+          for (int i = runningTasks.size() - 1; i >= 0; i--) {
+            LicenseTask<T> task = runningTasks.get(i);
+            // A task that completes before it's abandoned is handled on the next iteration.
+            if (task.deadlineMs <= nowMs && task.abandon()) {
+              Log.w(TAG, "License operation timed out");
+              runningTasks.remove(i);
+            }
+          }
+        }
+      }
+      return ImmutableMap.copyOf(licenses);
+    } finally {
+      // Operations can't be interrupted. Any that are still running release their helper when
+      // they complete, after which the executor's threads terminate.
+      for (int i = 0; i < runningTasks.size(); i++) {
+        runningTasks.get(i).abandon();
+      }
+      executorService.shutdown();
+      for (int i = 0; i < idleHelpers.size(); i++) {
+        idleHelpers.get(i).release();
+      }
+    }
+  }
+
+  private static <T> T getDone(Future<T> future) {
+    try {
+      return future.get();
+    } catch (ExecutionException | InterruptedException e) {
+      // The future is done, and tasks don't throw.
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private Cursor query(
+      String selection,
+      String[] selectionArgs,
+      @Nullable String orderBy,
+      @Nullable String limit) {
+    return databaseProvider
+        .getReadableDatabase()
+        .query(
+            tableName,
+            COLUMNS,
+            selection,
+            selectionArgs,
+            /* groupBy= */ null,
+            /* having= */ null,
+            orderBy,
+            limit);
+  }
+
+  private void ensureInitialized() throws DatabaseIOException {
+    synchronized (initializationLock) {
+      if (initialized) {
+        return;
+      }
+      try {
+        SQLiteDatabase readableDatabase = databaseProvider.getReadableDatabase();
+        int version =
+            VersionTable.getVersion(readableDatabase, VersionTable.FEATURE_OFFLINE_LICENSES, name);
+        if (version != TABLE_VERSION) {
+          SQLiteDatabase writableDatabase = databaseProvider.getWritableDatabase();
+          writableDatabase.beginTransactionNonExclusive();
+          try {
+            VersionTable.setVersion(
+                writableDatabase, VersionTable.FEATURE_OFFLINE_LICENSES, name, TABLE_VERSION);
+            writableDatabase.execSQL("DROP TABLE IF EXISTS " + tableName);
+            writableDatabase.execSQL("CREATE TABLE " + tableName + " " + TABLE_SCHEMA);
+            // Renewal queries look up licenses by expiry time.
+            writableDatabase.execSQL(
+                "CREATE INDEX "
+                    + tableName
+                    + "_"
+                    + COLUMN_EXPIRY_TIME_MS
+                    + " ON "
+                    + tableName
+                    + " ("
+                    + COLUMN_EXPIRY_TIME_MS
+                    + ")");
+            writableDatabase.setTransactionSuccessful();
+          } finally {
+            writableDatabase.endTransaction();
+          }
+        }
+        initialized = true;
+      } catch (SQLException e) {
+        throw new DatabaseIOException(e);
+      }
+    }
+  }
+
+  private static License getLicenseForCurrentRow(Cursor cursor) {
+    return new License(
+        checkNotNull(cursor.getString(COLUMN_INDEX_ID)),
+        checkNotNull(cursor.getBlob(COLUMN_INDEX_KEY_SET_ID)),
+        cursor.getLong(COLUMN_INDEX_EXPIRY_TIME_MS));
+  }
+
+  private interface LicenseOperation<T> {
+    License run(OfflineLicenseHelper helper, T item)
+        throws DrmSessionException, DatabaseIOException;
+  }
+
+  /** Runs a {@link LicenseOperation} for an item with a given {@link OfflineLicenseHelper}. */
+  private static final class LicenseTask<T> implements Runnable {
+
+    public final OfflineLicenseHelper helper;
+    public final long deadlineMs;
+
+    private final T item;
+    private final LicenseOperation<T> operation;
+
+    @Nullable public volatile License license;
+
+    @GuardedBy("this")
+    private boolean completed;
+
+    @GuardedBy("this")
+    private boolean abandoned;
+
+    public LicenseTask(
+        OfflineLicenseHelper helper, T item, LicenseOperation<T> operation, long deadlineMs) {
+      this.helper = helper;
+      this.item = item;
+      this.operation = operation;
+      this.deadlineMs = deadlineMs;
+    }
+
+    @Override
+    public void run() {
+      try {
+        license = operation.run(helper, item);
+      } catch (DrmSessionException | DatabaseIOException | RuntimeException e) {
+        Log.w(TAG, "License operation failed", e);
+      } finally {
+        boolean releaseHelper;
+        synchronized (this) {
+          completed = true;
+          releaseHelper = abandoned;
+        }
+        if (releaseHelper) {
+          helper.release();
+        }
+      }
+    }
+
+    /**
+     * Abandons the task if it's still running, in which case it releases its helper when it
+     * completes. Returns whether the task was abandoned.
+     */
+    public synchronized boolean abandon() {
+      if (completed) {
+        return false;
+      }
+      abandoned = true;
+      return true;
+    }
+  }
+}
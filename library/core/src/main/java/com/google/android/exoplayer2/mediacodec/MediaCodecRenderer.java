@@ -54,6 +54,7 @@ import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.FormatHolder;
 import com.google.android.exoplayer2.PlaybackException;
 import com.google.android.exoplayer2.analytics.PlayerId;
+import com.google.android.exoplayer2.analytics.StageLatencyTracer;
 import com.google.android.exoplayer2.audio.OggOpusAudioPacketizer;
 import com.google.android.exoplayer2.decoder.CryptoConfig;
 import com.google.android.exoplayer2.decoder.DecoderCounters;
@@ -1362,6 +1363,7 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
 
     onQueueInputBuffer(buffer);
     try {
+      long queueStartTimeNs = StageLatencyTracer.startTimeNs();
       if (bufferEncrypted) {
         codec.queueSecureInputBuffer(
             inputIndex, /* offset= */ 0, buffer.cryptoInfo, presentationTimeUs, /* flags= */ 0);
@@ -1369,6 +1371,8 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
         codec.queueInputBuffer(
             inputIndex, /* offset= */ 0, buffer.data.limit(), presentationTimeUs, /* flags= */ 0);
       }
+      StageLatencyTracer.recordSince(
+          StageLatencyTracer.STAGE_DECODER_QUEUE_INPUT, queueStartTimeNs);
     } catch (CryptoException e) {
       throw createRendererException(
           e, inputFormat, Util.getErrorCodeForMediaDrmErrorCode(e.getErrorCode()));
@@ -1832,7 +1836,10 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
           return false;
         }
       } else {
+        long dequeueStartTimeNs = StageLatencyTracer.startTimeNs();
         outputIndex = codec.dequeueOutputBufferIndex(outputBufferInfo);
+        StageLatencyTracer.recordSince(
+            StageLatencyTracer.STAGE_DECODER_DEQUEUE_OUTPUT, dequeueStartTimeNs);
       }
 
       if (outputIndex < 0) {
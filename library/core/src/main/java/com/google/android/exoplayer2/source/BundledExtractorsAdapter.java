@@ -25,6 +25,7 @@ import com.google.android.exoplayer2.extractor.ExtractorOutput;
 import com.google.android.exoplayer2.extractor.ExtractorsFactory;
 import com.google.android.exoplayer2.extractor.PositionHolder;
 import com.google.android.exoplayer2.extractor.mp3.Mp3Extractor;
+import com.google.android.exoplayer2.extractor.ts.TsExtractor;
 import com.google.android.exoplayer2.upstream.DataReader;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Util;
@@ -39,6 +40,12 @@ import java.util.Map;
  */
 public final class BundledExtractorsAdapter implements ProgressiveMediaExtractor {
 
+  /**
+   * The maximum number of bytes peeked from the start of the input and passed to the {@link
+   * ExtractorsFactory} before sniffing.
+   */
+  private static final int PEEK_LENGTH = 1024;
+
   private final ExtractorsFactory extractorsFactory;
 
   @Nullable private Extractor extractor;
@@ -67,7 +74,10 @@ public final class BundledExtractorsAdapter implements ProgressiveMediaExtractor
     if (extractor != null) {
       return;
     }
-    Extractor[] extractors = extractorsFactory.createExtractors(uri, responseHeaders);
+    byte[] peekedData = new byte[PEEK_LENGTH];
+    int peekedDataLength = peekData(extractorInput, peekedData);
+    Extractor[] extractors =
+        extractorsFactory.createExtractors(uri, responseHeaders, peekedData, peekedDataLength);
     if (extractors.length == 1) {
       this.extractor = extractors[0];
     } else {
@@ -95,6 +105,23 @@ public final class BundledExtractorsAdapter implements ProgressiveMediaExtractor
     extractor.init(output);
   }
 
+  /**
+   * Peeks up to {@code data.length} bytes from the start of the input, so that sniffing reuses the
+   * peeked data, and returns the number of bytes peeked.
+   */
+  private static int peekData(ExtractorInput input, byte[] data) throws IOException {
+    int dataLength = 0;
+    while (dataLength < data.length) {
+      int bytesPeeked = input.peek(data, dataLength, data.length - dataLength);
+      if (bytesPeeked == C.RESULT_END_OF_INPUT) {
+        break;
+      }
+      dataLength += bytesPeeked;
+    }
+    input.resetPeekPosition();
+    return dataLength;
+  }
+
   @Override
   public void release() {
     if (extractor != null) {
@@ -111,6 +138,13 @@ public final class BundledExtractorsAdapter implements ProgressiveMediaExtractor
     }
   }
 
+  @Override
+  public void setEnabledTrackIds(@Nullable int[] trackIds) {
+    if (extractor instanceof TsExtractor) {
+      ((TsExtractor) extractor).setEnabledTrackIds(trackIds);
+    }
+  }
+
   @Override
   public long getCurrentInputPosition() {
     return extractorInput != null ? extractorInput.getPosition() : C.INDEX_UNSET;
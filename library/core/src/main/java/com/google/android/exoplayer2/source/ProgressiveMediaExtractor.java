@@ -16,6 +16,7 @@
 package com.google.android.exoplayer2.source;
 
 import android.net.Uri;
+import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.analytics.PlayerId;
 import com.google.android.exoplayer2.extractor.Extractor;
@@ -72,6 +73,15 @@ public interface ProgressiveMediaExtractor {
    */
   void disableSeekingOnMp3Streams();
 
+  /**
+   * Sets the ids of the tracks whose samples should be output. The extracting infrastructure may
+   * skip the data of other tracks without parsing it.
+   *
+   * @param trackIds The ids of the enabled tracks, as passed to {@link
+   *     ExtractorOutput#track(int, int)}, or null to enable all tracks.
+   */
+  default void setEnabledTrackIds(@Nullable int[] trackIds) {}
+
   /**
    * Returns the current read position in the input stream, or {@link C#INDEX_UNSET} if no input is
    * available.
@@ -28,15 +28,18 @@ import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.FormatHolder;
 import com.google.android.exoplayer2.ParserException;
 import com.google.android.exoplayer2.SeekParameters;
+import com.google.android.exoplayer2.analytics.StageLatencyTracer;
 import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
 import com.google.android.exoplayer2.drm.DrmSessionEventListener;
 import com.google.android.exoplayer2.drm.DrmSessionManager;
+import com.google.android.exoplayer2.extractor.DummyTrackOutput;
 import com.google.android.exoplayer2.extractor.Extractor;
 import com.google.android.exoplayer2.extractor.ExtractorOutput;
 import com.google.android.exoplayer2.extractor.PositionHolder;
 import com.google.android.exoplayer2.extractor.SeekMap;
 import com.google.android.exoplayer2.extractor.SeekMap.SeekPoints;
 import com.google.android.exoplayer2.extractor.SeekMap.Unseekable;
+import com.google.android.exoplayer2.extractor.SkippableDataReader;
 import com.google.android.exoplayer2.extractor.TrackOutput;
 import com.google.android.exoplayer2.metadata.Metadata;
 import com.google.android.exoplayer2.metadata.icy.IcyHeaders;
@@ -44,6 +47,7 @@ import com.google.android.exoplayer2.source.SampleQueue.UpstreamFormatChangedLis
 import com.google.android.exoplayer2.source.SampleStream.ReadFlags;
 import com.google.android.exoplayer2.trackselection.ExoTrackSelection;
 import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.DataReader;
 import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.upstream.DataSourceUtil;
 import com.google.android.exoplayer2.upstream.DataSpec;
@@ -96,6 +100,16 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
    */
   private static final long DEFAULT_LAST_SAMPLE_DURATION_US = 10_000;
 
+  /**
+   * The minimum number of bytes that extractors skip by reopening the data source rather than by
+   * reading the data, used until the throughput of the data source has been measured.
+   */
+  private static final long DEFAULT_MIN_REOPEN_SKIP_LENGTH = 256 * 1024;
+  /** The smallest minimum number of bytes skipped by reopening the data source. */
+  private static final long MIN_REOPEN_SKIP_LENGTH_FLOOR = 64 * 1024;
+  /** The number of bytes to read from an opened data source before measuring its throughput. */
+  private static final long MIN_BYTES_FOR_THROUGHPUT_ESTIMATE = 64 * 1024;
+
   private static final Map<String, String> ICY_METADATA_HEADERS = createIcyMetadataHeaders();
 
   private static final Format ICY_FORMAT =
@@ -121,6 +135,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   @Nullable private Callback callback;
   @Nullable private IcyHeaders icyHeaders;
   private SampleQueue[] sampleQueues;
+  private SampleQueueTrackOutput[] sampleQueueTrackOutputs;
   private TrackId[] sampleQueueTrackIds;
   private boolean sampleQueuesBuilt;
 
@@ -145,6 +160,9 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   private boolean loadingFinished;
   private boolean released;
 
+  // Written on the playback thread and read by the loading thread.
+  @Nullable private volatile int[] enabledTrackIds;
+
   /**
    * @param uri The {@link Uri} of the media stream.
    * @param dataSource The data source to read the media.
@@ -199,6 +217,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     handler = Util.createHandlerForCurrentLooper();
     sampleQueueTrackIds = new TrackId[0];
     sampleQueues = new SampleQueue[0];
+    sampleQueueTrackOutputs = new SampleQueueTrackOutput[0];
     pendingResetPositionUs = C.TIME_UNSET;
     durationUs = C.TIME_UNSET;
     dataType = C.DATA_TYPE_MEDIA;
@@ -284,6 +303,9 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
         trackEnabledStates[track] = true;
         streams[i] = new SampleStreamImpl(track);
         streamResetFlags[i] = true;
+        // The data of the track was skipped while it was disabled, so its samples need to be loaded
+        // again.
+        seekRequired |= trackState.trackDataSkippedStates[track];
         // If there's still a chance of avoiding a seek, try and seek within the sample queue.
         if (!seekRequired) {
           SampleQueue sampleQueue = sampleQueues[track];
@@ -297,6 +319,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
         }
       }
     }
+    updateEnabledTrackIds(trackEnabledStates, trackState.trackDataSkippedStates);
     if (enabledTrackCount == 0) {
       pendingDeferredRetry = false;
       notifyDiscontinuity = false;
@@ -419,16 +442,20 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     if (isPendingReset()) {
       // A reset is already pending. We only need to update its position.
       pendingResetPositionUs = positionUs;
+      clearTrackDataSkippedStates(trackState);
       return positionUs;
     }
 
-    // If we're not playing a live stream, try and seek within the buffer.
+    // If we're not playing a live stream, try and seek within the buffer. This isn't possible if
+    // the extractor skipped the data of an enabled track while it was disabled.
     if (dataType != C.DATA_TYPE_MEDIA_PROGRESSIVE_LIVE
+        && !isDataSkippedForEnabledTrack(trackState)
         && seekInsideBufferUs(trackIsAudioVideoFlags, positionUs)) {
       return positionUs;
     }
 
     // We can't seek inside the buffer, and so need to reset.
+    clearTrackDataSkippedStates(trackState);
     pendingDeferredRetry = false;
     pendingResetPositionUs = positionUs;
     loadingFinished = false;
@@ -715,19 +742,25 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     int trackCount = sampleQueues.length;
     for (int i = 0; i < trackCount; i++) {
       if (id.equals(sampleQueueTrackIds[i])) {
-        return sampleQueues[i];
+        return sampleQueueTrackOutputs[i];
       }
     }
-    SampleQueue trackOutput =
+    SampleQueue sampleQueue =
         SampleQueue.createWithDrm(allocator, drmSessionManager, drmEventDispatcher);
-    trackOutput.setUpstreamFormatChangeListener(this);
+    sampleQueue.setUpstreamFormatChangeListener(this);
+    SampleQueueTrackOutput trackOutput = new SampleQueueTrackOutput(sampleQueue);
     @NullableType
     TrackId[] sampleQueueTrackIds = Arrays.copyOf(this.sampleQueueTrackIds, trackCount + 1);
     sampleQueueTrackIds[trackCount] = id;
     this.sampleQueueTrackIds = Util.castNonNullTypeArray(sampleQueueTrackIds);
     @NullableType SampleQueue[] sampleQueues = Arrays.copyOf(this.sampleQueues, trackCount + 1);
-    sampleQueues[trackCount] = trackOutput;
+    sampleQueues[trackCount] = sampleQueue;
     this.sampleQueues = Util.castNonNullTypeArray(sampleQueues);
+    @NullableType
+    SampleQueueTrackOutput[] sampleQueueTrackOutputs =
+        Arrays.copyOf(this.sampleQueueTrackOutputs, trackCount + 1);
+    sampleQueueTrackOutputs[trackCount] = trackOutput;
+    this.sampleQueueTrackOutputs = Util.castNonNullTypeArray(sampleQueueTrackOutputs);
     return trackOutput;
   }
 
@@ -868,6 +901,43 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     }
   }
 
+  private void updateEnabledTrackIds(
+      boolean[] trackEnabledStates, boolean[] trackDataSkippedStates) {
+    int[] enabledTrackIds = new int[sampleQueues.length];
+    int enabledTrackIdCount = 0;
+    for (int i = 0; i < sampleQueues.length; i++) {
+      if (sampleQueueTrackIds[i].isIcyTrack) {
+        // ICY metadata isn't output by the extractor.
+        continue;
+      }
+      sampleQueueTrackOutputs[i].setDiscardSamples(!trackEnabledStates[i]);
+      if (trackEnabledStates[i]) {
+        enabledTrackIds[enabledTrackIdCount++] = sampleQueueTrackIds[i].id;
+      } else {
+        trackDataSkippedStates[i] = true;
+      }
+    }
+    this.enabledTrackIds = Arrays.copyOf(enabledTrackIds, enabledTrackIdCount);
+  }
+
+  private static boolean isDataSkippedForEnabledTrack(TrackState trackState) {
+    for (int i = 0; i < trackState.trackDataSkippedStates.length; i++) {
+      if (trackState.trackEnabledStates[i] && trackState.trackDataSkippedStates[i]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Clears the skipped data states of enabled tracks, whose samples will be loaded again. */
+  private static void clearTrackDataSkippedStates(TrackState trackState) {
+    for (int i = 0; i < trackState.trackDataSkippedStates.length; i++) {
+      if (trackState.trackEnabledStates[i]) {
+        trackState.trackDataSkippedStates[i] = false;
+      }
+    }
+  }
+
   /**
    * Attempts to seek to the specified position within the sample queues.
    *
@@ -961,10 +1031,12 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     private final ExtractorOutput extractorOutput;
     private final ConditionVariable loadCondition;
     private final PositionHolder positionHolder;
+    private final ReopeningDataReader reopeningDataReader;
 
     private volatile boolean loadCanceled;
 
     private boolean pendingExtractorSeek;
+    @Nullable private int[] appliedEnabledTrackIds;
     private long seekTimeUs;
     private DataSpec dataSpec;
     @Nullable private TrackOutput icyTrackOutput;
@@ -983,6 +1055,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
       this.extractorOutput = extractorOutput;
       this.loadCondition = loadCondition;
       this.positionHolder = new PositionHolder();
+      this.reopeningDataReader = new ReopeningDataReader();
       this.pendingExtractorSeek = true;
       loadTaskId = LoadEventInfo.getNewId();
       dataSpec = buildDataSpec(/* position= */ 0);
@@ -1001,21 +1074,20 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
       while (result == Extractor.RESULT_CONTINUE && !loadCanceled) {
         try {
           long position = positionHolder.position;
-          dataSpec = buildDataSpec(position);
-          long length = dataSource.open(dataSpec);
+          long length = openDataSource(position);
           if (length != C.LENGTH_UNSET) {
             length += position;
             onLengthKnown();
           }
           icyHeaders = IcyHeaders.parse(dataSource.getResponseHeaders());
-          DataSource extractorDataSource = dataSource;
+          DataReader extractorDataReader = reopeningDataReader;
           if (icyHeaders != null && icyHeaders.metadataInterval != C.LENGTH_UNSET) {
-            extractorDataSource = new IcyDataSource(dataSource, icyHeaders.metadataInterval, this);
+            extractorDataReader = new IcyDataSource(dataSource, icyHeaders.metadataInterval, this);
             icyTrackOutput = icyTrack();
             icyTrackOutput.format(ICY_FORMAT);
           }
           progressiveMediaExtractor.init(
-              extractorDataSource,
+              extractorDataReader,
               uri,
               dataSource.getResponseHeaders(),
               position,
@@ -1025,10 +1097,14 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
           if (icyHeaders != null) {
             progressiveMediaExtractor.disableSeekingOnMp3Streams();
           }
+          applyEnabledTrackIds();
 
           if (pendingExtractorSeek) {
             progressiveMediaExtractor.seek(position, seekTimeUs);
             pendingExtractorSeek = false;
+            for (SampleQueueTrackOutput trackOutput : sampleQueueTrackOutputs) {
+              trackOutput.onExtractorSeek();
+            }
           }
           while (result == Extractor.RESULT_CONTINUE && !loadCanceled) {
             try {
@@ -1036,7 +1112,13 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
             } catch (InterruptedException e) {
               throw new InterruptedIOException();
             }
+            if (enabledTrackIds != appliedEnabledTrackIds) {
+              applyEnabledTrackIds();
+            }
+            long readStartTimeNs = StageLatencyTracer.startTimeNs();
             result = progressiveMediaExtractor.read(positionHolder);
+            StageLatencyTracer.recordSince(
+                StageLatencyTracer.STAGE_EXTRACTOR_READ, readStartTimeNs);
             long currentInputPosition = progressiveMediaExtractor.getCurrentInputPosition();
             if (currentInputPosition > position + continueLoadingCheckIntervalBytes) {
               position = currentInputPosition;
@@ -1075,6 +1157,25 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
     // Internal methods.
 
+    /**
+     * Opens {@link #dataSource} at the given position.
+     *
+     * @param position The position from which to open the data source.
+     * @return The number of bytes that can be read from the opened source, as returned by {@link
+     *     DataSource#open(DataSpec)}.
+     * @throws IOException If an error occurs opening the data source.
+     */
+    private long openDataSource(long position) throws IOException {
+      dataSpec = buildDataSpec(position);
+      long openStartTimeNs = System.nanoTime();
+      long length = dataSource.open(dataSpec);
+      long timeToFirstByteNs = System.nanoTime() - openStartTimeNs;
+      StageLatencyTracer.record(
+          StageLatencyTracer.STAGE_LOAD_TIME_TO_FIRST_BYTE, timeToFirstByteNs / 1000);
+      reopeningDataReader.onOpened(timeToFirstByteNs);
+      return length;
+    }
+
     private DataSpec buildDataSpec(long position) {
       // Disable caching if the content length cannot be resolved, since this is indicative of a
       // progressive live stream.
@@ -1088,12 +1189,68 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
           .build();
     }
 
+    private void applyEnabledTrackIds() {
+      @Nullable int[] enabledTrackIds = ProgressiveMediaPeriod.this.enabledTrackIds;
+      progressiveMediaExtractor.setEnabledTrackIds(enabledTrackIds);
+      appliedEnabledTrackIds = enabledTrackIds;
+    }
+
     private void setLoadPosition(long position, long timeUs) {
       positionHolder.position = position;
       seekTimeUs = timeUs;
       pendingExtractorSeek = true;
       seenIcyMetadata = false;
     }
+
+    /**
+     * A {@link SkippableDataReader} that reads from {@link #dataSource}, and skips by reopening it
+     * at the new position.
+     *
+     * <p>Skipping by reopening is considered cheaper than reading when reading the skipped data
+     * would take longer than the time to first byte of the last opening, at the throughput
+     * measured over all reads of the loadable.
+     */
+    private final class ReopeningDataReader implements SkippableDataReader {
+
+      private long timeToFirstByteNs;
+      private long bytesReadSinceOpen;
+      private long totalBytesRead;
+      private long totalReadTimeNs;
+
+      /** Called when {@link #dataSource} has been opened. */
+      public void onOpened(long timeToFirstByteNs) {
+        this.timeToFirstByteNs = timeToFirstByteNs;
+        bytesReadSinceOpen = 0;
+      }
+
+      @Override
+      public int read(byte[] buffer, int offset, int length) throws IOException {
+        long readStartTimeNs = System.nanoTime();
+        int bytesRead = dataSource.read(buffer, offset, length);
+        totalReadTimeNs += System.nanoTime() - readStartTimeNs;
+        if (bytesRead != C.RESULT_END_OF_INPUT) {
+          bytesReadSinceOpen += bytesRead;
+          totalBytesRead += bytesRead;
+        }
+        return bytesRead;
+      }
+
+      @Override
+      public long getMinimumSkipLength() {
+        if (totalBytesRead < MIN_BYTES_FOR_THROUGHPUT_ESTIMATE || totalReadTimeNs <= 0) {
+          return DEFAULT_MIN_REOPEN_SKIP_LENGTH;
+        }
+        double bytesPerNs = (double) totalBytesRead / totalReadTimeNs;
+        return max(MIN_REOPEN_SKIP_LENGTH_FLOOR, (long) (bytesPerNs * timeToFirstByteNs));
+      }
+
+      @Override
+      public void skip(long length) throws IOException {
+        long position = dataSpec.position + bytesReadSinceOpen + length;
+        dataSource.close();
+        openDataSource(position);
+      }
+    }
   }
 
   /** Stores track state. */
@@ -1103,12 +1260,93 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     public final boolean[] trackIsAudioVideoFlags;
     public final boolean[] trackEnabledStates;
     public final boolean[] trackNotifiedDownstreamFormats;
+    public final boolean[] trackDataSkippedStates;
 
     public TrackState(TrackGroupArray tracks, boolean[] trackIsAudioVideoFlags) {
       this.tracks = tracks;
       this.trackIsAudioVideoFlags = trackIsAudioVideoFlags;
       this.trackEnabledStates = new boolean[tracks.length];
       this.trackNotifiedDownstreamFormats = new boolean[tracks.length];
+      this.trackDataSkippedStates = new boolean[tracks.length];
+    }
+  }
+
+  /**
+   * A {@link TrackOutput} that writes to a {@link SampleQueue}, or skips the samples of its track
+   * while it's disabled without copying them.
+   *
+   * <p>Samples are only skipped from a sample boundary onward. Once skipping, the output only
+   * writes to the sample queue again after the extractor has been seeked, since the sample queue
+   * must be reset before it can receive further samples.
+   */
+  private static final class SampleQueueTrackOutput implements TrackOutput {
+
+    private final SampleQueue sampleQueue;
+    private final DummyTrackOutput discardingTrackOutput;
+
+    // Written on the playback thread and read by the loading thread.
+    private volatile boolean discardSamples;
+    // Accessed only by the loading thread.
+    private boolean discardingSamples;
+
+    public SampleQueueTrackOutput(SampleQueue sampleQueue) {
+      this.sampleQueue = sampleQueue;
+      discardingTrackOutput = new DummyTrackOutput();
+    }
+
+    /** Sets whether samples should be skipped. Called on the playback thread. */
+    public void setDiscardSamples(boolean discardSamples) {
+      this.discardSamples = discardSamples;
+    }
+
+    /** Called on the loading thread when the extractor has been seeked. */
+    public void onExtractorSeek() {
+      discardingSamples = discardSamples;
+    }
+
+    @Override
+    public void format(Format format) {
+      sampleQueue.format(format);
+    }
+
+    @Override
+    public int sampleData(
+        DataReader input, int length, boolean allowEndOfInput, @SampleDataPart int sampleDataPart)
+        throws IOException {
+      return getCurrentTrackOutput().sampleData(input, length, allowEndOfInput, sampleDataPart);
+    }
+
+    @Override
+    public void sampleData(ParsableByteArray data, int length, @SampleDataPart int sampleDataPart) {
+      getCurrentTrackOutput().sampleData(data, length, sampleDataPart);
+    }
+
+    @Override
+    public void sampleMetadata(
+        long timeUs,
+        @C.BufferFlags int flags,
+        int size,
+        int offset,
+        @Nullable CryptoData cryptoData) {
+      getCurrentTrackOutput().sampleMetadata(timeUs, flags, size, offset, cryptoData);
+      if (discardSamples) {
+        discardingSamples = true;
+      }
+    }
+
+    @Override
+    public void sampleMetadata(
+        int sampleCount, long[] timesUs, @C.BufferFlags int[] flags, int[] sizes, int offset) {
+      if (discardingSamples || discardSamples) {
+        // Switch outputs after the first sample, as in the single sample case.
+        TrackOutput.super.sampleMetadata(sampleCount, timesUs, flags, sizes, offset);
+        return;
+      }
+      sampleQueue.sampleMetadata(sampleCount, timesUs, flags, sizes, offset);
+    }
+
+    private TrackOutput getCurrentTrackOutput() {
+      return discardingSamples ? discardingTrackOutput : sampleQueue;
     }
   }
 
@@ -31,6 +31,7 @@ import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.FormatHolder;
 import com.google.android.exoplayer2.analytics.PlayerId;
+import com.google.android.exoplayer2.analytics.StageLatencyTracer;
 import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
 import com.google.android.exoplayer2.decoder.DecoderInputBuffer.InsufficientCapacityException;
 import com.google.android.exoplayer2.drm.DrmInitData;
@@ -419,6 +420,7 @@ public class SampleQueue implements TrackOutput {
       DecoderInputBuffer buffer,
       @ReadFlags int readFlags,
       boolean loadingFinished) {
+    long startTimeNs = StageLatencyTracer.startTimeNs();
     int result =
         peekSampleMetadata(
             formatHolder,
@@ -439,6 +441,7 @@ public class SampleQueue implements TrackOutput {
         readPosition++;
       }
     }
+    StageLatencyTracer.recordSince(StageLatencyTracer.STAGE_SAMPLE_QUEUE_READ, startTimeNs);
     return result;
   }
 
@@ -593,7 +596,9 @@ public class SampleQueue implements TrackOutput {
   @Override
   public final void sampleData(
       ParsableByteArray data, int length, @SampleDataPart int sampleDataPart) {
+    long startTimeNs = StageLatencyTracer.startTimeNs();
     sampleDataQueue.sampleData(data, length);
+    StageLatencyTracer.recordSince(StageLatencyTracer.STAGE_SAMPLE_QUEUE_WRITE, startTimeNs);
   }
 
   @Override
@@ -639,8 +644,40 @@ public class SampleQueue implements TrackOutput {
       pendingSplice = false;
     }
 
+    long startTimeNs = StageLatencyTracer.startTimeNs();
     long absoluteOffset = sampleDataQueue.getTotalBytesWritten() - size - offset;
     commitSample(timeUs, flags, absoluteOffset, size, cryptoData);
+    StageLatencyTracer.recordSince(StageLatencyTracer.STAGE_SAMPLE_QUEUE_WRITE, startTimeNs);
+  }
+
+  @Override
+  public void sampleMetadata(
+      int sampleCount, long[] timesUs, @C.BufferFlags int[] flags, int[] sizes, int offset) {
+    if (pendingSplice) {
+      // Samples may need to be dropped individually until the splice succeeds.
+      TrackOutput.super.sampleMetadata(sampleCount, timesUs, flags, sizes, offset);
+      return;
+    }
+    if (upstreamFormatAdjustmentRequired) {
+      format(Assertions.checkStateNotNull(unadjustedUpstreamFormat));
+    }
+
+    int firstSampleIndex = 0;
+    if (upstreamKeyframeRequired) {
+      while (firstSampleIndex < sampleCount
+          && (flags[firstSampleIndex] & C.BUFFER_FLAG_KEY_FRAME) == 0) {
+        firstSampleIndex++;
+      }
+      if (firstSampleIndex == sampleCount) {
+        return;
+      }
+      upstreamKeyframeRequired = false;
+    }
+
+    long startTimeNs = StageLatencyTracer.startTimeNs();
+    long absoluteEndOffset = sampleDataQueue.getTotalBytesWritten() - offset;
+    commitSamples(firstSampleIndex, sampleCount, timesUs, flags, sizes, absoluteEndOffset);
+    StageLatencyTracer.recordSince(StageLatencyTracer.STAGE_SAMPLE_QUEUE_WRITE, startTimeNs);
   }
 
   /**
@@ -810,6 +847,77 @@ public class SampleQueue implements TrackOutput {
     cryptoDatas[relativeEndIndex] = cryptoData;
     sourceIds[relativeEndIndex] = upstreamSourceId;
 
+    maybeAppendSharedSampleMetadata();
+
+    length++;
+    if (length == capacity) {
+      increaseCapacity(capacity + SAMPLE_CAPACITY_INCREMENT);
+    }
+  }
+
+  private synchronized void commitSamples(
+      int firstSampleIndex,
+      int sampleCount,
+      long[] sampleTimesUs,
+      @C.BufferFlags int[] sampleFlags,
+      int[] sampleSizes,
+      long endOffset) {
+    long offset = endOffset;
+    for (int i = firstSampleIndex; i < sampleCount; i++) {
+      offset -= sampleSizes[i];
+    }
+    if (length > 0) {
+      // Ensure sample data doesn't overlap.
+      int previousSampleRelativeIndex = getRelativeIndex(length - 1);
+      checkArgument(
+          offsets[previousSampleRelativeIndex] + sizes[previousSampleRelativeIndex] <= offset);
+    }
+    int newLength = length + sampleCount - firstSampleIndex;
+    if (newLength >= capacity) {
+      increaseCapacity(max(capacity + SAMPLE_CAPACITY_INCREMENT, newLength + 1));
+    }
+
+    boolean appendedSharedSampleMetadata = false;
+    for (int i = firstSampleIndex; i < sampleCount; i++) {
+      long timeUs = sampleTimesUs[i] + sampleOffsetUs;
+      @C.BufferFlags int sampleFlag = sampleFlags[i];
+      int size = sampleSizes[i];
+      if (upstreamAllSamplesAreSyncSamples) {
+        if (timeUs < startTimeUs) {
+          // Discard samples before the start time, as in the single sample case.
+          offset += size;
+          continue;
+        }
+        if ((sampleFlag & C.BUFFER_FLAG_KEY_FRAME) == 0) {
+          if (!loggedUnexpectedNonSyncSample) {
+            Log.w(TAG, "Overriding unexpected non-sync sample for format: " + upstreamFormat);
+            loggedUnexpectedNonSyncSample = true;
+          }
+          sampleFlag |= C.BUFFER_FLAG_KEY_FRAME;
+        }
+      }
+      if (!appendedSharedSampleMetadata) {
+        // All samples of the run share the upstream format, so it only needs to be checked once.
+        maybeAppendSharedSampleMetadata();
+        appendedSharedSampleMetadata = true;
+      }
+
+      isLastSampleQueued = (sampleFlag & C.BUFFER_FLAG_LAST_SAMPLE) != 0;
+      largestQueuedTimestampUs = max(largestQueuedTimestampUs, timeUs);
+
+      int relativeEndIndex = getRelativeIndex(length);
+      timesUs[relativeEndIndex] = timeUs;
+      offsets[relativeEndIndex] = offset;
+      sizes[relativeEndIndex] = size;
+      flags[relativeEndIndex] = sampleFlag;
+      cryptoDatas[relativeEndIndex] = null;
+      sourceIds[relativeEndIndex] = upstreamSourceId;
+      length++;
+      offset += size;
+    }
+  }
+
+  private void maybeAppendSharedSampleMetadata() {
     if (sharedSampleMetadata.isEmpty()
         || !sharedSampleMetadata.getEndValue().format.equals(upstreamFormat)) {
       DrmSessionReference drmSessionReference =
@@ -821,40 +929,37 @@ public class SampleQueue implements TrackOutput {
           getWriteIndex(),
           new SharedSampleMetadata(checkNotNull(upstreamFormat), drmSessionReference));
     }
+  }
 
-    length++;
-    if (length == capacity) {
-      // Increase the capacity.
-      int newCapacity = capacity + SAMPLE_CAPACITY_INCREMENT;
-      long[] newSourceIds = new long[newCapacity];
-      long[] newOffsets = new long[newCapacity];
-      long[] newTimesUs = new long[newCapacity];
-      int[] newFlags = new int[newCapacity];
-      int[] newSizes = new int[newCapacity];
-      CryptoData[] newCryptoDatas = new CryptoData[newCapacity];
-      int beforeWrap = capacity - relativeFirstIndex;
-      System.arraycopy(offsets, relativeFirstIndex, newOffsets, 0, beforeWrap);
-      System.arraycopy(timesUs, relativeFirstIndex, newTimesUs, 0, beforeWrap);
-      System.arraycopy(flags, relativeFirstIndex, newFlags, 0, beforeWrap);
-      System.arraycopy(sizes, relativeFirstIndex, newSizes, 0, beforeWrap);
-      System.arraycopy(cryptoDatas, relativeFirstIndex, newCryptoDatas, 0, beforeWrap);
-      System.arraycopy(sourceIds, relativeFirstIndex, newSourceIds, 0, beforeWrap);
-      int afterWrap = relativeFirstIndex;
-      System.arraycopy(offsets, 0, newOffsets, beforeWrap, afterWrap);
-      System.arraycopy(timesUs, 0, newTimesUs, beforeWrap, afterWrap);
-      System.arraycopy(flags, 0, newFlags, beforeWrap, afterWrap);
-      System.arraycopy(sizes, 0, newSizes, beforeWrap, afterWrap);
-      System.arraycopy(cryptoDatas, 0, newCryptoDatas, beforeWrap, afterWrap);
-      System.arraycopy(sourceIds, 0, newSourceIds, beforeWrap, afterWrap);
-      offsets = newOffsets;
-      timesUs = newTimesUs;
-      flags = newFlags;
-      sizes = newSizes;
-      cryptoDatas = newCryptoDatas;
-      sourceIds = newSourceIds;
-      relativeFirstIndex = 0;
-      capacity = newCapacity;
-    }
+  private void increaseCapacity(int newCapacity) {
+    long[] newSourceIds = new long[newCapacity];
+    long[] newOffsets = new long[newCapacity];
+    long[] newTimesUs = new long[newCapacity];
+    int[] newFlags = new int[newCapacity];
+    int[] newSizes = new int[newCapacity];
+    CryptoData[] newCryptoDatas = new CryptoData[newCapacity];
+    int beforeWrap = capacity - relativeFirstIndex;
+    System.arraycopy(offsets, relativeFirstIndex, newOffsets, 0, beforeWrap);
+    System.arraycopy(timesUs, relativeFirstIndex, newTimesUs, 0, beforeWrap);
+    System.arraycopy(flags, relativeFirstIndex, newFlags, 0, beforeWrap);
+    System.arraycopy(sizes, relativeFirstIndex, newSizes, 0, beforeWrap);
+    System.arraycopy(cryptoDatas, relativeFirstIndex, newCryptoDatas, 0, beforeWrap);
+    System.arraycopy(sourceIds, relativeFirstIndex, newSourceIds, 0, beforeWrap);
+    int afterWrap = relativeFirstIndex;
+    System.arraycopy(offsets, 0, newOffsets, beforeWrap, afterWrap);
+    System.arraycopy(timesUs, 0, newTimesUs, beforeWrap, afterWrap);
+    System.arraycopy(flags, 0, newFlags, beforeWrap, afterWrap);
+    System.arraycopy(sizes, 0, newSizes, beforeWrap, afterWrap);
+    System.arraycopy(cryptoDatas, 0, newCryptoDatas, beforeWrap, afterWrap);
+    System.arraycopy(sourceIds, 0, newSourceIds, beforeWrap, afterWrap);
+    offsets = newOffsets;
+    timesUs = newTimesUs;
+    flags = newFlags;
+    sizes = newSizes;
+    cryptoDatas = newCryptoDatas;
+    sourceIds = newSourceIds;
+    relativeFirstIndex = 0;
+    capacity = newCapacity;
   }
 
   /**
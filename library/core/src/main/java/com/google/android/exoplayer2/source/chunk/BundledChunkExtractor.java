@@ -244,5 +244,20 @@ public final class BundledChunkExtractor implements ExtractorOutput, ChunkExtrac
       }
       castNonNull(trackOutput).sampleMetadata(timeUs, flags, size, offset, cryptoData);
     }
+
+    @Override
+    public void sampleMetadata(
+        int sampleCount, long[] timesUs, @C.BufferFlags int[] flags, int[] sizes, int offset) {
+      if (endTimeUs != C.TIME_UNSET) {
+        for (int i = 0; i < sampleCount; i++) {
+          if (timesUs[i] >= endTimeUs) {
+            // Switch outputs at the first sample at or after the end time.
+            TrackOutput.super.sampleMetadata(sampleCount, timesUs, flags, sizes, offset);
+            return;
+          }
+        }
+      }
+      castNonNull(trackOutput).sampleMetadata(sampleCount, timesUs, flags, sizes, offset);
+    }
   }
 }
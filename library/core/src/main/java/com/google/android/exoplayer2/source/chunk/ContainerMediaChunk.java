@@ -18,6 +18,7 @@ package com.google.android.exoplayer2.source.chunk;
 import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.analytics.StageLatencyTracer;
 import com.google.android.exoplayer2.extractor.DefaultExtractorInput;
 import com.google.android.exoplayer2.extractor.Extractor;
 import com.google.android.exoplayer2.extractor.ExtractorInput;
@@ -119,9 +120,11 @@ public class ContainerMediaChunk extends BaseMediaChunk {
     try {
       // Create and open the input.
       DataSpec loadDataSpec = dataSpec.subrange(nextLoadPosition);
-      ExtractorInput input =
-          new DefaultExtractorInput(
-              dataSource, loadDataSpec.position, dataSource.open(loadDataSpec));
+      long openStartTimeNs = StageLatencyTracer.startTimeNs();
+      long length = dataSource.open(loadDataSpec);
+      StageLatencyTracer.recordSince(
+          StageLatencyTracer.STAGE_LOAD_TIME_TO_FIRST_BYTE, openStartTimeNs);
+      ExtractorInput input = new DefaultExtractorInput(dataSource, loadDataSpec.position, length);
       // Load and decode the sample data.
       try {
         while (!loadCanceled && chunkExtractor.read(input)) {}
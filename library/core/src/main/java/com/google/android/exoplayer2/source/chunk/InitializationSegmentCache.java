@@ -0,0 +1,303 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.chunk;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A size-bounded, least recently used cache of initialization segment data, keyed by URI (or
+ * {@link DataSpec#key} if set) and byte range.
+ *
+ * <p>Initialization segments are small and are requested again whenever a chunk source switches
+ * back to a representation or a title is reopened. Chunk sources can wrap the {@link DataSource}
+ * used for loading initialization data with {@link #createDataSource(DataSource)}, so that fully
+ * loaded initialization segments are stored in the cache and subsequent loads of the same segment
+ * are served from memory without a network request.
+ *
+ * <p>The cache returned by {@link #getSingletonInstance()} is shared by the HLS and DASH chunk
+ * sources in the process. It's disabled by default and can be enabled by calling {@link
+ * #setMaxSizeBytes(long)} with a positive size.
+ *
+ * <p>This class is thread-safe.
+ */
+public final class InitializationSegmentCache {
+
+  @Nullable private static InitializationSegmentCache singletonInstance;
+
+  /**
+   * Returns the process-wide {@link InitializationSegmentCache}, which is initially disabled.
+   *
+   * @return The singleton instance.
+   */
+  public static synchronized InitializationSegmentCache getSingletonInstance() {
+    if (singletonInstance == null) {
+      singletonInstance = new InitializationSegmentCache(/* maxSizeBytes= */ 0);
+    }
+    return singletonInstance;
+  }
+
+  private final LinkedHashMap<String, byte[]> entries;
+
+  private long maxSizeBytes;
+  private long sizeBytes;
+
+  /**
+   * Creates an instance.
+   *
+   * @param maxSizeBytes The maximum total size of the cached initialization segments, in bytes. A
+   *     size of zero disables the cache.
+   */
+  public InitializationSegmentCache(long maxSizeBytes) {
+    checkArgument(maxSizeBytes >= 0);
+    this.maxSizeBytes = maxSizeBytes;
+    entries =
+        new LinkedHashMap<>(
+            /* initialCapacity= */ 16, /* loadFactor= */ 0.75f, /* accessOrder= */ true);
+  }
+
+  /**
+   * Sets the maximum total size of the cached initialization segments, evicting the least recently
+   * used entries if the cache is currently larger.
+   *
+   * @param maxSizeBytes The maximum size in bytes. A size of zero disables the cache.
+   */
+  public synchronized void setMaxSizeBytes(long maxSizeBytes) {
+    checkArgument(maxSizeBytes >= 0);
+    this.maxSizeBytes = maxSizeBytes;
+    evictToSize(maxSizeBytes);
+  }
+
+  /** Returns the maximum total size of the cached initialization segments, in bytes. */
+  public synchronized long getMaxSizeBytes() {
+    return maxSizeBytes;
+  }
+
+  /** Returns the total size of the currently cached initialization segments, in bytes. */
+  public synchronized long getSizeBytes() {
+    return sizeBytes;
+  }
+
+  /** Returns whether the cache is enabled, meaning its maximum size is positive. */
+  public synchronized boolean isEnabled() {
+    return maxSizeBytes > 0;
+  }
+
+  /**
+   * Returns the cached data for the initialization segment defined by {@code dataSpec}, or null if
+   * it's not cached.
+   *
+   * <p>The returned array must not be modified.
+   */
+  @Nullable
+  public synchronized byte[] get(DataSpec dataSpec) {
+    return entries.get(getCacheKey(dataSpec));
+  }
+
+  /**
+   * Stores the data of the initialization segment defined by {@code dataSpec}. The data is not
+   * stored if it's larger than the maximum size of the cache.
+   *
+   * @param dataSpec The {@link DataSpec} defining the initialization segment.
+   * @param data The complete data of the initialization segment. Must not be modified afterwards.
+   */
+  public synchronized void put(DataSpec dataSpec, byte[] data) {
+    if (data.length > maxSizeBytes) {
+      return;
+    }
+    @Nullable byte[] previousData = entries.put(getCacheKey(dataSpec), data);
+    if (previousData != null) {
+      sizeBytes -= previousData.length;
+    }
+    sizeBytes += data.length;
+    evictToSize(maxSizeBytes);
+  }
+
+  /** Removes all cached initialization segments. */
+  public synchronized void clear() {
+    entries.clear();
+    sizeBytes = 0;
+  }
+
+  /**
+   * Returns a {@link DataSource} that serves cached initialization segments from this cache and
+   * stores initialization segments loaded through {@code upstream} in it once they've been read
+   * completely.
+   *
+   * @param upstream The {@link DataSource} to load uncached initialization segments from.
+   * @return The caching {@link DataSource}.
+   */
+  public DataSource createDataSource(DataSource upstream) {
+    return new InitializationSegmentDataSource(this, upstream);
+  }
+
+  private void evictToSize(long maxSizeBytes) {
+    Iterator<byte[]> iterator = entries.values().iterator();
+    while (sizeBytes > maxSizeBytes && iterator.hasNext()) {
+      sizeBytes -= iterator.next().length;
+      iterator.remove();
+    }
+  }
+
+  private static String getCacheKey(DataSpec dataSpec) {
+    String key = dataSpec.key != null ? dataSpec.key : dataSpec.uri.toString();
+    return key + "@" + dataSpec.position + "-" + dataSpec.length;
+  }
+
+  private static final class InitializationSegmentDataSource implements DataSource {
+
+    private final InitializationSegmentCache cache;
+    private final DataSource upstream;
+
+    @Nullable private DataSpec dataSpec;
+    @Nullable private byte[] cachedData;
+    private int cachedDataReadPosition;
+    @Nullable private byte[] loadedData;
+    private int loadedDataLength;
+    private boolean upstreamOpened;
+
+    public InitializationSegmentDataSource(InitializationSegmentCache cache, DataSource upstream) {
+      this.cache = cache;
+      this.upstream = upstream;
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {
+      checkNotNull(transferListener);
+      upstream.addTransferListener(transferListener);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+      this.dataSpec = dataSpec;
+      @Nullable byte[] cachedData = cache.get(dataSpec);
+      if (cachedData != null) {
+        this.cachedData = cachedData;
+        cachedDataReadPosition = 0;
+        return cachedData.length;
+      }
+      long length = upstream.open(dataSpec);
+      upstreamOpened = true;
+      long maxSizeBytes = cache.getMaxSizeBytes();
+      if (length == C.LENGTH_UNSET || length <= maxSizeBytes) {
+        int initialCapacity =
+            (int) (length != C.LENGTH_UNSET ? length : min(maxSizeBytes, 4 * 1024));
+        loadedData = new byte[initialCapacity];
+        loadedDataLength = 0;
+      }
+      return length;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      if (length == 0) {
+        return 0;
+      }
+      if (cachedData != null) {
+        int bytesRemaining = cachedData.length - cachedDataReadPosition;
+        if (bytesRemaining == 0) {
+          return C.RESULT_END_OF_INPUT;
+        }
+        int bytesToRead = min(length, bytesRemaining);
+        System.arraycopy(cachedData, cachedDataReadPosition, buffer, offset, bytesToRead);
+        cachedDataReadPosition += bytesToRead;
+        return bytesToRead;
+      }
+      int bytesRead = upstream.read(buffer, offset, length);
+      if (loadedData != null) {
+        if (bytesRead == C.RESULT_END_OF_INPUT) {
+          commitLoadedData();
+        } else {
+          appendLoadedData(buffer, offset, bytesRead);
+        }
+      }
+      return bytesRead;
+    }
+
+    @Override
+    @Nullable
+    public Uri getUri() {
+      if (cachedData != null) {
+        return checkNotNull(dataSpec).uri;
+      }
+      return upstream.getUri();
+    }
+
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+      return upstreamOpened ? upstream.getResponseHeaders() : Collections.emptyMap();
+    }
+
+    @Override
+    public void close() throws IOException {
+      dataSpec = null;
+      cachedData = null;
+      loadedData = null;
+      if (upstreamOpened) {
+        upstreamOpened = false;
+        upstream.close();
+      }
+    }
+
+    private void appendLoadedData(byte[] buffer, int offset, int length) {
+      byte[] loadedData = checkNotNull(this.loadedData);
+      long requiredLength = (long) loadedDataLength + length;
+      if (requiredLength > cache.getMaxSizeBytes()) {
+        // The segment doesn't fit in the cache, so stop buffering it.
+        this.loadedData = null;
+        return;
+      }
+      if (requiredLength > loadedData.length) {
+        int newLength =
+            (int) min(cache.getMaxSizeBytes(), max(requiredLength, loadedData.length * 2L));
+        byte[] newLoadedData = new byte[newLength];
+        System.arraycopy(loadedData, 0, newLoadedData, 0, loadedDataLength);
+        this.loadedData = loadedData = newLoadedData;
+      }
+      System.arraycopy(buffer, offset, loadedData, loadedDataLength, length);
+      loadedDataLength += length;
+    }
+
+    private void commitLoadedData() {
+      byte[] loadedData = checkNotNull(this.loadedData);
+      this.loadedData = null;
+      if (loadedDataLength == 0) {
+        return;
+      }
+      byte[] data =
+          loadedDataLength == loadedData.length
+              ? loadedData
+              : Arrays.copyOf(loadedData, loadedDataLength);
+      cache.put(checkNotNull(dataSpec), data);
+    }
+  }
+}
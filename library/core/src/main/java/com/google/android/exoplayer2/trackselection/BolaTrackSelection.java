@@ -0,0 +1,366 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.trackselection;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.source.MediaPeriodId;
+import com.google.android.exoplayer2.source.TrackGroup;
+import com.google.android.exoplayer2.source.chunk.MediaChunk;
+import com.google.android.exoplayer2.source.chunk.MediaChunkIterator;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.util.Clock;
+import com.google.common.collect.Iterables;
+import java.util.List;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
+
+/**
+ * A bandwidth based adaptive {@link ExoTrackSelection} that selects tracks using the buffer based
+ * BOLA algorithm once enough media is buffered, and using the bandwidth estimate otherwise.
+ *
+ * <p>BOLA chooses the track that maximizes {@code (V * (utility + gamma) - bufferLevel) / size},
+ * where the utility of a track is the logarithm of its chunk size relative to the smallest track,
+ * and {@code V} and {@code gamma} are derived from the stable buffer duration. Chunk sizes are
+ * taken from the {@link MediaChunkIterator MediaChunkIterators} where the manifest or segment
+ * index provides them, and are estimated from the format bitrates otherwise.
+ *
+ * <p>To avoid oscillation, BOLA never switches to a quality that's higher than both the previous
+ * quality and the quality sustainable by the bandwidth estimate.
+ */
+public class BolaTrackSelection extends BaseTrackSelection {
+
+  /** Factory for {@link BolaTrackSelection} instances. */
+  public static class Factory implements ExoTrackSelection.Factory {
+
+    private final int minBufferForBolaMs;
+    private final int stableBufferMs;
+    private final float bandwidthFraction;
+    private final Clock clock;
+
+    /** Creates a factory with default parameters. */
+    public Factory() {
+      this(DEFAULT_MIN_BUFFER_FOR_BOLA_MS, DEFAULT_STABLE_BUFFER_MS, DEFAULT_BANDWIDTH_FRACTION);
+    }
+
+    /**
+     * Creates a factory.
+     *
+     * @param minBufferForBolaMs The minimum duration of buffered media for the selection to use the
+     *     buffer based algorithm, in milliseconds. Below this duration, the selection is based on
+     *     the bandwidth estimate.
+     * @param stableBufferMs The duration of buffered media that the buffer based algorithm aims to
+     *     maintain, in milliseconds. The highest quality is selected once the buffer reaches this
+     *     level. Must be greater than {@code minBufferForBolaMs}.
+     * @param bandwidthFraction The fraction of the available bandwidth that the selection should
+     *     consider available for use.
+     */
+    public Factory(int minBufferForBolaMs, int stableBufferMs, float bandwidthFraction) {
+      this(minBufferForBolaMs, stableBufferMs, bandwidthFraction, Clock.DEFAULT);
+    }
+
+    /**
+     * Creates a factory.
+     *
+     * @param minBufferForBolaMs The minimum duration of buffered media for the selection to use the
+     *     buffer based algorithm, in milliseconds. Below this duration, the selection is based on
+     *     the bandwidth estimate.
+     * @param stableBufferMs The duration of buffered media that the buffer based algorithm aims to
+     *     maintain, in milliseconds. The highest quality is selected once the buffer reaches this
+     *     level. Must be greater than {@code minBufferForBolaMs}.
+     * @param bandwidthFraction The fraction of the available bandwidth that the selection should
+     *     consider available for use.
+     * @param clock A {@link Clock}.
+     */
+    public Factory(
+        int minBufferForBolaMs, int stableBufferMs, float bandwidthFraction, Clock clock) {
+      this.minBufferForBolaMs = minBufferForBolaMs;
+      this.stableBufferMs = stableBufferMs;
+      this.bandwidthFraction = bandwidthFraction;
+      this.clock = clock;
+    }
+
+    @Override
+    public final @NullableType ExoTrackSelection[] createTrackSelections(
+        @NullableType Definition[] definitions,
+        BandwidthMeter bandwidthMeter,
+        MediaPeriodId mediaPeriodId,
+        Timeline timeline) {
+      ExoTrackSelection[] selections = new ExoTrackSelection[definitions.length];
+      for (int i = 0; i < definitions.length; i++) {
+        @Nullable Definition definition = definitions[i];
+        if (definition == null || definition.tracks.length == 0) {
+          continue;
+        }
+        selections[i] =
+            definition.tracks.length == 1
+                ? new FixedTrackSelection(
+                    definition.group,
+                    /* track= */ definition.tracks[0],
+                    /* type= */ definition.type)
+                : new BolaTrackSelection(
+                    definition.group,
+                    definition.tracks,
+                    definition.type,
+                    bandwidthMeter,
+                    minBufferForBolaMs,
+                    stableBufferMs,
+                    bandwidthFraction,
+                    clock);
+      }
+      return selections;
+    }
+  }
+
+  /** The default minimum buffered duration for using the buffer based algorithm, in ms. */
+  public static final int DEFAULT_MIN_BUFFER_FOR_BOLA_MS = 10_000;
+  /** The default buffered duration that the buffer based algorithm aims to maintain, in ms. */
+  public static final int DEFAULT_STABLE_BUFFER_MS = 16_000;
+  /** The default fraction of the bandwidth estimate considered available for use. */
+  public static final float DEFAULT_BANDWIDTH_FRACTION = 0.7f;
+
+  private final BandwidthMeter bandwidthMeter;
+  private final long minBufferForBolaUs;
+  private final long stableBufferUs;
+  private final float bandwidthFraction;
+  private final Clock clock;
+  private final long[] chunkSizesBits;
+
+  private float playbackSpeed;
+  private int selectedIndex;
+  private @C.SelectionReason int reason;
+
+  /**
+   * @param group The {@link TrackGroup}.
+   * @param tracks The indices of the selected tracks within the {@link TrackGroup}. Must not be
+   *     empty. May be in any order.
+   * @param type The type that will be returned from {@link TrackSelection#getType()}.
+   * @param bandwidthMeter Provides an estimate of the currently available bandwidth.
+   * @param minBufferForBolaMs The minimum duration of buffered media for the selection to use the
+   *     buffer based algorithm, in milliseconds.
+   * @param stableBufferMs The duration of buffered media that the buffer based algorithm aims to
+   *     maintain, in milliseconds. Must be greater than {@code minBufferForBolaMs}.
+   * @param bandwidthFraction The fraction of the available bandwidth that the selection should
+   *     consider available for use.
+   * @param clock The {@link Clock}.
+   */
+  protected BolaTrackSelection(
+      TrackGroup group,
+      int[] tracks,
+      @Type int type,
+      BandwidthMeter bandwidthMeter,
+      long minBufferForBolaMs,
+      long stableBufferMs,
+      float bandwidthFraction,
+      Clock clock) {
+    super(group, tracks, type);
+    if (stableBufferMs <= minBufferForBolaMs) {
+      throw new IllegalArgumentException("stableBufferMs must be greater than minBufferForBolaMs");
+    }
+    this.bandwidthMeter = bandwidthMeter;
+    this.minBufferForBolaUs = minBufferForBolaMs * 1000L;
+    this.stableBufferUs = stableBufferMs * 1000L;
+    this.bandwidthFraction = bandwidthFraction;
+    this.clock = clock;
+    chunkSizesBits = new long[length];
+    playbackSpeed = 1f;
+    reason = C.SELECTION_REASON_UNKNOWN;
+  }
+
+  @Override
+  public void onPlaybackSpeed(float playbackSpeed) {
+    this.playbackSpeed = playbackSpeed;
+  }
+
+  @Override
+  public void updateSelectedTrack(
+      long playbackPositionUs,
+      long bufferedDurationUs,
+      long availableDurationUs,
+      List<? extends MediaChunk> queue,
+      MediaChunkIterator[] mediaChunkIterators) {
+    long nowMs = clock.elapsedRealtime();
+    int throughputIndex = determineThroughputSelectedIndex(nowMs);
+
+    // Make initial selection
+    if (reason == C.SELECTION_REASON_UNKNOWN) {
+      reason = C.SELECTION_REASON_INITIAL;
+      selectedIndex = throughputIndex;
+      return;
+    }
+
+    int previousSelectedIndex = selectedIndex;
+    @C.SelectionReason int previousReason = reason;
+    int formatIndexOfPreviousChunk =
+        queue.isEmpty() ? C.INDEX_UNSET : indexOf(Iterables.getLast(queue).trackFormat);
+    if (formatIndexOfPreviousChunk != C.INDEX_UNSET) {
+      previousSelectedIndex = formatIndexOfPreviousChunk;
+      previousReason = Iterables.getLast(queue).trackSelectionReason;
+    }
+
+    int newSelectedIndex;
+    long bufferedPlayoutDurationUs = (long) (bufferedDurationUs / playbackSpeed);
+    if (bufferedPlayoutDurationUs < minBufferForBolaUs
+        || !updateChunkSizes(mediaChunkIterators, queue)) {
+      newSelectedIndex = throughputIndex;
+    } else {
+      newSelectedIndex = determineBolaSelectedIndex(nowMs, bufferedPlayoutDurationUs);
+      if (newSelectedIndex < previousSelectedIndex) {
+        // BOLA selected a higher quality. Don't switch above the previous quality unless the
+        // bandwidth estimate can sustain it. Lower indices correspond to higher qualities. If the
+        // previous track is excluded, it can't be kept, so only the bandwidth estimate applies.
+        int highestQualityIndex =
+            isBlacklisted(previousSelectedIndex, nowMs)
+                ? throughputIndex
+                : min(previousSelectedIndex, throughputIndex);
+        newSelectedIndex = max(newSelectedIndex, highestQualityIndex);
+      }
+    }
+    reason =
+        newSelectedIndex == previousSelectedIndex ? previousReason : C.SELECTION_REASON_ADAPTIVE;
+    selectedIndex = newSelectedIndex;
+  }
+
+  @Override
+  public int getSelectedIndex() {
+    return selectedIndex;
+  }
+
+  @Override
+  public @C.SelectionReason int getSelectionReason() {
+    return reason;
+  }
+
+  @Override
+  @Nullable
+  public Object getSelectionData() {
+    return null;
+  }
+
+  /**
+   * Updates {@link #chunkSizesBits} with the size of the next chunk of each track, and returns
+   * whether the sizes of all tracks are known.
+   */
+  private boolean updateChunkSizes(
+      MediaChunkIterator[] mediaChunkIterators, List<? extends MediaChunk> queue) {
+    long[] chunkDurationsUs = new long[length];
+    long fallbackChunkDurationUs = C.TIME_UNSET;
+    for (int i = 0; i < length; i++) {
+      chunkSizesBits[i] = C.LENGTH_UNSET;
+      chunkDurationsUs[i] = C.TIME_UNSET;
+      if (i < mediaChunkIterators.length && mediaChunkIterators[i].next()) {
+        MediaChunkIterator iterator = mediaChunkIterators[i];
+        chunkDurationsUs[i] = iterator.getChunkEndTimeUs() - iterator.getChunkStartTimeUs();
+        fallbackChunkDurationUs = chunkDurationsUs[i];
+        long chunkLength = iterator.getDataSpec().length;
+        if (chunkLength != C.LENGTH_UNSET) {
+          chunkSizesBits[i] = chunkLength * C.BITS_PER_BYTE;
+        }
+      }
+    }
+    if (fallbackChunkDurationUs == C.TIME_UNSET && !queue.isEmpty()) {
+      MediaChunk lastChunk = Iterables.getLast(queue);
+      if (lastChunk.startTimeUs != C.TIME_UNSET && lastChunk.endTimeUs != C.TIME_UNSET) {
+        fallbackChunkDurationUs = lastChunk.endTimeUs - lastChunk.startTimeUs;
+      }
+    }
+    for (int i = 0; i < length; i++) {
+      if (chunkSizesBits[i] != C.LENGTH_UNSET) {
+        continue;
+      }
+      int bitrate = getFormat(i).bitrate;
+      if (bitrate == Format.NO_VALUE) {
+        return false;
+      }
+      long chunkDurationUs =
+          chunkDurationsUs[i] != C.TIME_UNSET ? chunkDurationsUs[i] : fallbackChunkDurationUs;
+      // If the chunk duration is unknown, assume one second chunks. Only the relative chunk sizes
+      // matter as long as the assumed duration is the same for all tracks.
+      chunkSizesBits[i] =
+          chunkDurationUs != C.TIME_UNSET && chunkDurationUs > 0
+              ? bitrate * chunkDurationUs / C.MICROS_PER_SECOND
+              : bitrate;
+      if (chunkSizesBits[i] <= 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int determineBolaSelectedIndex(long nowMs, long bufferedDurationUs) {
+    long minChunkSizeBits = Long.MAX_VALUE;
+    for (int i = 0; i < length; i++) {
+      if (!isBlacklisted(i, nowMs)) {
+        minChunkSizeBits = min(minChunkSizeBits, chunkSizesBits[i]);
+      }
+    }
+    if (minChunkSizeBits == Long.MAX_VALUE) {
+      return selectedIndex;
+    }
+    double maxUtility = 1;
+    for (int i = 0; i < length; i++) {
+      if (!isBlacklisted(i, nowMs)) {
+        maxUtility = max(maxUtility, getUtility(chunkSizesBits[i], minChunkSizeBits));
+      }
+    }
+    // Choose gamma and V such that the lowest quality is selected at the minimum buffer level and
+    // the highest quality is selected at the stable buffer level.
+    double minBufferS = minBufferForBolaUs / (double) C.MICROS_PER_SECOND;
+    double stableBufferS = stableBufferUs / (double) C.MICROS_PER_SECOND;
+    double gamma = (maxUtility - 1) / (stableBufferS / minBufferS - 1);
+    double v = gamma > 0 ? minBufferS / gamma : 0;
+    double bufferLevelS = bufferedDurationUs / (double) C.MICROS_PER_SECOND;
+
+    int bestIndex = C.INDEX_UNSET;
+    double bestScore = 0;
+    for (int i = 0; i < length; i++) {
+      if (isBlacklisted(i, nowMs)) {
+        continue;
+      }
+      double utility = getUtility(chunkSizesBits[i], minChunkSizeBits);
+      double score = (v * (utility + gamma) - bufferLevelS) / chunkSizesBits[i];
+      if (bestIndex == C.INDEX_UNSET || score > bestScore) {
+        bestIndex = i;
+        bestScore = score;
+      }
+    }
+    return bestIndex;
+  }
+
+  private int determineThroughputSelectedIndex(long nowMs) {
+    long effectiveBitrate = (long) (bandwidthMeter.getBitrateEstimate() * bandwidthFraction);
+    int lowestBitrateAllowedIndex = 0;
+    for (int i = 0; i < length; i++) {
+      if (!isBlacklisted(i, nowMs)) {
+        Format format = getFormat(i);
+        if (Math.round(format.bitrate * playbackSpeed) <= effectiveBitrate) {
+          return i;
+        } else {
+          lowestBitrateAllowedIndex = i;
+        }
+      }
+    }
+    return lowestBitrateAllowedIndex;
+  }
+
+  private static double getUtility(long chunkSizeBits, long minChunkSizeBits) {
+    return Math.log(chunkSizeBits / (double) minChunkSizeBits) + 1;
+  }
+}
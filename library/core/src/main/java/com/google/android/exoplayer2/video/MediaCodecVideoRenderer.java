@@ -54,6 +54,7 @@ import com.google.android.exoplayer2.FormatHolder;
 import com.google.android.exoplayer2.PlaybackException;
 import com.google.android.exoplayer2.PlayerMessage.Target;
 import com.google.android.exoplayer2.RendererCapabilities;
+import com.google.android.exoplayer2.analytics.StageLatencyTracer;
 import com.google.android.exoplayer2.decoder.DecoderCounters;
 import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
 import com.google.android.exoplayer2.decoder.DecoderReuseEvaluation;
@@ -1502,6 +1503,8 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     decoderCounters.addVideoFrameProcessingOffset(processingOffsetUs);
     totalVideoFrameProcessingOffsetUs += processingOffsetUs;
     videoFrameProcessingOffsetCount++;
+    StageLatencyTracer.record(
+        StageLatencyTracer.STAGE_VIDEO_FRAME_RELEASE_LATENESS, max(0, -processingOffsetUs));
   }
 
   /**
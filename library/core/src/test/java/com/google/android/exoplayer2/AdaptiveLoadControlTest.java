@@ -0,0 +1,149 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.source.MediaPeriodId;
+import com.google.android.exoplayer2.source.TrackGroup;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.testutil.FakeRenderer;
+import com.google.android.exoplayer2.testutil.FakeTrackSelection;
+import com.google.android.exoplayer2.trackselection.ExoTrackSelection;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.util.MimeTypes;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link AdaptiveLoadControl}. */
+@RunWith(AndroidJUnit4.class)
+public class AdaptiveLoadControlTest {
+
+  private static final float SPEED = 1f;
+  private static final int VIDEO_BITRATE = 1_000_000;
+  private static final MediaPeriodId MEDIA_PERIOD_ID =
+      new MediaPeriodId(/* periodUid= */ new Object());
+
+  private Context context;
+  private BandwidthMeter bandwidthMeter;
+
+  @Before
+  public void setUp() {
+    context = ApplicationProvider.getApplicationContext();
+    bandwidthMeter = mock(BandwidthMeter.class);
+  }
+
+  @Test
+  public void shouldStartPlayback_withSufficientBandwidth_startsAfterMinBufferForPlayback() {
+    when(bandwidthMeter.getBitrateEstimate()).thenReturn(2L * VIDEO_BITRATE);
+    AdaptiveLoadControl loadControl =
+        new AdaptiveLoadControl.Builder(context).setBandwidthMeter(bandwidthMeter).build();
+    selectVideoTrack(loadControl);
+
+    assertThat(shouldStartPlayback(loadControl, /* bufferedDurationUs= */ 999_999)).isFalse();
+    assertThat(shouldStartPlayback(loadControl, /* bufferedDurationUs= */ 1_000_000)).isTrue();
+  }
+
+  @Test
+  public void shouldStartPlayback_withInsufficientBandwidth_coversDownloadDeficit() {
+    // 70% of the estimate is 875 kbps, so 12.5% of the 50s horizon (6.25s) must be buffered.
+    when(bandwidthMeter.getBitrateEstimate()).thenReturn(1_250_000L);
+    AdaptiveLoadControl loadControl =
+        new AdaptiveLoadControl.Builder(context).setBandwidthMeter(bandwidthMeter).build();
+    selectVideoTrack(loadControl);
+
+    assertThat(shouldStartPlayback(loadControl, /* bufferedDurationUs= */ 6_000_000)).isFalse();
+    assertThat(shouldStartPlayback(loadControl, /* bufferedDurationUs= */ 6_500_000)).isTrue();
+  }
+
+  @Test
+  public void shouldStartPlayback_withVeryLowBandwidth_startsAfterMaxBufferForPlayback() {
+    when(bandwidthMeter.getBitrateEstimate()).thenReturn(100_000L);
+    AdaptiveLoadControl loadControl =
+        new AdaptiveLoadControl.Builder(context).setBandwidthMeter(bandwidthMeter).build();
+    selectVideoTrack(loadControl);
+
+    assertThat(shouldStartPlayback(loadControl, /* bufferedDurationUs= */ 9_999_999)).isFalse();
+    assertThat(shouldStartPlayback(loadControl, /* bufferedDurationUs= */ 10_000_000)).isTrue();
+  }
+
+  @Test
+  public void onTracksSelected_targetBufferBytesIsCappedByMemoryClass() {
+    ActivityManager activityManager =
+        (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+    shadowOf(activityManager).setMemoryClass(/* memoryClass= */ 256);
+    AdaptiveLoadControl loadControl =
+        new AdaptiveLoadControl.Builder(context)
+            .setBandwidthMeter(bandwidthMeter)
+            .setMaxMemoryFraction(0.25f)
+            .build();
+
+    selectVideoTrack(loadControl);
+
+    assertThat(loadControl.getTargetBufferBytes()).isEqualTo(64 * 1024 * 1024);
+  }
+
+  @Test
+  public void shouldContinueLoading_untilMaxBufferExceeded() {
+    AdaptiveLoadControl loadControl =
+        new AdaptiveLoadControl.Builder(context).setBandwidthMeter(bandwidthMeter).build();
+    long maxBufferUs = AdaptiveLoadControl.DEFAULT_MAX_BUFFER_MS * 1000L;
+
+    assertThat(
+            loadControl.shouldContinueLoading(
+                /* playbackPositionUs= */ 0, /* bufferedDurationUs= */ 0, SPEED))
+        .isTrue();
+    assertThat(
+            loadControl.shouldContinueLoading(/* playbackPositionUs= */ 0, maxBufferUs - 1, SPEED))
+        .isTrue();
+    assertThat(loadControl.shouldContinueLoading(/* playbackPositionUs= */ 0, maxBufferUs, SPEED))
+        .isFalse();
+  }
+
+  private static void selectVideoTrack(AdaptiveLoadControl loadControl) {
+    Format format =
+        new Format.Builder()
+            .setSampleMimeType(MimeTypes.VIDEO_H264)
+            .setAverageBitrate(VIDEO_BITRATE)
+            .build();
+    TrackGroup trackGroup = new TrackGroup(format);
+    loadControl.onTracksSelected(
+        Timeline.EMPTY,
+        MEDIA_PERIOD_ID,
+        new Renderer[] {new FakeRenderer(C.TRACK_TYPE_VIDEO)},
+        new TrackGroupArray(trackGroup),
+        new ExoTrackSelection[] {new FakeTrackSelection(trackGroup)});
+  }
+
+  private static boolean shouldStartPlayback(
+      AdaptiveLoadControl loadControl, long bufferedDurationUs) {
+    return loadControl.shouldStartPlayback(
+        Timeline.EMPTY,
+        MEDIA_PERIOD_ID,
+        bufferedDurationUs,
+        SPEED,
+        /* rebuffering= */ false,
+        /* targetLiveOffsetUs= */ C.TIME_UNSET);
+  }
+}
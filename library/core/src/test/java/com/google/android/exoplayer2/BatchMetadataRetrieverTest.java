@@ -0,0 +1,184 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.net.Uri;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.testutil.FakeClock;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DefaultDataSource;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests for {@link BatchMetadataRetriever}. */
+@RunWith(AndroidJUnit4.class)
+public final class BatchMetadataRetrieverTest {
+
+  private static final long TEST_TIMEOUT_SEC = 10;
+
+  private BatchMetadataRetriever batchMetadataRetriever;
+
+  @Before
+  public void setUp() {
+    batchMetadataRetriever =
+        new BatchMetadataRetriever.Builder(ApplicationProvider.getApplicationContext())
+            .setThreadCount(2)
+            .build();
+  }
+
+  @After
+  public void tearDown() {
+    batchMetadataRetriever.release();
+  }
+
+  @Test
+  public void retrieveMetadata_singleMediaItem_outputsExpectedTrackGroups() throws Exception {
+    MediaItem mediaItem =
+        MediaItem.fromUri(Uri.parse("asset://android_asset/media/mp4/sample.mp4"));
+
+    BatchMetadataRetriever.Result result =
+        batchMetadataRetriever
+            .retrieveMetadata(mediaItem)
+            .get(TEST_TIMEOUT_SEC, TimeUnit.SECONDS);
+
+    TrackGroupArray trackGroups = result.trackGroups;
+    assertThat(trackGroups.length).isEqualTo(2);
+    // Video group.
+    assertThat(trackGroups.get(0).length).isEqualTo(1);
+    assertThat(trackGroups.get(0).getFormat(0).sampleMimeType).isEqualTo(MimeTypes.VIDEO_H264);
+    // Audio group.
+    assertThat(trackGroups.get(1).length).isEqualTo(1);
+    assertThat(trackGroups.get(1).getFormat(0).sampleMimeType).isEqualTo(MimeTypes.AUDIO_AAC);
+    assertThat(result.bytesRead).isGreaterThan(0);
+  }
+
+  @Test
+  public void retrieveMetadata_mp4_readsHeadersOnly() throws Exception {
+    String assetPath = "media/mp4/sample.mp4";
+    MediaItem mediaItem = MediaItem.fromUri(Uri.parse("asset://android_asset/" + assetPath));
+
+    BatchMetadataRetriever.Result result =
+        batchMetadataRetriever
+            .retrieveMetadata(mediaItem)
+            .get(TEST_TIMEOUT_SEC, TimeUnit.SECONDS);
+
+    // The moov box is at the start of the file, before the sample data.
+    assertThat(result.bytesRead).isGreaterThan(0);
+    assertThat(result.bytesRead).isLessThan(getAssetLength(assetPath) / 4);
+  }
+
+  @Test
+  public void retrieveMetadata_mp3_readsHeadersOnly() throws Exception {
+    String assetPath = "media/mp3/bear-vbr-xing-header.mp3";
+    MediaItem mediaItem = MediaItem.fromUri(Uri.parse("asset://android_asset/" + assetPath));
+
+    BatchMetadataRetriever.Result result =
+        batchMetadataRetriever
+            .retrieveMetadata(mediaItem)
+            .get(TEST_TIMEOUT_SEC, TimeUnit.SECONDS);
+
+    // The format is known after the first frames, which include the Xing header.
+    assertThat(result.bytesRead).isGreaterThan(0);
+    assertThat(result.bytesRead).isLessThan(getAssetLength(assetPath) / 4);
+  }
+
+  @Test
+  public void retrieveMetadata_withClock_outputsLoadDuration() throws Exception {
+    Context context = ApplicationProvider.getApplicationContext();
+    FakeClock clock = new FakeClock(/* initialTimeMs= */ 0);
+    DataSource.Factory defaultDataSourceFactory = new DefaultDataSource.Factory(context);
+    // The data source is created after the start time of the load is read.
+    DataSource.Factory dataSourceFactory =
+        () -> {
+          clock.advanceTime(/* timeDiffMs= */ 100);
+          return defaultDataSourceFactory.createDataSource();
+        };
+    BatchMetadataRetriever retriever =
+        new BatchMetadataRetriever.Builder(context)
+            .setDataSourceFactory(dataSourceFactory)
+            .setClock(clock)
+            .build();
+    MediaItem mediaItem =
+        MediaItem.fromUri(Uri.parse("asset://android_asset/media/mp4/sample.mp4"));
+
+    BatchMetadataRetriever.Result result;
+    try {
+      result = retriever.retrieveMetadata(mediaItem).get(TEST_TIMEOUT_SEC, TimeUnit.SECONDS);
+    } finally {
+      retriever.release();
+    }
+
+    assertThat(result.loadDurationMs).isEqualTo(100);
+  }
+
+  @Test
+  public void retrieveMetadata_multipleMediaItems_outputsResultsInOrder() throws Exception {
+    List<MediaItem> mediaItems =
+        ImmutableList.of(
+            MediaItem.fromUri(Uri.parse("asset://android_asset/media/mp4/sample.mp4")),
+            MediaItem.fromUri(Uri.parse("asset://android_asset/media/mp3/bear-id3.mp3")),
+            MediaItem.fromUri(Uri.parse("asset://android_asset/media/ogg/bear_vorbis.ogg")));
+
+    List<ListenableFuture<BatchMetadataRetriever.Result>> futures =
+        batchMetadataRetriever.retrieveMetadata(mediaItems);
+
+    List<BatchMetadataRetriever.Result> results =
+        Futures.allAsList(futures).get(TEST_TIMEOUT_SEC, TimeUnit.SECONDS);
+
+    assertThat(results).hasSize(3);
+    TrackGroupArray trackGroups1 = results.get(0).trackGroups;
+    TrackGroupArray trackGroups2 = results.get(1).trackGroups;
+    TrackGroupArray trackGroups3 = results.get(2).trackGroups;
+    assertThat(trackGroups1.length).isEqualTo(2);
+    assertThat(trackGroups2.length).isEqualTo(1);
+    assertThat(trackGroups2.get(0).getFormat(0).sampleMimeType).isEqualTo(MimeTypes.AUDIO_MPEG);
+    assertThat(trackGroups3.length).isEqualTo(1);
+    assertThat(trackGroups3.get(0).getFormat(0).sampleMimeType).isEqualTo(MimeTypes.AUDIO_VORBIS);
+  }
+
+  @Test
+  public void retrieveMetadata_id3Tags_outputsMediaMetadata() throws Exception {
+    MediaItem mediaItem =
+        MediaItem.fromUri(Uri.parse("asset://android_asset/media/mp3/bear-id3.mp3"));
+
+    BatchMetadataRetriever.Result result =
+        batchMetadataRetriever
+            .retrieveMetadata(mediaItem)
+            .get(TEST_TIMEOUT_SEC, TimeUnit.SECONDS);
+
+    assertThat(result.mediaMetadata.title.toString()).isEqualTo("Test title");
+    assertThat(result.mediaMetadata.artist.toString()).isEqualTo("Test Artist");
+  }
+
+  private static long getAssetLength(String assetPath) throws IOException {
+    return TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), assetPath).length;
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import android.net.Uri;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.KeyframeRetriever.Keyframe;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests for {@link KeyframeRetriever}. */
+@RunWith(AndroidJUnit4.class)
+public final class KeyframeRetrieverTest {
+
+  private static final long TEST_TIMEOUT_SEC = 10;
+
+  private KeyframeRetriever keyframeRetriever;
+
+  @Before
+  public void setUp() {
+    keyframeRetriever =
+        new KeyframeRetriever.Builder(ApplicationProvider.getApplicationContext())
+            .setThreadCount(2)
+            .build();
+  }
+
+  @After
+  public void tearDown() {
+    keyframeRetriever.release();
+  }
+
+  @Test
+  public void retrieveKeyframes_mp4_returnsSyncSampleAtOrBeforeEachTime() throws Exception {
+    MediaItem mediaItem =
+        MediaItem.fromUri(Uri.parse("asset://android_asset/media/mp4/sample.mp4"));
+
+    List<ListenableFuture<Keyframe>> futures =
+        keyframeRetriever.retrieveKeyframes(mediaItem, ImmutableList.of(0L, 500_000L));
+    List<Keyframe> keyframes = Futures.allAsList(futures).get(TEST_TIMEOUT_SEC, TimeUnit.SECONDS);
+
+    assertThat(keyframes).hasSize(2);
+    for (Keyframe keyframe : keyframes) {
+      assertThat(keyframe.format.sampleMimeType).isEqualTo(MimeTypes.VIDEO_H264);
+      // The file has a single sync sample.
+      assertThat(keyframe.timeUs).isEqualTo(0);
+      assertThat(keyframe.data).hasLength(36692);
+    }
+  }
+
+  @Test
+  public void retrieveKeyframes_severalSyncSamples_returnsDistinctKeyframeForEachTime()
+      throws Exception {
+    MediaItem mediaItem =
+        MediaItem.fromUri(Uri.parse("asset://android_asset/media/avi/sample.avi"));
+    // The times are not sorted, to check that each key frame is returned for the right time.
+    ImmutableList<Long> timesUs = ImmutableList.of(4_000_000L, 0L, 2_040_000L);
+
+    List<ListenableFuture<Keyframe>> futures =
+        keyframeRetriever.retrieveKeyframes(mediaItem, timesUs);
+    List<Keyframe> keyframes = Futures.allAsList(futures).get(TEST_TIMEOUT_SEC, TimeUnit.SECONDS);
+
+    assertThat(keyframes).hasSize(3);
+    for (int i = 0; i < keyframes.size(); i++) {
+      assertThat(keyframes.get(i).format.sampleMimeType).isEqualTo(MimeTypes.VIDEO_MP4V);
+      assertThat(keyframes.get(i).timeUs).isAtMost(timesUs.get(i));
+    }
+    assertThat(keyframes.get(1).timeUs).isEqualTo(0);
+    assertThat(keyframes.get(2).timeUs).isGreaterThan(keyframes.get(1).timeUs);
+    assertThat(keyframes.get(0).timeUs).isGreaterThan(keyframes.get(2).timeUs);
+  }
+
+  @Test
+  public void retrieveKeyframes_withInterval_returnsDistinctKeyframes() throws Exception {
+    MediaItem mediaItem =
+        MediaItem.fromUri(Uri.parse("asset://android_asset/media/mkv/sample.mkv"));
+
+    List<Keyframe> keyframes =
+        keyframeRetriever
+            .retrieveKeyframes(mediaItem, /* intervalUs= */ 250_000)
+            .get(TEST_TIMEOUT_SEC, TimeUnit.SECONDS);
+
+    assertThat(keyframes).hasSize(1);
+    assertThat(keyframes.get(0).format.sampleMimeType).isEqualTo(MimeTypes.VIDEO_H264);
+    assertThat(keyframes.get(0).timeUs).isEqualTo(67_000);
+    assertThat(keyframes.get(0).data).hasLength(36477);
+  }
+
+  @Test
+  public void retrieveKeyframes_audioOnly_fails() {
+    MediaItem mediaItem =
+        MediaItem.fromUri(Uri.parse("asset://android_asset/media/mp3/bear-id3.mp3"));
+
+    ListenableFuture<Keyframe> future =
+        keyframeRetriever.retrieveKeyframes(mediaItem, ImmutableList.of(0L)).get(0);
+
+    ExecutionException exception =
+        assertThrows(
+            ExecutionException.class, () -> future.get(TEST_TIMEOUT_SEC, TimeUnit.SECONDS));
+    assertThat(exception).hasCauseThat().isInstanceOf(ParserException.class);
+  }
+}
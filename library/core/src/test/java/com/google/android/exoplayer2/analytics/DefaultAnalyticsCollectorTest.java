@@ -39,6 +39,7 @@ import static com.google.android.exoplayer2.analytics.AnalyticsListener.EVENT_PL
 import static com.google.android.exoplayer2.analytics.AnalyticsListener.EVENT_PLAY_WHEN_READY_CHANGED;
 import static com.google.android.exoplayer2.analytics.AnalyticsListener.EVENT_POSITION_DISCONTINUITY;
 import static com.google.android.exoplayer2.analytics.AnalyticsListener.EVENT_RENDERED_FIRST_FRAME;
+import static com.google.android.exoplayer2.analytics.AnalyticsListener.EVENT_SURFACE_SIZE_CHANGED;
 import static com.google.android.exoplayer2.analytics.AnalyticsListener.EVENT_TIMELINE_CHANGED;
 import static com.google.android.exoplayer2.analytics.AnalyticsListener.EVENT_TRACKS_CHANGED;
 import static com.google.android.exoplayer2.analytics.AnalyticsListener.EVENT_VIDEO_DECODER_INITIALIZED;
@@ -67,6 +68,7 @@ import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.robolectric.shadows.ShadowLooper.idleMainLooper;
@@ -122,6 +124,7 @@ import com.google.android.exoplayer2.testutil.TestExoPlayerBuilder;
 import com.google.android.exoplayer2.testutil.TestUtil;
 import com.google.android.exoplayer2.util.Clock;
 import com.google.android.exoplayer2.util.ConditionVariable;
+import com.google.android.exoplayer2.util.FlagSet;
 import com.google.android.exoplayer2.util.HandlerWrapper;
 import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.android.exoplayer2.util.Util;
@@ -1994,6 +1997,27 @@ public final class DefaultAnalyticsCollectorTest {
     inOrder.verify(listener3).onSurfaceSizeChanged(any(), eq(0), eq(0));
   }
 
+  @Test
+  public void addListenerWithEventFilter_onlyReceivesRequestedEvents() {
+    AnalyticsCollector analyticsCollector = new DefaultAnalyticsCollector(Clock.DEFAULT);
+    analyticsCollector.setPlayer(
+        new ExoPlayer.Builder(ApplicationProvider.getApplicationContext()).build(),
+        Looper.myLooper());
+    AnalyticsListener filteredListener = mock(AnalyticsListener.class);
+    AnalyticsListener unfilteredListener = mock(AnalyticsListener.class);
+    analyticsCollector.addListener(
+        filteredListener, new FlagSet.Builder().add(EVENT_SURFACE_SIZE_CHANGED).build());
+    analyticsCollector.addListener(unfilteredListener);
+
+    analyticsCollector.onSurfaceSizeChanged(/* width= */ 1, /* height= */ 2);
+    analyticsCollector.onDroppedFrames(/* count= */ 3, /* elapsedMs= */ 4);
+
+    verify(filteredListener).onSurfaceSizeChanged(any(), eq(1), eq(2));
+    verify(filteredListener, never()).onDroppedVideoFrames(any(), anyInt(), anyLong());
+    verify(unfilteredListener).onSurfaceSizeChanged(any(), eq(1), eq(2));
+    verify(unfilteredListener).onDroppedVideoFrames(any(), eq(3), eq(4L));
+  }
+
   @Test
   public void release_withCallbacksArrivingAfterRelease_onPlayerReleasedForwardedLast()
       throws Exception {
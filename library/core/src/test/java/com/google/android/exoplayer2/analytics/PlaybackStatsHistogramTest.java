@@ -0,0 +1,107 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.analytics;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link PlaybackStatsHistogram}. */
+@RunWith(AndroidJUnit4.class)
+public final class PlaybackStatsHistogramTest {
+
+  @Test
+  public void emptyHistogram_returnsUnset() {
+    PlaybackStatsHistogram histogram = new PlaybackStatsHistogram();
+
+    assertThat(histogram.getCount()).isEqualTo(0);
+    assertThat(histogram.getMin()).isEqualTo(C.LENGTH_UNSET);
+    assertThat(histogram.getMax()).isEqualTo(C.LENGTH_UNSET);
+    assertThat(histogram.getMean()).isEqualTo(C.LENGTH_UNSET);
+    assertThat(histogram.getPercentile(50)).isEqualTo(C.LENGTH_UNSET);
+  }
+
+  @Test
+  public void smallValues_areCountedExactly() {
+    PlaybackStatsHistogram histogram = new PlaybackStatsHistogram();
+    for (int i = 1; i <= 10; i++) {
+      histogram.add(i);
+    }
+
+    assertThat(histogram.getCount()).isEqualTo(10);
+    assertThat(histogram.getMin()).isEqualTo(1);
+    assertThat(histogram.getMax()).isEqualTo(10);
+    assertThat(histogram.getPercentile(50)).isEqualTo(5);
+    assertThat(histogram.getPercentile(90)).isEqualTo(9);
+    assertThat(histogram.getPercentile(100)).isEqualTo(10);
+  }
+
+  @Test
+  public void largeValues_percentilesWithinRelativeError() {
+    PlaybackStatsHistogram histogram = new PlaybackStatsHistogram();
+    for (int i = 1; i <= 10_000; i++) {
+      histogram.add(i * 100L);
+    }
+
+    assertThat((double) histogram.getPercentile(50)).isWithin(500_000 * 0.125).of(500_000);
+    assertThat((double) histogram.getPercentile(99)).isWithin(990_000 * 0.125).of(990_000);
+    assertThat(histogram.getMean()).isEqualTo(500_050);
+  }
+
+  @Test
+  public void weightedValues_countWeights() {
+    PlaybackStatsHistogram histogram = new PlaybackStatsHistogram();
+    histogram.add(1_000_000, /* weight= */ 9_000);
+    histogram.add(5_000_000, /* weight= */ 1_000);
+
+    assertThat(histogram.getCount()).isEqualTo(10_000);
+    assertThat(histogram.getMean()).isEqualTo(1_400_000);
+    assertThat((double) histogram.getPercentile(50)).isWithin(125_000).of(1_000_000);
+    assertThat(histogram.getPercentile(100)).isEqualTo(5_000_000);
+  }
+
+  @Test
+  public void merge_combinesHistograms() {
+    PlaybackStatsHistogram histogram1 = new PlaybackStatsHistogram();
+    histogram1.add(2);
+    histogram1.add(4);
+    PlaybackStatsHistogram histogram2 = new PlaybackStatsHistogram();
+    histogram2.add(6);
+    PlaybackStatsHistogram empty = new PlaybackStatsHistogram();
+
+    PlaybackStatsHistogram merged = PlaybackStatsHistogram.merge(histogram1, empty, histogram2);
+
+    assertThat(merged.getCount()).isEqualTo(3);
+    assertThat(merged.getMin()).isEqualTo(2);
+    assertThat(merged.getMax()).isEqualTo(6);
+    assertThat(merged.getPercentile(50)).isEqualTo(4);
+  }
+
+  @Test
+  public void copy_isNotAffectedByFurtherChanges() {
+    PlaybackStatsHistogram histogram = new PlaybackStatsHistogram();
+    histogram.add(1);
+
+    PlaybackStatsHistogram copy = histogram.copy();
+    histogram.add(2);
+
+    assertThat(copy.getCount()).isEqualTo(1);
+    assertThat(copy.getMax()).isEqualTo(1);
+  }
+}
@@ -138,6 +138,28 @@ public final class PlaybackStatsListenerTest {
     assertThat(playbackStats.endedCount).isEqualTo(1);
   }
 
+  @Test
+  public void playback_withMaxHistorySize_keepsOnlyLatestEvents() throws Exception {
+    PlaybackStatsListener playbackStatsListener =
+        new PlaybackStatsListener(
+            /* keepHistory= */ true, /* maxHistorySize= */ 2, /* callback= */ null);
+    player.addAnalyticsListener(playbackStatsListener);
+
+    player.setMediaSource(new FakeMediaSource(new FakeTimeline(/* windowCount= */ 1)));
+    player.prepare();
+    player.play();
+    TestPlayerRunHelper.runUntilPlaybackState(player, Player.STATE_ENDED);
+    runUntilPendingCommandsAreFullyHandled(player);
+
+    @Nullable PlaybackStats playbackStats = playbackStatsListener.getPlaybackStats();
+    assertThat(playbackStats).isNotNull();
+    assertThat(playbackStats.endedCount).isEqualTo(1);
+    assertThat(playbackStats.playbackStateHistory).hasSize(2);
+    assertThat(playbackStats.playbackStateHistory.get(1).playbackState)
+        .isEqualTo(PlaybackStats.PLAYBACK_STATE_ENDED);
+    assertThat(playbackStats.joinTimeHistogramMs.getCount()).isEqualTo(1);
+  }
+
   @Test
   public void finishedSession_callsCallback() throws Exception {
     PlaybackStatsListener.Callback callback = mock(PlaybackStatsListener.Callback.class);
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.analytics;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.common.collect.ImmutableList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link StageLatencyTracer}. */
+@RunWith(AndroidJUnit4.class)
+public final class StageLatencyTracerTest {
+
+  @Before
+  public void setUp() {
+    StageLatencyTracer.reset();
+  }
+
+  @After
+  public void tearDown() {
+    StageLatencyTracer.setEnabled(false);
+    StageLatencyTracer.reset();
+  }
+
+  @Test
+  public void record_whenDisabled_recordsNothing() {
+    StageLatencyTracer.setEnabled(false);
+
+    StageLatencyTracer.record(StageLatencyTracer.STAGE_EXTRACTOR_READ, /* valueUs= */ 10);
+
+    assertThat(StageLatencyTracer.startTimeNs()).isEqualTo(C.TIME_UNSET);
+    assertThat(
+            StageLatencyTracer.getHistograms()
+                .get(StageLatencyTracer.STAGE_EXTRACTOR_READ)
+                .getCount())
+        .isEqualTo(0);
+  }
+
+  @Test
+  public void record_whenEnabled_recordsIntoStageHistogram() {
+    StageLatencyTracer.setEnabled(true);
+
+    StageLatencyTracer.record(StageLatencyTracer.STAGE_AUDIO_SINK_WRITE, /* valueUs= */ 10);
+    StageLatencyTracer.record(StageLatencyTracer.STAGE_AUDIO_SINK_WRITE, /* valueUs= */ 12);
+
+    ImmutableList<PlaybackStatsHistogram> histograms = StageLatencyTracer.getHistograms();
+    assertThat(histograms.get(StageLatencyTracer.STAGE_AUDIO_SINK_WRITE).getCount()).isEqualTo(2);
+    assertThat(histograms.get(StageLatencyTracer.STAGE_AUDIO_SINK_WRITE).getMax()).isEqualTo(12);
+    assertThat(histograms.get(StageLatencyTracer.STAGE_EXTRACTOR_READ).getCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void recordSince_recordsElapsedTime() {
+    StageLatencyTracer.setEnabled(true);
+
+    long startTimeNs = StageLatencyTracer.startTimeNs();
+    StageLatencyTracer.recordSince(StageLatencyTracer.STAGE_SAMPLE_QUEUE_READ, startTimeNs);
+    StageLatencyTracer.recordSince(StageLatencyTracer.STAGE_SAMPLE_QUEUE_READ, C.TIME_UNSET);
+
+    assertThat(
+            StageLatencyTracer.getHistograms()
+                .get(StageLatencyTracer.STAGE_SAMPLE_QUEUE_READ)
+                .getCount())
+        .isEqualTo(1);
+  }
+
+  @Test
+  public void record_onSeveralThreads_combinesHistograms() throws Exception {
+    StageLatencyTracer.setEnabled(true);
+    Thread thread =
+        new Thread(
+            () -> StageLatencyTracer.record(StageLatencyTracer.STAGE_EXTRACTOR_READ, 100));
+    thread.start();
+    thread.join();
+
+    StageLatencyTracer.record(StageLatencyTracer.STAGE_EXTRACTOR_READ, /* valueUs= */ 5);
+
+    PlaybackStatsHistogram histogram =
+        StageLatencyTracer.getHistograms().get(StageLatencyTracer.STAGE_EXTRACTOR_READ);
+    assertThat(histogram.getCount()).isEqualTo(2);
+    assertThat(histogram.getMin()).isEqualTo(5);
+    assertThat(histogram.getMax()).isEqualTo(100);
+  }
+
+  @Test
+  public void reset_discardsRecordedValues() {
+    StageLatencyTracer.setEnabled(true);
+    StageLatencyTracer.record(StageLatencyTracer.STAGE_DECODER_QUEUE_INPUT, /* valueUs= */ 1);
+
+    StageLatencyTracer.reset();
+    StageLatencyTracer.record(StageLatencyTracer.STAGE_DECODER_QUEUE_INPUT, /* valueUs= */ 2);
+
+    PlaybackStatsHistogram histogram =
+        StageLatencyTracer.getHistograms().get(StageLatencyTracer.STAGE_DECODER_QUEUE_INPUT);
+    assertThat(histogram.getCount()).isEqualTo(1);
+    assertThat(histogram.getMin()).isEqualTo(2);
+  }
+}
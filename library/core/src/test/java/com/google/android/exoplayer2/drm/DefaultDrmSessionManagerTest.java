@@ -752,6 +752,88 @@ public class DefaultDrmSessionManagerTest {
     assertThat(licenseServer.getReceivedProvisionRequests()).hasSize(4);
   }
 
+  @Test(timeout = 10_000)
+  public void prefetchSession_keyRequestReusedByAcquisition() throws Exception {
+    FakeExoMediaDrm.LicenseServer licenseServer =
+        FakeExoMediaDrm.LicenseServer.allowingSchemeDatas(DRM_SCHEME_DATAS);
+    DefaultDrmSessionManager drmSessionManager =
+        new DefaultDrmSessionManager.Builder()
+            .setUuidAndExoMediaDrmProvider(DRM_SCHEME_UUID, uuid -> new FakeExoMediaDrm())
+            .setSessionKeepaliveMs(10_000)
+            .build(/* mediaDrmCallback= */ licenseServer);
+    drmSessionManager.prepare();
+    drmSessionManager.setPlayer(/* playbackLooper= */ Looper.myLooper(), PlayerId.UNSET);
+
+    drmSessionManager.prefetchSession(new DrmInitData(DRM_SCHEME_DATAS));
+    while (licenseServer.getReceivedSchemeDatas().isEmpty()) {
+      // Allow the prefetch and the key request to be handled.
+      ShadowLooper.idleMainLooper();
+    }
+    DrmSession drmSession =
+        checkNotNull(
+            drmSessionManager.acquireSession(
+                /* eventDispatcher= */ null, FORMAT_WITH_DRM_INIT_DATA));
+    waitForOpenedWithKeys(drmSession);
+
+    // The key request was made before the acquisition, and wasn't repeated for it.
+    assertThat(licenseServer.getReceivedSchemeDatas()).containsExactly(DRM_SCHEME_DATAS);
+    drmSession.release(/* eventDispatcher= */ null);
+  }
+
+  @Test
+  public void prefetchSession_keepaliveDisabled_throws() {
+    FakeExoMediaDrm.LicenseServer licenseServer =
+        FakeExoMediaDrm.LicenseServer.allowingSchemeDatas(DRM_SCHEME_DATAS);
+    DefaultDrmSessionManager drmSessionManager =
+        new DefaultDrmSessionManager.Builder()
+            .setUuidAndExoMediaDrmProvider(DRM_SCHEME_UUID, uuid -> new FakeExoMediaDrm())
+            .setSessionKeepaliveMs(C.TIME_UNSET)
+            .build(/* mediaDrmCallback= */ licenseServer);
+    drmSessionManager.prepare();
+    drmSessionManager.setPlayer(/* playbackLooper= */ Looper.myLooper(), PlayerId.UNSET);
+
+    assertThrows(
+        IllegalStateException.class,
+        () -> drmSessionManager.prefetchSession(new DrmInitData(DRM_SCHEME_DATAS)));
+  }
+
+  @Test(timeout = 10_000)
+  public void maxKeepaliveSessionCountExceeded_oldestKeepaliveSessionReleased() throws Exception {
+    ImmutableList<DrmInitData.SchemeData> secondSchemeDatas =
+        ImmutableList.of(DRM_SCHEME_DATAS.get(0).copyWithData(TestUtil.createByteArray(4, 5, 6)));
+    FakeExoMediaDrm.LicenseServer licenseServer =
+        FakeExoMediaDrm.LicenseServer.allowingSchemeDatas(DRM_SCHEME_DATAS, secondSchemeDatas);
+    Format secondFormatWithDrmInitData =
+        new Format.Builder().setDrmInitData(new DrmInitData(secondSchemeDatas)).build();
+    DrmSessionManager drmSessionManager =
+        new DefaultDrmSessionManager.Builder()
+            .setUuidAndExoMediaDrmProvider(DRM_SCHEME_UUID, uuid -> new FakeExoMediaDrm())
+            .setSessionKeepaliveMs(10_000)
+            .setMaxKeepaliveSessionCount(1)
+            .setMultiSession(true)
+            .build(/* mediaDrmCallback= */ licenseServer);
+    drmSessionManager.prepare();
+    drmSessionManager.setPlayer(/* playbackLooper= */ Looper.myLooper(), PlayerId.UNSET);
+    DrmSession firstDrmSession =
+        checkNotNull(
+            drmSessionManager.acquireSession(
+                /* eventDispatcher= */ null, FORMAT_WITH_DRM_INIT_DATA));
+    DrmSession secondDrmSession =
+        checkNotNull(
+            drmSessionManager.acquireSession(
+                /* eventDispatcher= */ null, secondFormatWithDrmInitData));
+    waitForOpenedWithKeys(firstDrmSession);
+    waitForOpenedWithKeys(secondDrmSession);
+
+    firstDrmSession.release(/* eventDispatcher= */ null);
+    assertThat(firstDrmSession.getState()).isEqualTo(DrmSession.STATE_OPENED_WITH_KEYS);
+    secondDrmSession.release(/* eventDispatcher= */ null);
+
+    // Only the most recently released session is kept alive.
+    assertThat(firstDrmSession.getState()).isEqualTo(DrmSession.STATE_RELEASED);
+    assertThat(secondDrmSession.getState()).isEqualTo(DrmSession.STATE_OPENED_WITH_KEYS);
+  }
+
   @Test
   public void managerNotPrepared_acquireSessionAndPreacquireSessionFail() throws Exception {
     FakeExoMediaDrm.LicenseServer licenseServer =
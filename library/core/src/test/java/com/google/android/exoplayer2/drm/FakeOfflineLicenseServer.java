@@ -0,0 +1,137 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.drm;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.drm.ExoMediaDrm.KeyRequest;
+import com.google.android.exoplayer2.drm.ExoMediaDrm.ProvisionRequest;
+import com.google.common.collect.ImmutableMap;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Supplies {@link OfflineLicenseHelper} instances whose key requests are answered by a fake
+ * license server, on top of a mocked {@link ExoMediaDrm}.
+ *
+ * <p>Renewing a license returns the same key set id, with a license duration of {@link
+ * #LICENSE_DURATION_SEC}. Renewals of chosen key set ids can be blocked until {@link
+ * #unblockRenewals()} is called.
+ */
+/* package */ final class FakeOfflineLicenseServer {
+
+  /** The remaining duration of every license, in seconds. */
+  public static final long LICENSE_DURATION_SEC = 1000;
+
+  private static final long BLOCKED_RENEWAL_TIMEOUT_SEC = 10;
+
+  private final ExoMediaDrm mediaDrm;
+  private final MediaDrmCallback mediaDrmCallback;
+  private final AtomicInteger sessionCount;
+  private final Map<String, byte[]> keySetIdsBySessionId;
+  private final Set<String> blockedKeySetIds;
+  private final CountDownLatch unblockLatch;
+
+  public FakeOfflineLicenseServer() throws Exception {
+    sessionCount = new AtomicInteger();
+    keySetIdsBySessionId = new ConcurrentHashMap<>();
+    blockedKeySetIds = ConcurrentHashMap.newKeySet();
+    unblockLatch = new CountDownLatch(1);
+    mediaDrm = mock(ExoMediaDrm.class);
+    when(mediaDrm.openSession())
+        .thenAnswer(invocation -> new byte[] {(byte) sessionCount.incrementAndGet()});
+    doAnswer(
+            invocation -> {
+              byte[] sessionId = invocation.getArgument(0);
+              byte[] keySetId = invocation.getArgument(1);
+              keySetIdsBySessionId.put(Arrays.toString(sessionId), keySetId);
+              return null;
+            })
+        .when(mediaDrm)
+        .restoreKeys(any(), any());
+    // The request data identifies the license being renewed.
+    when(mediaDrm.getKeyRequest(any(), any(), anyInt(), any()))
+        .thenAnswer(
+            invocation -> {
+              byte[] scope = invocation.getArgument(0);
+              byte[] keySetId = keySetIdsBySessionId.get(Arrays.toString(scope));
+              return new KeyRequest(
+                  keySetId != null ? keySetId : scope,
+                  /* licenseServerUrl= */ "",
+                  KeyRequest.REQUEST_TYPE_INITIAL);
+            });
+    when(mediaDrm.provideKeyResponse(any(), any()))
+        .thenAnswer(invocation -> invocation.getArgument(1));
+    when(mediaDrm.queryKeyStatus(any()))
+        .thenReturn(
+            ImmutableMap.of(
+                WidevineUtil.PROPERTY_LICENSE_DURATION_REMAINING,
+                Long.toString(LICENSE_DURATION_SEC),
+                WidevineUtil.PROPERTY_PLAYBACK_DURATION_REMAINING,
+                Long.toString(LICENSE_DURATION_SEC)));
+    mediaDrmCallback =
+        new MediaDrmCallback() {
+          @Override
+          public byte[] executeProvisionRequest(UUID uuid, ProvisionRequest request) {
+            throw new UnsupportedOperationException();
+          }
+
+          @Override
+          public byte[] executeKeyRequest(UUID uuid, KeyRequest request) {
+            byte[] keySetId = request.getData();
+            if (blockedKeySetIds.contains(Arrays.toString(keySetId))) {
+              try {
+                unblockLatch.await(BLOCKED_RENEWAL_TIMEOUT_SEC, TimeUnit.SECONDS);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            }
+            return keySetId;
+          }
+        };
+  }
+
+  /** Blocks renewals of the given key set id until {@link #unblockRenewals()} is called. */
+  public void blockRenewal(byte[] keySetId) {
+    blockedKeySetIds.add(Arrays.toString(keySetId));
+  }
+
+  /** Unblocks all the renewals blocked by {@link #blockRenewal(byte[])}. */
+  public void unblockRenewals() {
+    unblockLatch.countDown();
+  }
+
+  /** Creates an {@link OfflineLicenseHelper} whose key requests are answered by this server. */
+  public OfflineLicenseHelper createOfflineLicenseHelper() {
+    return new OfflineLicenseHelper(
+        new DefaultDrmSessionManager.Builder()
+            .setUuidAndExoMediaDrmProvider(
+                C.WIDEVINE_UUID, new ExoMediaDrm.AppManagedProvider(mediaDrm))
+            .build(mediaDrmCallback),
+        new DrmSessionEventListener.EventDispatcher());
+  }
+}
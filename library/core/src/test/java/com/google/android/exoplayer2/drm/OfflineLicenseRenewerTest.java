@@ -0,0 +1,97 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.drm;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.database.DatabaseIOException;
+import com.google.android.exoplayer2.database.StandaloneDatabaseProvider;
+import com.google.android.exoplayer2.robolectric.RobolectricUtil;
+import com.google.android.exoplayer2.scheduler.Requirements;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link OfflineLicenseRenewer}. */
+@RunWith(AndroidJUnit4.class)
+public class OfflineLicenseRenewerTest {
+
+  private static final long RENEWAL_WINDOW_MS = 60_000;
+
+  private Context context;
+  private StandaloneDatabaseProvider databaseProvider;
+  private OfflineLicenseStore offlineLicenseStore;
+
+  @Before
+  public void setUp() throws Exception {
+    context = ApplicationProvider.getApplicationContext();
+    databaseProvider = new StandaloneDatabaseProvider(context);
+    FakeOfflineLicenseServer licenseServer = new FakeOfflineLicenseServer();
+    offlineLicenseStore =
+        new OfflineLicenseStore(databaseProvider, licenseServer::createOfflineLicenseHelper);
+  }
+
+  @After
+  public void tearDown() {
+    databaseProvider.close();
+  }
+
+  @Test
+  public void start_renewsLicensesExpiringWithinRenewalWindow() throws Exception {
+    long nowMs = System.currentTimeMillis();
+    offlineLicenseStore.putLicense(
+        new OfflineLicenseStore.License("expiring", new byte[] {1}, nowMs + 10_000));
+    long notExpiringTimeMs = nowMs + 10 * RENEWAL_WINDOW_MS;
+    offlineLicenseStore.putLicense(
+        new OfflineLicenseStore.License("notExpiring", new byte[] {2}, notExpiringTimeMs));
+    OfflineLicenseRenewer offlineLicenseRenewer = createOfflineLicenseRenewer();
+
+    try {
+      offlineLicenseRenewer.start();
+      RobolectricUtil.runMainLooperUntil(
+          () -> getExpiryTimeMs("expiring") > nowMs + RENEWAL_WINDOW_MS);
+    } finally {
+      offlineLicenseRenewer.release();
+    }
+
+    assertThat(offlineLicenseStore.getLicense("expiring").keySetId).isEqualTo(new byte[] {1});
+    assertThat(getExpiryTimeMs("notExpiring")).isEqualTo(notExpiringTimeMs);
+  }
+
+  private OfflineLicenseRenewer createOfflineLicenseRenewer() {
+    return new OfflineLicenseRenewer(
+        context,
+        offlineLicenseStore,
+        new Requirements(/* requirements= */ 0),
+        RENEWAL_WINDOW_MS,
+        /* maxLicensesPerBatch= */ 10,
+        /* maxParallelRequests= */ 1,
+        /* renewalTimeoutMs= */ 10_000,
+        /* minBatchIntervalMs= */ 60_000);
+  }
+
+  private long getExpiryTimeMs(String id) {
+    try {
+      return offlineLicenseStore.getLicense(id).expiryTimeMs;
+    } catch (DatabaseIOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
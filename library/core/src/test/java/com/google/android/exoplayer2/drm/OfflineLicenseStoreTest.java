@@ -0,0 +1,248 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.drm;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.database.DatabaseIOException;
+import com.google.android.exoplayer2.database.StandaloneDatabaseProvider;
+import com.google.android.exoplayer2.database.VersionTable;
+import com.google.android.exoplayer2.robolectric.RobolectricUtil;
+import com.google.android.exoplayer2.testutil.FakeClock;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link OfflineLicenseStore}. */
+@RunWith(AndroidJUnit4.class)
+public class OfflineLicenseStoreTest {
+
+  private StandaloneDatabaseProvider databaseProvider;
+  private OfflineLicenseStore offlineLicenseStore;
+
+  @Before
+  public void setUp() {
+    databaseProvider = new StandaloneDatabaseProvider(ApplicationProvider.getApplicationContext());
+    offlineLicenseStore =
+        new OfflineLicenseStore(
+            databaseProvider,
+            () -> {
+              throw new UnsupportedOperationException();
+            });
+  }
+
+  @After
+  public void tearDown() {
+    databaseProvider.close();
+  }
+
+  @Test
+  public void getLicense_nonExistingId_returnsNull() throws Exception {
+    assertThat(offlineLicenseStore.getLicense("id")).isNull();
+  }
+
+  @Test
+  public void putLicense_thenGetLicense_returnsLicense() throws Exception {
+    offlineLicenseStore.putLicense(new OfflineLicenseStore.License("id", new byte[] {1, 2}, 1000));
+
+    OfflineLicenseStore.License license = offlineLicenseStore.getLicense("id");
+
+    assertThat(license.id).isEqualTo("id");
+    assertThat(license.keySetId).isEqualTo(new byte[] {1, 2});
+    assertThat(license.expiryTimeMs).isEqualTo(1000);
+  }
+
+  @Test
+  public void putLicense_thenReopenDatabase_returnsLicense() throws Exception {
+    offlineLicenseStore.putLicense(new OfflineLicenseStore.License("id", new byte[] {1, 2}, 1000));
+    databaseProvider.close();
+    databaseProvider = new StandaloneDatabaseProvider(ApplicationProvider.getApplicationContext());
+    OfflineLicenseStore reopenedStore =
+        new OfflineLicenseStore(
+            databaseProvider,
+            () -> {
+              throw new UnsupportedOperationException();
+            });
+
+    OfflineLicenseStore.License license = reopenedStore.getLicense("id");
+
+    assertThat(license.id).isEqualTo("id");
+    assertThat(license.keySetId).isEqualTo(new byte[] {1, 2});
+    assertThat(license.expiryTimeMs).isEqualTo(1000);
+  }
+
+  @Test
+  public void putLicense_existingId_replacesLicense() throws Exception {
+    offlineLicenseStore.putLicense(new OfflineLicenseStore.License("id", new byte[] {1}, 1000));
+    offlineLicenseStore.putLicense(new OfflineLicenseStore.License("id", new byte[] {2}, 2000));
+
+    OfflineLicenseStore.License license = offlineLicenseStore.getLicense("id");
+
+    assertThat(license.keySetId).isEqualTo(new byte[] {2});
+    assertThat(license.expiryTimeMs).isEqualTo(2000);
+  }
+
+  @Test
+  public void removeLicense_removesLicense() throws Exception {
+    offlineLicenseStore.putLicense(new OfflineLicenseStore.License("id", new byte[] {1}, 1000));
+
+    offlineLicenseStore.removeLicense("id");
+
+    assertThat(offlineLicenseStore.getLicense("id")).isNull();
+  }
+
+  @Test
+  public void getLicensesExpiringBefore_returnsExpiringLicensesInExpiryOrder() throws Exception {
+    offlineLicenseStore.putLicense(new OfflineLicenseStore.License("c", new byte[] {3}, 3000));
+    offlineLicenseStore.putLicense(new OfflineLicenseStore.License("a", new byte[] {1}, 1000));
+    offlineLicenseStore.putLicense(new OfflineLicenseStore.License("d", new byte[] {4}, 4000));
+    offlineLicenseStore.putLicense(new OfflineLicenseStore.License("b", new byte[] {2}, 2000));
+    offlineLicenseStore.putLicense(
+        new OfflineLicenseStore.License("unset", new byte[] {5}, C.TIME_UNSET));
+
+    ImmutableList<OfflineLicenseStore.License> licenses =
+        offlineLicenseStore.getLicensesExpiringBefore(/* timeMs= */ 3500, /* maxCount= */ 10);
+
+    assertThat(licenses).hasSize(3);
+    assertThat(licenses.get(0).id).isEqualTo("a");
+    assertThat(licenses.get(1).id).isEqualTo("b");
+    assertThat(licenses.get(2).id).isEqualTo("c");
+  }
+
+  @Test
+  public void getLicensesExpiringBefore_limitsCount() throws Exception {
+    offlineLicenseStore.putLicense(new OfflineLicenseStore.License("b", new byte[] {2}, 2000));
+    offlineLicenseStore.putLicense(new OfflineLicenseStore.License("a", new byte[] {1}, 1000));
+
+    ImmutableList<OfflineLicenseStore.License> licenses =
+        offlineLicenseStore.getLicensesExpiringBefore(Long.MAX_VALUE, /* maxCount= */ 1);
+
+    assertThat(licenses).hasSize(1);
+    assertThat(licenses.get(0).id).isEqualTo("a");
+  }
+
+  @Test
+  public void putLicense_setsVersion() throws Exception {
+    offlineLicenseStore.putLicense(new OfflineLicenseStore.License("id", new byte[] {1}, 1000));
+
+    int version =
+        VersionTable.getVersion(
+            databaseProvider.getReadableDatabase(),
+            VersionTable.FEATURE_OFFLINE_LICENSES,
+            /* instanceUid= */ "");
+    assertThat(version).isEqualTo(OfflineLicenseStore.TABLE_VERSION);
+  }
+
+  @Test
+  public void differentNames_licensesAreIsolated() throws Exception {
+    OfflineLicenseStore otherStore =
+        new OfflineLicenseStore(
+            databaseProvider,
+            "other",
+            () -> {
+              throw new UnsupportedOperationException();
+            });
+    offlineLicenseStore.putLicense(new OfflineLicenseStore.License("id", new byte[] {1}, 1000));
+
+    assertThat(otherStore.getLicense("id")).isNull();
+  }
+
+  @Test
+  public void renewLicenses_storesRenewedLicenses() throws Exception {
+    FakeOfflineLicenseServer licenseServer = new FakeOfflineLicenseServer();
+    FakeClock clock = new FakeClock(/* initialTimeMs= */ 10_000);
+    OfflineLicenseStore store =
+        new OfflineLicenseStore(
+            databaseProvider,
+            /* name= */ "",
+            licenseServer::createOfflineLicenseHelper,
+            clock);
+    OfflineLicenseStore.License licenseA =
+        new OfflineLicenseStore.License("a", new byte[] {1}, 1000);
+    OfflineLicenseStore.License licenseB =
+        new OfflineLicenseStore.License("b", new byte[] {2}, 2000);
+    store.putLicense(licenseA);
+    store.putLicense(licenseB);
+
+    ImmutableMap<String, OfflineLicenseStore.License> renewedLicenses =
+        store.renewLicenses(ImmutableList.of(licenseA, licenseB), /* maxParallelRequests= */ 2);
+
+    long expectedExpiryTimeMs =
+        clock.currentTimeMillis() + FakeOfflineLicenseServer.LICENSE_DURATION_SEC * 1000;
+    assertThat(renewedLicenses.keySet()).containsExactly("a", "b");
+    assertThat(store.getLicense("a").keySetId).isEqualTo(new byte[] {1});
+    assertThat(store.getLicense("a").expiryTimeMs).isEqualTo(expectedExpiryTimeMs);
+    assertThat(store.getLicense("b").keySetId).isEqualTo(new byte[] {2});
+    assertThat(store.getLicense("b").expiryTimeMs).isEqualTo(expectedExpiryTimeMs);
+  }
+
+  @Test
+  public void renewLicenses_slowRenewal_timesOutWithoutHoldingUpOtherLicenses() throws Exception {
+    FakeOfflineLicenseServer licenseServer = new FakeOfflineLicenseServer();
+    // Robolectric's SystemClock doesn't advance while the test thread waits, so timeouts are
+    // measured against the real time.
+    FakeClock clock =
+        new FakeClock(/* initialTimeMs= */ 0) {
+          @Override
+          public synchronized long elapsedRealtime() {
+            return System.nanoTime() / 1_000_000;
+          }
+        };
+    OfflineLicenseStore store =
+        new OfflineLicenseStore(
+            databaseProvider,
+            /* name= */ "",
+            licenseServer::createOfflineLicenseHelper,
+            clock);
+    OfflineLicenseStore.License slowLicense =
+        new OfflineLicenseStore.License("slow", new byte[] {1}, 1000);
+    OfflineLicenseStore.License fastLicense =
+        new OfflineLicenseStore.License("fast", new byte[] {2}, 2000);
+    store.putLicense(slowLicense);
+    store.putLicense(fastLicense);
+    licenseServer.blockRenewal(slowLicense.keySetId);
+
+    ImmutableMap<String, OfflineLicenseStore.License> renewedLicenses;
+    try {
+      renewedLicenses =
+          store.renewLicenses(
+              ImmutableList.of(slowLicense, fastLicense),
+              /* maxParallelRequests= */ 1,
+              /* timeoutMs= */ 500);
+    } finally {
+      licenseServer.unblockRenewals();
+    }
+
+    assertThat(renewedLicenses.keySet()).containsExactly("fast");
+    assertThat(store.getLicense("fast").expiryTimeMs).isGreaterThan(2000);
+    // The abandoned renewal completes in the background once it's unblocked.
+    RobolectricUtil.runMainLooperUntil(() -> getExpiryTimeMs(store, "slow") > 1000);
+  }
+
+  private static long getExpiryTimeMs(OfflineLicenseStore store, String id) {
+    try {
+      return store.getLicense(id).expiryTimeMs;
+    } catch (DatabaseIOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
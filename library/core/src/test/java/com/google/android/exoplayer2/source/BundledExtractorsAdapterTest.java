@@ -0,0 +1,150 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorInput;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.mp4.Mp4Extractor;
+import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.ByteArrayDataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link BundledExtractorsAdapter}. */
+@RunWith(AndroidJUnit4.class)
+public final class BundledExtractorsAdapterTest {
+
+  private static final String MP4_FILE_PATH = "media/mp4/sample.mp4";
+
+  @Test
+  public void init_passesPeekedDataFromStartOfInputToFactory() throws Exception {
+    byte[] data = TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), MP4_FILE_PATH);
+    List<byte[]> peekedDataList = new ArrayList<>();
+    ExtractorsFactory extractorsFactory =
+        new ExtractorsFactory() {
+          @Override
+          public Extractor[] createExtractors() {
+            return new Extractor[] {new Mp4Extractor()};
+          }
+
+          @Override
+          public Extractor[] createExtractors(
+              Uri uri,
+              Map<String, List<String>> responseHeaders,
+              byte[] peekedData,
+              int peekedDataLength) {
+            peekedDataList.add(Arrays.copyOf(peekedData, peekedDataLength));
+            return createExtractors();
+          }
+        };
+    BundledExtractorsAdapter bundledExtractorsAdapter =
+        new BundledExtractorsAdapter(extractorsFactory);
+
+    init(bundledExtractorsAdapter, data);
+
+    assertThat(peekedDataList).hasSize(1);
+    byte[] peekedData = peekedDataList.get(0);
+    assertThat(peekedData.length).isGreaterThan(0);
+    assertThat(peekedData).isEqualTo(Arrays.copyOf(data, peekedData.length));
+    assertThat(bundledExtractorsAdapter.getCurrentInputPosition()).isEqualTo(0);
+  }
+
+  @Test
+  public void init_withCustomFactory_sniffsExtractorsInFactoryOrder() throws Exception {
+    byte[] data = TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), MP4_FILE_PATH);
+    List<RecordingExtractor> sniffedExtractors = new ArrayList<>();
+    RecordingExtractor firstExtractor =
+        new RecordingExtractor(/* sniffResult= */ false, sniffedExtractors);
+    RecordingExtractor secondExtractor =
+        new RecordingExtractor(/* sniffResult= */ true, sniffedExtractors);
+    Mp4Extractor mp4Extractor = new Mp4Extractor();
+    BundledExtractorsAdapter bundledExtractorsAdapter =
+        new BundledExtractorsAdapter(
+            () -> new Extractor[] {firstExtractor, secondExtractor, mp4Extractor});
+
+    init(bundledExtractorsAdapter, data);
+
+    // The MP4 signature must not move the Mp4Extractor ahead of the factory's own ordering.
+    assertThat(sniffedExtractors).containsExactly(firstExtractor, secondExtractor).inOrder();
+    assertThat(firstExtractor.initialized).isFalse();
+    assertThat(secondExtractor.initialized).isTrue();
+  }
+
+  private static void init(BundledExtractorsAdapter bundledExtractorsAdapter, byte[] data)
+      throws IOException {
+    ByteArrayDataSource dataSource = new ByteArrayDataSource(data);
+    dataSource.open(new DataSpec(Uri.EMPTY));
+    bundledExtractorsAdapter.init(
+        dataSource,
+        Uri.EMPTY,
+        /* responseHeaders= */ ImmutableMap.of(),
+        /* position= */ 0,
+        /* length= */ data.length,
+        new FakeExtractorOutput());
+  }
+
+  private static final class RecordingExtractor implements Extractor {
+
+    private final boolean sniffResult;
+    private final List<RecordingExtractor> sniffedExtractors;
+
+    private boolean initialized;
+
+    private RecordingExtractor(boolean sniffResult, List<RecordingExtractor> sniffedExtractors) {
+      this.sniffResult = sniffResult;
+      this.sniffedExtractors = sniffedExtractors;
+    }
+
+    @Override
+    public boolean sniff(ExtractorInput input) {
+      sniffedExtractors.add(this);
+      return sniffResult;
+    }
+
+    @Override
+    public void init(ExtractorOutput output) {
+      initialized = true;
+    }
+
+    @Override
+    public int read(ExtractorInput input, PositionHolder seekPosition) {
+      return C.RESULT_END_OF_INPUT;
+    }
+
+    @Override
+    public void seek(long position, long timeUs) {}
+
+    @Override
+    public void release() {}
+  }
+}
@@ -27,9 +27,14 @@ import com.google.android.exoplayer2.drm.DrmSessionEventListener;
 import com.google.android.exoplayer2.drm.DrmSessionManager;
 import com.google.android.exoplayer2.extractor.mp4.Mp4Extractor;
 import com.google.android.exoplayer2.source.MediaSource.MediaPeriodId;
+import com.google.android.exoplayer2.trackselection.ExoTrackSelection;
+import com.google.android.exoplayer2.trackselection.FixedTrackSelection;
 import com.google.android.exoplayer2.upstream.AssetDataSource;
 import com.google.android.exoplayer2.upstream.DefaultAllocator;
 import com.google.android.exoplayer2.upstream.DefaultLoadErrorHandlingPolicy;
+import com.google.android.exoplayer2.util.MimeTypes;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.Test;
@@ -53,6 +58,15 @@ public final class ProgressiveMediaPeriodTest {
         new MediaParserExtractorAdapter(PlayerId.UNSET));
   }
 
+  @Test
+  public void loadWithDisabledTrack_doesNotBufferSamplesOfDisabledTrack() throws TimeoutException {
+    long bytesAllocatedWithAllTracks = loadToEndAndGetBytesAllocated(/* enableAudio= */ true);
+    long bytesAllocatedWithoutAudio = loadToEndAndGetBytesAllocated(/* enableAudio= */ false);
+
+    // The audio track of the sample has 9529 bytes of sample data.
+    assertThat(bytesAllocatedWithAllTracks - bytesAllocatedWithoutAudio).isAtLeast(8 * 1024);
+  }
+
   private static void testExtractorsUpdatesSourceInfoBeforeOnPreparedCallback(
       ProgressiveMediaExtractor extractor) throws TimeoutException {
     AtomicBoolean sourceInfoRefreshCalled = new AtomicBoolean(false);
@@ -96,4 +110,67 @@ public final class ProgressiveMediaPeriodTest {
 
     assertThat(sourceInfoRefreshCalledBeforeOnPrepared.get()).isTrue();
   }
+
+  private static long loadToEndAndGetBytesAllocated(boolean enableAudio)
+      throws TimeoutException {
+    MediaPeriodId mediaPeriodId = new MediaPeriodId(/* periodUid= */ new Object());
+    DefaultAllocator allocator =
+        new DefaultAllocator(/* trimOnReset= */ true, /* individualAllocationSize= */ 1024);
+    ProgressiveMediaPeriod mediaPeriod =
+        new ProgressiveMediaPeriod(
+            Uri.parse("asset://android_asset/media/mp4/sample.mp4"),
+            new AssetDataSource(ApplicationProvider.getApplicationContext()),
+            new BundledExtractorsAdapter(Mp4Extractor.FACTORY),
+            DrmSessionManager.DRM_UNSUPPORTED,
+            new DrmSessionEventListener.EventDispatcher()
+                .withParameters(/* windowIndex= */ 0, mediaPeriodId),
+            new DefaultLoadErrorHandlingPolicy(),
+            new MediaSourceEventListener.EventDispatcher()
+                .withParameters(/* windowIndex= */ 0, mediaPeriodId),
+            (durationUs, isSeekable, isLive) -> {},
+            allocator,
+            /* customCacheKey= */ null,
+            /* continueLoadingCheckIntervalBytes= */ 1);
+    AtomicBoolean prepared = new AtomicBoolean();
+    AtomicBoolean tracksSelected = new AtomicBoolean();
+    mediaPeriod.prepare(
+        new MediaPeriod.Callback() {
+          @Override
+          public void onPrepared(MediaPeriod mediaPeriod) {
+            prepared.set(true);
+          }
+
+          @Override
+          public void onContinueLoadingRequested(MediaPeriod source) {
+            // Only continue loading after the track selection, so that samples are loaded with it.
+            if (tracksSelected.get()) {
+              source.continueLoading(/* positionUs= */ 0);
+            }
+          }
+        },
+        /* positionUs= */ 0);
+    runMainLooperUntil(prepared::get);
+
+    TrackGroupArray trackGroups = mediaPeriod.getTrackGroups();
+    List<ExoTrackSelection> selections = new ArrayList<>();
+    for (int i = 0; i < trackGroups.length; i++) {
+      TrackGroup trackGroup = trackGroups.get(i);
+      if (enableAudio || !MimeTypes.isAudio(trackGroup.getFormat(0).sampleMimeType)) {
+        selections.add(new FixedTrackSelection(trackGroup, /* track= */ 0));
+      }
+    }
+    mediaPeriod.selectTracks(
+        selections.toArray(new ExoTrackSelection[0]),
+        /* mayRetainStreamFlags= */ new boolean[selections.size()],
+        /* streams= */ new SampleStream[selections.size()],
+        /* streamResetFlags= */ new boolean[selections.size()],
+        /* positionUs= */ 0);
+    tracksSelected.set(true);
+    mediaPeriod.continueLoading(/* positionUs= */ 0);
+    runMainLooperUntil(() -> mediaPeriod.getBufferedPositionUs() == C.TIME_END_OF_SOURCE);
+
+    long totalBytesAllocated = allocator.getTotalBytesAllocated();
+    mediaPeriod.release();
+    return totalBytesAllocated;
+  }
 }
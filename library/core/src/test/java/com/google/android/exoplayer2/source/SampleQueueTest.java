@@ -188,6 +188,64 @@ public final class SampleQueueTest {
     assertReadNothing(/* formatRequired= */ false);
   }
 
+  @Test
+  public void sampleRunMetadata_increasesCapacity() {
+    int numberOfSamplesToInput = 3 * SampleQueue.SAMPLE_CAPACITY_INCREMENT + 1;
+    long[] timesUs = new long[numberOfSamplesToInput];
+    int[] flags = new int[numberOfSamplesToInput];
+    int[] sizes = new int[numberOfSamplesToInput];
+    for (int i = 0; i < numberOfSamplesToInput; i++) {
+      timesUs[i] = i * 1000;
+      flags[i] = C.BUFFER_FLAG_KEY_FRAME;
+      sizes[i] = 1;
+    }
+    sampleQueue.format(FORMAT_1);
+    writeSample(new byte[1], /* timestampUs= */ -1000, C.BUFFER_FLAG_KEY_FRAME);
+    sampleQueue.sampleData(
+        new ParsableByteArray(numberOfSamplesToInput), /* length= */ numberOfSamplesToInput);
+    sampleQueue.sampleMetadata(numberOfSamplesToInput, timesUs, flags, sizes, /* offset= */ 0);
+
+    assertReadFormat(/* formatRequired= */ false, FORMAT_1);
+    for (int i = -1; i < numberOfSamplesToInput; i++) {
+      assertReadSample(
+          /* timeUs= */ i * 1000,
+          /* isKeyFrame= */ true,
+          /* isDecodeOnly= */ false,
+          /* isEncrypted= */ false,
+          /* sampleData= */ new byte[1],
+          /* offset= */ 0,
+          /* length= */ 1);
+    }
+    assertReadNothing(/* formatRequired= */ false);
+  }
+
+  @Test
+  public void sampleRunMetadata_allSamplesAreSyncSamples_discardsBeforeStartTimeOnWriteSide() {
+    // The format uses a MIME type for which MimeTypes.allSamplesAreSyncSamples() is true.
+    Format format = new Format.Builder().setSampleMimeType(MimeTypes.AUDIO_RAW).build();
+    byte[] data = TestUtil.buildTestData(/* length= */ 8);
+    sampleQueue.setStartTimeUs(2000);
+    sampleQueue.format(format);
+    sampleQueue.sampleData(new ParsableByteArray(data), data.length);
+    sampleQueue.sampleMetadata(
+        /* sampleCount= */ 3,
+        /* timesUs= */ new long[] {0, 1000, 2000},
+        /* flags= */ new int[] {C.BUFFER_FLAG_KEY_FRAME, 0, 0},
+        /* sizes= */ new int[] {2, 2, 2},
+        /* offset= */ 2);
+
+    assertReadFormat(/* formatRequired= */ false, format);
+    assertReadSample(
+        /* timeUs= */ 2000,
+        /* isKeyFrame= */ true,
+        /* isDecodeOnly= */ false,
+        /* isEncrypted= */ false,
+        data,
+        /* offset= */ 4,
+        /* length= */ 2);
+    assertReadNothing(/* formatRequired= */ false);
+  }
+
   @Test
   public void resetReleasesAllocations() {
     writeTestData();
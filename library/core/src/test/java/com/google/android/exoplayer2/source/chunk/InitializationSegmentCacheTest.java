@@ -0,0 +1,123 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.chunk;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.testutil.FakeDataSet;
+import com.google.android.exoplayer2.testutil.FakeDataSource;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceUtil;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link InitializationSegmentCache}. */
+@RunWith(AndroidJUnit4.class)
+public final class InitializationSegmentCacheTest {
+
+  private static final Uri INIT_URI = Uri.parse("https://test.test/init.mp4");
+
+  @Test
+  public void createDataSource_secondLoad_isServedFromCache() throws Exception {
+    byte[] initData = TestUtil.buildTestData(/* length= */ 100);
+    FakeDataSource upstream = new FakeDataSource(new FakeDataSet().setData(INIT_URI, initData));
+    InitializationSegmentCache cache = new InitializationSegmentCache(/* maxSizeBytes= */ 1000);
+    DataSource dataSource = cache.createDataSource(upstream);
+    DataSpec dataSpec = new DataSpec(INIT_URI);
+
+    byte[] firstLoadData = readFully(dataSource, dataSpec);
+    upstream.getAndClearOpenedDataSpecs();
+    byte[] secondLoadData = readFully(dataSource, dataSpec);
+
+    assertThat(firstLoadData).isEqualTo(initData);
+    assertThat(secondLoadData).isEqualTo(initData);
+    assertThat(upstream.getAndClearOpenedDataSpecs()).isEmpty();
+    assertThat(cache.getSizeBytes()).isEqualTo(100);
+  }
+
+  @Test
+  public void createDataSource_differentByteRanges_areCachedSeparately() throws Exception {
+    byte[] initData = TestUtil.buildTestData(/* length= */ 100);
+    FakeDataSource upstream = new FakeDataSource(new FakeDataSet().setData(INIT_URI, initData));
+    InitializationSegmentCache cache = new InitializationSegmentCache(/* maxSizeBytes= */ 1000);
+    DataSource dataSource = cache.createDataSource(upstream);
+
+    readFully(dataSource, new DataSpec(INIT_URI, /* position= */ 0, /* length= */ 40));
+    byte[] secondRangeData =
+        readFully(dataSource, new DataSpec(INIT_URI, /* position= */ 40, /* length= */ 60));
+
+    assertThat(secondRangeData).isEqualTo(Arrays.copyOfRange(initData, 40, 100));
+    assertThat(upstream.getAndClearOpenedDataSpecs()).hasLength(2);
+    assertThat(cache.get(new DataSpec(INIT_URI, /* position= */ 0, /* length= */ 40)))
+        .isEqualTo(Arrays.copyOfRange(initData, 0, 40));
+  }
+
+  @Test
+  public void put_exceedingMaxSize_evictsLeastRecentlyUsedEntry() {
+    InitializationSegmentCache cache = new InitializationSegmentCache(/* maxSizeBytes= */ 250);
+    DataSpec dataSpec1 = new DataSpec(Uri.parse("https://test.test/1.mp4"));
+    DataSpec dataSpec2 = new DataSpec(Uri.parse("https://test.test/2.mp4"));
+    DataSpec dataSpec3 = new DataSpec(Uri.parse("https://test.test/3.mp4"));
+
+    cache.put(dataSpec1, new byte[100]);
+    cache.put(dataSpec2, new byte[100]);
+    cache.get(dataSpec1);
+    cache.put(dataSpec3, new byte[100]);
+
+    assertThat(cache.get(dataSpec1)).isNotNull();
+    assertThat(cache.get(dataSpec2)).isNull();
+    assertThat(cache.get(dataSpec3)).isNotNull();
+    assertThat(cache.getSizeBytes()).isEqualTo(200);
+  }
+
+  @Test
+  public void put_largerThanMaxSize_isNotCached() {
+    InitializationSegmentCache cache = new InitializationSegmentCache(/* maxSizeBytes= */ 50);
+    DataSpec dataSpec = new DataSpec(INIT_URI);
+
+    cache.put(dataSpec, new byte[100]);
+
+    assertThat(cache.get(dataSpec)).isNull();
+    assertThat(cache.getSizeBytes()).isEqualTo(0);
+  }
+
+  @Test
+  public void setMaxSizeBytes_toZero_disablesAndClearsCache() {
+    InitializationSegmentCache cache = new InitializationSegmentCache(/* maxSizeBytes= */ 1000);
+    DataSpec dataSpec = new DataSpec(INIT_URI);
+    cache.put(dataSpec, new byte[100]);
+
+    cache.setMaxSizeBytes(0);
+
+    assertThat(cache.isEnabled()).isFalse();
+    assertThat(cache.get(dataSpec)).isNull();
+    assertThat(cache.getSizeBytes()).isEqualTo(0);
+  }
+
+  private static byte[] readFully(DataSource dataSource, DataSpec dataSpec) throws Exception {
+    try {
+      dataSource.open(dataSpec);
+      return DataSourceUtil.readToEnd(dataSource);
+    } finally {
+      dataSource.close();
+    }
+  }
+}
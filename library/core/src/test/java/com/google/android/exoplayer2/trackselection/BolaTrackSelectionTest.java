@@ -0,0 +1,190 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.trackselection;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.source.TrackGroup;
+import com.google.android.exoplayer2.source.chunk.MediaChunkIterator;
+import com.google.android.exoplayer2.testutil.FakeClock;
+import com.google.android.exoplayer2.testutil.FakeMediaChunkIterator;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.util.MimeTypes;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+
+/** Unit test for {@link BolaTrackSelection}. */
+@RunWith(AndroidJUnit4.class)
+public final class BolaTrackSelectionTest {
+
+  private static final long[] CHUNK_TIME_BOUNDARIES_SEC = new long[] {0, 4};
+
+  @Mock private BandwidthMeter mockBandwidthMeter;
+  private FakeClock fakeClock;
+  private Format format1;
+  private Format format2;
+  private Format format3;
+  private TrackGroup trackGroup;
+
+  @Before
+  public void setUp() {
+    initMocks(this);
+    fakeClock = new FakeClock(0);
+    format1 = videoFormat(/* bitrate= */ 500_000);
+    format2 = videoFormat(/* bitrate= */ 1_000_000);
+    format3 = videoFormat(/* bitrate= */ 2_000_000);
+    trackGroup = new TrackGroup(format1, format2, format3);
+  }
+
+  @Test
+  public void initial_updateSelectedTrack_selectsHighestBitrateWithinBandwidthFraction() {
+    when(mockBandwidthMeter.getBitrateEstimate()).thenReturn(2_000_000L);
+
+    BolaTrackSelection trackSelection = prepareTrackSelection();
+
+    assertThat(trackSelection.getSelectedFormat()).isEqualTo(format2);
+    assertThat(trackSelection.getSelectionReason()).isEqualTo(C.SELECTION_REASON_INITIAL);
+  }
+
+  @Test
+  public void updateSelectedTrack_belowMinBufferForBola_usesBandwidthEstimate() {
+    when(mockBandwidthMeter.getBitrateEstimate()).thenReturn(2_000_000L);
+    BolaTrackSelection trackSelection = prepareTrackSelection();
+
+    when(mockBandwidthMeter.getBitrateEstimate()).thenReturn(3_000_000L);
+    updateSelectedTrack(trackSelection, /* bufferedDurationMs= */ 5_000, nominalIterators());
+
+    assertThat(trackSelection.getSelectedFormat()).isEqualTo(format3);
+    assertThat(trackSelection.getSelectionReason()).isEqualTo(C.SELECTION_REASON_ADAPTIVE);
+  }
+
+  @Test
+  public void updateSelectedTrack_withIncreasingBuffer_increasesQuality() {
+    when(mockBandwidthMeter.getBitrateEstimate()).thenReturn(10_000_000L);
+    BolaTrackSelection trackSelection = prepareTrackSelection();
+
+    updateSelectedTrack(trackSelection, /* bufferedDurationMs= */ 12_000, nominalIterators());
+    Format formatAt12s = trackSelection.getSelectedFormat();
+    updateSelectedTrack(trackSelection, /* bufferedDurationMs= */ 16_000, nominalIterators());
+    Format formatAt16s = trackSelection.getSelectedFormat();
+
+    assertThat(formatAt12s).isEqualTo(format2);
+    assertThat(formatAt16s).isEqualTo(format3);
+  }
+
+  @Test
+  public void updateSelectedTrack_doesNotSwitchUpAboveSustainableBandwidth() {
+    when(mockBandwidthMeter.getBitrateEstimate()).thenReturn(800_000L);
+    BolaTrackSelection trackSelection = prepareTrackSelection();
+    assertThat(trackSelection.getSelectedFormat()).isEqualTo(format1);
+
+    updateSelectedTrack(trackSelection, /* bufferedDurationMs= */ 16_000, nominalIterators());
+
+    assertThat(trackSelection.getSelectedFormat()).isEqualTo(format1);
+  }
+
+  @Test
+  public void updateSelectedTrack_previousTrackExcluded_doesNotKeepPreviousTrack() {
+    when(mockBandwidthMeter.getBitrateEstimate()).thenReturn(10_000_000L);
+    BolaTrackSelection trackSelection = prepareTrackSelection();
+    updateSelectedTrack(trackSelection, /* bufferedDurationMs= */ 14_000, nominalIterators());
+    assertThat(trackSelection.getSelectedFormat()).isEqualTo(format2);
+
+    // BOLA prefers the 2 Mbps track at a 16s buffer, but the bandwidth estimate only sustains the
+    // 0.5 Mbps track. The 1 Mbps track must not be kept as it's excluded.
+    trackSelection.blacklist(trackSelection.indexOf(format2), /* exclusionDurationMs= */ 60_000);
+    when(mockBandwidthMeter.getBitrateEstimate()).thenReturn(1_000_000L);
+    updateSelectedTrack(trackSelection, /* bufferedDurationMs= */ 16_000, nominalIterators());
+
+    assertThat(trackSelection.getSelectedFormat()).isEqualTo(format1);
+    assertThat(trackSelection.getSelectionReason()).isEqualTo(C.SELECTION_REASON_ADAPTIVE);
+  }
+
+  @Test
+  public void updateSelectedTrack_usesChunkSizesFromIterators() {
+    when(mockBandwidthMeter.getBitrateEstimate()).thenReturn(10_000_000L);
+    BolaTrackSelection trackSelection = prepareTrackSelection();
+
+    // With nominal sizes, the 1 Mbps track is selected at a 14s buffer.
+    updateSelectedTrack(trackSelection, /* bufferedDurationMs= */ 14_000, nominalIterators());
+    assertThat(trackSelection.getSelectedFormat()).isEqualTo(format2);
+
+    // The next chunk of the 2 Mbps track is only as large as the chunk of the 1 Mbps track, so it's
+    // selected instead. Iterators are ordered by decreasing bitrate.
+    MediaChunkIterator[] iterators =
+        new MediaChunkIterator[] {
+          chunkIterator(/* chunkLength= */ 500_000),
+          chunkIterator(/* chunkLength= */ 500_000),
+          chunkIterator(/* chunkLength= */ 250_000)
+        };
+    updateSelectedTrack(trackSelection, /* bufferedDurationMs= */ 14_000, iterators);
+    assertThat(trackSelection.getSelectedFormat()).isEqualTo(format3);
+  }
+
+  private BolaTrackSelection prepareTrackSelection() {
+    BolaTrackSelection trackSelection =
+        new BolaTrackSelection(
+            trackGroup,
+            /* tracks= */ new int[] {0, 1, 2},
+            TrackSelection.TYPE_UNSET,
+            mockBandwidthMeter,
+            BolaTrackSelection.DEFAULT_MIN_BUFFER_FOR_BOLA_MS,
+            BolaTrackSelection.DEFAULT_STABLE_BUFFER_MS,
+            BolaTrackSelection.DEFAULT_BANDWIDTH_FRACTION,
+            fakeClock);
+    trackSelection.enable();
+    updateSelectedTrack(trackSelection, /* bufferedDurationMs= */ 0, nominalIterators());
+    return trackSelection;
+  }
+
+  private static void updateSelectedTrack(
+      BolaTrackSelection trackSelection,
+      long bufferedDurationMs,
+      MediaChunkIterator[] mediaChunkIterators) {
+    trackSelection.updateSelectedTrack(
+        /* playbackPositionUs= */ 0,
+        /* bufferedDurationUs= */ bufferedDurationMs * 1000,
+        /* availableDurationUs= */ C.TIME_UNSET,
+        /* queue= */ Collections.emptyList(),
+        mediaChunkIterators);
+  }
+
+  /** Returns iterators for 4s chunks whose lengths are unknown. */
+  private static MediaChunkIterator[] nominalIterators() {
+    return new MediaChunkIterator[] {
+      chunkIterator(C.LENGTH_UNSET), chunkIterator(C.LENGTH_UNSET), chunkIterator(C.LENGTH_UNSET)
+    };
+  }
+
+  private static MediaChunkIterator chunkIterator(long chunkLength) {
+    return new FakeMediaChunkIterator(CHUNK_TIME_BOUNDARIES_SEC, new long[] {chunkLength});
+  }
+
+  private static Format videoFormat(int bitrate) {
+    return new Format.Builder()
+        .setSampleMimeType(MimeTypes.VIDEO_H264)
+        .setAverageBitrate(bitrate)
+        .build();
+  }
+}
@@ -35,6 +35,7 @@ import com.google.android.exoplayer2.source.chunk.ChunkExtractor;
 import com.google.android.exoplayer2.source.chunk.ChunkHolder;
 import com.google.android.exoplayer2.source.chunk.ContainerMediaChunk;
 import com.google.android.exoplayer2.source.chunk.InitializationChunk;
+import com.google.android.exoplayer2.source.chunk.InitializationSegmentCache;
 import com.google.android.exoplayer2.source.chunk.MediaChunk;
 import com.google.android.exoplayer2.source.chunk.MediaChunkIterator;
 import com.google.android.exoplayer2.source.chunk.SingleSampleMediaChunk;
@@ -637,6 +638,10 @@ public class DefaultDashChunkSource implements DashChunkSource {
     DataSpec dataSpec =
         DashUtil.buildDataSpec(
             representation, representationHolder.selectedBaseUrl.url, requestUri, /* flags= */ 0);
+    InitializationSegmentCache initSegmentCache = InitializationSegmentCache.getSingletonInstance();
+    if (initSegmentCache.isEnabled()) {
+      dataSource = initSegmentCache.createDataSource(dataSource);
+    }
     return new InitializationChunk(
         dataSource,
         dataSpec,
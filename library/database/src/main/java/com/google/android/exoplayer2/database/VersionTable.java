@@ -47,6 +47,8 @@ public final class VersionTable {
   public static final int FEATURE_CACHE_CONTENT_METADATA = 1;
   /** Version of tables used for cache file metadata. */
   public static final int FEATURE_CACHE_FILE_METADATA = 2;
+  /** Version of tables used for offline DRM licenses. */
+  public static final int FEATURE_OFFLINE_LICENSES = 3;
   /** Version of tables used from external features. */
   public static final int FEATURE_EXTERNAL = 1000;
 
@@ -81,6 +83,7 @@ public final class VersionTable {
     FEATURE_OFFLINE,
     FEATURE_CACHE_CONTENT_METADATA,
     FEATURE_CACHE_FILE_METADATA,
+    FEATURE_OFFLINE_LICENSES,
     FEATURE_EXTERNAL
   })
   private @interface Feature {}
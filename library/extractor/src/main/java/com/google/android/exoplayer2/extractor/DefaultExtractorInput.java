@@ -27,7 +27,13 @@ import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.util.Arrays;
 
-/** An {@link ExtractorInput} that wraps a {@link DataReader}. */
+/**
+ * An {@link ExtractorInput} that wraps a {@link DataReader}.
+ *
+ * <p>If the {@link DataReader} is a {@link SkippableDataReader}, skips of at least its {@link
+ * SkippableDataReader#getMinimumSkipLength() minimum skip length} are delegated to it rather than
+ * read and discarded, provided the length of the stream is known.
+ */
 public final class DefaultExtractorInput implements ExtractorInput {
 
   static {
@@ -92,7 +98,10 @@ public final class DefaultExtractorInput implements ExtractorInput {
   public int skip(int length) throws IOException {
     int bytesSkipped = skipFromPeekBuffer(length);
     if (bytesSkipped == 0) {
-      bytesSkipped = readFromUpstream(scratchSpace, 0, min(length, scratchSpace.length), 0, true);
+      bytesSkipped =
+          skipUpstream(length, /* bytesAlreadySkipped= */ 0)
+              ? length
+              : readFromUpstream(scratchSpace, 0, min(length, scratchSpace.length), 0, true);
     }
     commitBytesRead(bytesSkipped);
     return bytesSkipped;
@@ -101,6 +110,9 @@ public final class DefaultExtractorInput implements ExtractorInput {
   @Override
   public boolean skipFully(int length, boolean allowEndOfInput) throws IOException {
     int bytesSkipped = skipFromPeekBuffer(length);
+    if (bytesSkipped < length && skipUpstream(length, bytesSkipped)) {
+      bytesSkipped = length;
+    }
     while (bytesSkipped < length && bytesSkipped != C.RESULT_END_OF_INPUT) {
       int minLength = min(length, bytesSkipped + scratchSpace.length);
       bytesSkipped =
@@ -265,6 +277,35 @@ public final class DefaultExtractorInput implements ExtractorInput {
     peekBuffer = newPeekBuffer;
   }
 
+  /**
+   * Skips data in the data reader without reading it, if the reader supports it and skipping is
+   * expected to be cheaper than reading. Must only be called when the peek buffer is empty.
+   *
+   * @param length The total number of bytes to skip.
+   * @param bytesAlreadySkipped The number of bytes already skipped from the peek buffer.
+   * @return Whether the remaining data was skipped.
+   * @throws IOException If an error occurs skipping the data.
+   */
+  private boolean skipUpstream(int length, int bytesAlreadySkipped) throws IOException {
+    if (!(dataReader instanceof SkippableDataReader) || streamLength == C.LENGTH_UNSET) {
+      return false;
+    }
+    SkippableDataReader skippableDataReader = (SkippableDataReader) dataReader;
+    long minimumSkipLength = skippableDataReader.getMinimumSkipLength();
+    int bytesToSkip = length - bytesAlreadySkipped;
+    if (minimumSkipLength == C.LENGTH_UNSET
+        || bytesToSkip < minimumSkipLength
+        || position + length >= streamLength) {
+      // Skipping to or past the end of the stream is left to the reads, which detect its end.
+      return false;
+    }
+    if (Thread.interrupted()) {
+      throw new InterruptedIOException();
+    }
+    skippableDataReader.skip(bytesToSkip);
+    return true;
+  }
+
   /**
    * Starts or continues a read from the data reader.
    *
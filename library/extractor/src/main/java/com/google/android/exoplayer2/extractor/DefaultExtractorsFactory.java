@@ -16,6 +16,7 @@
 package com.google.android.exoplayer2.extractor;
 
 import static com.google.android.exoplayer2.util.FileTypes.inferFileTypeFromResponseHeaders;
+import static com.google.android.exoplayer2.util.FileTypes.inferFileTypeFromSignature;
 import static com.google.android.exoplayer2.util.FileTypes.inferFileTypeFromUri;
 
 import android.net.Uri;
@@ -44,6 +45,7 @@ import com.google.android.exoplayer2.extractor.ts.TsPayloadReader;
 import com.google.android.exoplayer2.extractor.wav.WavExtractor;
 import com.google.android.exoplayer2.util.FileTypes;
 import com.google.android.exoplayer2.util.TimestampAdjuster;
+import com.google.android.exoplayer2.util.Util;
 import com.google.common.collect.ImmutableList;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import java.lang.reflect.Constructor;
@@ -342,23 +344,50 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
   @Override
   public synchronized Extractor[] createExtractors(
       Uri uri, Map<String, List<String>> responseHeaders) {
+    return createExtractors(
+        uri, responseHeaders, Util.EMPTY_BYTE_ARRAY, /* peekedDataLength= */ 0);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Extractors for the file type indicated by the signature at the start of the peeked data are
+   * placed first, followed by those for the file types inferred from the response headers and the
+   * {@link Uri}.
+   */
+  @Override
+  public synchronized Extractor[] createExtractors(
+      Uri uri,
+      Map<String, List<String>> responseHeaders,
+      byte[] peekedData,
+      int peekedDataLength) {
     List<Extractor> extractors =
         new ArrayList<>(/* initialCapacity= */ DEFAULT_EXTRACTOR_ORDER.length);
 
+    @FileTypes.Type
+    int signatureInferredFileType = inferFileTypeFromSignature(peekedData, peekedDataLength);
+    if (signatureInferredFileType != FileTypes.UNKNOWN) {
+      addExtractorsForFileType(signatureInferredFileType, extractors);
+    }
+
     @FileTypes.Type
     int responseHeadersInferredFileType = inferFileTypeFromResponseHeaders(responseHeaders);
-    if (responseHeadersInferredFileType != FileTypes.UNKNOWN) {
+    if (responseHeadersInferredFileType != FileTypes.UNKNOWN
+        && responseHeadersInferredFileType != signatureInferredFileType) {
       addExtractorsForFileType(responseHeadersInferredFileType, extractors);
     }
 
     @FileTypes.Type int uriInferredFileType = inferFileTypeFromUri(uri);
     if (uriInferredFileType != FileTypes.UNKNOWN
+        && uriInferredFileType != signatureInferredFileType
         && uriInferredFileType != responseHeadersInferredFileType) {
       addExtractorsForFileType(uriInferredFileType, extractors);
     }
 
     for (int fileType : DEFAULT_EXTRACTOR_ORDER) {
-      if (fileType != responseHeadersInferredFileType && fileType != uriInferredFileType) {
+      if (fileType != signatureInferredFileType
+          && fileType != responseHeadersInferredFileType
+          && fileType != uriInferredFileType) {
         addExtractorsForFileType(fileType, extractors);
       }
     }
@@ -46,8 +46,14 @@ public final class DummyTrackOutput implements TrackOutput {
   public int sampleData(
       DataReader input, int length, boolean allowEndOfInput, @SampleDataPart int sampleDataPart)
       throws IOException {
-    int bytesToSkipByReading = min(readBuffer.length, length);
-    int bytesSkipped = input.read(readBuffer, /* offset= */ 0, bytesToSkipByReading);
+    int bytesSkipped;
+    if (input instanceof ExtractorInput) {
+      // Let the input discard the data, rather than copying it into the read buffer.
+      bytesSkipped = ((ExtractorInput) input).skip(length);
+    } else {
+      int bytesToSkipByReading = min(readBuffer.length, length);
+      bytesSkipped = input.read(readBuffer, /* offset= */ 0, bytesToSkipByReading);
+    }
     if (bytesSkipped == C.RESULT_END_OF_INPUT) {
       if (allowEndOfInput) {
         return C.RESULT_END_OF_INPUT;
@@ -71,4 +77,10 @@ public final class DummyTrackOutput implements TrackOutput {
       @Nullable CryptoData cryptoData) {
     // Do nothing.
   }
+
+  @Override
+  public void sampleMetadata(
+      int sampleCount, long[] timesUs, @C.BufferFlags int[] flags, int[] sizes, int offset) {
+    // Do nothing.
+  }
 }
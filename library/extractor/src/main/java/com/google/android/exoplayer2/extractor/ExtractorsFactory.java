@@ -42,4 +42,26 @@ public interface ExtractorsFactory {
   default Extractor[] createExtractors(Uri uri, Map<String, List<String>> responseHeaders) {
     return createExtractors();
   }
+
+  /**
+   * Returns an array of new {@link Extractor} instances.
+   *
+   * <p>The default implementation ignores the peeked data and returns the same extractors as
+   * {@link #createExtractors(Uri, Map)}.
+   *
+   * @param uri The {@link Uri} of the media to extract.
+   * @param responseHeaders The response headers of the media to extract, or an empty map if there
+   *     are none. The map lookup should be case-insensitive.
+   * @param peekedData An array containing data peeked from the start of the media to extract,
+   *     which may be used to order the extractors.
+   * @param peekedDataLength The number of valid bytes in {@code peekedData}.
+   * @return The {@link Extractor} instances.
+   */
+  default Extractor[] createExtractors(
+      Uri uri,
+      Map<String, List<String>> responseHeaders,
+      byte[] peekedData,
+      int peekedDataLength) {
+    return createExtractors(uri, responseHeaders);
+  }
 }
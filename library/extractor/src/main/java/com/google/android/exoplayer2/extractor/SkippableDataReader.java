@@ -0,0 +1,47 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataReader;
+import java.io.IOException;
+
+/**
+ * A {@link DataReader} that can skip forward in the data stream without reading the skipped data,
+ * for example by reopening its source at the new position.
+ *
+ * <p>{@link DefaultExtractorInput} skips through a reader of this type rather than reading and
+ * discarding the data when the number of bytes to skip is at least {@link
+ * #getMinimumSkipLength()}.
+ */
+public interface SkippableDataReader extends DataReader {
+
+  /**
+   * Returns the minimum number of bytes for which {@link #skip(long)} is expected to be cheaper
+   * than reading and discarding the data, or {@link C#LENGTH_UNSET} if the reader can't skip.
+   */
+  long getMinimumSkipLength();
+
+  /**
+   * Skips {@code length} bytes of the data stream without reading them.
+   *
+   * <p>Callers must ensure that the data stream has at least {@code length} bytes remaining.
+   *
+   * @param length The number of bytes to skip.
+   * @throws IOException If an error occurs skipping the data.
+   */
+  void skip(long length) throws IOException;
+}
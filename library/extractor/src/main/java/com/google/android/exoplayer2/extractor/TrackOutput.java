@@ -206,4 +206,39 @@ public interface TrackOutput {
    */
   void sampleMetadata(
       long timeUs, @C.BufferFlags int flags, int size, int offset, @Nullable CryptoData cryptoData);
+
+  /**
+   * Called when metadata associated with a run of consecutive unencrypted samples has been
+   * extracted from the stream.
+   *
+   * <p>The data of the samples will have already been passed to the output, in order and without
+   * gaps, via calls to {@link #sampleData(DataReader, int, boolean)} or {@link
+   * #sampleData(ParsableByteArray, int)}.
+   *
+   * <p>Calling this method is equivalent to calling {@link #sampleMetadata(long, int, int, int,
+   * CryptoData)} for each sample of the run in order, which is what the default implementation
+   * does. Outputs that store samples may override it to commit the whole run at once.
+   *
+   * @param sampleCount The number of samples in the run.
+   * @param timesUs The media timestamps associated with the samples, in microseconds.
+   * @param flags Flags associated with the samples. See {@code C.BUFFER_FLAG_*}. Must not include
+   *     {@link C#BUFFER_FLAG_ENCRYPTED}.
+   * @param sizes The sizes of the sample data, in bytes.
+   * @param offset The number of bytes that have been passed to {@link #sampleData(DataReader, int,
+   *     boolean)} or {@link #sampleData(ParsableByteArray, int)} since the last byte belonging to
+   *     the last sample of the run.
+   */
+  default void sampleMetadata(
+      int sampleCount, long[] timesUs, @C.BufferFlags int[] flags, int[] sizes, int offset) {
+    int sampleOffset = offset;
+    for (int i = 1; i < sampleCount; i++) {
+      sampleOffset += sizes[i];
+    }
+    for (int i = 0; i < sampleCount; i++) {
+      sampleMetadata(timesUs[i], flags[i], sizes[i], sampleOffset, /* cryptoData= */ null);
+      if (i + 1 < sampleCount) {
+        sampleOffset -= sizes[i + 1];
+      }
+    }
+  }
 }
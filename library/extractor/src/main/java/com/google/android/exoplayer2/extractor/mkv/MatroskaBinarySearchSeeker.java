@@ -0,0 +1,375 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mkv;
+
+import static java.lang.Math.min;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.BinarySearchSeeker;
+import com.google.android.exoplayer2.extractor.ExtractorInput;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import com.google.android.exoplayer2.util.Util;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A {@link SeekMap} implementation for Matroska streams without a Cues element, using binary
+ * search.
+ *
+ * <p>This seeker searches the stream for Cluster elements, and compares their Timecode to the
+ * target time, until it finds the last cluster that starts at or before the target time. Every
+ * cluster that's found is recorded in an in-memory index, which is used to narrow the range of
+ * subsequent searches. Once the index knows the clusters either side of a target time, seeking to
+ * it doesn't require any further reads.
+ */
+/* package */ final class MatroskaBinarySearchSeeker extends BinarySearchSeeker {
+
+  private static final int MINIMUM_SEARCH_RANGE_BYTES = 1024;
+  private static final int TIMESTAMP_SEARCH_BYTES = 128 * 1024;
+  /**
+   * The number of bytes before the estimated position of the target at which searches start, so
+   * that the start of the cluster containing the target is likely to be in the searched range.
+   */
+  private static final int SEARCH_OFFSET_BYTES = TIMESTAMP_SEARCH_BYTES / 2;
+
+  private final ClusterIndex clusterIndex;
+  private final long durationUs;
+  private final long firstClusterPosition;
+  private final long ceilingBytePosition;
+
+  /**
+   * Creates an instance.
+   *
+   * @param timecodeScale The timecode scale of the segment, in nanoseconds.
+   * @param durationUs The duration of the stream in microseconds.
+   * @param firstClusterPosition The position of the first Cluster element in the stream.
+   * @param ceilingBytePosition The position after the last Cluster element in the stream.
+   */
+  public MatroskaBinarySearchSeeker(
+      long timecodeScale, long durationUs, long firstClusterPosition, long ceilingBytePosition) {
+    this(new ClusterIndex(), timecodeScale, durationUs, firstClusterPosition, ceilingBytePosition);
+  }
+
+  private MatroskaBinarySearchSeeker(
+      ClusterIndex clusterIndex,
+      long timecodeScale,
+      long durationUs,
+      long firstClusterPosition,
+      long ceilingBytePosition) {
+    super(
+        new DefaultSeekTimestampConverter(),
+        new ClusterTimecodeSeeker(clusterIndex, timecodeScale),
+        durationUs,
+        /* floorTimePosition= */ 0,
+        /* ceilingTimePosition= */ durationUs + 1,
+        /* floorBytePosition= */ firstClusterPosition,
+        ceilingBytePosition,
+        /* approxBytesPerFrame= */ SEARCH_OFFSET_BYTES,
+        MINIMUM_SEARCH_RANGE_BYTES);
+    this.clusterIndex = clusterIndex;
+    this.durationUs = durationUs;
+    this.firstClusterPosition = firstClusterPosition;
+    this.ceilingBytePosition = ceilingBytePosition;
+  }
+
+  /**
+   * Records a cluster that was read by the extractor in the index.
+   *
+   * @param position The position of the Cluster element.
+   * @param timeUs The time of the cluster, in microseconds.
+   * @param nextClusterPosition The position after the Cluster element, or {@link C#INDEX_UNSET}
+   *     if unknown.
+   */
+  public void addCluster(long position, long timeUs, long nextClusterPosition) {
+    if (nextClusterPosition > ceilingBytePosition) {
+      // The cluster has an unknown size.
+      nextClusterPosition = C.INDEX_UNSET;
+    }
+    clusterIndex.add(position, timeUs, nextClusterPosition);
+  }
+
+  @Override
+  protected SeekOperationParams createSeekParamsForTargetTimeUs(long timeUs) {
+    long floorTimeUs = 0;
+    long floorPosition = firstClusterPosition;
+    long ceilingTimeUs = durationUs + 1;
+    long ceilingPosition = ceilingBytePosition;
+    @Nullable IndexedCluster floorCluster = clusterIndex.getFloorCluster(timeUs);
+    if (floorCluster != null) {
+      floorTimeUs = floorCluster.timeUs;
+      floorPosition = floorCluster.position;
+    }
+    @Nullable IndexedCluster ceilingCluster = clusterIndex.getCeilingCluster(timeUs);
+    if (ceilingCluster != null) {
+      ceilingTimeUs = ceilingCluster.timeUs;
+      ceilingPosition = ceilingCluster.position;
+    }
+    if (floorCluster != null && floorCluster.nextClusterPosition == ceilingPosition) {
+      // The target is in a cluster whose position is already known. Collapse the search range so
+      // that the seek completes without reading from the input.
+      ceilingPosition = floorPosition;
+    }
+    return new ClusterSeekOperationParams(
+        timeUs, floorTimeUs, ceilingTimeUs, floorPosition, ceilingPosition);
+  }
+
+  /** The parameters of a search for the cluster containing a time, within a known range. */
+  private static final class ClusterSeekOperationParams extends SeekOperationParams {
+
+    public ClusterSeekOperationParams(
+        long timeUs,
+        long floorTimeUs,
+        long ceilingTimeUs,
+        long floorPosition,
+        long ceilingPosition) {
+      super(
+          timeUs,
+          /* targetTimePosition= */ timeUs,
+          floorTimeUs,
+          ceilingTimeUs,
+          floorPosition,
+          ceilingPosition,
+          /* approxBytesPerFrame= */ SEARCH_OFFSET_BYTES);
+    }
+  }
+
+  /**
+   * A seeker that looks for the Cluster element containing a given time at a given position in a
+   * Matroska stream.
+   *
+   * <p>Given a target time and a position within the stream, this seeker will peek up to {@link
+   * #TIMESTAMP_SEARCH_BYTES} bytes from that position, look for consecutive clusters in that range,
+   * and compare their times to the target time. Clusters whose size is known are skipped without
+   * scanning their content.
+   */
+  private static final class ClusterTimecodeSeeker implements TimestampSeeker {
+
+    private static final int ID_CLUSTER = 0x1F43B675;
+    private static final int ID_TIME_CODE = 0xE7;
+    private static final int ID_CRC32 = 0xBF;
+    private static final int CRC32_ELEMENT_SIZE = 6;
+    private static final int MAX_TIME_CODE_SIZE = 8;
+
+    private final ClusterIndex clusterIndex;
+    private final long timecodeScale;
+    private final ParsableByteArray buffer;
+
+    // Cluster header parsing results.
+    private long clusterTimecode;
+    private int clusterHeaderSize;
+    private long clusterSize;
+
+    private ClusterTimecodeSeeker(ClusterIndex clusterIndex, long timecodeScale) {
+      this.clusterIndex = clusterIndex;
+      this.timecodeScale = timecodeScale;
+      buffer = new ParsableByteArray();
+    }
+
+    @Override
+    public TimestampSearchResult searchForTimestamp(ExtractorInput input, long targetTimeUs)
+        throws IOException {
+      long searchPosition = input.getPosition();
+      int bytesToSearch = (int) min(TIMESTAMP_SEARCH_BYTES, input.getLength() - searchPosition);
+      buffer.reset(bytesToSearch);
+      input.peekFully(buffer.getData(), /* offset= */ 0, bytesToSearch);
+      byte[] data = buffer.getData();
+
+      @Nullable IndexedCluster lastCluster = null;
+      int offset = 0;
+      while (offset < bytesToSearch) {
+        if (!parseClusterHeader(data, offset, bytesToSearch)) {
+          offset++;
+          continue;
+        }
+        long position = searchPosition + offset;
+        long timeUs = Util.scaleLargeTimestamp(clusterTimecode, timecodeScale, 1000);
+        if (lastCluster != null && lastCluster.nextClusterPosition == C.INDEX_UNSET) {
+          // The bytes between the two clusters have been scanned, so they're consecutive.
+          lastCluster.nextClusterPosition = position;
+        }
+        long nextClusterPosition =
+            clusterSize == C.LENGTH_UNSET ? C.INDEX_UNSET : position + clusterSize;
+        IndexedCluster cluster = clusterIndex.add(position, timeUs, nextClusterPosition);
+        if (timeUs > targetTimeUs) {
+          if (lastCluster != null) {
+            // Last cluster time <= target time < this cluster time.
+            return TimestampSearchResult.targetFoundResult(lastCluster.position);
+          }
+          @Nullable IndexedCluster floorCluster = clusterIndex.getFloorCluster(targetTimeUs);
+          if (floorCluster != null && floorCluster.nextClusterPosition == position) {
+            // The cluster before this one is known, and contains the target time.
+            return TimestampSearchResult.targetFoundResult(floorCluster.position);
+          }
+          return TimestampSearchResult.overestimatedResult(timeUs, searchPosition);
+        }
+        lastCluster = cluster;
+        if (nextClusterPosition != C.INDEX_UNSET) {
+          // Skip the content of the cluster.
+          long nextClusterOffset = nextClusterPosition - searchPosition;
+          if (nextClusterOffset >= bytesToSearch) {
+            break;
+          }
+          offset = (int) nextClusterOffset;
+        } else {
+          offset += clusterHeaderSize;
+        }
+      }
+
+      if (lastCluster == null) {
+        // No cluster starts in the searched range, so the search position is most likely in the
+        // cluster containing the target. Search before it. The time at the search position is
+        // unknown, so the ceiling time is set just after the target time.
+        return TimestampSearchResult.overestimatedResult(targetTimeUs + 1, searchPosition);
+      } else if (lastCluster.position == searchPosition) {
+        // The cluster at the search position is the floor of the search range, and the next
+        // cluster is outside of the searched range. Continue from this cluster.
+        return TimestampSearchResult.targetFoundResult(lastCluster.position);
+      } else {
+        return TimestampSearchResult.underestimatedResult(lastCluster.timeUs, lastCluster.position);
+      }
+    }
+
+    @Override
+    public void onSeekFinished() {
+      buffer.reset(Util.EMPTY_BYTE_ARRAY);
+    }
+
+    /**
+     * Parses the header of a Cluster element, up to and including its Timecode element, from
+     * {@code data}. If successful, the results are stored in {@link #clusterTimecode}, {@link
+     * #clusterHeaderSize} and {@link #clusterSize}.
+     *
+     * @param data The data to parse.
+     * @param offset The offset in {@code data} at which the Cluster element may start.
+     * @param limit The limit of valid data in {@code data}.
+     * @return Whether a Cluster element header was parsed.
+     */
+    private boolean parseClusterHeader(byte[] data, int offset, int limit) {
+      if (offset + 5 > limit || readInt(data, offset) != ID_CLUSTER) {
+        return false;
+      }
+      int position = offset + 4;
+      int sizeLength = VarintReader.parseUnsignedVarintLength(data[position] & 0xFF);
+      if (sizeLength == C.LENGTH_UNSET || position + sizeLength > limit) {
+        return false;
+      }
+      long size = readVarint(data, position, sizeLength);
+      boolean unknownSize = size == (1L << (7 * sizeLength)) - 1;
+      position += sizeLength;
+      int contentOffset = position;
+      if (position + CRC32_ELEMENT_SIZE <= limit
+          && (data[position] & 0xFF) == ID_CRC32
+          && (data[position + 1] & 0xFF) == 0x84) {
+        position += CRC32_ELEMENT_SIZE;
+      }
+      // The Timecode element must precede any blocks, and is written first by muxers.
+      if (position + 2 > limit || (data[position] & 0xFF) != ID_TIME_CODE) {
+        return false;
+      }
+      position++;
+      int timecodeSizeLength = VarintReader.parseUnsignedVarintLength(data[position] & 0xFF);
+      if (timecodeSizeLength == C.LENGTH_UNSET || position + timecodeSizeLength > limit) {
+        return false;
+      }
+      long timecodeSize = readVarint(data, position, timecodeSizeLength);
+      position += timecodeSizeLength;
+      if (timecodeSize > MAX_TIME_CODE_SIZE || position + timecodeSize > limit) {
+        return false;
+      }
+      long timecode = 0;
+      for (int i = 0; i < timecodeSize; i++) {
+        timecode = (timecode << 8) | (data[position++] & 0xFF);
+      }
+      clusterTimecode = timecode;
+      clusterHeaderSize = position - offset;
+      clusterSize = unknownSize ? C.LENGTH_UNSET : contentOffset - offset + size;
+      return true;
+    }
+
+    private static int readInt(byte[] data, int offset) {
+      return (data[offset] & 0xFF) << 24
+          | (data[offset + 1] & 0xFF) << 16
+          | (data[offset + 2] & 0xFF) << 8
+          | (data[offset + 3] & 0xFF);
+    }
+
+    private static long readVarint(byte[] data, int offset, int length) {
+      long value = data[offset] & ((1 << (8 - length)) - 1);
+      for (int i = 1; i < length; i++) {
+        value = (value << 8) | (data[offset + i] & 0xFF);
+      }
+      return value;
+    }
+  }
+
+  /** An in-memory index of the clusters found in the stream, keyed by time. */
+  private static final class ClusterIndex {
+
+    private final TreeMap<Long, IndexedCluster> clustersByTimeUs;
+
+    public ClusterIndex() {
+      clustersByTimeUs = new TreeMap<>();
+    }
+
+    /** Adds a cluster to the index, or updates it if it's already indexed, and returns it. */
+    public IndexedCluster add(long position, long timeUs, long nextClusterPosition) {
+      @Nullable IndexedCluster cluster = clustersByTimeUs.get(timeUs);
+      if (cluster == null || cluster.position != position) {
+        cluster = new IndexedCluster(position, timeUs);
+        clustersByTimeUs.put(timeUs, cluster);
+      }
+      if (nextClusterPosition != C.INDEX_UNSET) {
+        cluster.nextClusterPosition = nextClusterPosition;
+      }
+      return cluster;
+    }
+
+    /** Returns the last indexed cluster at or before {@code timeUs}, or null if there is none. */
+    @Nullable
+    public IndexedCluster getFloorCluster(long timeUs) {
+      @Nullable Map.Entry<Long, IndexedCluster> entry = clustersByTimeUs.floorEntry(timeUs);
+      return entry != null ? entry.getValue() : null;
+    }
+
+    /** Returns the first indexed cluster after {@code timeUs}, or null if there is none. */
+    @Nullable
+    public IndexedCluster getCeilingCluster(long timeUs) {
+      @Nullable Map.Entry<Long, IndexedCluster> entry = clustersByTimeUs.higherEntry(timeUs);
+      return entry != null ? entry.getValue() : null;
+    }
+  }
+
+  private static final class IndexedCluster {
+
+    public final long position;
+    public final long timeUs;
+
+    /**
+     * The position of the next cluster, or of the end of the clusters, or {@link C#INDEX_UNSET} if
+     * unknown.
+     */
+    public long nextClusterPosition;
+
+    public IndexedCluster(long position, long timeUs) {
+      this.position = position;
+      this.timeUs = timeUs;
+      nextClusterPosition = C.INDEX_UNSET;
+    }
+  }
+}
@@ -82,15 +82,15 @@ public class MatroskaExtractor implements Extractor {
   public static final ExtractorsFactory FACTORY = () -> new Extractor[] {new MatroskaExtractor()};
 
   /**
-   * Flags controlling the behavior of the extractor. Possible flag value is {@link
-   * #FLAG_DISABLE_SEEK_FOR_CUES}.
+   * Flags controlling the behavior of the extractor. Possible flag values are {@link
+   * #FLAG_DISABLE_SEEK_FOR_CUES} and {@link #FLAG_ENABLE_CLUSTER_SEEKING}.
    */
   @Documented
   @Retention(RetentionPolicy.SOURCE)
   @Target(TYPE_USE)
   @IntDef(
       flag = true,
-      value = {FLAG_DISABLE_SEEK_FOR_CUES})
+      value = {FLAG_DISABLE_SEEK_FOR_CUES, FLAG_ENABLE_CLUSTER_SEEKING})
   public @interface Flags {}
   /**
    * Flag to disable seeking for cues.
@@ -101,6 +101,15 @@ public class MatroskaExtractor implements Extractor {
    * media is treated as being unseekable.
    */
   public static final int FLAG_DISABLE_SEEK_FOR_CUES = 1;
+  /**
+   * Flag to enable seeking in media without cues by searching for clusters.
+   *
+   * <p>Normally (i.e. when this flag is not set) media without a cues element is treated as being
+   * unseekable. Setting this flag enables seeking in such media if its duration and length are
+   * known, by binary searching the Cluster elements for their timecodes. The positions of the
+   * clusters found are kept in an index, so that repeated seeks need fewer reads.
+   */
+  public static final int FLAG_ENABLE_CLUSTER_SEEKING = 1 << 1;
 
   private static final String TAG = "MatroskaExtractor";
 
@@ -379,6 +388,7 @@ public class MatroskaExtractor implements Extractor {
   private final VarintReader varintReader;
   private final SparseArray<Track> tracks;
   private final boolean seekForCuesEnabled;
+  private final boolean clusterSeekingEnabled;
 
   // Temporary arrays.
   private final ParsableByteArray nalStartCode;
@@ -405,6 +415,10 @@ public class MatroskaExtractor implements Extractor {
   // Whether a seek map has been sent to the output.
   private boolean sentSeekMap;
 
+  // The position of the element being read, and the length of the input.
+  private long elementPosition;
+  private long inputLength = C.LENGTH_UNSET;
+
   // Master seek entry related elements.
   private int seekEntryId;
   private long seekEntryPosition;
@@ -414,9 +428,12 @@ public class MatroskaExtractor implements Extractor {
   private long cuesContentPosition = C.INDEX_UNSET;
   private long seekPositionAfterBuildingCues = C.INDEX_UNSET;
   private long clusterTimecodeUs = C.TIME_UNSET;
+  private long clusterPosition = C.INDEX_UNSET;
+  private long clusterEndPosition = C.INDEX_UNSET;
   @Nullable private LongArray cueTimesUs;
   @Nullable private LongArray cueClusterPositions;
   private boolean seenClusterPositionForCurrentCuePoint;
+  @Nullable private MatroskaBinarySearchSeeker binarySearchSeeker;
 
   // Reading state.
   private boolean haveOutputSample;
@@ -461,6 +478,7 @@ public class MatroskaExtractor implements Extractor {
     this.reader = reader;
     this.reader.init(new InnerEbmlProcessor());
     seekForCuesEnabled = (flags & FLAG_DISABLE_SEEK_FOR_CUES) == 0;
+    clusterSeekingEnabled = (flags & FLAG_ENABLE_CLUSTER_SEEKING) != 0;
     varintReader = new VarintReader();
     tracks = new SparseArray<>();
     scratch = new ParsableByteArray(4);
@@ -490,6 +508,10 @@ public class MatroskaExtractor implements Extractor {
   @Override
   public void seek(long position, long timeUs) {
     clusterTimecodeUs = C.TIME_UNSET;
+    clusterPosition = C.INDEX_UNSET;
+    if (binarySearchSeeker != null) {
+      binarySearchSeeker.setSeekTargetUs(timeUs);
+    }
     blockState = BLOCK_STATE_START;
     reader.reset();
     varintReader.reset();
@@ -506,9 +528,14 @@ public class MatroskaExtractor implements Extractor {
 
   @Override
   public final int read(ExtractorInput input, PositionHolder seekPosition) throws IOException {
+    if (binarySearchSeeker != null && binarySearchSeeker.isSeeking()) {
+      return binarySearchSeeker.handlePendingSeek(input, seekPosition);
+    }
     haveOutputSample = false;
+    inputLength = input.getLength();
     boolean continueReading = true;
     while (continueReading && !haveOutputSample) {
+      elementPosition = input.getPosition();
       continueReading = reader.read(input);
       if (continueReading && maybeSeekForCues(seekPosition, input.getPosition())) {
         return Extractor.RESULT_SEEK;
@@ -675,6 +702,8 @@ public class MatroskaExtractor implements Extractor {
         seenClusterPositionForCurrentCuePoint = false;
         break;
       case ID_CLUSTER:
+        clusterPosition = elementPosition;
+        clusterEndPosition = contentPosition + contentSize;
         if (!sentSeekMap) {
           // We need to build cues before parsing the cluster.
           if (seekForCuesEnabled && cuesContentPosition != C.INDEX_UNSET) {
@@ -682,8 +711,8 @@ public class MatroskaExtractor implements Extractor {
             seekForCues = true;
           } else {
             // We don't know where the Cues element is located. It's most likely omitted. Allow
-            // playback, but disable seeking.
-            extractorOutput.seekMap(new SeekMap.Unseekable(durationUs));
+            // playback, and seek by searching for clusters if enabled.
+            extractorOutput.seekMap(buildSeekMapWithoutCues(clusterPosition));
             sentSeekMap = true;
           }
         }
@@ -961,6 +990,9 @@ public class MatroskaExtractor implements Extractor {
         break;
       case ID_TIME_CODE:
         clusterTimecodeUs = scaleTimecodeToUs(value);
+        if (binarySearchSeeker != null && clusterPosition != C.INDEX_UNSET) {
+          binarySearchSeeker.addCluster(clusterPosition, clusterTimecodeUs, clusterEndPosition);
+        }
         break;
       case ID_BLOCK_DURATION:
         blockDurationUs = scaleTimecodeToUs(value);
@@ -1827,6 +1859,29 @@ public class MatroskaExtractor implements Extractor {
     return new ChunkIndex(sizes, offsets, durationsUs, timesUs);
   }
 
+  /**
+   * Builds a {@link SeekMap} for media without Cues information.
+   *
+   * @param firstClusterPosition The position of the first Cluster element.
+   * @return A {@link SeekMap} that searches for clusters if {@link #FLAG_ENABLE_CLUSTER_SEEKING} is
+   *     set and the duration and length of the media are known, or an unseekable {@link SeekMap}
+   *     otherwise.
+   */
+  private SeekMap buildSeekMapWithoutCues(long firstClusterPosition) {
+    if (!clusterSeekingEnabled
+        || segmentContentPosition == C.INDEX_UNSET
+        || durationUs == C.TIME_UNSET
+        || inputLength == C.LENGTH_UNSET) {
+      return new SeekMap.Unseekable(durationUs);
+    }
+    // The segment may have an unknown size, in which case the stored size is larger than the input.
+    long ceilingBytePosition = min(segmentContentPosition + segmentContentSize, inputLength);
+    binarySearchSeeker =
+        new MatroskaBinarySearchSeeker(
+            timecodeScale, durationUs, firstClusterPosition, ceilingBytePosition);
+    return binarySearchSeeker.getSeekMap();
+  }
+
   /**
    * Updates the position of the holder to Cues element's position if the extractor configuration
    * permits use of master seek entry. After building Cues sets the holder's position back to where
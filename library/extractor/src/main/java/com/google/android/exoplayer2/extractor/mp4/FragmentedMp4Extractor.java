@@ -21,6 +21,7 @@ import static com.google.android.exoplayer2.util.Assertions.checkState;
 import static com.google.android.exoplayer2.util.Util.castNonNull;
 import static com.google.android.exoplayer2.util.Util.nullSafeArrayCopy;
 import static java.lang.Math.max;
+import static java.lang.Math.min;
 import static java.lang.annotation.ElementType.TYPE_USE;
 
 import android.util.Pair;
@@ -128,6 +129,10 @@ public class FragmentedMp4Extractor implements Extractor {
   private static final int STATE_READING_ENCRYPTION_DATA = 2;
   private static final int STATE_READING_SAMPLE_START = 3;
   private static final int STATE_READING_SAMPLE_CONTINUE = 4;
+  private static final int STATE_READING_SAMPLE_RUN = 5;
+
+  /** The maximum number of consecutive samples whose metadata is output in a single batch. */
+  private static final int MAX_SAMPLE_RUN_LENGTH = 64;
 
   // Workarounds.
   private final @Flags int flags;
@@ -145,6 +150,9 @@ public class FragmentedMp4Extractor implements Extractor {
   private final ParsableByteArray nalBuffer;
   private final byte[] scratchBytes;
   private final ParsableByteArray scratch;
+  private final long[] sampleRunTimesUs;
+  private final int[] sampleRunFlags;
+  private final int[] sampleRunSizes;
 
   // Adjusts sample timestamps.
   @Nullable private final TimestampAdjuster timestampAdjuster;
@@ -171,6 +179,7 @@ public class FragmentedMp4Extractor implements Extractor {
   @Nullable private TrackBundle currentTrackBundle;
   private int sampleSize;
   private int sampleBytesWritten;
+  private int sampleRunLength;
   private int sampleCurrentNalBytesRemaining;
   private boolean processSeiNalUnitPayload;
 
@@ -264,6 +273,9 @@ public class FragmentedMp4Extractor implements Extractor {
     nalBuffer = new ParsableByteArray();
     scratchBytes = new byte[16];
     scratch = new ParsableByteArray(scratchBytes);
+    sampleRunTimesUs = new long[MAX_SAMPLE_RUN_LENGTH];
+    sampleRunFlags = new int[MAX_SAMPLE_RUN_LENGTH];
+    sampleRunSizes = new int[MAX_SAMPLE_RUN_LENGTH];
     containerAtoms = new ArrayDeque<>();
     pendingMetadataSampleInfos = new ArrayDeque<>();
     trackBundles = new SparseArray<>();
@@ -1361,6 +1373,9 @@ public class FragmentedMp4Extractor implements Extractor {
       input.skipFully(bytesToSkip);
       currentTrackBundle = trackBundle;
     }
+    if (parserState == STATE_READING_SAMPLE_RUN) {
+      return readSampleRun(input, trackBundle);
+    }
     if (parserState == STATE_READING_SAMPLE_START) {
       sampleSize = trackBundle.getCurrentSampleSize();
 
@@ -1374,6 +1389,15 @@ public class FragmentedMp4Extractor implements Extractor {
         return true;
       }
 
+      int runLength = getSampleRunLength(trackBundle);
+      if (runLength > 1) {
+        sampleRunLength = runLength;
+        sampleSize = trackBundle.getSampleRunSize(runLength);
+        sampleBytesWritten = 0;
+        parserState = STATE_READING_SAMPLE_RUN;
+        return readSampleRun(input, trackBundle);
+      }
+
       if (trackBundle.moovSampleTable.track.sampleTransformation
           == Track.TRANSFORMATION_CEA608_CDAT) {
         sampleSize -= Atom.HEADER_SIZE;
@@ -1485,6 +1509,55 @@ public class FragmentedMp4Extractor implements Extractor {
     return true;
   }
 
+  /**
+   * Returns the number of consecutive samples, starting from the current sample of {@code
+   * trackBundle}, whose data can be copied to the output as is and whose metadata can be output in
+   * a single batch.
+   */
+  private int getSampleRunLength(TrackBundle trackBundle) {
+    Track track = trackBundle.moovSampleTable.track;
+    if (track.nalUnitLengthFieldLength != 0
+        || track.sampleTransformation != Track.TRANSFORMATION_NONE
+        || MimeTypes.AUDIO_AC4.equals(track.format.sampleMimeType)
+        || trackBundle.getEncryptionBoxIfEncrypted() != null
+        || !pendingMetadataSampleInfos.isEmpty()) {
+      return 1;
+    }
+    return min(MAX_SAMPLE_RUN_LENGTH, trackBundle.getRemainingSampleCountInTrackRun());
+  }
+
+  /**
+   * Reads the data of a run of consecutive samples in the current track run, and outputs their
+   * metadata in a single batch.
+   */
+  private boolean readSampleRun(ExtractorInput input, TrackBundle trackBundle) throws IOException {
+    TrackOutput output = trackBundle.output;
+    while (sampleBytesWritten < sampleSize) {
+      int writtenBytes = output.sampleData(input, sampleSize - sampleBytesWritten, false);
+      sampleBytesWritten += writtenBytes;
+    }
+
+    boolean hasNextSample = false;
+    for (int i = 0; i < sampleRunLength; i++) {
+      long sampleTimeUs = trackBundle.getCurrentSamplePresentationTimeUs();
+      if (timestampAdjuster != null) {
+        sampleTimeUs = timestampAdjuster.adjustSampleTimestamp(sampleTimeUs);
+      }
+      sampleRunTimesUs[i] = sampleTimeUs;
+      sampleRunFlags[i] = trackBundle.getCurrentSampleFlags();
+      sampleRunSizes[i] = trackBundle.getCurrentSampleSize();
+      hasNextSample = trackBundle.next();
+    }
+    output.sampleMetadata(
+        sampleRunLength, sampleRunTimesUs, sampleRunFlags, sampleRunSizes, /* offset= */ 0);
+
+    if (!hasNextSample) {
+      currentTrackBundle = null;
+    }
+    parserState = STATE_READING_SAMPLE_START;
+    return true;
+  }
+
   /**
    * Called immediately after outputting a non-metadata sample, to output any pending metadata
    * samples.
@@ -1727,6 +1800,28 @@ public class FragmentedMp4Extractor implements Extractor {
           : fragment.sampleSizeTable[currentSampleIndex];
     }
 
+    /**
+     * Returns the number of samples in the current track run from the current sample onward, or 1
+     * if the current sample is from the sample table.
+     */
+    public int getRemainingSampleCountInTrackRun() {
+      return !currentlyInFragment
+          ? 1
+          : fragment.trunLength[currentTrackRunIndex] - currentSampleInTrackRun;
+    }
+
+    /**
+     * Returns the total size of {@code sampleCount} consecutive samples in the current track run,
+     * starting from the current sample, in bytes.
+     */
+    public int getSampleRunSize(int sampleCount) {
+      int size = 0;
+      for (int i = 0; i < sampleCount; i++) {
+        size += fragment.sampleSizeTable[currentSampleIndex + i];
+      }
+      return size;
+    }
+
     /** Returns the {@link C.BufferFlags} corresponding to the current sample. */
     public @C.BufferFlags int getCurrentSampleFlags() {
       int flags =
@@ -65,23 +65,8 @@ import java.util.Arrays;
     }
 
     while (!populated) {
-      if (currentSegmentIndex < 0) {
-        // We're at the start of a page.
-        if (!pageHeader.skipToNextPage(input) || !pageHeader.populate(input, /* quiet= */ true)) {
-          return false;
-        }
-        int segmentIndex = 0;
-        int bytesToSkip = pageHeader.headerSize;
-        if ((pageHeader.type & 0x01) == 0x01 && packetArray.limit() == 0) {
-          // After seeking, the first packet may be the remainder
-          // part of a continued packet which has to be discarded.
-          bytesToSkip += calculatePacketSize(segmentIndex);
-          segmentIndex += segmentCount;
-        }
-        if (!skipFullyQuietly(input, bytesToSkip)) {
-          return false;
-        }
-        currentSegmentIndex = segmentIndex;
+      if (currentSegmentIndex < 0 && !readPageHeader(input)) {
+        return false;
       }
 
       int size = calculatePacketSize(currentSegmentIndex);
@@ -101,6 +86,68 @@ import java.util.Arrays;
     return true;
   }
 
+  /**
+   * Reads up to the start of the next packet, without reading the packet itself.
+   *
+   * <p>If {@link #getPacketSizeInPage()} then returns the size of the packet, the caller may
+   * consume the packet directly from the input, and must then call {@link #skipPacketInPage()}.
+   * Otherwise the packet must be read by calling {@link #populate(ExtractorInput)}. In case of an
+   * {@code IOException} the caller must call this method again.
+   *
+   * @param input The {@link ExtractorInput} to read data from.
+   * @return {@code true} if the start of a packet was found. {@code false} if the end of the input
+   *     was encountered.
+   * @throws IOException If reading from the input fails.
+   */
+  public boolean readToPacketStart(ExtractorInput input) throws IOException {
+    if (populated) {
+      populated = false;
+      packetArray.reset(/* limit= */ 0);
+    }
+    while (true) {
+      if (currentSegmentIndex < 0 && !readPageHeader(input)) {
+        return false;
+      }
+      if (packetArray.limit() > 0) {
+        // A packet that started on a previous page has been partially read.
+        return true;
+      }
+      if (currentSegmentIndex == pageHeader.pageSegmentCount) {
+        // The page doesn't contain the start of a packet.
+        currentSegmentIndex = C.INDEX_UNSET;
+      } else if (calculatePacketSize(currentSegmentIndex) == 0) {
+        // Skip zero-size packets, as populate(ExtractorInput) does.
+        skipPacketInPage();
+      } else {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Returns the size of the packet at the position set by {@link
+   * #readToPacketStart(ExtractorInput)} if it's entirely contained in the current page, or {@link
+   * C#LENGTH_UNSET} if it continues on the next page.
+   */
+  public int getPacketSizeInPage() {
+    if (packetArray.limit() > 0) {
+      return C.LENGTH_UNSET;
+    }
+    int size = calculatePacketSize(currentSegmentIndex);
+    return pageHeader.laces[currentSegmentIndex + segmentCount - 1] == 255 ? C.LENGTH_UNSET : size;
+  }
+
+  /**
+   * Advances past the packet at the position set by {@link #readToPacketStart(ExtractorInput)},
+   * after its data has been consumed from the input by the caller.
+   */
+  public void skipPacketInPage() {
+    calculatePacketSize(currentSegmentIndex);
+    int segmentIndex = currentSegmentIndex + segmentCount;
+    currentSegmentIndex =
+        segmentIndex == pageHeader.pageSegmentCount ? C.INDEX_UNSET : segmentIndex;
+  }
+
   /**
    * An OGG Packet may span multiple pages. Returns the {@link OggPageHeader} of the last page read,
    * or an empty header if the packet has yet to be populated.
@@ -131,6 +178,33 @@ import java.util.Arrays;
         /* limit= */ packetArray.limit());
   }
 
+  /**
+   * Reads the header of the next page, and skips to the first packet that starts in it.
+   *
+   * @param input The {@link ExtractorInput} to read data from.
+   * @return {@code true} if the page header was read. {@code false} if the end of the input was
+   *     encountered.
+   * @throws IOException If reading from the input fails.
+   */
+  private boolean readPageHeader(ExtractorInput input) throws IOException {
+    if (!pageHeader.skipToNextPage(input) || !pageHeader.populate(input, /* quiet= */ true)) {
+      return false;
+    }
+    int segmentIndex = 0;
+    int bytesToSkip = pageHeader.headerSize;
+    if ((pageHeader.type & 0x01) == 0x01 && packetArray.limit() == 0) {
+      // After seeking, the first packet may be the remainder
+      // part of a continued packet which has to be discarded.
+      bytesToSkip += calculatePacketSize(segmentIndex);
+      segmentIndex += segmentCount;
+    }
+    if (!skipFullyQuietly(input, bytesToSkip)) {
+      return false;
+    }
+    currentSegmentIndex = segmentIndex;
+    return true;
+  }
+
   /**
    * Calculates the size of the packet starting from {@code startSegmentIndex}.
    *
@@ -57,6 +57,12 @@ import org.checkerframework.checker.nullness.qual.EnsuresNonNullIf;
     return convertTimeToGranule(OpusUtil.getPacketDurationUs(packet.getData()));
   }
 
+  @Override
+  protected int getPayloadPrefixLength() {
+    // The duration of a packet is given by its first two bytes.
+    return 2;
+  }
+
   @Override
   @EnsuresNonNullIf(expression = "#3.format", result = false)
   protected boolean readHeaders(ParsableByteArray packet, long position, SetupData setupData)
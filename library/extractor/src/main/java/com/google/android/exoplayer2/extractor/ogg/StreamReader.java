@@ -15,6 +15,8 @@
  */
 package com.google.android.exoplayer2.extractor.ogg;
 
+import static com.google.android.exoplayer2.extractor.ExtractorUtil.peekFullyQuietly;
+import static com.google.android.exoplayer2.extractor.ExtractorUtil.skipFullyQuietly;
 import static com.google.android.exoplayer2.util.Assertions.checkStateNotNull;
 import static com.google.android.exoplayer2.util.Util.castNonNull;
 
@@ -48,6 +50,7 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
   }
 
   private final OggPacket oggPacket;
+  private final ParsableByteArray payloadPrefix;
 
   private @MonotonicNonNull TrackOutput trackOutput;
   private @MonotonicNonNull ExtractorOutput extractorOutput;
@@ -61,9 +64,14 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
   private long lengthOfReadPacket;
   private boolean seekMapSet;
   private boolean formatSet;
+  private int packetBytesRemaining;
+  private int packetSize;
+  private boolean outputPacket;
+  private long packetTimeUs;
 
   public StreamReader() {
     oggPacket = new OggPacket();
+    payloadPrefix = new ParsableByteArray();
     setupData = new SetupData();
   }
 
@@ -88,6 +96,7 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
     }
     targetGranule = -1;
     currentGranule = 0;
+    packetBytesRemaining = 0;
   }
 
   /**
@@ -95,6 +104,7 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
    */
   final void seek(long position, long timeUs) {
     oggPacket.reset();
+    packetBytesRemaining = 0;
     if (position == 0) {
       reset(!seekMapSet);
     } else {
@@ -211,6 +221,23 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
       seekMapSet = true;
     }
 
+    if (packetBytesRemaining > 0) {
+      return continuePacketFromInput(input);
+    }
+
+    if (lengthOfReadPacket == 0 && getPayloadPrefixLength() != C.LENGTH_UNSET) {
+      if (!oggPacket.readToPacketStart(input)) {
+        state = STATE_END_OF_INPUT;
+        return Extractor.RESULT_END_OF_INPUT;
+      }
+      int size = oggPacket.getPacketSizeInPage();
+      if (size != C.LENGTH_UNSET && size >= getPayloadPrefixLength()) {
+        return startPacketFromInput(input, size);
+      }
+      // The packet continues on the next page, or is shorter than the prefix. Read it into the
+      // packet buffer instead.
+    }
+
     if (lengthOfReadPacket > 0 || oggPacket.populate(input)) {
       lengthOfReadPacket = 0;
       ParsableByteArray payload = oggPacket.getPayload();
@@ -219,7 +246,8 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
         // calculate time and send payload data to codec
         long timeUs = convertGranuleToTime(currentGranule);
         trackOutput.sampleData(payload, payload.limit());
-        trackOutput.sampleMetadata(timeUs, C.BUFFER_FLAG_KEY_FRAME, payload.limit(), 0, null);
+        int size = payload.limit() + writePayloadSuffix(trackOutput);
+        trackOutput.sampleMetadata(timeUs, C.BUFFER_FLAG_KEY_FRAME, size, 0, null);
         targetGranule = -1;
       }
       currentGranule += granulesInPacket;
@@ -230,6 +258,62 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
     return Extractor.RESULT_CONTINUE;
   }
 
+  /**
+   * Prepares the packet at the current position of the input, which is entirely contained in the
+   * current page, so that its data can be passed from the input to the track output without being
+   * copied into the packet buffer.
+   */
+  @RequiresNonNull("trackOutput")
+  private int startPacketFromInput(ExtractorInput input, int size) throws IOException {
+    int prefixLength = getPayloadPrefixLength();
+    payloadPrefix.reset(prefixLength);
+    input.resetPeekPosition();
+    byte[] prefixData = payloadPrefix.getData();
+    if (!peekFullyQuietly(input, prefixData, /* offset= */ 0, prefixLength, true)) {
+      state = STATE_END_OF_INPUT;
+      return Extractor.RESULT_END_OF_INPUT;
+    }
+    oggPacket.skipPacketInPage();
+    long granulesInPacket = preparePayload(payloadPrefix);
+    outputPacket = granulesInPacket >= 0 && currentGranule + granulesInPacket >= targetGranule;
+    if (outputPacket) {
+      packetTimeUs = convertGranuleToTime(currentGranule);
+      targetGranule = -1;
+    }
+    currentGranule += granulesInPacket;
+    packetSize = size;
+    packetBytesRemaining = size;
+    return continuePacketFromInput(input);
+  }
+
+  /**
+   * Passes the remaining data of the packet started by {@link #startPacketFromInput(ExtractorInput,
+   * int)} from the input to the track output, or skips it if the packet isn't output.
+   */
+  @RequiresNonNull("trackOutput")
+  private int continuePacketFromInput(ExtractorInput input) throws IOException {
+    if (outputPacket) {
+      int bytesAppended =
+          trackOutput.sampleData(input, packetBytesRemaining, /* allowEndOfInput= */ true);
+      if (bytesAppended == C.RESULT_END_OF_INPUT) {
+        state = STATE_END_OF_INPUT;
+        return Extractor.RESULT_END_OF_INPUT;
+      }
+      packetBytesRemaining -= bytesAppended;
+      if (packetBytesRemaining == 0) {
+        int size = packetSize + writePayloadSuffix(trackOutput);
+        trackOutput.sampleMetadata(packetTimeUs, C.BUFFER_FLAG_KEY_FRAME, size, 0, null);
+      }
+    } else {
+      if (!skipFullyQuietly(input, packetBytesRemaining)) {
+        state = STATE_END_OF_INPUT;
+        return Extractor.RESULT_END_OF_INPUT;
+      }
+      packetBytesRemaining = 0;
+    }
+    return Extractor.RESULT_CONTINUE;
+  }
+
   /**
    * Converts granule value to time.
    *
@@ -259,6 +343,31 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
    */
   protected abstract long preparePayload(ParsableByteArray packet);
 
+  /**
+   * Returns the number of bytes at the start of a payload packet that {@link
+   * #preparePayload(ParsableByteArray)} needs, or {@link C#LENGTH_UNSET} if it needs the whole
+   * packet.
+   *
+   * <p>If set, packets that are entirely contained in a single page are passed from the input to
+   * the {@link TrackOutput} without being copied, and {@link #preparePayload(ParsableByteArray)} is
+   * only passed their first bytes. The default implementation returns {@link C#LENGTH_UNSET}.
+   */
+  protected int getPayloadPrefixLength() {
+    return C.LENGTH_UNSET;
+  }
+
+  /**
+   * Writes data to be appended to the payload packet last prepared by {@link
+   * #preparePayload(ParsableByteArray)}, and returns its length. The default implementation writes
+   * nothing.
+   *
+   * @param trackOutput The {@link TrackOutput} to write the data to.
+   * @return The number of bytes written.
+   */
+  protected int writePayloadSuffix(TrackOutput trackOutput) {
+    return 0;
+  }
+
   /**
    * Checks if the given packet is a header packet and reads it.
    *
@@ -22,6 +22,7 @@ import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.ParserException;
+import com.google.android.exoplayer2.extractor.TrackOutput;
 import com.google.android.exoplayer2.extractor.VorbisUtil;
 import com.google.android.exoplayer2.extractor.VorbisUtil.Mode;
 import com.google.android.exoplayer2.metadata.Metadata;
@@ -36,13 +37,20 @@ import org.checkerframework.checker.nullness.qual.EnsuresNonNullIf;
 /** {@link StreamReader} to extract Vorbis data out of Ogg byte stream. */
 /* package */ final class VorbisReader extends StreamReader {
 
+  private final ParsableByteArray numberOfSamples;
+
   @Nullable private VorbisSetup vorbisSetup;
   private int previousPacketBlockSize;
   private boolean seenFirstAudioPacket;
+  private int samplesInPacket;
 
   @Nullable private VorbisUtil.VorbisIdHeader vorbisIdHeader;
   @Nullable private VorbisUtil.CommentHeader commentHeader;
 
+  public VorbisReader() {
+    numberOfSamples = new ParsableByteArray(/* limit= */ 4);
+  }
+
   public static boolean verifyBitstreamType(ParsableByteArray data) {
     try {
       return VorbisUtil.verifyVorbisHeaderCapturePattern(/* headerType= */ 0x01, data, true);
@@ -81,10 +89,7 @@ import org.checkerframework.checker.nullness.qual.EnsuresNonNullIf;
     int packetBlockSize = decodeBlockSize(packet.getData()[0], checkStateNotNull(vorbisSetup));
     // a packet contains samples produced from overlapping the previous and current frame data
     // (https://www.xiph.org/vorbis/doc/Vorbis_I_spec.html#x1-350001.3.2)
-    int samplesInPacket =
-        seenFirstAudioPacket ? (packetBlockSize + previousPacketBlockSize) / 4 : 0;
-    // codec expects the number of samples appended to audio data
-    appendNumberOfSamples(packet, samplesInPacket);
+    samplesInPacket = seenFirstAudioPacket ? (packetBlockSize + previousPacketBlockSize) / 4 : 0;
 
     // update state in members for next iteration
     seenFirstAudioPacket = true;
@@ -92,6 +97,21 @@ import org.checkerframework.checker.nullness.qual.EnsuresNonNullIf;
     return samplesInPacket;
   }
 
+  @Override
+  protected int getPayloadPrefixLength() {
+    // The packet type and mode are given by the first byte.
+    return 1;
+  }
+
+  @Override
+  protected int writePayloadSuffix(TrackOutput trackOutput) {
+    // codec expects the number of samples appended to audio data
+    numberOfSamples.reset(/* limit= */ 0);
+    appendNumberOfSamples(numberOfSamples, samplesInPacket);
+    trackOutput.sampleData(numberOfSamples, numberOfSamples.limit());
+    return numberOfSamples.limit();
+  }
+
   @Override
   @EnsuresNonNullIf(expression = "#3.format", result = false)
   protected boolean readHeaders(ParsableByteArray packet, long position, SetupData setupData)
@@ -137,6 +137,7 @@ public final class TsExtractor implements Extractor {
   @Nullable private TsPayloadReader id3Reader;
   private int bytesSinceLastSync;
   private int pcrPid;
+  @Nullable private SparseBooleanArray enabledTrackPids;
 
   public TsExtractor() {
     this(/* defaultTsPayloadReaderFlags= */ 0);
@@ -225,6 +226,50 @@ public final class TsExtractor implements Extractor {
     resetPayloadReaders();
   }
 
+  /**
+   * Sets the ids of the tracks whose samples should be output. Packets of elementary streams none
+   * of whose tracks are enabled are discarded right after their header is parsed, without being
+   * passed to a payload reader.
+   *
+   * <p>In {@link #MODE_HLS} this method has no effect, since track ids don't identify elementary
+   * streams in this mode.
+   *
+   * @param enabledTrackIds The ids of the enabled tracks, as passed to {@link
+   *     ExtractorOutput#track(int, int)}, or null to enable all tracks.
+   */
+  public void setEnabledTrackIds(@Nullable int[] enabledTrackIds) {
+    if (mode == MODE_HLS) {
+      return;
+    }
+    @Nullable SparseBooleanArray previousEnabledTrackPids = enabledTrackPids;
+    if (enabledTrackIds == null) {
+      enabledTrackPids = null;
+    } else {
+      SparseBooleanArray enabledTrackPids = new SparseBooleanArray(enabledTrackIds.length);
+      for (int trackId : enabledTrackIds) {
+        // Additional tracks of an elementary stream, such as CEA-608 captions carried in a video
+        // stream, have ids that are congruent to the elementary PID.
+        enabledTrackPids.put(trackId % MAX_PID_PLUS_ONE, true);
+      }
+      this.enabledTrackPids = enabledTrackPids;
+    }
+    if (previousEnabledTrackPids == null) {
+      return;
+    }
+    // Payload readers of re-enabled elementary streams have missed packets, so treat their next
+    // packet as a discontinuity.
+    for (int i = 0; i < trackPids.size(); i++) {
+      int pid = trackPids.keyAt(i);
+      if (!previousEnabledTrackPids.get(pid) && isTrackPidEnabled(pid)) {
+        continuityCounters.delete(pid);
+        @Nullable TsPayloadReader payloadReader = tsPayloadReaders.get(pid);
+        if (payloadReader != null) {
+          payloadReader.seek();
+        }
+      }
+    }
+  }
+
   // Extractor implementation.
 
   @Override
@@ -347,7 +392,7 @@ public final class TsExtractor implements Extractor {
     boolean payloadExists = (tsPacketHeader & 0x10) != 0;
 
     TsPayloadReader payloadReader = payloadExists ? tsPayloadReaders.get(pid) : null;
-    if (payloadReader == null) {
+    if (payloadReader == null || !isTrackPidEnabled(pid)) {
       tsPacketBuffer.setPosition(endOfPacket);
       return RESULT_CONTINUE;
     }
@@ -473,6 +518,12 @@ public final class TsExtractor implements Extractor {
         || !trackPids.get(packetPid, /* valueIfKeyNotFound= */ false); // It's a PSI packet
   }
 
+  private boolean isTrackPidEnabled(int pid) {
+    return enabledTrackPids == null
+        || enabledTrackPids.get(pid)
+        || !trackPids.get(pid, /* valueIfKeyNotFound= */ false); // It's a PSI packet
+  }
+
   private void resetPayloadReaders() {
     trackIds.clear();
     tsPayloadReaders.clear();
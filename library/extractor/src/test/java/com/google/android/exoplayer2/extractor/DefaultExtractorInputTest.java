@@ -392,6 +392,46 @@ public class DefaultExtractorInputTest {
     }
   }
 
+  @Test
+  public void skipFully_withSkippableDataReader_skipsWithoutReading() throws Exception {
+    FakeSkippableDataReader dataReader = new FakeSkippableDataReader(/* minimumSkipLength= */ 4);
+    DefaultExtractorInput input =
+        new DefaultExtractorInput(dataReader, /* position= */ 0, TEST_DATA.length);
+    input.advancePeekPosition(1);
+
+    input.skipFully(5);
+    byte[] target = new byte[1];
+    input.readFully(target, 0, 1);
+
+    assertThat(dataReader.bytesSkipped).isEqualTo(4);
+    assertThat(input.getPosition()).isEqualTo(6);
+    assertThat(target[0]).isEqualTo(TEST_DATA[5]);
+  }
+
+  @Test
+  public void skipFully_withSkippableDataReaderAndShortSkip_readsSkippedData() throws Exception {
+    FakeSkippableDataReader dataReader = new FakeSkippableDataReader(/* minimumSkipLength= */ 4);
+    DefaultExtractorInput input =
+        new DefaultExtractorInput(dataReader, /* position= */ 0, TEST_DATA.length);
+
+    input.skipFully(3);
+
+    assertThat(dataReader.bytesSkipped).isEqualTo(0);
+    assertThat(input.getPosition()).isEqualTo(3);
+  }
+
+  @Test
+  public void skipFully_withSkippableDataReaderToEndOfInput_readsSkippedData() throws Exception {
+    FakeSkippableDataReader dataReader = new FakeSkippableDataReader(/* minimumSkipLength= */ 4);
+    DefaultExtractorInput input =
+        new DefaultExtractorInput(dataReader, /* position= */ 0, TEST_DATA.length);
+
+    input.skipFully(TEST_DATA.length);
+
+    assertThat(dataReader.bytesSkipped).isEqualTo(0);
+    assertThat(input.getPosition()).isEqualTo(TEST_DATA.length);
+  }
+
   @Test
   public void peekMultipleTimes() throws Exception {
     DefaultExtractorInput input = createDefaultExtractorInput();
@@ -640,4 +680,40 @@ public class DefaultExtractorInputTest {
     FakeDataSource testDataSource = buildDataSource();
     return new DefaultExtractorInput(testDataSource, 0, C.LENGTH_UNSET);
   }
+
+  /** A {@link SkippableDataReader} that reads {@link #TEST_DATA} one byte at a time. */
+  private static final class FakeSkippableDataReader implements SkippableDataReader {
+
+    private final long minimumSkipLength;
+
+    public int bytesSkipped;
+    private int position;
+
+    public FakeSkippableDataReader(long minimumSkipLength) {
+      this.minimumSkipLength = minimumSkipLength;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      if (position == TEST_DATA.length) {
+        return RESULT_END_OF_INPUT;
+      }
+      buffer[offset] = TEST_DATA[position++];
+      return 1;
+    }
+
+    @Override
+    public long getMinimumSkipLength() {
+      return minimumSkipLength;
+    }
+
+    @Override
+    public void skip(long length) {
+      position += (int) length;
+      bytesSkipped += (int) length;
+    }
+  }
 }
@@ -119,6 +119,45 @@ public final class DefaultExtractorsFactoryTest {
         .inOrder();
   }
 
+  @Test
+  public void createExtractors_withPeekedData_startsWithExtractorsMatchingSignature() {
+    DefaultExtractorsFactory defaultExtractorsFactory = new DefaultExtractorsFactory();
+    Uri uri = Uri.parse("test.mp3");
+    Map<String, List<String>> responseHeaders = new HashMap<>();
+    responseHeaders.put("Content-Type", Collections.singletonList(MimeTypes.VIDEO_MATROSKA));
+    byte[] peekedData = {0, 0, 0, 0x18, 'f', 't', 'y', 'p', 'i', 's', 'o', 'm'};
+
+    Extractor[] extractors =
+        defaultExtractorsFactory.createExtractors(
+            uri, responseHeaders, peekedData, peekedData.length);
+
+    List<Class<? extends Extractor>> extractorClasses = getExtractorClasses(extractors);
+    assertThat(extractorClasses.subList(0, 2))
+        .containsExactly(Mp4Extractor.class, FragmentedMp4Extractor.class);
+    assertThat(extractorClasses.subList(2, 4))
+        .containsExactly(MatroskaExtractor.class, Mp3Extractor.class)
+        .inOrder();
+    assertThat(extractorClasses).hasSize(defaultExtractorsFactory.createExtractors().length);
+  }
+
+  @Test
+  public void createExtractors_withUnrecognizedPeekedData_keepsHeadersAndUriOrder() {
+    DefaultExtractorsFactory defaultExtractorsFactory = new DefaultExtractorsFactory();
+    Uri uri = Uri.parse("test.mp3");
+    Map<String, List<String>> responseHeaders = new HashMap<>();
+    responseHeaders.put("Content-Type", Collections.singletonList(MimeTypes.VIDEO_MP4));
+    byte[] peekedData = new byte[16];
+
+    Extractor[] extractors =
+        defaultExtractorsFactory.createExtractors(
+            uri, responseHeaders, peekedData, peekedData.length);
+
+    assertThat(getExtractorClasses(extractors))
+        .containsExactlyElementsIn(
+            getExtractorClasses(defaultExtractorsFactory.createExtractors(uri, responseHeaders)))
+        .inOrder();
+  }
+
   private static List<Class<? extends Extractor>> getExtractorClasses(Extractor[] extractors) {
     List<Class<? extends Extractor>> extractorClasses = new ArrayList<>();
     for (Extractor extractor : extractors) {
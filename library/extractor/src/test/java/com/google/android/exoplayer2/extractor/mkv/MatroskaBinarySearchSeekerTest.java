@@ -0,0 +1,168 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mkv;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.testutil.FakeExtractorInput;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link MatroskaBinarySearchSeeker}. */
+@RunWith(AndroidJUnit4.class)
+public final class MatroskaBinarySearchSeekerTest {
+
+  private static final long TIMECODE_SCALE = 1_000_000;
+  private static final int CLUSTER_COUNT = 10;
+  private static final int CLUSTER_DURATION_MS = 1000;
+  private static final int CLUSTER_PAYLOAD_SIZE = 40_000;
+  private static final int FIRST_CLUSTER_POSITION = 100;
+
+  @Test
+  public void seek_withKnownClusterSizes_seeksToClusterContainingTarget() throws IOException {
+    byte[] data = buildClusters(/* knownSizes= */ true);
+    MatroskaBinarySearchSeeker seeker = createSeeker(data);
+    FakeExtractorInput input = new FakeExtractorInput.Builder().setData(data).build();
+
+    assertThat(seek(seeker, input, /* timeUs= */ 4_500_000)).isEqualTo(getClusterPosition(4));
+    assertThat(seek(seeker, input, /* timeUs= */ 0)).isEqualTo(getClusterPosition(0));
+    assertThat(seek(seeker, input, /* timeUs= */ 9_999_000)).isEqualTo(getClusterPosition(9));
+    assertThat(seek(seeker, input, /* timeUs= */ 6_999_999)).isEqualTo(getClusterPosition(6));
+  }
+
+  @Test
+  public void seek_withUnknownClusterSizes_seeksToClusterContainingTarget() throws IOException {
+    byte[] data = buildClusters(/* knownSizes= */ false);
+    MatroskaBinarySearchSeeker seeker = createSeeker(data);
+    FakeExtractorInput input = new FakeExtractorInput.Builder().setData(data).build();
+
+    assertThat(seek(seeker, input, /* timeUs= */ 4_500_000)).isEqualTo(getClusterPosition(4));
+    assertThat(seek(seeker, input, /* timeUs= */ 7_000_000)).isEqualTo(getClusterPosition(7));
+    assertThat(seek(seeker, input, /* timeUs= */ 1_000_000)).isEqualTo(getClusterPosition(1));
+  }
+
+  @Test
+  public void seek_toIndexedCluster_completesWithoutReading() throws IOException {
+    byte[] data = buildClusters(/* knownSizes= */ true);
+    MatroskaBinarySearchSeeker seeker = createSeeker(data);
+    FakeExtractorInput input = new FakeExtractorInput.Builder().setData(data).build();
+    seek(seeker, input, /* timeUs= */ 4_500_000);
+    input.setPosition(0);
+
+    seeker.setSeekTargetUs(4_200_000);
+    PositionHolder positionHolder = new PositionHolder();
+    int result = seeker.handlePendingSeek(input, positionHolder);
+
+    assertThat(result).isEqualTo(Extractor.RESULT_SEEK);
+    assertThat(positionHolder.position).isEqualTo(getClusterPosition(4));
+    assertThat(seeker.isSeeking()).isFalse();
+    assertThat(input.getPosition()).isEqualTo(0);
+  }
+
+  @Test
+  public void seek_toClusterAddedByExtractor_completesWithoutReading() throws IOException {
+    byte[] data = buildClusters(/* knownSizes= */ true);
+    MatroskaBinarySearchSeeker seeker = createSeeker(data);
+    FakeExtractorInput input = new FakeExtractorInput.Builder().setData(data).build();
+    seeker.addCluster(
+        getClusterPosition(2),
+        /* timeUs= */ 2_000_000,
+        /* nextClusterPosition= */ getClusterPosition(3));
+    seeker.addCluster(
+        getClusterPosition(3), /* timeUs= */ 3_000_000, /* nextClusterPosition= */ C.INDEX_UNSET);
+
+    seeker.setSeekTargetUs(2_500_000);
+    PositionHolder positionHolder = new PositionHolder();
+    int result = seeker.handlePendingSeek(input, positionHolder);
+
+    assertThat(result).isEqualTo(Extractor.RESULT_SEEK);
+    assertThat(positionHolder.position).isEqualTo(getClusterPosition(2));
+    assertThat(seeker.isSeeking()).isFalse();
+  }
+
+  private static MatroskaBinarySearchSeeker createSeeker(byte[] data) {
+    return new MatroskaBinarySearchSeeker(
+        TIMECODE_SCALE,
+        /* durationUs= */ CLUSTER_COUNT * CLUSTER_DURATION_MS * 1000L,
+        FIRST_CLUSTER_POSITION,
+        /* ceilingBytePosition= */ data.length);
+  }
+
+  /** Seeks to the given time, and returns the resulting position of the input. */
+  private static long seek(
+      MatroskaBinarySearchSeeker seeker, FakeExtractorInput input, long timeUs)
+      throws IOException {
+    seeker.setSeekTargetUs(timeUs);
+    PositionHolder positionHolder = new PositionHolder();
+    while (seeker.isSeeking()) {
+      if (seeker.handlePendingSeek(input, positionHolder) == Extractor.RESULT_SEEK) {
+        input.setPosition((int) positionHolder.position);
+      }
+    }
+    return input.getPosition();
+  }
+
+  private static long getClusterPosition(int index) {
+    return FIRST_CLUSTER_POSITION + (long) index * getClusterSize();
+  }
+
+  private static int getClusterSize() {
+    // Cluster ID, cluster size, Timecode element and Void element header, and Void payload.
+    return 4 + 8 + 4 + 5 + CLUSTER_PAYLOAD_SIZE;
+  }
+
+  /**
+   * Returns the data of {@link #CLUSTER_COUNT} Cluster elements, each containing a Timecode element
+   * and a Void element, after {@link #FIRST_CLUSTER_POSITION} bytes of padding.
+   */
+  private static byte[] buildClusters(boolean knownSizes) {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    output.write(new byte[FIRST_CLUSTER_POSITION], 0, FIRST_CLUSTER_POSITION);
+    int contentSize = getClusterSize() - 12;
+    for (int i = 0; i < CLUSTER_COUNT; i++) {
+      // Cluster ID and size, as an 8 byte varint.
+      writeBytes(output, 0x1F, 0x43, 0xB6, 0x75, 0x01);
+      for (int shift = 48; shift >= 0; shift -= 8) {
+        output.write(knownSizes ? (int) ((long) contentSize >> shift) & 0xFF : 0xFF);
+      }
+      // Timecode.
+      int timecode = i * CLUSTER_DURATION_MS;
+      writeBytes(output, 0xE7, 0x82, timecode >> 8, timecode & 0xFF);
+      // Void element.
+      writeBytes(
+          output,
+          0xEC,
+          0x10,
+          CLUSTER_PAYLOAD_SIZE >> 16,
+          (CLUSTER_PAYLOAD_SIZE >> 8) & 0xFF,
+          CLUSTER_PAYLOAD_SIZE & 0xFF);
+      output.write(new byte[CLUSTER_PAYLOAD_SIZE], 0, CLUSTER_PAYLOAD_SIZE);
+    }
+    return output.toByteArray();
+  }
+
+  private static void writeBytes(ByteArrayOutputStream output, int... bytes) {
+    for (int value : bytes) {
+      output.write(value);
+    }
+  }
+}
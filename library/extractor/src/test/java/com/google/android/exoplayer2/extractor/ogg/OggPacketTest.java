@@ -20,6 +20,7 @@ import static com.google.common.truth.Truth.assertThat;
 
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.testutil.FakeExtractorInput;
 import com.google.android.exoplayer2.testutil.TestUtil;
 import com.google.android.exoplayer2.util.ParsableByteArray;
@@ -168,6 +169,75 @@ public final class OggPacketTest {
     assertReadEof(input);
   }
 
+  @Test
+  public void readPacketsInPageWithEmptyPage() throws Exception {
+    byte[] firstPacket = TestUtil.buildTestData(8, random);
+    byte[] secondPacket = TestUtil.buildTestData(272, random);
+    byte[] thirdPacket = TestUtil.buildTestData(256, random);
+    byte[] fourthPacket = TestUtil.buildTestData(271, random);
+    FakeExtractorInput input =
+        createInput(
+            getByteArray(
+                ApplicationProvider.getApplicationContext(),
+                "media/ogg/four_packets_with_empty_page"));
+
+    assertReadPacketInPage(input, firstPacket);
+    assertReadPacketInPage(input, secondPacket);
+    assertReadPacketInPage(input, thirdPacket);
+    // Page 1002 is empty, so current page is 1003.
+    assertThat(oggPacket.getPageHeader().pageSequenceNumber).isEqualTo(1003);
+    assertReadPacketInPage(input, fourthPacket);
+
+    assertThat(readToPacketStart(input)).isFalse();
+  }
+
+  @Test
+  public void readPacketInPageDiscardContinuedPacketAtStart() throws Exception {
+    byte[] pageBody = TestUtil.buildTestData(256 + 8);
+    FakeExtractorInput input =
+        createInput(
+            getByteArray(
+                ApplicationProvider.getApplicationContext(),
+                "media/ogg/continued_packet_at_start"));
+
+    // Expect the first partial packet to be discarded.
+    assertReadPacketInPage(input, Arrays.copyOfRange(pageBody, 256, 256 + 8));
+    assertThat(readToPacketStart(input)).isFalse();
+  }
+
+  @Test
+  public void readPacketsInPageSkipsZeroSizedPackets() throws Exception {
+    byte[] firstPacket = TestUtil.buildTestData(8, random);
+    byte[] secondPacket = TestUtil.buildTestData(8, random);
+    byte[] thirdPacket = TestUtil.buildTestData(8, random);
+    FakeExtractorInput input =
+        createInput(
+            getByteArray(
+                ApplicationProvider.getApplicationContext(),
+                "media/ogg/zero_sized_packets_at_end_of_stream"));
+
+    assertReadPacketInPage(input, firstPacket);
+    assertReadPacketInPage(input, secondPacket);
+    assertReadPacketInPage(input, thirdPacket);
+    assertThat(readToPacketStart(input)).isFalse();
+  }
+
+  @Test
+  public void readPacketInPageWithContinuedPacket_fallsBackToPopulate() throws Exception {
+    byte[] firstPacket = TestUtil.buildTestData(518);
+    FakeExtractorInput input =
+        createInput(
+            getByteArray(
+                ApplicationProvider.getApplicationContext(),
+                "media/ogg/continued_packet_over_two_pages"));
+
+    assertThat(readToPacketStart(input)).isTrue();
+    assertThat(oggPacket.getPacketSizeInPage()).isEqualTo(C.LENGTH_UNSET);
+
+    assertReadPacket(input, firstPacket);
+    assertReadEof(input);
+  }
+
   @Test
   public void parseRealFile() throws IOException {
     byte[] data = TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), TEST_FILE);
@@ -195,10 +265,37 @@ public final class OggPacketTest {
     assertThat(Arrays.copyOf(payload.getData(), payload.limit())).isEqualTo(expected);
   }
 
+  private void assertReadPacketInPage(FakeExtractorInput input, byte[] expected)
+      throws IOException {
+    assertThat(readToPacketStart(input)).isTrue();
+    assertThat(oggPacket.getPacketSizeInPage()).isEqualTo(expected.length);
+    byte[] packet = new byte[expected.length];
+    while (true) {
+      try {
+        input.readFully(packet, /* offset= */ 0, packet.length);
+        break;
+      } catch (FakeExtractorInput.SimulatedIOException e) {
+        // Ignore.
+      }
+    }
+    oggPacket.skipPacketInPage();
+    assertThat(packet).isEqualTo(expected);
+  }
+
   private void assertReadEof(FakeExtractorInput extractorInput) throws IOException {
     assertThat(readPacket(extractorInput)).isFalse();
   }
 
+  private boolean readToPacketStart(FakeExtractorInput input) throws IOException {
+    while (true) {
+      try {
+        return oggPacket.readToPacketStart(input);
+      } catch (FakeExtractorInput.SimulatedIOException e) {
+        // Ignore.
+      }
+    }
+  }
+
   private boolean readPacket(FakeExtractorInput input) throws IOException {
     while (true) {
       try {
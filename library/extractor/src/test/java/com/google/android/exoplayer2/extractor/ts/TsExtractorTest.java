@@ -146,6 +146,36 @@ public final class TsExtractorTest {
         TsExtractor::new, "media/ts/sample_with_junk", simulationConfig);
   }
 
+  @Test
+  public void setEnabledTrackIds_skipsElementaryStreamsOfDisabledTracks() throws Exception {
+    TsExtractor tsExtractor = new TsExtractor();
+    FakeExtractorInput input =
+        new FakeExtractorInput.Builder()
+            .setData(
+                TestUtil.getByteArray(
+                    ApplicationProvider.getApplicationContext(),
+                    "media/ts/sample_h264_mpeg_audio.ts"))
+            .setSimulateIOErrors(false)
+            .setSimulateUnknownLength(false)
+            .setSimulatePartialReads(false)
+            .build();
+    FakeExtractorOutput output = new FakeExtractorOutput();
+    tsExtractor.init(output);
+
+    tsExtractor.setEnabledTrackIds(new int[] {256 /* Video PID. */});
+    PositionHolder seekPositionHolder = new PositionHolder();
+    int readResult = Extractor.RESULT_CONTINUE;
+    while (readResult != Extractor.RESULT_END_OF_INPUT) {
+      readResult = tsExtractor.read(input, seekPositionHolder);
+      if (readResult == Extractor.RESULT_SEEK) {
+        input.setPosition((int) seekPositionHolder.position);
+      }
+    }
+
+    assertThat(output.trackOutputs.get(256).getSampleCount()).isEqualTo(2);
+    assertThat(output.trackOutputs.get(257).getSampleCount()).isEqualTo(0);
+  }
+
   @Test
   public void customPesReader() throws Exception {
     CustomTsPayloadReaderFactory factory = new CustomTsPayloadReaderFactory(true, false);
@@ -55,10 +55,11 @@ import java.lang.annotation.Documented;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
+import java.util.RandomAccess;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
 /** Source of Hls (possibly adaptive) chunks. */
@@ -688,6 +689,9 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
    * Returns a list with all segment bases in the playlist starting from {@code mediaSequence} and
    * {@code partIndex} in the given playlist. The list may be empty if the starting point is not in
    * the playlist.
+   *
+   * <p>The returned list is a view of the playlist's immutable segment and part lists, so creating
+   * it takes constant time regardless of the playlist size.
    */
   @VisibleForTesting
   /* package */ static List<HlsMediaPlaylist.SegmentBase> getSegmentBaseList(
@@ -697,35 +701,35 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
       // The first media sequence is not in the playlist.
       return ImmutableList.of();
     }
-    List<HlsMediaPlaylist.SegmentBase> segmentBases = new ArrayList<>();
+    List<? extends HlsMediaPlaylist.SegmentBase> firstSegmentParts = ImmutableList.of();
+    List<? extends HlsMediaPlaylist.SegmentBase> segments = ImmutableList.of();
+    List<? extends HlsMediaPlaylist.SegmentBase> trailingParts = ImmutableList.of();
     if (firstSegmentIndexInPlaylist < playlist.segments.size()) {
       if (partIndex != C.INDEX_UNSET) {
         // The iterator starts with a part that belongs to a segment.
         Segment firstSegment = playlist.segments.get(firstSegmentIndexInPlaylist);
         if (partIndex == 0) {
           // Use the full segment instead of the first part.
-          segmentBases.add(firstSegment);
+          firstSegmentParts = ImmutableList.of(firstSegment);
         } else if (partIndex < firstSegment.parts.size()) {
           // Add the parts from the first requested segment.
-          segmentBases.addAll(firstSegment.parts.subList(partIndex, firstSegment.parts.size()));
+          firstSegmentParts = firstSegment.parts.subList(partIndex, firstSegment.parts.size());
         }
         firstSegmentIndexInPlaylist++;
       }
       partIndex = 0;
       // Add all remaining segments.
-      segmentBases.addAll(
-          playlist.segments.subList(firstSegmentIndexInPlaylist, playlist.segments.size()));
+      segments = playlist.segments.subList(firstSegmentIndexInPlaylist, playlist.segments.size());
     }
 
     if (playlist.partTargetDurationUs != C.TIME_UNSET) {
       // That's a low latency playlist.
       partIndex = partIndex == C.INDEX_UNSET ? 0 : partIndex;
       if (partIndex < playlist.trailingParts.size()) {
-        segmentBases.addAll(
-            playlist.trailingParts.subList(partIndex, playlist.trailingParts.size()));
+        trailingParts = playlist.trailingParts.subList(partIndex, playlist.trailingParts.size());
       }
     }
-    return Collections.unmodifiableList(segmentBases);
+    return new SegmentBaseListView(firstSegmentParts, segments, trailingParts);
   }
 
   /** Returns whether this chunk source obtains chunks for the playlist with the given url. */
@@ -925,6 +929,44 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     }
   }
 
+  /** An unmodifiable list that concatenates three lists of segment bases without copying them. */
+  private static final class SegmentBaseListView extends AbstractList<HlsMediaPlaylist.SegmentBase>
+      implements RandomAccess {
+
+    private final List<? extends HlsMediaPlaylist.SegmentBase> firstSegmentParts;
+    private final List<? extends HlsMediaPlaylist.SegmentBase> segments;
+    private final List<? extends HlsMediaPlaylist.SegmentBase> trailingParts;
+
+    public SegmentBaseListView(
+        List<? extends HlsMediaPlaylist.SegmentBase> firstSegmentParts,
+        List<? extends HlsMediaPlaylist.SegmentBase> segments,
+        List<? extends HlsMediaPlaylist.SegmentBase> trailingParts) {
+      this.firstSegmentParts = firstSegmentParts;
+      this.segments = segments;
+      this.trailingParts = trailingParts;
+    }
+
+    @Override
+    public HlsMediaPlaylist.SegmentBase get(int index) {
+      if (index < 0 || index >= size()) {
+        throw new IndexOutOfBoundsException();
+      }
+      if (index < firstSegmentParts.size()) {
+        return firstSegmentParts.get(index);
+      }
+      index -= firstSegmentParts.size();
+      if (index < segments.size()) {
+        return segments.get(index);
+      }
+      return trailingParts.get(index - segments.size());
+    }
+
+    @Override
+    public int size() {
+      return firstSegmentParts.size() + segments.size() + trailingParts.size();
+    }
+  }
+
   private static final class EncryptionKeyChunk extends DataChunk {
 
     private byte @MonotonicNonNull [] result;
@@ -22,12 +22,14 @@ import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.analytics.PlayerId;
+import com.google.android.exoplayer2.analytics.StageLatencyTracer;
 import com.google.android.exoplayer2.drm.DrmInitData;
 import com.google.android.exoplayer2.extractor.DefaultExtractorInput;
 import com.google.android.exoplayer2.extractor.ExtractorInput;
 import com.google.android.exoplayer2.metadata.Metadata;
 import com.google.android.exoplayer2.metadata.id3.Id3Decoder;
 import com.google.android.exoplayer2.metadata.id3.PrivFrame;
+import com.google.android.exoplayer2.source.chunk.InitializationSegmentCache;
 import com.google.android.exoplayer2.source.chunk.MediaChunk;
 import com.google.android.exoplayer2.source.hls.playlist.HlsMediaPlaylist;
 import com.google.android.exoplayer2.upstream.DataSource;
@@ -127,6 +129,11 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
       initDataSpec =
           new DataSpec(initSegmentUri, initSegment.byteRangeOffset, initSegment.byteRangeLength);
       initDataSource = buildDataSource(dataSource, initSegmentKey, initSegmentIv);
+      InitializationSegmentCache initSegmentCache =
+          InitializationSegmentCache.getSingletonInstance();
+      if (!initSegmentEncrypted && initSegmentCache.isEnabled()) {
+        initDataSource = initSegmentCache.createDataSource(initDataSource);
+      }
     }
 
     long segmentStartTimeInPeriodUs = startOfPlaylistInPeriodUs + mediaSegment.relativeStartTimeUs;
@@ -492,7 +499,10 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
   private DefaultExtractorInput prepareExtraction(
       DataSource dataSource, DataSpec dataSpec, boolean initializeTimestampAdjuster)
       throws IOException {
+    long openStartTimeNs = StageLatencyTracer.startTimeNs();
     long bytesToRead = dataSource.open(dataSpec);
+    StageLatencyTracer.recordSince(
+        StageLatencyTracer.STAGE_LOAD_TIME_TO_FIRST_BYTE, openStartTimeNs);
     if (initializeTimestampAdjuster) {
       try {
         timestampAdjuster.sharedInitializeOrWait(isPrimaryTimestampSource, startTimeUs);
@@ -16,6 +16,7 @@
 package com.google.android.exoplayer2.source.hls;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.fail;
 
 import android.net.Uri;
@@ -131,6 +132,22 @@ public class HlsMediaPlaylistSegmentIteratorTest {
     assertThat(Iterables.getLast(datasSpecs).uri.toString()).isEqualTo("fileSequence16.2.ts");
   }
 
+  @Test
+  public void getSegmentBaseList_fromFirstSegment_viewsSegmentsAndTrailingParts() {
+    HlsMediaPlaylist mediaPlaylist = getHlsMediaPlaylist(LOW_LATENCY_SEGMENTS_AND_PARTS);
+
+    List<HlsMediaPlaylist.SegmentBase> segmentBases =
+        HlsChunkSource.getSegmentBaseList(
+            mediaPlaylist, /* mediaSequence= */ 10, /* partIndex= */ C.INDEX_UNSET);
+
+    List<HlsMediaPlaylist.SegmentBase> expectedSegmentBases = new ArrayList<>();
+    expectedSegmentBases.addAll(mediaPlaylist.segments);
+    expectedSegmentBases.addAll(mediaPlaylist.trailingParts);
+    assertThat(segmentBases).containsExactlyElementsIn(expectedSegmentBases).inOrder();
+    assertThrows(
+        IndexOutOfBoundsException.class, () -> segmentBases.get(expectedSegmentBases.size()));
+  }
+
   @Test
   public void next_startIteratorAtFirstPartInaSegment_usesFullSegment() {
     HlsMediaPlaylist mediaPlaylist = getHlsMediaPlaylist(LOW_LATENCY_SEGMENTS_AND_PARTS);
@@ -19,7 +19,9 @@ import static com.google.android.exoplayer2.transformer.AndroidTestUtil.MP3_ASSE
 import static com.google.android.exoplayer2.transformer.AndroidTestUtil.MP4_ASSET_URI_STRING;
 import static com.google.android.exoplayer2.transformer.AndroidTestUtil.MP4_ASSET_WITH_INCREASING_TIMESTAMPS_320W_240H_15S_URI_STRING;
 import static com.google.android.exoplayer2.transformer.AndroidTestUtil.PNG_ASSET_URI_STRING;
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
 import static com.google.common.truth.Truth.assertThat;
+import static java.lang.Math.max;
 import static org.junit.Assert.assertThrows;
 
 import android.content.Context;
@@ -36,7 +38,12 @@ import com.google.android.exoplayer2.effect.FrameCache;
 import com.google.android.exoplayer2.effect.Presentation;
 import com.google.android.exoplayer2.effect.RgbFilter;
 import com.google.android.exoplayer2.effect.TimestampWrapper;
+import com.google.android.exoplayer2.extractor.mp4.Mp4Extractor;
+import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
+import com.google.android.exoplayer2.testutil.FakeTrackOutput;
+import com.google.android.exoplayer2.testutil.TestUtil;
 import com.google.android.exoplayer2.util.Effect;
+import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.common.collect.ImmutableList;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -364,6 +371,73 @@ public class TransformerEndToEndTest {
     assertThat(result.exportResult.durationMs).isEqualTo(3100);
   }
 
+  @Test
+  public void parallelExport_transmuxedSequence_concatenatesSegmentSamplesInOrder()
+      throws Exception {
+    String testId = "parallelExport_transmuxedSequence_concatenatesSegmentSamplesInOrder";
+    Transformer transformer =
+        new Transformer.Builder(context).experimentalSetParallelExportWorkerCount(2).build();
+    EditedMediaItem editedMediaItem =
+        new EditedMediaItem.Builder(MediaItem.fromUri(MP4_ASSET_URI_STRING)).build();
+    int segmentCount = 3;
+    ImmutableList.Builder<EditedMediaItem> editedMediaItems = new ImmutableList.Builder<>();
+    for (int i = 0; i < segmentCount; i++) {
+      editedMediaItems.add(editedMediaItem);
+    }
+    Composition composition =
+        new Composition.Builder(
+                ImmutableList.of(new EditedMediaItemSequence(editedMediaItems.build())))
+            .setTransmuxAudio(true)
+            .setTransmuxVideo(true)
+            .build();
+
+    ExportTestResult result =
+        new TransformerAndroidTestRunner.Builder(context, transformer)
+            .build()
+            .run(testId, composition);
+
+    FakeTrackOutput inputVideoTrackOutput =
+        getVideoTrackOutput(
+            TestUtil.extractAllSamplesFromFile(
+                new Mp4Extractor(), context, /* fileName= */ "media/mp4/sample.mp4"));
+    FakeTrackOutput outputVideoTrackOutput =
+        getVideoTrackOutput(
+            TestUtil.extractAllSamplesFromCacheFile(
+                new Mp4Extractor(), checkNotNull(result.filePath)));
+    int inputSampleCount = inputVideoTrackOutput.getSampleCount();
+    long inputStartTimeUs = inputVideoTrackOutput.getSampleTimeUs(0);
+    assertThat(outputVideoTrackOutput.getSampleCount()).isEqualTo(segmentCount * inputSampleCount);
+    long previousSegmentEndTimeUs = C.TIME_UNSET;
+    for (int segmentIndex = 0; segmentIndex < segmentCount; segmentIndex++) {
+      int firstSampleIndex = segmentIndex * inputSampleCount;
+      long segmentStartTimeUs = outputVideoTrackOutput.getSampleTimeUs(firstSampleIndex);
+      long segmentEndTimeUs = segmentStartTimeUs;
+      for (int i = 0; i < inputSampleCount; i++) {
+        // Transmuxed samples are copied unchanged, and keep their offset from the segment start.
+        long outputSampleTimeUs = outputVideoTrackOutput.getSampleTimeUs(firstSampleIndex + i);
+        assertThat(outputSampleTimeUs - segmentStartTimeUs)
+            .isEqualTo(inputVideoTrackOutput.getSampleTimeUs(i) - inputStartTimeUs);
+        assertThat(outputVideoTrackOutput.getSampleData(firstSampleIndex + i))
+            .isEqualTo(inputVideoTrackOutput.getSampleData(i));
+        segmentEndTimeUs = max(segmentEndTimeUs, outputSampleTimeUs);
+      }
+      if (previousSegmentEndTimeUs != C.TIME_UNSET) {
+        assertThat(segmentStartTimeUs).isGreaterThan(previousSegmentEndTimeUs);
+      }
+      previousSegmentEndTimeUs = segmentEndTimeUs;
+    }
+  }
+
+  private static FakeTrackOutput getVideoTrackOutput(FakeExtractorOutput extractorOutput) {
+    for (int i = 0; i < extractorOutput.numberOfTracks; i++) {
+      FakeTrackOutput trackOutput = extractorOutput.trackOutputs.valueAt(i);
+      if (MimeTypes.isVideo(checkNotNull(trackOutput.lastFormat).sampleMimeType)) {
+        return trackOutput;
+      }
+    }
+    throw new IllegalStateException("No video track");
+  }
+
   private static final class VideoUnsupportedEncoderFactory implements Codec.EncoderFactory {
 
     private final Codec.EncoderFactory encoderFactory;
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.transformer.mh.analysis;
+
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+
+import android.content.Context;
+import androidx.test.core.app.ApplicationProvider;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.audio.AudioProcessor.AudioFormat;
+import com.google.android.exoplayer2.transformer.AndroidTestUtil;
+import com.google.android.exoplayer2.transformer.AudioMixer;
+import com.google.android.exoplayer2.util.SystemClock;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Instrumentation tests for analysing the throughput of {@link AudioMixer} when mixing sources with
+ * different channel counts and encodings into stereo float output.
+ */
+@RunWith(Parameterized.class)
+public class AudioMixerPerformanceAnalysisTest {
+
+  private static final int SAMPLE_RATE = 48_000;
+
+  private static final ImmutableMap<String, AudioFormat> SOURCE_FORMATS =
+      ImmutableMap.of(
+          "stereo_float",
+          new AudioFormat(SAMPLE_RATE, /* channelCount= */ 2, C.ENCODING_PCM_FLOAT),
+          "stereo_16bit",
+          new AudioFormat(SAMPLE_RATE, /* channelCount= */ 2, C.ENCODING_PCM_16BIT),
+          "mono_float",
+          new AudioFormat(SAMPLE_RATE, /* channelCount= */ 1, C.ENCODING_PCM_FLOAT),
+          "5.1_float",
+          new AudioFormat(SAMPLE_RATE, /* channelCount= */ 6, C.ENCODING_PCM_FLOAT),
+          "5.1_16bit",
+          new AudioFormat(SAMPLE_RATE, /* channelCount= */ 6, C.ENCODING_PCM_16BIT));
+
+  private static final AudioFormat OUTPUT_FORMAT =
+      new AudioFormat(SAMPLE_RATE, /* channelCount= */ 2, C.ENCODING_PCM_FLOAT);
+
+  private static final int SOURCE_COUNT = 2;
+  private static final int BUFFER_SIZE_MS = 20;
+  private static final int SOURCE_BUFFER_FRAME_COUNT = 1024;
+  private static final long WARM_UP_DURATION_US = 10_000_000;
+  private static final long MIXED_DURATION_US = 600_000_000;
+
+  @Parameter public @MonotonicNonNull String sourceFormatName;
+
+  @Parameters(name = "analyzeAudioMixerPerformance_{0}")
+  public static ImmutableList<String> parameters() {
+    return SOURCE_FORMATS.keySet().asList();
+  }
+
+  @Test
+  public void analyzeAudioMixerPerformance() throws Exception {
+    checkNotNull(sourceFormatName);
+    String testId = "analyzeAudioMixerPerformance_" + sourceFormatName;
+    Context context = ApplicationProvider.getApplicationContext();
+    AudioFormat sourceFormat = checkNotNull(SOURCE_FORMATS.get(sourceFormatName));
+    ByteBuffer sourceData = createSourceData(sourceFormat);
+    // Warm up, so that class loading and JIT compilation are not measured.
+    mix(sourceFormat, sourceData, WARM_UP_DURATION_US);
+
+    long startTimeMs = SystemClock.DEFAULT.elapsedRealtime();
+    long outputFrameCount = mix(sourceFormat, sourceData, MIXED_DURATION_US);
+    long processingTimeMs = SystemClock.DEFAULT.elapsedRealtime() - startTimeMs;
+
+    JSONObject resultJson =
+        new JSONObject()
+            .put("sourceFormat", sourceFormatName)
+            .put("sourceCount", SOURCE_COUNT)
+            .put("bufferSizeMs", BUFFER_SIZE_MS)
+            .put("outputFrameCount", outputFrameCount)
+            .put("processingTimeMs", processingTimeMs);
+    if (processingTimeMs > 0) {
+      resultJson.put("framesPerSecond", outputFrameCount * 1000f / processingTimeMs);
+    }
+    AndroidTestUtil.writeTestSummaryToFile(context, testId, resultJson);
+  }
+
+  /**
+   * Mixes {@link #SOURCE_COUNT} sources repeating {@code sourceData} for {@code durationUs}, and
+   * returns the number of output frames.
+   */
+  private static long mix(AudioFormat sourceFormat, ByteBuffer sourceData, long durationUs)
+      throws Exception {
+    AudioMixer mixer = AudioMixer.create();
+    mixer.configure(OUTPUT_FORMAT, BUFFER_SIZE_MS, /* startTimeUs= */ 0);
+    mixer.setEndTimeUs(durationUs);
+    int[] sourceIds = new int[SOURCE_COUNT];
+    ByteBuffer[] sourceBuffers = new ByteBuffer[SOURCE_COUNT];
+    for (int i = 0; i < SOURCE_COUNT; i++) {
+      sourceIds[i] = mixer.addSource(sourceFormat, /* startTimeUs= */ 0);
+      mixer.setSourceVolume(sourceIds[i], 1f / SOURCE_COUNT);
+      sourceBuffers[i] = sourceData.duplicate().order(ByteOrder.nativeOrder());
+    }
+
+    long outputBytes = 0;
+    while (!mixer.isEnded()) {
+      for (int i = 0; i < SOURCE_COUNT; i++) {
+        if (!sourceBuffers[i].hasRemaining()) {
+          sourceBuffers[i].rewind();
+        }
+        mixer.queueInput(sourceIds[i], sourceBuffers[i]);
+      }
+      outputBytes += mixer.getOutput().remaining();
+    }
+    mixer.reset();
+    return outputBytes / OUTPUT_FORMAT.bytesPerFrame;
+  }
+
+  /** Returns a direct buffer containing a full scale sawtooth wave on every channel. */
+  private static ByteBuffer createSourceData(AudioFormat sourceFormat) {
+    ByteBuffer buffer =
+        ByteBuffer.allocateDirect(SOURCE_BUFFER_FRAME_COUNT * sourceFormat.bytesPerFrame)
+            .order(ByteOrder.nativeOrder());
+    for (int frame = 0; frame < SOURCE_BUFFER_FRAME_COUNT; frame++) {
+      float sample = 2f * frame / SOURCE_BUFFER_FRAME_COUNT - 1f;
+      for (int channel = 0; channel < sourceFormat.channelCount; channel++) {
+        if (sourceFormat.encoding == C.ENCODING_PCM_FLOAT) {
+          buffer.putFloat(sample);
+        } else {
+          buffer.putShort((short) (sample * Short.MAX_VALUE));
+        }
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.transformer.mh.analysis;
+
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+
+import android.content.Context;
+import android.net.Uri;
+import androidx.test.core.app.ApplicationProvider;
+import com.google.android.exoplayer2.KeyframeRetriever;
+import com.google.android.exoplayer2.KeyframeRetriever.Keyframe;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.transformer.AndroidTestUtil;
+import com.google.android.exoplayer2.util.SystemClock;
+import com.google.common.collect.ImmutableList;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+/** Instrumentation tests for analysing the key frame throughput of {@link KeyframeRetriever}. */
+@RunWith(Parameterized.class)
+public class KeyframeRetrieverPerformanceAnalysisTest {
+
+  private static final ImmutableList<String> INPUT_FILES =
+      ImmutableList.of(
+          AndroidTestUtil.MP4_REMOTE_1280W_720H_30_SECOND_HIGHMOTION,
+          AndroidTestUtil.MP4_REMOTE_1920W_1080H_30_SECOND_HIGHMOTION,
+          AndroidTestUtil.MP4_REMOTE_3840W_2160H_32_SECOND_HIGHMOTION);
+
+  private static final long KEYFRAME_INTERVAL_US = 1_000_000;
+
+  @Parameter public @MonotonicNonNull String fileUri;
+
+  @Parameters(name = "analyzeKeyframeRetrieverPerformance_{0}")
+  public static ImmutableList<String> parameters() {
+    return INPUT_FILES;
+  }
+
+  @Test
+  public void analyzeKeyframeRetrieverPerformance() throws Exception {
+    checkNotNull(fileUri);
+    String filename = checkNotNull(Uri.parse(fileUri).getLastPathSegment());
+    String testId = "analyzeKeyframeRetrieverPerformance_" + filename;
+    Context context = ApplicationProvider.getApplicationContext();
+    KeyframeRetriever keyframeRetriever = new KeyframeRetriever.Builder(context).build();
+
+    try {
+      long startTimeMs = SystemClock.DEFAULT.elapsedRealtime();
+      ImmutableList<Keyframe> keyframes =
+          keyframeRetriever
+              .retrieveKeyframes(MediaItem.fromUri(fileUri), KEYFRAME_INTERVAL_US)
+              .get();
+      long processingTimeMs = SystemClock.DEFAULT.elapsedRealtime() - startTimeMs;
+
+      long keyframeBytes = 0;
+      for (int i = 0; i < keyframes.size(); i++) {
+        keyframeBytes += keyframes.get(i).data.length;
+      }
+      JSONObject resultJson =
+          new JSONObject()
+              .put("inputFilename", filename)
+              .put("keyframeIntervalUs", KEYFRAME_INTERVAL_US)
+              .put("keyframeCount", keyframes.size())
+              .put("keyframeBytes", keyframeBytes)
+              .put("processingTimeMs", processingTimeMs);
+      if (processingTimeMs > 0) {
+        resultJson.put("keyframesPerSecond", keyframes.size() * 1000f / processingTimeMs);
+      }
+      AndroidTestUtil.writeTestSummaryToFile(context, testId, resultJson);
+    } finally {
+      keyframeRetriever.release();
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.transformer.mh.analysis;
+
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+
+import android.content.Context;
+import android.os.Debug;
+import androidx.test.core.app.ApplicationProvider;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.DummyTrackOutput;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.extractor.TrackOutput;
+import com.google.android.exoplayer2.extractor.ogg.OggExtractor;
+import com.google.android.exoplayer2.testutil.FakeExtractorInput;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.transformer.AndroidTestUtil;
+import com.google.android.exoplayer2.util.SystemClock;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Instrumentation tests for analysing the heap allocations of {@link OggExtractor} while reading
+ * packets.
+ */
+@RunWith(Parameterized.class)
+public class OggExtractorAllocationAnalysisTest {
+
+  private static final ImmutableList<String> INPUT_FILES =
+      ImmutableList.of("media/ogg/bear.opus", "media/ogg/bear_vorbis.ogg");
+
+  private static final int ITERATION_COUNT = 100;
+
+  @Parameter public @MonotonicNonNull String file;
+
+  @Parameters(name = "analyzeOggExtractorAllocations_{0}")
+  public static ImmutableList<String> parameters() {
+    return INPUT_FILES;
+  }
+
+  @Test
+  public void analyzeOggExtractorAllocations() throws Exception {
+    checkNotNull(file);
+    String testId = "analyzeOggExtractorAllocations_" + file.replace('/', '_');
+    Context context = ApplicationProvider.getApplicationContext();
+    byte[] data = TestUtil.getByteArray(context, file);
+    // Warm up, so that class loading and lazily initialized state are not measured.
+    extract(data);
+
+    long startAllocatedBytes = getAllocatedBytes();
+    long startTimeMs = SystemClock.DEFAULT.elapsedRealtime();
+    for (int i = 0; i < ITERATION_COUNT; i++) {
+      extract(data);
+    }
+    long processingTimeMs = SystemClock.DEFAULT.elapsedRealtime() - startTimeMs;
+    long endAllocatedBytes = getAllocatedBytes();
+
+    JSONObject resultJson =
+        new JSONObject()
+            .put("inputFilename", file)
+            .put("fileSizeBytes", data.length)
+            .put("iterationCount", ITERATION_COUNT)
+            .put("processingTimeMs", processingTimeMs);
+    if (startAllocatedBytes != C.LENGTH_UNSET && endAllocatedBytes != C.LENGTH_UNSET) {
+      // The runtime counts allocations on all threads, so this is an upper bound.
+      resultJson.put(
+          "allocatedBytesPerIteration",
+          (endAllocatedBytes - startAllocatedBytes) / ITERATION_COUNT);
+    }
+    AndroidTestUtil.writeTestSummaryToFile(context, testId, resultJson);
+  }
+
+  private static void extract(byte[] data) throws IOException {
+    FakeExtractorInput input = new FakeExtractorInput.Builder().setData(data).build();
+    OggExtractor extractor = new OggExtractor();
+    extractor.init(new DiscardingExtractorOutput());
+    PositionHolder positionHolder = new PositionHolder();
+    int result = Extractor.RESULT_CONTINUE;
+    while (result != Extractor.RESULT_END_OF_INPUT) {
+      result = extractor.read(input, positionHolder);
+      if (result == Extractor.RESULT_SEEK) {
+        input.setPosition((int) positionHolder.position);
+      }
+    }
+    extractor.release();
+  }
+
+  /**
+   * Returns the number of bytes allocated by the runtime since it started, or {@link
+   * C#LENGTH_UNSET} if unknown.
+   */
+  private static long getAllocatedBytes() {
+    if (Util.SDK_INT < 23) {
+      return C.LENGTH_UNSET;
+    }
+    try {
+      return Long.parseLong(Debug.getRuntimeStat("art.gc.bytes-allocated"));
+    } catch (NumberFormatException e) {
+      return C.LENGTH_UNSET;
+    }
+  }
+
+  /** An {@link ExtractorOutput} that discards the samples, so that only the reads allocate. */
+  private static final class DiscardingExtractorOutput implements ExtractorOutput {
+
+    @Override
+    public TrackOutput track(int id, @C.TrackType int type) {
+      return new DummyTrackOutput();
+    }
+
+    @Override
+    public void endTracks() {}
+
+    @Override
+    public void seekMap(SeekMap seekMap) {}
+  }
+}
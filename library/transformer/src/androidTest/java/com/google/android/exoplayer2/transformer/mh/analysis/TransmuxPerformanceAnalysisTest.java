@@ -0,0 +1,94 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.transformer.mh.analysis;
+
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+
+import android.content.Context;
+import android.net.Uri;
+import androidx.test.core.app.ApplicationProvider;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.transformer.AndroidTestUtil;
+import com.google.android.exoplayer2.transformer.ExportResult;
+import com.google.android.exoplayer2.transformer.Transmuxer;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+/** Instrumentation tests for analysing the trimming throughput of {@link Transmuxer}. */
+@RunWith(Parameterized.class)
+public class TransmuxPerformanceAnalysisTest {
+
+  private static final ImmutableList<String> INPUT_FILES =
+      ImmutableList.of(
+          AndroidTestUtil.MP4_REMOTE_1280W_720H_30_SECOND_HIGHMOTION,
+          AndroidTestUtil.MP4_REMOTE_1920W_1080H_30_SECOND_HIGHMOTION,
+          AndroidTestUtil.MP4_REMOTE_3840W_2160H_32_SECOND_HIGHMOTION);
+
+  private static final long CLIPPING_START_POSITION_MS = 5_000;
+  private static final long CLIPPING_END_POSITION_MS = 25_000;
+
+  @Parameter public @MonotonicNonNull String fileUri;
+
+  @Parameters(name = "analyzeTransmuxPerformance_{0}")
+  public static ImmutableList<String> parameters() {
+    return INPUT_FILES;
+  }
+
+  @Test
+  public void analyzeTransmuxPerformance() throws Exception {
+    checkNotNull(fileUri);
+    String filename = checkNotNull(Uri.parse(fileUri).getLastPathSegment());
+    String testId = "analyzeTransmuxPerformance_" + filename;
+    Context context = ApplicationProvider.getApplicationContext();
+    MediaItem mediaItem =
+        new MediaItem.Builder()
+            .setUri(fileUri)
+            .setClippingConfiguration(
+                new MediaItem.ClippingConfiguration.Builder()
+                    .setStartPositionMs(CLIPPING_START_POSITION_MS)
+                    .setEndPositionMs(CLIPPING_END_POSITION_MS)
+                    .build())
+            .build();
+    File outputFile = Util.createTempFile(context, testId);
+
+    try {
+      ExportResult exportResult =
+          new Transmuxer.Builder(context).build().transmux(mediaItem, outputFile.getPath());
+
+      JSONObject resultJson =
+          new JSONObject()
+              .put("inputFilename", filename)
+              .put("durationMs", exportResult.durationMs)
+              .put("fileSizeBytes", exportResult.fileSizeBytes)
+              .put("processingTimeMs", exportResult.processingTimeMs);
+      if (exportResult.processingTimeMs > 0) {
+        resultJson.put(
+            "bytesPerSecond", exportResult.fileSizeBytes * 1000 / exportResult.processingTimeMs);
+      }
+      AndroidTestUtil.writeTestSummaryToFile(context, testId, resultJson);
+    } finally {
+      outputFile.delete();
+    }
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.transformer.mh.analysis;
+
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+import static java.lang.Math.min;
+
+import android.content.Context;
+import androidx.test.core.app.ApplicationProvider;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.DummyTrackOutput;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.extractor.TrackOutput;
+import com.google.android.exoplayer2.extractor.ts.TsExtractor;
+import com.google.android.exoplayer2.testutil.FakeExtractorInput;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.transformer.AndroidTestUtil;
+import com.google.android.exoplayer2.util.NalUnitUtil;
+import com.google.android.exoplayer2.util.SystemClock;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Instrumentation tests for analysing the throughput of {@link TsExtractor}, and of the NAL unit
+ * start code search it relies on, for H.264 and H.265 transport streams.
+ */
+@RunWith(Parameterized.class)
+public class TsExtractorPerformanceAnalysisTest {
+
+  private static final ImmutableList<String> INPUT_FILES =
+      ImmutableList.of(
+          // About 6 Mbps.
+          "media/ts/bbb_2500ms.ts",
+          "media/ts/sample_h264_mpeg_audio.ts",
+          "media/ts/sample_h265.ts");
+
+  private static final int ITERATION_COUNT = 50;
+
+  /** The size of the chunks passed to the NAL unit search, matching a TS packet payload. */
+  private static final int NAL_UNIT_SEARCH_CHUNK_SIZE = 184;
+
+  @Parameter public @MonotonicNonNull String file;
+
+  @Parameters(name = "analyzeTsExtractorPerformance_{0}")
+  public static ImmutableList<String> parameters() {
+    return INPUT_FILES;
+  }
+
+  @Test
+  public void analyzeTsExtractorPerformance() throws Exception {
+    checkNotNull(file);
+    String testId = "analyzeTsExtractorPerformance_" + file.replace('/', '_');
+    Context context = ApplicationProvider.getApplicationContext();
+    byte[] data = TestUtil.getByteArray(context, file);
+    // Warm up, so that class loading and JIT compilation are not measured.
+    extract(data);
+    searchNalUnits(data);
+
+    long startTimeMs = SystemClock.DEFAULT.elapsedRealtime();
+    for (int i = 0; i < ITERATION_COUNT; i++) {
+      extract(data);
+    }
+    long extractionTimeMs = SystemClock.DEFAULT.elapsedRealtime() - startTimeMs;
+
+    startTimeMs = SystemClock.DEFAULT.elapsedRealtime();
+    int nalUnitCount = 0;
+    for (int i = 0; i < ITERATION_COUNT; i++) {
+      nalUnitCount = searchNalUnits(data);
+    }
+    long nalUnitSearchTimeMs = SystemClock.DEFAULT.elapsedRealtime() - startTimeMs;
+
+    long processedBytes = (long) data.length * ITERATION_COUNT;
+    JSONObject resultJson =
+        new JSONObject()
+            .put("inputFilename", file)
+            .put("fileSizeBytes", data.length)
+            .put("iterationCount", ITERATION_COUNT)
+            .put("nalUnitCount", nalUnitCount)
+            .put("extractionTimeMs", extractionTimeMs)
+            .put("nalUnitSearchTimeMs", nalUnitSearchTimeMs);
+    if (extractionTimeMs > 0) {
+      resultJson.put("extractionBytesPerSecond", processedBytes * 1000 / extractionTimeMs);
+    }
+    if (nalUnitSearchTimeMs > 0) {
+      resultJson.put("nalUnitSearchBytesPerSecond", processedBytes * 1000 / nalUnitSearchTimeMs);
+    }
+    AndroidTestUtil.writeTestSummaryToFile(context, testId, resultJson);
+  }
+
+  private static void extract(byte[] data) throws IOException {
+    FakeExtractorInput input = new FakeExtractorInput.Builder().setData(data).build();
+    TsExtractor extractor = new TsExtractor();
+    extractor.init(new DiscardingExtractorOutput());
+    PositionHolder positionHolder = new PositionHolder();
+    int result = Extractor.RESULT_CONTINUE;
+    while (result != Extractor.RESULT_END_OF_INPUT) {
+      result = extractor.read(input, positionHolder);
+      if (result == Extractor.RESULT_SEEK) {
+        input.setPosition((int) positionHolder.position);
+      }
+    }
+    extractor.release();
+  }
+
+  /**
+   * Searches {@code data} for NAL units in chunks, carrying the prefix state between chunks as the
+   * elementary stream readers do, and returns the number of NAL units found.
+   */
+  private static int searchNalUnits(byte[] data) {
+    boolean[] prefixFlags = new boolean[3];
+    int nalUnitCount = 0;
+    for (int chunkStart = 0; chunkStart < data.length; chunkStart += NAL_UNIT_SEARCH_CHUNK_SIZE) {
+      int chunkEnd = min(chunkStart + NAL_UNIT_SEARCH_CHUNK_SIZE, data.length);
+      int offset = chunkStart;
+      while (offset < chunkEnd) {
+        int nalUnitOffset = NalUnitUtil.findNalUnit(data, offset, chunkEnd, prefixFlags);
+        if (nalUnitOffset == chunkEnd) {
+          break;
+        }
+        nalUnitCount++;
+        offset = nalUnitOffset + 3;
+      }
+    }
+    return nalUnitCount;
+  }
+
+  /** An {@link ExtractorOutput} that discards the samples, so that only the reads are measured. */
+  private static final class DiscardingExtractorOutput implements ExtractorOutput {
+
+    @Override
+    public TrackOutput track(int id, @C.TrackType int type) {
+      return new DummyTrackOutput();
+    }
+
+    @Override
+    public void endTracks() {}
+
+    @Override
+    public void seekMap(SeekMap seekMap) {}
+  }
+}
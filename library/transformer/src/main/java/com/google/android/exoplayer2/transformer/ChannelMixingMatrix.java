@@ -17,6 +17,8 @@ package com.google.android.exoplayer2.transformer;
 
 import static com.google.android.exoplayer2.util.Assertions.checkArgument;
 
+import androidx.annotation.Nullable;
+
 /**
  * An immutable matrix that describes the mapping of input channels to output channels.
  *
@@ -38,8 +40,22 @@ import static com.google.android.exoplayer2.util.Assertions.checkArgument;
  *         [0.7 0
  *          0 0.7]</pre>
  * </ul>
+ *
+ * <p>The {@link FloatAudioMixingAlgorithm.Kernel} used to mix with a matrix is computed the first
+ * time it is needed and cached on the matrix. Matrices should therefore be reused for as long as
+ * their coefficients don't change, rather than recreated for each buffer.
  */
 /* package */ final class ChannelMixingMatrix {
+
+  /** The gain corresponding to -3 dB, used when downmixing 5.1 to stereo. */
+  private static final float MINUS_3_DB = 0.7071068f;
+
+  /**
+   * The gain applied to the whole 5.1 to stereo downmix, so that the coefficients of each output
+   * channel sum to one and full scale input can't clip.
+   */
+  private static final float SURROUND_DOWNMIX_GAIN = 1f / (1f + 2f * MINUS_3_DB);
+
   private final int inputChannelCount;
   private final int outputChannelCount;
   private final float[] coefficients;
@@ -47,6 +63,10 @@ import static com.google.android.exoplayer2.util.Assertions.checkArgument;
   private final boolean isDiagonal;
   private final boolean isIdentity;
 
+  // Computed lazily. Kernel fields are final, so an unsynchronized read sees either null or a fully
+  // constructed kernel. In the former case, an equivalent kernel is computed again.
+  @Nullable private FloatAudioMixingAlgorithm.Kernel floatMixingKernel;
+
   /**
    * Creates a standard channel mixing matrix that converts from {@code inputChannelCount} channels
    * to {@code outputChannelCount} channels.
@@ -143,6 +163,19 @@ import static com.google.android.exoplayer2.util.Assertions.checkArgument;
     return isIdentity;
   }
 
+  /**
+   * Returns the {@link FloatAudioMixingAlgorithm.Kernel} for this matrix, computing it on first
+   * access.
+   */
+  public FloatAudioMixingAlgorithm.Kernel getFloatMixingKernel() {
+    @Nullable FloatAudioMixingAlgorithm.Kernel kernel = floatMixingKernel;
+    if (kernel == null) {
+      kernel = FloatAudioMixingAlgorithm.Kernel.create(this);
+      floatMixingKernel = kernel;
+    }
+    return kernel;
+  }
+
   /** Returns a new matrix with the given scaling factor applied to all coefficients. */
   public ChannelMixingMatrix scaleBy(float scale) {
     float[] scaledCoefficients = new float[coefficients.length];
@@ -164,6 +197,22 @@ import static com.google.android.exoplayer2.util.Assertions.checkArgument;
       // Stereo -> mono.
       return new float[] {0.5f, 0.5f};
     }
+    if (inputChannelCount == 6 && outputChannelCount == 2) {
+      // 5.1 -> stereo. The input channels are front left, front right, front center, LFE, back
+      // left and back right. The center and back channels are mixed at -3 dB relative to the front
+      // channels and LFE is dropped. Each output channel sums three inputs, so the result is
+      // normalized to keep it within full scale.
+      float front = SURROUND_DOWNMIX_GAIN;
+      float centerAndBack = SURROUND_DOWNMIX_GAIN * MINUS_3_DB;
+      return new float[] {
+        front, 0f, // Front left.
+        0f, front, // Front right.
+        centerAndBack, centerAndBack, // Front center.
+        0f, 0f, // LFE.
+        centerAndBack, 0f, // Back left.
+        0f, centerAndBack // Back right.
+      };
+    }
     throw new UnsupportedOperationException(
         "Default channel mixing coefficients for "
             + inputChannelCount
@@ -43,6 +43,7 @@ public final class ExportResult {
     private int width;
     private int videoFrameCount;
     @Nullable private String videoEncoderName;
+    private long processingTimeMs;
     @Nullable private ExportException exportException;
 
     /** Creates a builder. */
@@ -56,6 +57,7 @@ public final class ExportResult {
       averageVideoBitrate = C.RATE_UNSET_INT;
       height = C.LENGTH_UNSET;
       width = C.LENGTH_UNSET;
+      processingTimeMs = C.TIME_UNSET;
     }
 
     /** Sets the {@linkplain ProcessedInput processed inputs}. */
@@ -194,6 +196,18 @@ public final class ExportResult {
       return this;
     }
 
+    /**
+     * Sets the time taken to perform the export in milliseconds.
+     *
+     * <p>Must be positive or {@link C#TIME_UNSET}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setProcessingTimeMs(long processingTimeMs) {
+      checkArgument(processingTimeMs >= 0 || processingTimeMs == C.TIME_UNSET);
+      this.processingTimeMs = processingTimeMs;
+      return this;
+    }
+
     /** Sets the {@link ExportException} that caused the export to fail. */
     @CanIgnoreReturnValue
     public Builder setExportException(@Nullable ExportException exportException) {
@@ -217,6 +231,7 @@ public final class ExportResult {
           width,
           videoFrameCount,
           videoEncoderName,
+          processingTimeMs,
           exportException);
     }
   }
@@ -279,6 +294,14 @@ public final class ExportResult {
   /** The name of the video encoder used, or {@code null} if none were used. */
   @Nullable public final String videoEncoderName;
 
+  /**
+   * The time taken to perform the export in milliseconds, or {@link C#TIME_UNSET} if unset or
+   * unknown.
+   *
+   * <p>The export speed, relative to real time, is {@link #durationMs} divided by this value.
+   */
+  public final long processingTimeMs;
+
   /**
    * The {@link ExportException} that caused the export to fail, or {@code null} if the export was a
    * success.
@@ -299,6 +322,7 @@ public final class ExportResult {
       int width,
       int videoFrameCount,
       @Nullable String videoEncoderName,
+      long processingTimeMs,
       @Nullable ExportException exportException) {
     this.processedInputs = processedInputs;
     this.durationMs = durationMs;
@@ -313,6 +337,7 @@ public final class ExportResult {
     this.width = width;
     this.videoFrameCount = videoFrameCount;
     this.videoEncoderName = videoEncoderName;
+    this.processingTimeMs = processingTimeMs;
     this.exportException = exportException;
   }
 
@@ -331,6 +356,7 @@ public final class ExportResult {
         .setWidth(width)
         .setVideoFrameCount(videoFrameCount)
         .setVideoEncoderName(videoEncoderName)
+        .setProcessingTimeMs(processingTimeMs)
         .setExportException(exportException);
   }
 
@@ -356,6 +382,7 @@ public final class ExportResult {
         && width == result.width
         && videoFrameCount == result.videoFrameCount
         && Objects.equals(videoEncoderName, result.videoEncoderName)
+        && processingTimeMs == result.processingTimeMs
         && Objects.equals(exportException, result.exportException);
   }
 
@@ -374,6 +401,7 @@ public final class ExportResult {
     result = 31 * result + width;
     result = 31 * result + videoFrameCount;
     result = 31 * result + Objects.hashCode(videoEncoderName);
+    result = 31 * result + (int) processingTimeMs;
     result = 31 * result + Objects.hashCode(exportException);
     return result;
   }
@@ -16,27 +16,110 @@
 package com.google.android.exoplayer2.transformer;
 
 import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+import static java.lang.Math.min;
 
 import android.annotation.SuppressLint;
+import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.audio.AudioProcessor.AudioFormat;
 import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
 
-/** An {@link AudioMixingAlgorithm} which mixes into float samples. */
+/**
+ * An {@link AudioMixingAlgorithm} which mixes into float samples.
+ *
+ * <p>Samples are mixed in blocks of up to {@link #BLOCK_FRAME_COUNT} frames. Each block is bulk
+ * copied out of the buffers into float arrays, mixed with tight array loops that the runtime can
+ * vectorize, and bulk copied back. Identity, diagonal, mono to stereo and 5.1 to stereo matrices
+ * have dedicated kernels. The kernel for each matrix is cached on the matrix, so alternating
+ * between the matrices of several sources does not recompute it.
+ *
+ * <p>Instances are not thread-safe.
+ */
 /* package */ class FloatAudioMixingAlgorithm implements AudioMixingAlgorithm {
 
+  /** The maximum number of frames mixed per block. */
+  private static final int BLOCK_FRAME_COUNT = 512;
+
   // Short.MIN_VALUE != -Short.MAX_VALUE so use different scaling factors for positive and
   // negative samples.
   private static final float SCALE_S16_FOR_NEGATIVE_INPUT = -1f / Short.MIN_VALUE;
   private static final float SCALE_S16_FOR_POSITIVE_INPUT = 1f / Short.MAX_VALUE;
 
+  private static final int KERNEL_IDENTITY = 0;
+  private static final int KERNEL_UNIFORM_GAIN = 1;
+  private static final int KERNEL_DIAGONAL = 2;
+  private static final int KERNEL_MONO_TO_STEREO = 3;
+  private static final int KERNEL_5_1_TO_STEREO = 4;
+  private static final int KERNEL_GENERIC = 5;
+
+  /**
+   * The mixing kernel for a {@link ChannelMixingMatrix}.
+   *
+   * <p>Instances are immutable and are cached on the matrix by {@link
+   * ChannelMixingMatrix#getFloatMixingKernel()}, so each matrix is only analyzed once.
+   */
+  /* package */ static final class Kernel {
+
+    /** The kernel type, one of the {@code KERNEL_*} constants. */
+    private final int type;
+    /**
+     * The coefficients used by the kernel. For diagonal kernels, the gain for channel {@code c} is
+     * at index {@code c}. Otherwise, the coefficients are in row-major order.
+     */
+    private final float[] coefficients;
+
+    private Kernel(int type, float[] coefficients) {
+      this.type = type;
+      this.coefficients = coefficients;
+    }
+
+    /** Selects the kernel and computes its coefficients for {@code matrix}. */
+    /* package */ static Kernel create(ChannelMixingMatrix matrix) {
+      int inputChannelCount = matrix.getInputChannelCount();
+      int outputChannelCount = matrix.getOutputChannelCount();
+      float[] coefficients = new float[inputChannelCount * outputChannelCount];
+      for (int row = 0; row < inputChannelCount; row++) {
+        for (int col = 0; col < outputChannelCount; col++) {
+          coefficients[row * outputChannelCount + col] = matrix.getMixingCoefficient(row, col);
+        }
+      }
+      if (matrix.isIdentity()) {
+        return new Kernel(KERNEL_IDENTITY, coefficients);
+      } else if (matrix.isDiagonal()) {
+        float[] gains = new float[inputChannelCount];
+        boolean isUniform = true;
+        for (int c = 0; c < inputChannelCount; c++) {
+          gains[c] = coefficients[c * outputChannelCount + c];
+          isUniform &= gains[c] == gains[0];
+        }
+        return new Kernel(isUniform ? KERNEL_UNIFORM_GAIN : KERNEL_DIAGONAL, gains);
+      } else if (inputChannelCount == 1 && outputChannelCount == 2) {
+        return new Kernel(KERNEL_MONO_TO_STEREO, coefficients);
+      } else if (inputChannelCount == 6 && outputChannelCount == 2) {
+        return new Kernel(KERNEL_5_1_TO_STEREO, coefficients);
+      } else {
+        return new Kernel(KERNEL_GENERIC, coefficients);
+      }
+    }
+  }
+
   private final AudioFormat mixingAudioFormat;
+  private final float[] mixingBlock;
+
+  private float[] sourceBlock;
+  private short[] s16SourceBlock;
 
   public FloatAudioMixingAlgorithm(AudioFormat mixingAudioFormat) {
     checkArgument(mixingAudioFormat.encoding == C.ENCODING_PCM_FLOAT);
     checkArgument(mixingAudioFormat.channelCount != Format.NO_VALUE);
     this.mixingAudioFormat = mixingAudioFormat;
+    mixingBlock = new float[BLOCK_FRAME_COUNT * mixingAudioFormat.channelCount];
+    sourceBlock = new float[0];
+    s16SourceBlock = new short[0];
   }
 
   @Override
@@ -55,7 +138,6 @@ import java.nio.ByteBuffer;
   }
 
   @Override
-  @SuppressLint("SwitchIntDef")
   public ByteBuffer mix(
       ByteBuffer sourceBuffer,
       AudioFormat sourceAudioFormat,
@@ -77,102 +159,191 @@ import java.nio.ByteBuffer;
         mixingBuffer.remaining() >= frameCount * mixingAudioFormat.bytesPerFrame,
         "Mixing buffer is too small.");
 
-    switch (sourceAudioFormat.encoding) {
-      case C.ENCODING_PCM_FLOAT:
-        return mixFloatIntoFloat(sourceBuffer, channelMixingMatrix, frameCount, mixingBuffer);
-      case C.ENCODING_PCM_16BIT:
-        return mixS16IntoFloat(sourceBuffer, channelMixingMatrix, frameCount, mixingBuffer);
+    Kernel kernel = channelMixingMatrix.getFloatMixingKernel();
+    int sourceChannelCount = sourceAudioFormat.channelCount;
+    int mixingChannelCount = mixingAudioFormat.channelCount;
+    if (sourceBlock.length < BLOCK_FRAME_COUNT * sourceChannelCount) {
+      sourceBlock = new float[BLOCK_FRAME_COUNT * sourceChannelCount];
+    }
+
+    boolean sourceIsFloat = sourceAudioFormat.encoding == C.ENCODING_PCM_FLOAT;
+    @Nullable FloatBuffer sourceFloats = sourceIsFloat ? sourceBuffer.asFloatBuffer() : null;
+    @Nullable ShortBuffer sourceShorts = sourceIsFloat ? null : sourceBuffer.asShortBuffer();
+    FloatBuffer mixingFloats = mixingBuffer.asFloatBuffer();
+    int framesRemaining = frameCount;
+    while (framesRemaining > 0) {
+      int blockFrameCount = min(framesRemaining, BLOCK_FRAME_COUNT);
+      int sourceSampleCount = blockFrameCount * sourceChannelCount;
+      int mixingSampleCount = blockFrameCount * mixingChannelCount;
+      if (sourceFloats != null) {
+        sourceFloats.get(sourceBlock, /* offset= */ 0, sourceSampleCount);
+      } else {
+        readS16Block(checkNotNull(sourceShorts), sourceSampleCount);
+      }
+      int mixingPosition = mixingFloats.position();
+      mixingFloats.get(mixingBlock, /* offset= */ 0, mixingSampleCount);
+      mixBlock(kernel, blockFrameCount, sourceChannelCount, mixingChannelCount);
+      mixingFloats.position(mixingPosition);
+      mixingFloats.put(mixingBlock, /* offset= */ 0, mixingSampleCount);
+      framesRemaining -= blockFrameCount;
+    }
+
+    sourceBuffer.position(sourceBuffer.position() + frameCount * sourceAudioFormat.bytesPerFrame);
+    mixingBuffer.position(mixingBuffer.position() + frameCount * mixingAudioFormat.bytesPerFrame);
+    return mixingBuffer;
+  }
+
+  private void readS16Block(ShortBuffer sourceShorts, int sampleCount) {
+    if (s16SourceBlock.length < sampleCount) {
+      s16SourceBlock = new short[sourceBlock.length];
+    }
+    sourceShorts.get(s16SourceBlock, /* offset= */ 0, sampleCount);
+    short[] shorts = s16SourceBlock;
+    float[] floats = sourceBlock;
+    for (int i = 0; i < sampleCount; i++) {
+      floats[i] = s16ToFloat(shorts[i]);
+    }
+  }
+
+  private void mixBlock(
+      Kernel kernel, int frameCount, int sourceChannelCount, int mixingChannelCount) {
+    float[] source = sourceBlock;
+    float[] mixing = mixingBlock;
+    float[] coefficients = kernel.coefficients;
+    switch (kernel.type) {
+      case KERNEL_IDENTITY:
+        add(source, mixing, frameCount * mixingChannelCount);
+        break;
+      case KERNEL_UNIFORM_GAIN:
+        addScaled(source, mixing, frameCount * mixingChannelCount, coefficients[0]);
+        break;
+      case KERNEL_DIAGONAL:
+        mixDiagonal(source, mixing, frameCount, mixingChannelCount, coefficients);
+        break;
+      case KERNEL_MONO_TO_STEREO:
+        mixMonoToStereo(source, mixing, frameCount, coefficients);
+        break;
+      case KERNEL_5_1_TO_STEREO:
+        mix5Point1ToStereo(source, mixing, frameCount, coefficients);
+        break;
+      case KERNEL_GENERIC:
       default:
-        throw new IllegalArgumentException("Source encoding is not supported.");
+        mixGeneric(
+            source, mixing, frameCount, sourceChannelCount, mixingChannelCount, coefficients);
+        break;
     }
   }
 
-  private static ByteBuffer mixFloatIntoFloat(
-      ByteBuffer sourceBuffer,
-      ChannelMixingMatrix channelMixingMatrix,
-      int frameCount,
-      ByteBuffer mixingBuffer) {
-    if (channelMixingMatrix.isDiagonal()) {
-      return mixFloatIntoFloatDiagonal(sourceBuffer, channelMixingMatrix, frameCount, mixingBuffer);
+  private static void add(float[] source, float[] mixing, int sampleCount) {
+    int i = 0;
+    for (; i + 3 < sampleCount; i += 4) {
+      mixing[i] += source[i];
+      mixing[i + 1] += source[i + 1];
+      mixing[i + 2] += source[i + 2];
+      mixing[i + 3] += source[i + 3];
     }
-    int sourceChannelCount = channelMixingMatrix.getInputChannelCount();
-    float[] sourceFrame = new float[sourceChannelCount];
-    for (int i = 0; i < frameCount; i++) {
-      for (int sourceChannel = 0; sourceChannel < sourceChannelCount; sourceChannel++) {
-        sourceFrame[sourceChannel] = sourceBuffer.getFloat();
-      }
-      mixFloatFrameIntoFloat(sourceFrame, channelMixingMatrix, mixingBuffer);
+    for (; i < sampleCount; i++) {
+      mixing[i] += source[i];
     }
-    return mixingBuffer;
   }
 
-  private static void mixFloatFrameIntoFloat(
-      float[] sourceFrame, ChannelMixingMatrix channelMixingMatrix, ByteBuffer mixingBuffer) {
-    int mixingChannelCount = channelMixingMatrix.getOutputChannelCount();
-    for (int mixingChannel = 0; mixingChannel < mixingChannelCount; mixingChannel++) {
-      float mixedSample = mixingBuffer.getFloat(mixingBuffer.position());
-      for (int sourceChannel = 0; sourceChannel < sourceFrame.length; sourceChannel++) {
-        mixedSample +=
-            channelMixingMatrix.getMixingCoefficient(sourceChannel, mixingChannel)
-                * sourceFrame[sourceChannel];
-      }
-      mixingBuffer.putFloat(mixedSample);
+  private static void addScaled(float[] source, float[] mixing, int sampleCount, float gain) {
+    int i = 0;
+    for (; i + 3 < sampleCount; i += 4) {
+      mixing[i] += gain * source[i];
+      mixing[i + 1] += gain * source[i + 1];
+      mixing[i + 2] += gain * source[i + 2];
+      mixing[i + 3] += gain * source[i + 3];
+    }
+    for (; i < sampleCount; i++) {
+      mixing[i] += gain * source[i];
     }
   }
 
-  private static ByteBuffer mixFloatIntoFloatDiagonal(
-      ByteBuffer sourceBuffer,
-      ChannelMixingMatrix channelMixingMatrix,
-      int frameCount,
-      ByteBuffer mixingBuffer) {
-    int channelCount = channelMixingMatrix.getInputChannelCount();
-    for (int i = 0; i < frameCount; i++) {
+  private static void mixDiagonal(
+      float[] source, float[] mixing, int frameCount, int channelCount, float[] gains) {
+    if (channelCount == 2) {
+      float gain0 = gains[0];
+      float gain1 = gains[1];
+      for (int i = 0; i < frameCount * 2; i += 2) {
+        mixing[i] += gain0 * source[i];
+        mixing[i + 1] += gain1 * source[i + 1];
+      }
+      return;
+    }
+    for (int i = 0; i < frameCount * channelCount; i += channelCount) {
       for (int c = 0; c < channelCount; c++) {
-        float sourceSample = sourceBuffer.getFloat();
-        float mixedSample =
-            mixingBuffer.getFloat(mixingBuffer.position())
-                + channelMixingMatrix.getMixingCoefficient(c, c) * sourceSample;
-        mixingBuffer.putFloat(mixedSample);
+        mixing[i + c] += gains[c] * source[i + c];
       }
     }
-    return mixingBuffer;
   }
 
-  private static ByteBuffer mixS16IntoFloat(
-      ByteBuffer sourceBuffer,
-      ChannelMixingMatrix channelMixingMatrix,
-      int frameCount,
-      ByteBuffer mixingBuffer) {
-    if (channelMixingMatrix.isDiagonal()) {
-      return mixS16IntoFloatDiagonal(sourceBuffer, channelMixingMatrix, frameCount, mixingBuffer);
+  private static void mixMonoToStereo(
+      float[] source, float[] mixing, int frameCount, float[] coefficients) {
+    float left = coefficients[0];
+    float right = coefficients[1];
+    for (int i = 0; i < frameCount; i++) {
+      float sample = source[i];
+      mixing[2 * i] += left * sample;
+      mixing[2 * i + 1] += right * sample;
     }
-    int sourceChannelCount = channelMixingMatrix.getInputChannelCount();
-    float[] sourceFrame = new float[sourceChannelCount];
+  }
+
+  private static void mix5Point1ToStereo(
+      float[] source, float[] mixing, int frameCount, float[] coefficients) {
+    // Coefficients are in row-major order, so input channel c maps to indices 2 * c and 2 * c + 1.
+    float c0l = coefficients[0];
+    float c0r = coefficients[1];
+    float c1l = coefficients[2];
+    float c1r = coefficients[3];
+    float c2l = coefficients[4];
+    float c2r = coefficients[5];
+    float c3l = coefficients[6];
+    float c3r = coefficients[7];
+    float c4l = coefficients[8];
+    float c4r = coefficients[9];
+    float c5l = coefficients[10];
+    float c5r = coefficients[11];
     for (int i = 0; i < frameCount; i++) {
-      for (int sourceChannel = 0; sourceChannel < sourceChannelCount; sourceChannel++) {
-        sourceFrame[sourceChannel] = s16ToFloat(sourceBuffer.getShort());
-      }
-      mixFloatFrameIntoFloat(sourceFrame, channelMixingMatrix, mixingBuffer);
+      int s = 6 * i;
+      int m = 2 * i;
+      mixing[m] +=
+          c0l * source[s]
+              + c1l * source[s + 1]
+              + c2l * source[s + 2]
+              + c3l * source[s + 3]
+              + c4l * source[s + 4]
+              + c5l * source[s + 5];
+      mixing[m + 1] +=
+          c0r * source[s]
+              + c1r * source[s + 1]
+              + c2r * source[s + 2]
+              + c3r * source[s + 3]
+              + c4r * source[s + 4]
+              + c5r * source[s + 5];
     }
-    return mixingBuffer;
   }
 
-  private static ByteBuffer mixS16IntoFloatDiagonal(
-      ByteBuffer sourceBuffer,
-      ChannelMixingMatrix channelMixingMatrix,
+  private static void mixGeneric(
+      float[] source,
+      float[] mixing,
       int frameCount,
-      ByteBuffer mixingBuffer) {
-    int channelCount = channelMixingMatrix.getInputChannelCount();
+      int sourceChannelCount,
+      int mixingChannelCount,
+      float[] coefficients) {
     for (int i = 0; i < frameCount; i++) {
-      for (int c = 0; c < channelCount; c++) {
-        float sourceSample = s16ToFloat(sourceBuffer.getShort());
-        float mixedSample =
-            mixingBuffer.getFloat(mixingBuffer.position())
-                + channelMixingMatrix.getMixingCoefficient(c, c) * sourceSample;
-        mixingBuffer.putFloat(mixedSample);
+      int sourceOffset = i * sourceChannelCount;
+      int mixingOffset = i * mixingChannelCount;
+      for (int mixingChannel = 0; mixingChannel < mixingChannelCount; mixingChannel++) {
+        float mixedSample = mixing[mixingOffset + mixingChannel];
+        for (int sourceChannel = 0; sourceChannel < sourceChannelCount; sourceChannel++) {
+          mixedSample +=
+              coefficients[sourceChannel * mixingChannelCount + mixingChannel]
+                  * source[sourceOffset + sourceChannel];
+        }
+        mixing[mixingOffset + mixingChannel] = mixedSample;
       }
     }
-    return mixingBuffer;
   }
 
   private static float s16ToFloat(short shortValue) {
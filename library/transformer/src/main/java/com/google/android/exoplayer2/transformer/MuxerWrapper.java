@@ -44,6 +44,8 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
  * A wrapper around a media muxer.
  *
  * <p>This wrapper can contain at most one video track and one audio track.
+ *
+ * <p>The tracks can be fed from different threads.
  */
 /* package */ final class MuxerWrapper {
 
@@ -140,7 +142,7 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
    * @throws Muxer.MuxerException If the underlying {@link Muxer} encounters a problem while adding
    *     the track.
    */
-  public void addTrackFormat(Format format) throws Muxer.MuxerException {
+  public synchronized void addTrackFormat(Format format) throws Muxer.MuxerException {
     int trackCount = this.trackCount;
     checkState(trackCount > 0, "The track count should be set before the formats are added.");
     checkState(trackTypeToInfo.size() < trackCount, "All track formats have already been added.");
@@ -184,7 +186,7 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
    *     non-ended} track of the given {@link C.TrackType}.
    * @throws Muxer.MuxerException If the underlying {@link Muxer} fails to write the sample.
    */
-  public boolean writeSample(
+  public synchronized boolean writeSample(
       @C.TrackType int trackType, ByteBuffer data, boolean isKeyFrame, long presentationTimeUs)
       throws Muxer.MuxerException {
     @Nullable TrackInfo trackInfo = trackTypeToInfo.get(trackType);
@@ -214,7 +216,7 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
    *
    * @param trackType The {@link C.TrackType}.
    */
-  public void endTrack(@C.TrackType int trackType) {
+  public synchronized void endTrack(@C.TrackType int trackType) {
     @Nullable TrackInfo trackInfo = trackTypeToInfo.get(trackType);
     if (trackInfo == null) {
       // SparseArray.get() returns null by default if the value is not found.
@@ -236,7 +238,7 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
   }
 
   /** Returns whether all the tracks are {@linkplain #endTrack(int) ended}. */
-  public boolean isEnded() {
+  public synchronized boolean isEnded() {
     return isEnded;
   }
 
@@ -250,7 +252,7 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
    * @throws Muxer.MuxerException If the underlying {@link Muxer} fails to finish writing the output
    *     and {@code forCancellation} is false.
    */
-  public void release(boolean forCancellation) throws Muxer.MuxerException {
+  public synchronized void release(boolean forCancellation) throws Muxer.MuxerException {
     isReady = false;
     abortScheduledExecutorService.shutdownNow();
     if (muxer != null) {
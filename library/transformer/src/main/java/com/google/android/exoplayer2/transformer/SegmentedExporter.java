@@ -0,0 +1,700 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.transformer;
+
+import static com.google.android.exoplayer2.transformer.Transformer.PROGRESS_STATE_AVAILABLE;
+import static com.google.android.exoplayer2.transformer.Transformer.PROGRESS_STATE_NOT_STARTED;
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+
+import android.content.Context;
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.metadata.Metadata;
+import com.google.android.exoplayer2.util.Clock;
+import com.google.android.exoplayer2.util.DebugViewProvider;
+import com.google.android.exoplayer2.util.HandlerWrapper;
+import com.google.android.exoplayer2.util.ListenerSet;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
+
+/**
+ * Exports the {@linkplain EditedMediaItem items} of a single-sequence {@link Composition} in
+ * parallel to temporary files, and then losslessly concatenates these files into the output.
+ *
+ * <p>Each item is exported by its own {@link TransformerInternal}, with at most {@code
+ * workerCount} items being exported at the same time. Once all the items are exported, the
+ * temporary files are transmuxed into the output file.
+ *
+ * <p>Concatenating the segments is only lossless if all their tracks have the same format. If the
+ * exported formats differ, for example because the items have different resolutions or audio
+ * configurations, the segments are discarded and the composition is exported sequentially instead.
+ *
+ * <p>All the methods must be called on the application thread. The {@link
+ * TransformerInternal.Listener} is also called on that thread.
+ */
+/* package */ final class SegmentedExporter {
+
+  /** The share of the progress attributed to the export of the segments, in percent. */
+  private static final int SEGMENTS_PROGRESS_SHARE_PERCENT = 90;
+
+  private static final String TAG = "SegmentedExporter";
+  private static final String SEGMENT_FILE_PREFIX = "ExoPlayerTransformerSegment";
+
+  private final Context context;
+  private final Composition composition;
+  private final String outputPath;
+  private final TransformationRequest transformationRequest;
+  private final AssetLoader.Factory assetLoaderFactory;
+  private final Codec.EncoderFactory encoderFactory;
+  private final Codec.EncoderFactory segmentEncoderFactory;
+  private final Muxer.Factory muxerFactory;
+  private final boolean processAudioOnSeparateThread;
+  private final TransformerInternal.Listener listener;
+  private final ListenerSet<Transformer.Listener> transformerListeners;
+  private final HandlerWrapper applicationHandler;
+  private final DebugViewProvider debugViewProvider;
+  private final Clock clock;
+  private final int workerCount;
+  private final ImmutableList<EditedMediaItem> editedMediaItems;
+  private final List<String> segmentPaths;
+  private final @NullableType ExportResult[] segmentExportResults;
+  private final @NullableType TrackFormatRecordingMuxerFactory[] segmentMuxerFactories;
+  private final Map<Integer, TransformerInternal> runningSegmentTransformerInternals;
+
+  private int nextSegmentIndex;
+  private int exportedSegmentCount;
+
+  /**
+   * The export writing the output file, which is either the remux of the segments or the
+   * sequential export of the composition.
+   */
+  @Nullable private TransformerInternal outputTransformerInternal;
+  private long startTimeMs;
+  private boolean ended;
+
+  /**
+   * Returns whether the {@link Composition} can be exported in segments.
+   *
+   * <p>This is the case if it contains a single non-looping {@link EditedMediaItemSequence} with
+   * more than one {@link EditedMediaItem}.
+   */
+  public static boolean canExportInSegments(Composition composition) {
+    if (composition.sequences.size() != 1) {
+      return false;
+    }
+    EditedMediaItemSequence sequence = composition.sequences.get(0);
+    return !sequence.isLooping && sequence.editedMediaItems.size() > 1;
+  }
+
+  public SegmentedExporter(
+      Context context,
+      Composition composition,
+      String outputPath,
+      TransformationRequest transformationRequest,
+      AssetLoader.Factory assetLoaderFactory,
+      Codec.EncoderFactory encoderFactory,
+      Muxer.Factory muxerFactory,
+      boolean processAudioOnSeparateThread,
+      int workerCount,
+      TransformerInternal.Listener listener,
+      ListenerSet<Transformer.Listener> transformerListeners,
+      HandlerWrapper applicationHandler,
+      DebugViewProvider debugViewProvider,
+      Clock clock) {
+    checkArgument(canExportInSegments(composition));
+    checkArgument(workerCount > 0);
+    this.context = context;
+    this.composition = composition;
+    this.outputPath = outputPath;
+    this.transformationRequest = transformationRequest;
+    this.assetLoaderFactory = assetLoaderFactory;
+    this.encoderFactory = encoderFactory;
+    this.segmentEncoderFactory =
+        new SegmentEncoderFactory(
+            encoderFactory,
+            /* forceAudioEncoding= */ !composition.transmuxAudio,
+            /* forceVideoEncoding= */ !composition.transmuxVideo);
+    this.muxerFactory = muxerFactory;
+    this.processAudioOnSeparateThread = processAudioOnSeparateThread;
+    this.workerCount = workerCount;
+    this.listener = listener;
+    this.transformerListeners = transformerListeners;
+    this.applicationHandler = applicationHandler;
+    this.debugViewProvider = debugViewProvider;
+    this.clock = clock;
+    editedMediaItems = composition.sequences.get(0).editedMediaItems;
+    segmentPaths = new ArrayList<>();
+    segmentExportResults = new ExportResult[editedMediaItems.size()];
+    segmentMuxerFactories = new TrackFormatRecordingMuxerFactory[editedMediaItems.size()];
+    runningSegmentTransformerInternals = new HashMap<>();
+  }
+
+  /** Starts the export. */
+  public void start() {
+    startTimeMs = clock.elapsedRealtime();
+    try {
+      for (int i = 0; i < editedMediaItems.size(); i++) {
+        segmentPaths.add(Util.createTempFile(context, SEGMENT_FILE_PREFIX).getPath());
+      }
+    } catch (IOException e) {
+      endWithError(
+          new ExportResult.Builder().build(),
+          ExportException.createForAssetLoader(e, ExportException.ERROR_CODE_IO_UNSPECIFIED));
+      return;
+    }
+    while (nextSegmentIndex < editedMediaItems.size()
+        && runningSegmentTransformerInternals.size() < workerCount) {
+      startNextSegment();
+    }
+  }
+
+  /** See {@link TransformerInternal#getProgress(ProgressHolder)}. */
+  public @Transformer.ProgressState int getProgress(ProgressHolder progressHolder) {
+    if (ended) {
+      return PROGRESS_STATE_NOT_STARTED;
+    }
+    ProgressHolder individualProgressHolder = new ProgressHolder();
+    if (outputTransformerInternal != null) {
+      int progressState = outputTransformerInternal.getProgress(individualProgressHolder);
+      if (progressState == PROGRESS_STATE_AVAILABLE) {
+        int outputProgressShare = 100 - SEGMENTS_PROGRESS_SHARE_PERCENT;
+        progressHolder.progress =
+            SEGMENTS_PROGRESS_SHARE_PERCENT
+                + individualProgressHolder.progress * outputProgressShare / 100;
+      }
+      return progressState;
+    }
+    int progressSum = exportedSegmentCount * 100;
+    for (TransformerInternal transformerInternal : runningSegmentTransformerInternals.values()) {
+      int progressState = transformerInternal.getProgress(individualProgressHolder);
+      if (progressState != PROGRESS_STATE_AVAILABLE) {
+        return progressState;
+      }
+      progressSum += individualProgressHolder.progress;
+    }
+    progressHolder.progress =
+        progressSum * SEGMENTS_PROGRESS_SHARE_PERCENT / (100 * editedMediaItems.size());
+    return PROGRESS_STATE_AVAILABLE;
+  }
+
+  /** See {@link TransformerInternal#cancel()}. */
+  public void cancel() {
+    if (ended) {
+      return;
+    }
+    ended = true;
+    try {
+      cancelRunningExports();
+    } finally {
+      deleteSegmentFiles();
+    }
+  }
+
+  private void startNextSegment() {
+    int segmentIndex = nextSegmentIndex++;
+    Composition segmentComposition =
+        new Composition.Builder(
+                ImmutableList.of(
+                    new EditedMediaItemSequence(
+                        ImmutableList.of(editedMediaItems.get(segmentIndex)))))
+            .setEffects(composition.effects)
+            .experimentalSetForceAudioTrack(composition.forceAudioTrack)
+            .setTransmuxAudio(composition.transmuxAudio)
+            .setTransmuxVideo(composition.transmuxVideo)
+            .build();
+    // Fallback is only reported for the first segment, as all the segments are configured
+    // identically.
+    ListenerSet<Transformer.Listener> fallbackListeners =
+        segmentIndex == 0 ? transformerListeners : createEmptyListenerSet();
+    FallbackListener fallbackListener =
+        new FallbackListener(
+            composition, fallbackListeners, applicationHandler, transformationRequest);
+    TrackFormatRecordingMuxerFactory segmentMuxerFactory =
+        new TrackFormatRecordingMuxerFactory(muxerFactory);
+    segmentMuxerFactories[segmentIndex] = segmentMuxerFactory;
+    TransformerInternal transformerInternal =
+        new TransformerInternal(
+            context,
+            segmentComposition,
+            segmentPaths.get(segmentIndex),
+            transformationRequest,
+            assetLoaderFactory,
+            segmentEncoderFactory,
+            segmentMuxerFactory,
+            processAudioOnSeparateThread,
+            new SegmentListener(segmentIndex),
+            fallbackListener,
+            applicationHandler,
+            debugViewProvider,
+            clock);
+    runningSegmentTransformerInternals.put(segmentIndex, transformerInternal);
+    transformerInternal.start();
+  }
+
+  private void onSegmentCompleted(int segmentIndex, ExportResult exportResult) {
+    if (ended || runningSegmentTransformerInternals.remove(segmentIndex) == null) {
+      return;
+    }
+    segmentExportResults[segmentIndex] = exportResult;
+    exportedSegmentCount++;
+    if (nextSegmentIndex < editedMediaItems.size()) {
+      startNextSegment();
+    } else if (exportedSegmentCount == editedMediaItems.size()) {
+      onAllSegmentsExported();
+    }
+  }
+
+  private void onAllSegmentsExported() {
+    List<ExportResult> exportResults = new ArrayList<>();
+    List<List<Format>> trackFormats = new ArrayList<>();
+    for (int i = 0; i < editedMediaItems.size(); i++) {
+      exportResults.add(checkNotNull(segmentExportResults[i]));
+      trackFormats.add(checkNotNull(segmentMuxerFactories[i]).getTrackFormats());
+    }
+    @Nullable
+    String incompatibility = getConcatenationIncompatibility(exportResults, trackFormats);
+    if (incompatibility == null) {
+      startRemux();
+    } else {
+      Log.w(TAG, "Segments can't be concatenated, exporting sequentially: " + incompatibility);
+      deleteSegmentFiles();
+      startSequentialExport();
+    }
+  }
+
+  private void onSegmentError(
+      int segmentIndex, ExportResult exportResult, ExportException exportException) {
+    if (ended || runningSegmentTransformerInternals.remove(segmentIndex) == null) {
+      return;
+    }
+    endWithError(exportResult, exportException);
+  }
+
+  /** Concatenates the exported segments into the output file, without re-encoding them. */
+  private void startRemux() {
+    ImmutableList.Builder<EditedMediaItem> segmentEditedMediaItems = new ImmutableList.Builder<>();
+    for (int i = 0; i < segmentPaths.size(); i++) {
+      MediaItem segmentMediaItem = MediaItem.fromUri(Uri.fromFile(new File(segmentPaths.get(i))));
+      segmentEditedMediaItems.add(new EditedMediaItem.Builder(segmentMediaItem).build());
+    }
+    Composition remuxComposition =
+        new Composition.Builder(
+                ImmutableList.of(new EditedMediaItemSequence(segmentEditedMediaItems.build())))
+            .setTransmuxAudio(true)
+            .setTransmuxVideo(true)
+            .build();
+    TransformationRequest remuxTransformationRequest = new TransformationRequest.Builder().build();
+    outputTransformerInternal =
+        new TransformerInternal(
+            context,
+            remuxComposition,
+            outputPath,
+            remuxTransformationRequest,
+            new DefaultAssetLoaderFactory(
+                context,
+                new DefaultDecoderFactory(context),
+                /* forceInterpretHdrAsSdr= */ false,
+                clock),
+            encoderFactory,
+            muxerFactory,
+            /* processAudioOnSeparateThread= */ false,
+            new RemuxListener(),
+            new FallbackListener(
+                remuxComposition,
+                createEmptyListenerSet(),
+                applicationHandler,
+                remuxTransformationRequest),
+            applicationHandler,
+            DebugViewProvider.NONE,
+            clock);
+    outputTransformerInternal.start();
+  }
+
+  /** Exports the whole composition to the output file with a single {@link TransformerInternal}. */
+  private void startSequentialExport() {
+    outputTransformerInternal =
+        new TransformerInternal(
+            context,
+            composition,
+            outputPath,
+            transformationRequest,
+            assetLoaderFactory,
+            encoderFactory,
+            muxerFactory,
+            processAudioOnSeparateThread,
+            new SequentialExportListener(),
+            // Fallback has already been reported for the first segment.
+            new FallbackListener(
+                composition, createEmptyListenerSet(), applicationHandler, transformationRequest),
+            applicationHandler,
+            debugViewProvider,
+            clock);
+    outputTransformerInternal.start();
+  }
+
+  private void onRemuxCompleted(ExportResult remuxExportResult) {
+    if (ended) {
+      return;
+    }
+    ended = true;
+    outputTransformerInternal = null;
+    deleteSegmentFiles();
+    listener.onCompleted(buildExportResult(remuxExportResult));
+  }
+
+  private void onRemuxError(ExportResult remuxExportResult, ExportException exportException) {
+    if (ended) {
+      return;
+    }
+    outputTransformerInternal = null;
+    endWithError(buildExportResult(remuxExportResult), exportException);
+  }
+
+  private void onSequentialExportCompleted(ExportResult exportResult) {
+    if (ended) {
+      return;
+    }
+    ended = true;
+    outputTransformerInternal = null;
+    listener.onCompleted(
+        exportResult
+            .buildUpon()
+            .setProcessingTimeMs(clock.elapsedRealtime() - startTimeMs)
+            .build());
+  }
+
+  private void onSequentialExportError(ExportResult exportResult, ExportException exportException) {
+    if (ended) {
+      return;
+    }
+    outputTransformerInternal = null;
+    endWithError(exportResult, exportException);
+  }
+
+  private void endWithError(ExportResult exportResult, ExportException exportException) {
+    ended = true;
+    try {
+      cancelRunningExports();
+    } catch (RuntimeException e) {
+      // The export has already failed, and this failure is the one to report.
+    }
+    deleteSegmentFiles();
+    listener.onError(
+        exportResult.buildUpon().setExportException(exportException).build(), exportException);
+  }
+
+  private ListenerSet<Transformer.Listener> createEmptyListenerSet() {
+    return new ListenerSet<>(applicationHandler.getLooper(), clock, (listener, flags) -> {});
+  }
+
+  /**
+   * Returns the {@link ExportResult} of the whole export, combining the result of the remux with
+   * the results of the segment exports.
+   */
+  private ExportResult buildExportResult(ExportResult remuxExportResult) {
+    ImmutableList.Builder<ExportResult.ProcessedInput> processedInputs =
+        new ImmutableList.Builder<>();
+    @Nullable String audioEncoderName = null;
+    @Nullable String videoEncoderName = null;
+    for (@Nullable ExportResult segmentExportResult : segmentExportResults) {
+      if (segmentExportResult == null) {
+        continue;
+      }
+      processedInputs.addAll(segmentExportResult.processedInputs);
+      if (audioEncoderName == null) {
+        audioEncoderName = segmentExportResult.audioEncoderName;
+      }
+      if (videoEncoderName == null) {
+        videoEncoderName = segmentExportResult.videoEncoderName;
+      }
+    }
+    return remuxExportResult
+        .buildUpon()
+        .setProcessedInputs(processedInputs.build())
+        .setAudioEncoderName(audioEncoderName)
+        .setVideoEncoderName(videoEncoderName)
+        .setProcessingTimeMs(clock.elapsedRealtime() - startTimeMs)
+        .build();
+  }
+
+  private void cancelRunningExports() {
+    @Nullable RuntimeException cancelException = null;
+    List<TransformerInternal> transformerInternals =
+        new ArrayList<>(runningSegmentTransformerInternals.values());
+    runningSegmentTransformerInternals.clear();
+    if (outputTransformerInternal != null) {
+      transformerInternals.add(outputTransformerInternal);
+      outputTransformerInternal = null;
+    }
+    for (int i = 0; i < transformerInternals.size(); i++) {
+      try {
+        transformerInternals.get(i).cancel();
+      } catch (RuntimeException e) {
+        if (cancelException == null) {
+          cancelException = e;
+        }
+      }
+    }
+    if (cancelException != null) {
+      throw cancelException;
+    }
+  }
+
+  private void deleteSegmentFiles() {
+    for (int i = 0; i < segmentPaths.size(); i++) {
+      // The files are temporary, so failing to delete them is not an export error.
+      new File(segmentPaths.get(i)).delete();
+    }
+  }
+
+  /**
+   * Returns why segments can't be losslessly concatenated, or {@code null} if they can.
+   *
+   * <p>Segments can be concatenated if they have tracks of the same types, and the tracks of each
+   * type have the same sample MIME type, codec initialization data, video dimensions and rotation,
+   * and audio channel count, sample rate and PCM encoding.
+   *
+   * @param exportResults The {@link ExportResult} of each segment.
+   * @param trackFormats The formats of the tracks written for each segment.
+   */
+  @Nullable
+  /* package */ static String getConcatenationIncompatibility(
+      List<ExportResult> exportResults, List<List<Format>> trackFormats) {
+    ExportResult firstExportResult = exportResults.get(0);
+    for (int i = 1; i < exportResults.size(); i++) {
+      ExportResult exportResult = exportResults.get(i);
+      if (exportResult.width != firstExportResult.width
+          || exportResult.height != firstExportResult.height) {
+        return "Segment " + i + " has a different resolution than segment 0";
+      }
+      if (exportResult.channelCount != firstExportResult.channelCount
+          || exportResult.sampleRate != firstExportResult.sampleRate) {
+        return "Segment " + i + " has a different audio configuration than segment 0";
+      }
+    }
+    Map<Integer, Format> firstFormatsByTrackType = getFormatsByTrackType(trackFormats.get(0));
+    for (int i = 1; i < trackFormats.size(); i++) {
+      Map<Integer, Format> formatsByTrackType = getFormatsByTrackType(trackFormats.get(i));
+      if (!formatsByTrackType.keySet().equals(firstFormatsByTrackType.keySet())) {
+        return "Segment " + i + " has different track types than segment 0";
+      }
+      for (Map.Entry<Integer, Format> entry : formatsByTrackType.entrySet()) {
+        Format firstFormat = checkNotNull(firstFormatsByTrackType.get(entry.getKey()));
+        if (!canConcatenate(firstFormat, entry.getValue())) {
+          return "Segment " + i + " format " + entry.getValue() + " differs from " + firstFormat;
+        }
+      }
+    }
+    return null;
+  }
+
+  private static Map<Integer, Format> getFormatsByTrackType(List<Format> formats) {
+    Map<Integer, Format> formatsByTrackType = new HashMap<>();
+    for (int i = 0; i < formats.size(); i++) {
+      Format format = formats.get(i);
+      formatsByTrackType.put(MimeTypes.getTrackType(format.sampleMimeType), format);
+    }
+    return formatsByTrackType;
+  }
+
+  private static boolean canConcatenate(Format format1, Format format2) {
+    return Util.areEqual(format1.sampleMimeType, format2.sampleMimeType)
+        && format1.initializationDataEquals(format2)
+        && format1.width == format2.width
+        && format1.height == format2.height
+        && format1.rotationDegrees == format2.rotationDegrees
+        && Util.areEqual(format1.colorInfo, format2.colorInfo)
+        && format1.channelCount == format2.channelCount
+        && format1.sampleRate == format2.sampleRate
+        && format1.pcmEncoding == format2.pcmEncoding;
+  }
+
+  private final class SegmentListener implements TransformerInternal.Listener {
+
+    private final int segmentIndex;
+
+    public SegmentListener(int segmentIndex) {
+      this.segmentIndex = segmentIndex;
+    }
+
+    @Override
+    public void onCompleted(ExportResult exportResult) {
+      onSegmentCompleted(segmentIndex, exportResult);
+    }
+
+    @Override
+    public void onError(ExportResult exportResult, ExportException exportException) {
+      onSegmentError(segmentIndex, exportResult, exportException);
+    }
+  }
+
+  private final class RemuxListener implements TransformerInternal.Listener {
+
+    @Override
+    public void onCompleted(ExportResult exportResult) {
+      onRemuxCompleted(exportResult);
+    }
+
+    @Override
+    public void onError(ExportResult exportResult, ExportException exportException) {
+      onRemuxError(exportResult, exportException);
+    }
+  }
+
+  private final class SequentialExportListener implements TransformerInternal.Listener {
+
+    @Override
+    public void onCompleted(ExportResult exportResult) {
+      onSequentialExportCompleted(exportResult);
+    }
+
+    @Override
+    public void onError(ExportResult exportResult, ExportException exportException) {
+      onSequentialExportError(exportResult, exportException);
+    }
+  }
+
+  /**
+   * A forwarding {@link Muxer.Factory} that records the formats of the tracks added to the muxers
+   * it creates.
+   */
+  private static final class TrackFormatRecordingMuxerFactory implements Muxer.Factory {
+
+    private final Muxer.Factory muxerFactory;
+    private final List<Format> trackFormats;
+
+    public TrackFormatRecordingMuxerFactory(Muxer.Factory muxerFactory) {
+      this.muxerFactory = muxerFactory;
+      trackFormats = new ArrayList<>();
+    }
+
+    /** Returns the formats of the tracks added so far. */
+    public ImmutableList<Format> getTrackFormats() {
+      synchronized (trackFormats) {
+        return ImmutableList.copyOf(trackFormats);
+      }
+    }
+
+    @Override
+    public Muxer create(String path) throws Muxer.MuxerException {
+      return new TrackFormatRecordingMuxer(muxerFactory.create(path), trackFormats);
+    }
+
+    @Override
+    public ImmutableList<String> getSupportedSampleMimeTypes(@C.TrackType int trackType) {
+      return muxerFactory.getSupportedSampleMimeTypes(trackType);
+    }
+  }
+
+  /** A forwarding {@link Muxer} that records the formats of the tracks added to it. */
+  private static final class TrackFormatRecordingMuxer implements Muxer {
+
+    private final Muxer muxer;
+    private final List<Format> trackFormats;
+
+    public TrackFormatRecordingMuxer(Muxer muxer, List<Format> trackFormats) {
+      this.muxer = muxer;
+      this.trackFormats = trackFormats;
+    }
+
+    @Override
+    public int addTrack(Format format) throws MuxerException {
+      int trackIndex = muxer.addTrack(format);
+      synchronized (trackFormats) {
+        trackFormats.add(format);
+      }
+      return trackIndex;
+    }
+
+    @Override
+    public void writeSampleData(
+        int trackIndex, ByteBuffer data, long presentationTimeUs, @C.BufferFlags int flags)
+        throws MuxerException {
+      muxer.writeSampleData(trackIndex, data, presentationTimeUs, flags);
+    }
+
+    @Override
+    public void addMetadata(Metadata metadata) {
+      muxer.addMetadata(metadata);
+    }
+
+    @Override
+    public void release(boolean forCancellation) throws MuxerException {
+      muxer.release(forCancellation);
+    }
+
+    @Override
+    public long getMaxDelayBetweenSamplesMs() {
+      return muxer.getMaxDelayBetweenSamplesMs();
+    }
+  }
+
+  /**
+   * A forwarding {@link Codec.EncoderFactory} that can force encoding.
+   *
+   * <p>Forcing encoding guarantees that all the segments are encoded with the same settings, so
+   * that they can be concatenated without re-encoding.
+   */
+  private static final class SegmentEncoderFactory implements Codec.EncoderFactory {
+
+    private final Codec.EncoderFactory encoderFactory;
+    private final boolean forceAudioEncoding;
+    private final boolean forceVideoEncoding;
+
+    public SegmentEncoderFactory(
+        Codec.EncoderFactory encoderFactory,
+        boolean forceAudioEncoding,
+        boolean forceVideoEncoding) {
+      this.encoderFactory = encoderFactory;
+      this.forceAudioEncoding = forceAudioEncoding;
+      this.forceVideoEncoding = forceVideoEncoding;
+    }
+
+    @Override
+    public Codec createForAudioEncoding(Format format) throws ExportException {
+      return encoderFactory.createForAudioEncoding(format);
+    }
+
+    @Override
+    public Codec createForVideoEncoding(Format format) throws ExportException {
+      return encoderFactory.createForVideoEncoding(format);
+    }
+
+    @Override
+    public boolean audioNeedsEncoding() {
+      return forceAudioEncoding || encoderFactory.audioNeedsEncoding();
+    }
+
+    @Override
+    public boolean videoNeedsEncoding() {
+      return forceVideoEncoding || encoderFactory.videoNeedsEncoding();
+    }
+  }
+}
@@ -84,6 +84,8 @@ public final class Transformer {
     private boolean removeAudio;
     private boolean removeVideo;
     private boolean flattenForSlowMotion;
+    private boolean processAudioOnSeparateThread;
+    private int parallelExportWorkerCount;
     private ListenerSet<Transformer.Listener> listeners;
     private AssetLoader.@MonotonicNonNull Factory assetLoaderFactory;
     private VideoFrameProcessor.Factory videoFrameProcessorFactory;
@@ -108,6 +110,7 @@ public final class Transformer {
       glObjectsProvider = GlObjectsProvider.DEFAULT;
       encoderFactory = new DefaultEncoderFactory.Builder(this.context).build();
       muxerFactory = new DefaultMuxer.Factory();
+      parallelExportWorkerCount = 1;
       looper = Util.getCurrentOrMainLooper();
       debugViewProvider = DebugViewProvider.NONE;
       clock = Clock.DEFAULT;
@@ -122,6 +125,8 @@ public final class Transformer {
       this.videoEffects = transformer.videoEffects;
       this.removeAudio = transformer.removeAudio;
       this.removeVideo = transformer.removeVideo;
+      this.processAudioOnSeparateThread = transformer.processAudioOnSeparateThread;
+      this.parallelExportWorkerCount = transformer.parallelExportWorkerCount;
       this.listeners = transformer.listeners;
       this.assetLoaderFactory = transformer.assetLoaderFactory;
       this.videoFrameProcessorFactory = transformer.videoFrameProcessorFactory;
@@ -206,6 +211,57 @@ public final class Transformer {
       return this;
     }
 
+    /**
+     * Sets whether to process the transcoded audio on a dedicated thread.
+     *
+     * <p>The default value is {@code false}, in which case all the samples are processed on a
+     * single internal thread.
+     *
+     * <p>If {@code true}, audio samples that are decoded, mixed and re-encoded are processed on a
+     * separate thread, so that audio processing can run in parallel with video processing. The
+     * interleaving of the output file is unchanged, but the order in which audio and video samples
+     * are passed to the {@link Muxer} is not deterministic.
+     *
+     * <p>This method is experimental and may be removed or changed without warning.
+     *
+     * @param processAudioOnSeparateThread Whether to process the audio on a dedicated thread.
+     * @return This builder.
+     */
+    @CanIgnoreReturnValue
+    public Builder experimentalSetProcessAudioOnSeparateThread(
+        boolean processAudioOnSeparateThread) {
+      this.processAudioOnSeparateThread = processAudioOnSeparateThread;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of {@linkplain EditedMediaItem items} of a {@link Composition} that
+     * can be exported in parallel.
+     *
+     * <p>The default value is 1, meaning that the items are exported sequentially.
+     *
+     * <p>If greater than 1, and if the {@link Composition} passed to {@link #start(Composition,
+     * String)} contains a single non-looping {@link EditedMediaItemSequence} with several items,
+     * each item is exported to a temporary file, with up to {@code workerCount} items being exported
+     * at the same time. The temporary files are then concatenated into the output file without
+     * re-encoding. Otherwise, the value set is ignored.
+     *
+     * <p>The concatenation requires all the items to produce the same output formats. In
+     * particular, they must have the same video resolution and audio format, and either all or none
+     * of them must contain audio.
+     *
+     * <p>This method is experimental and may be removed or changed without warning.
+     *
+     * @param workerCount The maximum number of items exported in parallel. Must be positive.
+     * @return This builder.
+     */
+    @CanIgnoreReturnValue
+    public Builder experimentalSetParallelExportWorkerCount(int workerCount) {
+      checkArgument(workerCount > 0);
+      this.parallelExportWorkerCount = workerCount;
+      return this;
+    }
+
     /**
      * @deprecated Use {@link #addListener(Listener)}, {@link #removeListener(Listener)} or {@link
      *     #removeAllListeners()} instead.
@@ -396,6 +452,8 @@ public final class Transformer {
           removeAudio,
           removeVideo,
           flattenForSlowMotion,
+          processAudioOnSeparateThread,
+          parallelExportWorkerCount,
           listeners,
           assetLoaderFactory,
           videoFrameProcessorFactory,
@@ -561,6 +619,8 @@ public final class Transformer {
   private final boolean removeAudio;
   private final boolean removeVideo;
   private final boolean flattenForSlowMotion;
+  private final boolean processAudioOnSeparateThread;
+  private final int parallelExportWorkerCount;
   private final ListenerSet<Transformer.Listener> listeners;
   private final AssetLoader.Factory assetLoaderFactory;
   private final VideoFrameProcessor.Factory videoFrameProcessorFactory;
@@ -572,6 +632,7 @@ public final class Transformer {
   private final Clock clock;
 
   @Nullable private TransformerInternal transformerInternal;
+  @Nullable private SegmentedExporter segmentedExporter;
 
   private Transformer(
       Context context,
@@ -581,6 +642,8 @@ public final class Transformer {
       boolean removeAudio,
       boolean removeVideo,
       boolean flattenForSlowMotion,
+      boolean processAudioOnSeparateThread,
+      int parallelExportWorkerCount,
       ListenerSet<Listener> listeners,
       AssetLoader.Factory assetLoaderFactory,
       VideoFrameProcessor.Factory videoFrameProcessorFactory,
@@ -598,6 +661,8 @@ public final class Transformer {
     this.removeAudio = removeAudio;
     this.removeVideo = removeVideo;
     this.flattenForSlowMotion = flattenForSlowMotion;
+    this.processAudioOnSeparateThread = processAudioOnSeparateThread;
+    this.parallelExportWorkerCount = parallelExportWorkerCount;
     this.listeners = listeners;
     this.assetLoaderFactory = assetLoaderFactory;
     this.videoFrameProcessorFactory = videoFrameProcessorFactory;
@@ -711,11 +776,33 @@ public final class Transformer {
         videoEffects.isEmpty()
             || (videoEffects.size() == 1 && videoEffects.get(0) instanceof Presentation));
     verifyApplicationThread();
-    checkState(transformerInternal == null, "There is already an export in progress.");
+    checkState(
+        transformerInternal == null && segmentedExporter == null,
+        "There is already an export in progress.");
 
     TransformerInternalListener transformerInternalListener =
         new TransformerInternalListener(composition);
     HandlerWrapper applicationHandler = clock.createHandler(looper, /* callback= */ null);
+    if (parallelExportWorkerCount > 1 && SegmentedExporter.canExportInSegments(composition)) {
+      segmentedExporter =
+          new SegmentedExporter(
+              context,
+              composition,
+              path,
+              transformationRequest,
+              assetLoaderFactory,
+              encoderFactory,
+              muxerFactory,
+              processAudioOnSeparateThread,
+              parallelExportWorkerCount,
+              transformerInternalListener,
+              listeners,
+              applicationHandler,
+              debugViewProvider,
+              clock);
+      segmentedExporter.start();
+      return;
+    }
     FallbackListener fallbackListener =
         new FallbackListener(composition, listeners, applicationHandler, transformationRequest);
     transformerInternal =
@@ -727,6 +814,7 @@ public final class Transformer {
             assetLoaderFactory,
             encoderFactory,
             muxerFactory,
+            processAudioOnSeparateThread,
             transformerInternalListener,
             fallbackListener,
             applicationHandler,
@@ -841,6 +929,9 @@ public final class Transformer {
    */
   public @ProgressState int getProgress(ProgressHolder progressHolder) {
     verifyApplicationThread();
+    if (segmentedExporter != null) {
+      return segmentedExporter.getProgress(progressHolder);
+    }
     return transformerInternal == null
         ? PROGRESS_STATE_NOT_STARTED
         : transformerInternal.getProgress(progressHolder);
@@ -855,6 +946,14 @@ public final class Transformer {
    */
   public void cancel() {
     verifyApplicationThread();
+    if (segmentedExporter != null) {
+      try {
+        segmentedExporter.cancel();
+      } finally {
+        segmentedExporter = null;
+      }
+      return;
+    }
     if (transformerInternal == null) {
       return;
     }
@@ -883,6 +982,7 @@ public final class Transformer {
     public void onCompleted(ExportResult exportResult) {
       // TODO(b/213341814): Add event flags for Transformer events.
       transformerInternal = null;
+      segmentedExporter = null;
       listeners.queueEvent(
           /* eventFlag= */ C.INDEX_UNSET,
           listener -> listener.onCompleted(composition, exportResult));
@@ -892,6 +992,7 @@ public final class Transformer {
     @Override
     public void onError(ExportResult exportResult, ExportException exportException) {
       transformerInternal = null;
+      segmentedExporter = null;
       listeners.queueEvent(
           /* eventFlag= */ C.INDEX_UNSET,
           listener -> listener.onError(composition, exportResult, exportException));
@@ -110,12 +110,17 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   private final AtomicBoolean outputHasAudio;
   private final AtomicBoolean outputHasVideo;
   private final List<SamplePipeline> samplePipelines;
+  private final List<SamplePipeline> internalThreadSamplePipelines;
+  @Nullable private final HandlerThread audioHandlerThread;
+  @Nullable private final HandlerWrapper audioHandler;
+  private final Object audioProcessingLock;
   private final Object setMaxSequenceDurationUsLock;
   private final MuxerWrapper muxerWrapper;
   private final ConditionVariable transformerConditionVariable;
   private final ExportResult.Builder exportResultBuilder;
 
   private boolean isDrainingPipelines;
+  private long startTimeMs;
   private long currentMaxSequenceDurationUs;
   private int nonLoopingSequencesWithNonFinalDuration;
   private @Transformer.ProgressState int progressState;
@@ -133,6 +138,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
       AssetLoader.Factory assetLoaderFactory,
       Codec.EncoderFactory encoderFactory,
       Muxer.Factory muxerFactory,
+      boolean processAudioOnSeparateThread,
       Listener listener,
       FallbackListener fallbackListener,
       HandlerWrapper applicationHandler,
@@ -178,14 +184,25 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     outputHasAudio = new AtomicBoolean();
     outputHasVideo = new AtomicBoolean();
     samplePipelines = new ArrayList<>();
+    internalThreadSamplePipelines = new ArrayList<>();
+    audioProcessingLock = new Object();
     setMaxSequenceDurationUsLock = new Object();
     transformerConditionVariable = new ConditionVariable();
     exportResultBuilder = new ExportResult.Builder();
+    startTimeMs = C.TIME_UNSET;
     // It's safe to use "this" because we don't send a message before exiting the constructor.
     @SuppressWarnings("nullness:methodref.receiver.bound")
     HandlerWrapper internalHandler =
         clock.createHandler(internalLooper, /* callback= */ this::handleMessage);
     this.internalHandler = internalHandler;
+    if (processAudioOnSeparateThread) {
+      audioHandlerThread = new HandlerThread("Transformer:Audio");
+      audioHandlerThread.start();
+      audioHandler = clock.createHandler(audioHandlerThread.getLooper(), /* callback= */ null);
+    } else {
+      audioHandlerThread = null;
+      audioHandler = null;
+    }
     // It's safe to use "this" because we don't mux any data before exiting the constructor.
     @SuppressWarnings("nullness:argument.type.incompatible")
     MuxerWrapper muxerWrapper = new MuxerWrapper(outputPath, muxerFactory, /* listener= */ this);
@@ -227,6 +244,32 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   @Override
   public void onTrackEnded(
       @C.TrackType int trackType, Format format, int averageBitrate, int sampleCount) {
+    // The muxer may be called from the audio processing thread, and exportResultBuilder is only
+    // accessed on the internal thread.
+    internalHandler.post(
+        () -> onTrackEndedInternal(trackType, format, averageBitrate, sampleCount));
+  }
+
+  @Override
+  public void onEnded(long durationMs, long fileSizeBytes) {
+    internalHandler.post(
+        () -> exportResultBuilder.setDurationMs(durationMs).setFileSizeBytes(fileSizeBytes));
+    internalHandler
+        .obtainMessage(MSG_END, END_REASON_COMPLETED, /* unused */ 0, /* exportException */ null)
+        .sendToTarget();
+  }
+
+  @Override
+  public void onError(ExportException exportException) {
+    internalHandler
+        .obtainMessage(MSG_END, END_REASON_ERROR, /* unused */ 0, exportException)
+        .sendToTarget();
+  }
+
+  // Private methods.
+
+  private void onTrackEndedInternal(
+      @C.TrackType int trackType, Format format, int averageBitrate, int sampleCount) {
     if (trackType == C.TRACK_TYPE_AUDIO) {
       exportResultBuilder.setAverageAudioBitrate(averageBitrate);
       if (format.channelCount != Format.NO_VALUE) {
@@ -249,24 +292,6 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     }
   }
 
-  @Override
-  public void onEnded(long durationMs, long fileSizeBytes) {
-    exportResultBuilder.setDurationMs(durationMs).setFileSizeBytes(fileSizeBytes);
-
-    internalHandler
-        .obtainMessage(MSG_END, END_REASON_COMPLETED, /* unused */ 0, /* exportException */ null)
-        .sendToTarget();
-  }
-
-  @Override
-  public void onError(ExportException exportException) {
-    internalHandler
-        .obtainMessage(MSG_END, END_REASON_ERROR, /* unused */ 0, exportException)
-        .sendToTarget();
-  }
-
-  // Private methods.
-
   private boolean handleMessage(Message msg) {
     // Some messages cannot be ignored when resources have been released. End messages must be
     // handled to report release timeouts and to unblock the transformer condition variable in case
@@ -304,6 +329,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   }
 
   private void startInternal() {
+    startTimeMs = clock.elapsedRealtime();
     for (int i = 0; i < sequenceAssetLoaders.size(); i++) {
       sequenceAssetLoaders.get(i).start();
     }
@@ -311,6 +337,12 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
   private void registerSamplePipelineInternal(SamplePipeline samplePipeline) {
     samplePipelines.add(samplePipeline);
+    if (audioHandler != null && samplePipeline instanceof AudioSamplePipeline) {
+      HandlerWrapper audioHandler = this.audioHandler;
+      audioHandler.post(() -> drainAudioPipeline(audioHandler, samplePipeline));
+      return;
+    }
+    internalThreadSamplePipelines.add(samplePipeline);
     if (!isDrainingPipelines) {
       internalHandler.sendEmptyMessage(MSG_DRAIN_PIPELINES);
       isDrainingPipelines = true;
@@ -318,8 +350,8 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   }
 
   private void drainPipelinesInternal() throws ExportException {
-    for (int i = 0; i < samplePipelines.size(); i++) {
-      while (samplePipelines.get(i).processData()) {}
+    for (int i = 0; i < internalThreadSamplePipelines.size(); i++) {
+      while (internalThreadSamplePipelines.get(i).processData()) {}
     }
 
     if (!muxerWrapper.isEnded()) {
@@ -327,6 +359,36 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     }
   }
 
+  /**
+   * Drains an audio {@link SamplePipeline} on the audio thread, and reschedules itself until the
+   * export ends.
+   *
+   * <p>The muxer interleaving provides the backpressure between the audio and video pipelines: if
+   * the audio is too far ahead, {@link SamplePipeline#processData()} returns {@code false} and the
+   * audio thread waits for the video to catch up.
+   */
+  private void drainAudioPipeline(HandlerWrapper audioHandler, SamplePipeline samplePipeline) {
+    synchronized (audioProcessingLock) {
+      if (released) {
+        return;
+      }
+      try {
+        while (samplePipeline.processData()) {}
+      } catch (ExportException e) {
+        onError(e);
+        return;
+      } catch (RuntimeException e) {
+        onError(ExportException.createForUnexpected(e));
+        return;
+      }
+    }
+
+    if (!muxerWrapper.isEnded()) {
+      audioHandler.postDelayed(
+          () -> drainAudioPipeline(audioHandler, samplePipeline), DRAIN_PIPELINES_DELAY_MS);
+    }
+  }
+
   private void endInternal(@EndReason int endReason, @Nullable ExportException exportException) {
     ImmutableList.Builder<ExportResult.ProcessedInput> processedInputsBuilder =
         new ImmutableList.Builder<>();
@@ -337,6 +399,9 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
         .setProcessedInputs(processedInputsBuilder.build())
         .setAudioEncoderName(encoderFactory.getAudioEncoderName())
         .setVideoEncoderName(encoderFactory.getVideoEncoderName());
+    if (startTimeMs != C.TIME_UNSET && !released) {
+      exportResultBuilder.setProcessingTimeMs(clock.elapsedRealtime() - startTimeMs);
+    }
 
     boolean forCancellation = endReason == END_REASON_CANCELLED;
     @Nullable ExportException releaseExportException = null;
@@ -355,16 +420,23 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
           }
         }
       }
-      for (int i = 0; i < samplePipelines.size(); i++) {
-        try {
-          samplePipelines.get(i).release();
-        } catch (RuntimeException e) {
-          if (releaseExportException == null) {
-            releaseExportException = ExportException.createForUnexpected(e);
-            cancelException = e;
+      // Wait for the audio thread to finish processing the current data, if any. The audio
+      // pipelines won't be drained anymore as the released flag is set.
+      synchronized (audioProcessingLock) {
+        for (int i = 0; i < samplePipelines.size(); i++) {
+          try {
+            samplePipelines.get(i).release();
+          } catch (RuntimeException e) {
+            if (releaseExportException == null) {
+              releaseExportException = ExportException.createForUnexpected(e);
+              cancelException = e;
+            }
           }
         }
       }
+      if (audioHandlerThread != null) {
+        audioHandlerThread.quitSafely();
+      }
       try {
         muxerWrapper.release(forCancellation);
       } catch (Muxer.MuxerException e) {
@@ -402,15 +474,15 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
         return;
       }
       ExportException finalException = exception;
-      applicationHandler.post(
-          () ->
-              listener.onError(
-                  exportResultBuilder.setExportException(finalException).build(), finalException));
+      // Build the result on the internal thread, as the builder is not thread-safe.
+      ExportResult exportResult = exportResultBuilder.setExportException(finalException).build();
+      applicationHandler.post(() -> listener.onError(exportResult, finalException));
     } else {
       if (releasedPreviously) {
         return;
       }
-      applicationHandler.post(() -> listener.onCompleted(exportResultBuilder.build()));
+      ExportResult exportResult = exportResultBuilder.build();
+      applicationHandler.post(() -> listener.onCompleted(exportResult));
     }
   }
 
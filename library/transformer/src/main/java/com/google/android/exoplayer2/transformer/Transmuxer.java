@@ -0,0 +1,742 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.transformer;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import android.content.Context;
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
+import com.google.android.exoplayer2.extractor.DummyTrackOutput;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.extractor.SeekPoint;
+import com.google.android.exoplayer2.extractor.TrackOutput;
+import com.google.android.exoplayer2.source.BundledExtractorsAdapter;
+import com.google.android.exoplayer2.upstream.DataReader;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceUtil;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultDataSource;
+import com.google.android.exoplayer2.util.Clock;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import com.google.android.exoplayer2.util.Util;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+
+/**
+ * Transmuxes a {@link MediaItem} to a new container without decoding or encoding it.
+ *
+ * <p>Compared to a {@link Transformer} export that doesn't require transcoding, samples are read by
+ * an {@link Extractor} and passed straight to the {@link Muxer}: no player, renderer, codec or
+ * sample queue is created, and each sample is copied only once, from the {@link DataSource} into a
+ * buffer that is reused for all the samples of its track.
+ *
+ * <p>The output contains at most one video track and one audio track. Other track types are
+ * ignored. If the {@link MediaItem#clippingConfiguration} has a start position, the output starts
+ * at the last key frame at or before that position, as trimming at any other position requires
+ * transcoding. Clipping follows decode order: the samples that follow the start key frame in
+ * decode order are kept, even if they're presented before it. The output timestamps start at zero.
+ *
+ * <p>Encrypted media is not supported.
+ *
+ * <p>{@link #transmux(MediaItem, String)} is blocking, so it must not be called on the
+ * application's main thread. An instance can be used to transmux several items sequentially or
+ * from several threads.
+ */
+public final class Transmuxer {
+
+  /** A builder for {@link Transmuxer} instances. */
+  public static final class Builder {
+
+    private DataSource.Factory dataSourceFactory;
+    private ExtractorsFactory extractorsFactory;
+    private Muxer.Factory muxerFactory;
+
+    /**
+     * Creates a builder with default values.
+     *
+     * @param context The {@link Context}.
+     */
+    public Builder(Context context) {
+      dataSourceFactory = new DefaultDataSource.Factory(context.getApplicationContext());
+      extractorsFactory = new DefaultExtractorsFactory();
+      muxerFactory = new DefaultMuxer.Factory();
+    }
+
+    /**
+     * Sets the {@link DataSource.Factory} used to read the input.
+     *
+     * <p>The default value is a {@link DefaultDataSource.Factory}.
+     *
+     * @param dataSourceFactory A {@link DataSource.Factory}.
+     * @return This builder.
+     */
+    @CanIgnoreReturnValue
+    public Builder setDataSourceFactory(DataSource.Factory dataSourceFactory) {
+      this.dataSourceFactory = dataSourceFactory;
+      return this;
+    }
+
+    /**
+     * Sets the {@link ExtractorsFactory} providing the extractors to read the input with.
+     *
+     * <p>The default value is a {@link DefaultExtractorsFactory}.
+     *
+     * @param extractorsFactory An {@link ExtractorsFactory}.
+     * @return This builder.
+     */
+    @CanIgnoreReturnValue
+    public Builder setExtractorsFactory(ExtractorsFactory extractorsFactory) {
+      this.extractorsFactory = extractorsFactory;
+      return this;
+    }
+
+    /**
+     * Sets the factory for muxers that write the media container.
+     *
+     * <p>The default value is a {@link DefaultMuxer.Factory}.
+     *
+     * @param muxerFactory A {@link Muxer.Factory}.
+     * @return This builder.
+     */
+    @CanIgnoreReturnValue
+    public Builder setMuxerFactory(Muxer.Factory muxerFactory) {
+      this.muxerFactory = muxerFactory;
+      return this;
+    }
+
+    /** Builds a {@link Transmuxer} instance. */
+    public Transmuxer build() {
+      return new Transmuxer(dataSourceFactory, extractorsFactory, muxerFactory);
+    }
+  }
+
+  private final DataSource.Factory dataSourceFactory;
+  private final ExtractorsFactory extractorsFactory;
+  private final Muxer.Factory muxerFactory;
+
+  private Transmuxer(
+      DataSource.Factory dataSourceFactory,
+      ExtractorsFactory extractorsFactory,
+      Muxer.Factory muxerFactory) {
+    this.dataSourceFactory = dataSourceFactory;
+    this.extractorsFactory = extractorsFactory;
+    this.muxerFactory = muxerFactory;
+  }
+
+  /**
+   * Transmuxes the given {@link MediaItem}.
+   *
+   * @param mediaItem The {@link MediaItem} to transmux. It must have a {@link
+   *     MediaItem.LocalConfiguration}.
+   * @param path The path to the output file.
+   * @return The {@link ExportResult}.
+   * @throws ExportException If the input can't be read, contains a sample format that the muxer
+   *     doesn't support, or if muxing fails.
+   */
+  public ExportResult transmux(MediaItem mediaItem, String path) throws ExportException {
+    long startTimeMs = Clock.DEFAULT.elapsedRealtime();
+    Uri uri = checkNotNull(mediaItem.localConfiguration).uri;
+    MediaItem.ClippingConfiguration clippingConfiguration = mediaItem.clippingConfiguration;
+    long endPositionUs =
+        clippingConfiguration.endPositionMs == C.TIME_END_OF_SOURCE
+            ? C.TIME_END_OF_SOURCE
+            : Util.msToUs(clippingConfiguration.endPositionMs);
+    TransmuxingOutput output =
+        new TransmuxingOutput(
+            path, Util.msToUs(clippingConfiguration.startPositionMs), endPositionUs);
+    DataSource dataSource = dataSourceFactory.createDataSource();
+    BundledExtractorsAdapter extractor = new BundledExtractorsAdapter(extractorsFactory);
+    PositionHolder positionHolder = new PositionHolder();
+    boolean pendingExtractorSeek = false;
+    long seekTimeUs = 0;
+    try {
+      int result = Extractor.RESULT_CONTINUE;
+      while (result == Extractor.RESULT_CONTINUE && !output.isEnded()) {
+        try {
+          long position = positionHolder.position;
+          long length =
+              dataSource.open(
+                  new DataSpec.Builder().setUri(uri).setPosition(position).build());
+          if (length != C.LENGTH_UNSET) {
+            length += position;
+          }
+          extractor.init(
+              dataSource, uri, dataSource.getResponseHeaders(), position, length, output);
+          if (pendingExtractorSeek) {
+            extractor.seek(position, seekTimeUs);
+            pendingExtractorSeek = false;
+          }
+          while (result == Extractor.RESULT_CONTINUE && !output.isEnded()) {
+            result = extractor.read(positionHolder);
+            output.maybeThrowError();
+            @Nullable SeekPoint startSeekPoint = output.getPendingStartSeekPoint();
+            if (startSeekPoint != null) {
+              positionHolder.position = startSeekPoint.position;
+              seekTimeUs = startSeekPoint.timeUs;
+              pendingExtractorSeek = true;
+              result = Extractor.RESULT_SEEK;
+            }
+          }
+        } finally {
+          if (result == Extractor.RESULT_SEEK) {
+            result = Extractor.RESULT_CONTINUE;
+          } else if (extractor.getCurrentInputPosition() != C.INDEX_UNSET) {
+            positionHolder.position = extractor.getCurrentInputPosition();
+          }
+          DataSourceUtil.closeQuietly(dataSource);
+        }
+      }
+      return output
+          .finish()
+          .setProcessingTimeMs(Clock.DEFAULT.elapsedRealtime() - startTimeMs)
+          .build();
+    } catch (IOException e) {
+      output.releaseQuietly();
+      throw ExportException.createForAssetLoader(e, ExportException.ERROR_CODE_IO_UNSPECIFIED);
+    } catch (Muxer.MuxerException e) {
+      output.releaseQuietly();
+      throw ExportException.createForMuxer(e, ExportException.ERROR_CODE_MUXING_FAILED);
+    } catch (ExportException e) {
+      output.releaseQuietly();
+      throw e;
+    } catch (RuntimeException e) {
+      output.releaseQuietly();
+      throw ExportException.createForUnexpected(e);
+    } finally {
+      extractor.release();
+    }
+  }
+
+  /**
+   * An {@link ExtractorOutput} that writes the samples of one audio and one video track to a
+   * {@link Muxer}.
+   */
+  private final class TransmuxingOutput implements ExtractorOutput {
+
+    private final String path;
+    private final long startPositionUs;
+    private final long endPositionUs;
+    private final List<TransmuxingTrackOutput> trackOutputs;
+
+    private boolean tracksEnded;
+    private boolean hasAudioTrack;
+    private boolean hasVideoTrack;
+    private boolean startSeekPerformed;
+    @Nullable private SeekPoint pendingStartSeekPoint;
+    private long seekTimeUs;
+    private long earliestVideoSampleTimeUs;
+    private long outputStartTimeUs;
+    @Nullable private Exception error;
+    private @MonotonicNonNull Muxer muxer;
+    private boolean muxerReleased;
+
+    public TransmuxingOutput(String path, long startPositionUs, long endPositionUs) {
+      this.path = path;
+      this.startPositionUs = startPositionUs;
+      this.endPositionUs = endPositionUs;
+      trackOutputs = new ArrayList<>();
+      seekTimeUs = startPositionUs;
+      earliestVideoSampleTimeUs = Long.MAX_VALUE;
+      outputStartTimeUs = C.TIME_UNSET;
+    }
+
+    // ExtractorOutput implementation.
+
+    @Override
+    public TrackOutput track(int id, @C.TrackType int type) {
+      if (type == C.TRACK_TYPE_AUDIO && !hasAudioTrack) {
+        hasAudioTrack = true;
+      } else if (type == C.TRACK_TYPE_VIDEO && !hasVideoTrack) {
+        hasVideoTrack = true;
+      } else {
+        // The muxer supports at most one audio and one video track. Skip the data of other tracks
+        // without copying it.
+        return new DummyTrackOutput();
+      }
+      TransmuxingTrackOutput trackOutput = new TransmuxingTrackOutput(this, type);
+      trackOutputs.add(trackOutput);
+      return trackOutput;
+    }
+
+    @Override
+    public void endTracks() {
+      tracksEnded = true;
+      maybeInitMuxer();
+    }
+
+    @Override
+    public void seekMap(SeekMap seekMap) {
+      if (startPositionUs == 0 || startSeekPerformed || !seekMap.isSeekable()) {
+        return;
+      }
+      startSeekPerformed = true;
+      SeekPoint seekPoint = seekMap.getSeekPoints(startPositionUs).first;
+      pendingStartSeekPoint = seekPoint;
+      seekTimeUs = seekPoint.timeUs;
+    }
+
+    // Package methods called by the track outputs.
+
+    /**
+     * Returns the time of the position from which the input is read, in microseconds. Each track
+     * starts at its first key frame at or after this time.
+     */
+    public long getSeekTimeUs() {
+      return seekTimeUs;
+    }
+
+    /**
+     * Returns the input time corresponding to a zero output timestamp, in microseconds, or {@link
+     * C#TIME_UNSET} if it isn't known yet.
+     */
+    public long getOutputStartTimeUs() {
+      return outputStartTimeUs;
+    }
+
+    public long getEndPositionUs() {
+      return endPositionUs;
+    }
+
+    public void onFormat() {
+      maybeInitMuxer();
+    }
+
+    /**
+     * Called by the track outputs for each sample they output, before writing it.
+     *
+     * <p>Samples that follow the video start key frame in decode order but are presented before it
+     * (leading B-frames) can move the output start time earlier, so the start time is only known
+     * once a video sample presented after the key frame is output.
+     */
+    public void onSampleOutput(TransmuxingTrackOutput trackOutput, long timeUs) {
+      if (outputStartTimeUs != C.TIME_UNSET || !tracksEnded) {
+        return;
+      }
+      if (!hasVideoTrack) {
+        setOutputStartTimeUs(seekTimeUs);
+      } else if (trackOutput.trackType == C.TRACK_TYPE_VIDEO) {
+        if (timeUs > trackOutput.getStartKeyFrameTimeUs()) {
+          setOutputStartTimeUs(min(seekTimeUs, earliestVideoSampleTimeUs));
+        } else {
+          earliestVideoSampleTimeUs = min(earliestVideoSampleTimeUs, timeUs);
+        }
+      }
+    }
+
+    /**
+     * Returns the {@link Muxer} if all the track formats have been added to it and the output
+     * start time is known.
+     */
+    @Nullable
+    public Muxer getMuxerIfReady() {
+      return outputStartTimeUs == C.TIME_UNSET ? null : muxer;
+    }
+
+    public void onError(Exception error) {
+      if (this.error == null) {
+        this.error = error;
+      }
+    }
+
+    // Methods called by the transmuxer.
+
+    /**
+     * Returns the {@link SeekPoint} to seek to in order to start at the clipping start position,
+     * or {@code null} if no seek is pending. The pending seek is cleared by this method.
+     */
+    @Nullable
+    public SeekPoint getPendingStartSeekPoint() {
+      @Nullable SeekPoint seekPoint = pendingStartSeekPoint;
+      if (seekPoint != null) {
+        pendingStartSeekPoint = null;
+        for (int i = 0; i < trackOutputs.size(); i++) {
+          trackOutputs.get(i).discardPendingData();
+        }
+      }
+      return seekPoint;
+    }
+
+    public void maybeThrowError() throws IOException, Muxer.MuxerException, ExportException {
+      @Nullable Exception error = this.error;
+      if (error == null) {
+        return;
+      }
+      if (error instanceof IOException) {
+        throw (IOException) error;
+      } else if (error instanceof Muxer.MuxerException) {
+        throw (Muxer.MuxerException) error;
+      } else if (error instanceof ExportException) {
+        throw (ExportException) error;
+      }
+      throw new IllegalStateException(error);
+    }
+
+    /** Returns whether all the tracks have reached the clipping end position. */
+    public boolean isEnded() {
+      if (!tracksEnded || trackOutputs.isEmpty()) {
+        return false;
+      }
+      for (int i = 0; i < trackOutputs.size(); i++) {
+        if (!trackOutputs.get(i).isEnded()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Finishes writing the output and returns an {@link ExportResult.Builder} describing it.
+     *
+     * @throws ExportException If the input doesn't contain any audio or video sample.
+     * @throws Muxer.MuxerException If the muxer fails to finish writing the output.
+     */
+    public ExportResult.Builder finish() throws ExportException, Muxer.MuxerException {
+      if (muxer == null) {
+        throw ExportException.createForAssetLoader(
+            new IllegalStateException("The input doesn't contain any supported track."),
+            ExportException.ERROR_CODE_FAILED_RUNTIME_CHECK);
+      }
+      if (outputStartTimeUs == C.TIME_UNSET) {
+        // The input ended before a video sample presented after the start key frame.
+        outputStartTimeUs = min(seekTimeUs, earliestVideoSampleTimeUs);
+        writePendingSamples(muxer);
+      }
+      ExportResult.Builder exportResultBuilder = new ExportResult.Builder();
+      long durationUs = 0;
+      for (int i = 0; i < trackOutputs.size(); i++) {
+        TransmuxingTrackOutput trackOutput = trackOutputs.get(i);
+        Format format = checkNotNull(trackOutput.format);
+        durationUs = max(durationUs, trackOutput.lastSampleTimeUs);
+        int averageBitrate = trackOutput.getAverageBitrate();
+        if (trackOutput.trackType == C.TRACK_TYPE_AUDIO) {
+          exportResultBuilder.setAverageAudioBitrate(averageBitrate);
+          if (format.channelCount != Format.NO_VALUE) {
+            exportResultBuilder.setChannelCount(format.channelCount);
+          }
+          if (format.sampleRate != Format.NO_VALUE) {
+            exportResultBuilder.setSampleRate(format.sampleRate);
+          }
+        } else {
+          exportResultBuilder
+              .setAverageVideoBitrate(averageBitrate)
+              .setColorInfo(format.colorInfo)
+              .setVideoFrameCount(trackOutput.sampleCount);
+          if (format.height != Format.NO_VALUE) {
+            exportResultBuilder.setHeight(format.height);
+          }
+          if (format.width != Format.NO_VALUE) {
+            exportResultBuilder.setWidth(format.width);
+          }
+        }
+      }
+      muxerReleased = true;
+      muxer.release(/* forCancellation= */ false);
+      long fileSizeBytes = new File(path).length();
+      return exportResultBuilder
+          .setDurationMs(Util.usToMs(durationUs))
+          .setFileSizeBytes(fileSizeBytes > 0 ? fileSizeBytes : C.LENGTH_UNSET);
+    }
+
+    /** Releases the muxer after a failure. */
+    public void releaseQuietly() {
+      if (muxer != null && !muxerReleased) {
+        muxerReleased = true;
+        try {
+          muxer.release(/* forCancellation= */ true);
+        } catch (Muxer.MuxerException e) {
+          // The transmuxing has already failed, and this failure is the one to report.
+        }
+      }
+    }
+
+    private void maybeInitMuxer() {
+      if (muxer != null || !tracksEnded || trackOutputs.isEmpty()) {
+        return;
+      }
+      for (int i = 0; i < trackOutputs.size(); i++) {
+        if (trackOutputs.get(i).format == null) {
+          return;
+        }
+      }
+      for (int i = 0; i < trackOutputs.size(); i++) {
+        TransmuxingTrackOutput trackOutput = trackOutputs.get(i);
+        @Nullable String sampleMimeType = checkNotNull(trackOutput.format).sampleMimeType;
+        List<String> supportedSampleMimeTypes =
+            muxerFactory.getSupportedSampleMimeTypes(trackOutput.trackType);
+        if (!supportedSampleMimeTypes.contains(sampleMimeType)) {
+          onError(
+              ExportException.createForMuxer(
+                  new IllegalArgumentException("Unsupported sample MIME type " + sampleMimeType),
+                  ExportException.ERROR_CODE_MUXING_FAILED));
+          return;
+        }
+      }
+      try {
+        Muxer muxer = muxerFactory.create(path);
+        this.muxer = muxer;
+        for (int i = 0; i < trackOutputs.size(); i++) {
+          TransmuxingTrackOutput trackOutput = trackOutputs.get(i);
+          Format format = checkNotNull(trackOutput.format);
+          trackOutput.muxerTrackIndex = muxer.addTrack(format);
+          if (format.metadata != null) {
+            muxer.addMetadata(format.metadata);
+          }
+        }
+        if (outputStartTimeUs != C.TIME_UNSET) {
+          writePendingSamples(muxer);
+        }
+      } catch (Muxer.MuxerException e) {
+        onError(e);
+      }
+    }
+
+    private void setOutputStartTimeUs(long outputStartTimeUs) {
+      this.outputStartTimeUs = outputStartTimeUs;
+      if (muxer == null) {
+        return;
+      }
+      try {
+        writePendingSamples(muxer);
+      } catch (Muxer.MuxerException e) {
+        onError(e);
+      }
+    }
+
+    private void writePendingSamples(Muxer muxer) throws Muxer.MuxerException {
+      for (int i = 0; i < trackOutputs.size(); i++) {
+        trackOutputs.get(i).writePendingSamples(muxer);
+      }
+    }
+  }
+
+  /**
+   * A {@link TrackOutput} that writes the samples of a track to a {@link Muxer}.
+   *
+   * <p>The sample data is read into a buffer that is reused for all the samples. Samples that are
+   * output before the muxer is ready are kept in memory until all the track formats are known.
+   */
+  private static final class TransmuxingTrackOutput implements TrackOutput {
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    public final @C.TrackType int trackType;
+
+    @Nullable public Format format;
+    public int muxerTrackIndex;
+    public int sampleCount;
+    public long lastSampleTimeUs;
+
+    private final TransmuxingOutput output;
+    private final List<PendingSample> pendingSamples;
+
+    /** Holds the sample data that has been output but not consumed by a sample yet. */
+    private byte[] data;
+
+    private int dataLength;
+    private long bytesWritten;
+    private long startKeyFrameTimeUs;
+    private boolean ended;
+
+    public TransmuxingTrackOutput(TransmuxingOutput output, @C.TrackType int trackType) {
+      this.output = output;
+      this.trackType = trackType;
+      pendingSamples = new ArrayList<>();
+      data = new byte[INITIAL_BUFFER_SIZE];
+      startKeyFrameTimeUs = C.TIME_UNSET;
+    }
+
+    // TrackOutput implementation.
+
+    @Override
+    public void format(Format format) {
+      boolean isFirstFormat = this.format == null;
+      this.format = format;
+      if (isFirstFormat) {
+        output.onFormat();
+      }
+    }
+
+    @Override
+    public int sampleData(
+        DataReader input, int length, boolean allowEndOfInput, @SampleDataPart int sampleDataPart)
+        throws IOException {
+      ensureCapacity(dataLength + length);
+      int bytesRead = input.read(data, dataLength, length);
+      if (bytesRead == C.RESULT_END_OF_INPUT) {
+        if (allowEndOfInput) {
+          return C.RESULT_END_OF_INPUT;
+        }
+        throw new EOFException();
+      }
+      dataLength += bytesRead;
+      return bytesRead;
+    }
+
+    @Override
+    public void sampleData(ParsableByteArray data, int length, @SampleDataPart int sampleDataPart) {
+      ensureCapacity(dataLength + length);
+      data.readBytes(this.data, dataLength, length);
+      dataLength += length;
+    }
+
+    @Override
+    public void sampleMetadata(
+        long timeUs,
+        @C.BufferFlags int flags,
+        int size,
+        int offset,
+        @Nullable CryptoData cryptoData) {
+      int sampleStart = dataLength - offset - size;
+      try {
+        if (cryptoData != null) {
+          output.onError(
+              ExportException.createForAssetLoader(
+                  new IllegalStateException("Encrypted samples can't be transmuxed."),
+                  ExportException.ERROR_CODE_FAILED_RUNTIME_CHECK));
+          return;
+        }
+        if (ended) {
+          return;
+        }
+        boolean isKeyFrame = (flags & C.BUFFER_FLAG_KEY_FRAME) != 0;
+        if (startKeyFrameTimeUs == C.TIME_UNSET) {
+          // The output of each track must start with a key frame. The samples that follow it are
+          // selected by decode order rather than by presentation time, so that B-frames presented
+          // before the key frame aren't dropped.
+          if (!isKeyFrame || timeUs < output.getSeekTimeUs()) {
+            return;
+          }
+          startKeyFrameTimeUs = timeUs;
+        }
+        long endPositionUs = output.getEndPositionUs();
+        if (endPositionUs != C.TIME_END_OF_SOURCE && timeUs >= endPositionUs) {
+          ended = true;
+          return;
+        }
+        output.onSampleOutput(this, timeUs);
+        int muxerFlags = isKeyFrame ? C.BUFFER_FLAG_KEY_FRAME : 0;
+        @Nullable Muxer muxer = output.getMuxerIfReady();
+        if (muxer == null) {
+          pendingSamples.add(
+              new PendingSample(
+                  Arrays.copyOfRange(data, sampleStart, sampleStart + size), timeUs, muxerFlags));
+        } else {
+          writeSample(muxer, ByteBuffer.wrap(data, sampleStart, size), timeUs, muxerFlags);
+        }
+      } catch (Muxer.MuxerException e) {
+        output.onError(e);
+      } finally {
+        // Keep the data of the following samples, if any.
+        System.arraycopy(data, dataLength - offset, data, /* destPos= */ 0, offset);
+        dataLength = offset;
+      }
+    }
+
+    // Methods called by the output.
+
+    public boolean isEnded() {
+      return ended;
+    }
+
+    /**
+     * Returns the time of the key frame the output of this track starts at, or {@link
+     * C#TIME_UNSET} if no sample has been output yet.
+     */
+    public long getStartKeyFrameTimeUs() {
+      return startKeyFrameTimeUs;
+    }
+
+    public void discardPendingData() {
+      dataLength = 0;
+    }
+
+    public void writePendingSamples(Muxer muxer) throws Muxer.MuxerException {
+      for (int i = 0; i < pendingSamples.size(); i++) {
+        PendingSample sample = pendingSamples.get(i);
+        writeSample(muxer, ByteBuffer.wrap(sample.data), sample.timeUs, sample.flags);
+      }
+      pendingSamples.clear();
+    }
+
+    /**
+     * Returns the average bitrate of the data written to the muxer, or {@link C#RATE_UNSET_INT} if
+     * there is no data.
+     */
+    public int getAverageBitrate() {
+      if (lastSampleTimeUs <= 0 || bytesWritten <= 0) {
+        return C.RATE_UNSET_INT;
+      }
+      return (int)
+          Util.scaleLargeTimestamp(
+              /* timestamp= */ bytesWritten,
+              /* multiplier= */ C.BITS_PER_BYTE * C.MICROS_PER_SECOND,
+              /* divisor= */ lastSampleTimeUs);
+    }
+
+    /** Writes a sample with the given input time, relative to the output start time. */
+    private void writeSample(Muxer muxer, ByteBuffer buffer, long timeUs, int flags)
+        throws Muxer.MuxerException {
+      long outputTimeUs = timeUs - output.getOutputStartTimeUs();
+      if (outputTimeUs < 0) {
+        // The sample is presented before the output start, which can only happen if it's a
+        // leading frame output after the start time was determined.
+        return;
+      }
+      sampleCount++;
+      bytesWritten += buffer.remaining();
+      lastSampleTimeUs = max(lastSampleTimeUs, outputTimeUs);
+      muxer.writeSampleData(muxerTrackIndex, buffer, outputTimeUs, flags);
+    }
+
+    private void ensureCapacity(int capacity) {
+      checkArgument(capacity >= 0);
+      if (data.length < capacity) {
+        data = Arrays.copyOf(data, max(capacity, data.length * 2));
+      }
+    }
+  }
+
+  private static final class PendingSample {
+    public final byte[] data;
+    public final long timeUs;
+    public final int flags;
+
+    public PendingSample(byte[] data, long timeUs, int flags) {
+      this.data = data;
+      this.timeUs = timeUs;
+      this.flags = flags;
+    }
+  }
+}
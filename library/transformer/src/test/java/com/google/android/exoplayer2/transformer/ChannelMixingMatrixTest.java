@@ -194,4 +194,27 @@ public class ChannelMixingMatrixTest {
     assertThat(matrix.isDiagonal()).isFalse();
     assertThat(matrix.isIdentity()).isFalse();
   }
+
+  @Test
+  public void create_5Point1ToStereo_mixesFullScaleInputWithoutClipping() {
+    ChannelMixingMatrix matrix =
+        ChannelMixingMatrix.create(/* inputChannelCount= */ 6, /* outputChannelCount= */ 2);
+
+    // With every input channel at full scale, each output channel is the sum of its coefficients.
+    for (int outputChannel = 0; outputChannel < 2; outputChannel++) {
+      float outputSample = 0f;
+      for (int inputChannel = 0; inputChannel < 6; inputChannel++) {
+        outputSample += matrix.getMixingCoefficient(inputChannel, outputChannel);
+      }
+      assertThat(outputSample).isWithin(1e-6f).of(1f);
+    }
+    // The center and back channels are 3 dB below the front channels.
+    float frontCoefficient =
+        matrix.getMixingCoefficient(/* inputChannel= */ 0, /* outputChannel= */ 0);
+    assertThat(matrix.getMixingCoefficient(/* inputChannel= */ 2, /* outputChannel= */ 0))
+        .isWithin(1e-6f)
+        .of(0.7071068f * frontCoefficient);
+    assertThat(matrix.getMixingCoefficient(/* inputChannel= */ 3, /* outputChannel= */ 0))
+        .isEqualTo(0f);
+  }
 }
@@ -275,4 +275,137 @@ public final class FloatAudioMixingAlgorithmTest {
         .containsExactly(new float[] {0f, 0.625f})
         .inOrder();
   }
+
+  @Test
+  public void mix5Point1FloatIntoStereoFloat() {
+    AudioFormat audioFormat5Point1PcmFloat =
+        new AudioFormat(/* sampleRate= */ 44100, /* channelCount= */ 6, C.ENCODING_PCM_FLOAT);
+    AudioMixingAlgorithm algorithm = new FloatAudioMixingAlgorithm(AUDIO_FORMAT_STEREO_PCM_FLOAT);
+    ByteBuffer mixingBuffer = createByteBuffer(new float[] {0.25f, -0.25f});
+    ByteBuffer sourceBuffer =
+        createByteBuffer(new float[] {0.1f, 0.2f, 0.5f, 1f, 0.25f, -0.25f});
+
+    algorithm.mix(
+        sourceBuffer,
+        audioFormat5Point1PcmFloat,
+        ChannelMixingMatrix.create(/* inputChannelCount= */ 6, /* outputChannelCount= */ 2),
+        /* frameCount= */ 1,
+        mixingBuffer);
+
+    assertWithMessage("Source buffer").that(sourceBuffer.remaining()).isEqualTo(0);
+    assertWithMessage("Mixing buffer").that(mixingBuffer.remaining()).isEqualTo(0);
+    mixingBuffer.flip();
+    assertThat(createFloatArray(mixingBuffer))
+        .usingTolerance(1e-6)
+        .containsExactly(
+            new float[] {
+              0.25f + (0.1f + 0.75f * 0.7071068f) / (1f + 2f * 0.7071068f),
+              -0.25f + (0.2f + 0.25f * 0.7071068f) / (1f + 2f * 0.7071068f)
+            })
+        .inOrder();
+  }
+
+  @Test
+  public void mixStereoFloatIntoThreeChannelFloat_usesMatrixCoefficients() {
+    AudioFormat audioFormat3ChannelPcmFloat =
+        new AudioFormat(/* sampleRate= */ 44100, /* channelCount= */ 3, C.ENCODING_PCM_FLOAT);
+    AudioMixingAlgorithm algorithm = new FloatAudioMixingAlgorithm(audioFormat3ChannelPcmFloat);
+    ByteBuffer mixingBuffer = createByteBuffer(new float[] {0.25f, 0f, -0.25f});
+    ByteBuffer sourceBuffer = createByteBuffer(new float[] {0.5f, -0.5f});
+    ChannelMixingMatrix stereoToThreeChannel =
+        new ChannelMixingMatrix(
+            /* inputChannelCount= */ 2,
+            /* outputChannelCount= */ 3,
+            new float[] {1f, 0.5f, 0f, 0f, 0.5f, 1f});
+
+    algorithm.mix(
+        sourceBuffer,
+        AUDIO_FORMAT_STEREO_PCM_FLOAT,
+        stereoToThreeChannel,
+        /* frameCount= */ 1,
+        mixingBuffer);
+
+    mixingBuffer.flip();
+    assertThat(createFloatArray(mixingBuffer)).isEqualTo(new float[] {0.75f, 0f, -0.75f});
+  }
+
+  @Test
+  public void mixStereoS16IntoStereoFloat_acrossManyBlocks_mixesAllFrames() {
+    int frameCount = 2000;
+    ChannelMixingMatrix matrix =
+        new ChannelMixingMatrix(
+            /* inputChannelCount= */ 2,
+            /* outputChannelCount= */ 2,
+            new float[] {0.5f, 0f, 0f, 1f});
+    AudioMixingAlgorithm algorithm = new FloatAudioMixingAlgorithm(AUDIO_FORMAT_STEREO_PCM_FLOAT);
+    short[] sourceSamples = new short[frameCount * 2];
+    float[] mixingSamples = new float[frameCount * 2];
+    float[] expectedSamples = new float[frameCount * 2];
+    for (int i = 0; i < frameCount; i++) {
+      sourceSamples[2 * i] = 16384;
+      sourceSamples[2 * i + 1] = -16384;
+      mixingSamples[2 * i] = i / (float) frameCount;
+      mixingSamples[2 * i + 1] = 0.5f;
+      expectedSamples[2 * i] = mixingSamples[2 * i] + 0.25f;
+      expectedSamples[2 * i + 1] = 0f;
+    }
+    ByteBuffer mixingBuffer = createByteBuffer(mixingSamples);
+    ByteBuffer sourceBuffer = createByteBuffer(sourceSamples);
+
+    algorithm.mix(sourceBuffer, AUDIO_FORMAT_STEREO_PCM_16BIT, matrix, frameCount, mixingBuffer);
+
+    assertWithMessage("Source buffer").that(sourceBuffer.remaining()).isEqualTo(0);
+    assertWithMessage("Mixing buffer").that(mixingBuffer.remaining()).isEqualTo(0);
+    mixingBuffer.flip();
+    assertThat(createFloatArray(mixingBuffer))
+        .usingTolerance(1f / Short.MAX_VALUE)
+        .containsExactly(expectedSamples)
+        .inOrder();
+  }
+
+  @Test
+  public void mix_alternatingSourcesWithDifferentVolumes_reusesKernelPerMatrix() {
+    AudioMixingAlgorithm algorithm = new FloatAudioMixingAlgorithm(AUDIO_FORMAT_STEREO_PCM_FLOAT);
+    ChannelMixingMatrix stereoMatrix = STEREO_TO_STEREO.scaleBy(0.5f);
+    ChannelMixingMatrix monoMatrix = MONO_TO_STEREO.scaleBy(0.25f);
+    ByteBuffer mixingBuffer = createByteBuffer(new float[] {0f, 0f});
+
+    algorithm.mix(
+        createByteBuffer(new float[] {0.5f, -0.5f}),
+        AUDIO_FORMAT_STEREO_PCM_FLOAT,
+        stereoMatrix,
+        /* frameCount= */ 1,
+        mixingBuffer);
+    mixingBuffer.flip();
+    algorithm.mix(
+        createByteBuffer(new float[] {0.5f}),
+        AUDIO_FORMAT_MONO_PCM_FLOAT,
+        monoMatrix,
+        /* frameCount= */ 1,
+        mixingBuffer);
+    mixingBuffer.flip();
+    FloatAudioMixingAlgorithm.Kernel stereoKernel = stereoMatrix.getFloatMixingKernel();
+    FloatAudioMixingAlgorithm.Kernel monoKernel = monoMatrix.getFloatMixingKernel();
+    algorithm.mix(
+        createByteBuffer(new float[] {0.5f, -0.5f}),
+        AUDIO_FORMAT_STEREO_PCM_FLOAT,
+        stereoMatrix,
+        /* frameCount= */ 1,
+        mixingBuffer);
+    mixingBuffer.flip();
+    algorithm.mix(
+        createByteBuffer(new float[] {0.5f}),
+        AUDIO_FORMAT_MONO_PCM_FLOAT,
+        monoMatrix,
+        /* frameCount= */ 1,
+        mixingBuffer);
+
+    assertThat(stereoMatrix.getFloatMixingKernel()).isSameInstanceAs(stereoKernel);
+    assertThat(monoMatrix.getFloatMixingKernel()).isSameInstanceAs(monoKernel);
+    mixingBuffer.flip();
+    assertThat(createFloatArray(mixingBuffer))
+        .usingTolerance(1e-6)
+        .containsExactly(new float[] {0.75f, -0.25f})
+        .inOrder();
+  }
 }
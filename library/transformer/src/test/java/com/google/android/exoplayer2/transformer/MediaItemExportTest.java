@@ -55,6 +55,7 @@ import android.os.Message;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.MediaItem;
 import com.google.android.exoplayer2.audio.AudioProcessor;
 import com.google.android.exoplayer2.audio.SonicAudioProcessor;
@@ -66,6 +67,7 @@ import com.google.android.exoplayer2.extractor.ExtractorInput;
 import com.google.android.exoplayer2.extractor.ExtractorOutput;
 import com.google.android.exoplayer2.extractor.ExtractorsFactory;
 import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.metadata.Metadata;
 import com.google.android.exoplayer2.source.DefaultMediaSourceFactory;
 import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.testutil.DumpFileAsserts;
@@ -79,12 +81,15 @@ import com.google.android.exoplayer2.util.Util;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -172,6 +177,55 @@ public final class MediaItemExportTest {
         getDumpFileName(FILE_AUDIO_UNSUPPORTED_BY_ENCODER + ".aac"));
   }
 
+  @Test
+  public void start_audioTranscodingOnSeparateThread_outputsSameTrackSamplesAsInternalThread()
+      throws Exception {
+    // The audio is transcoded to change its sample rate, while the video is transmuxed.
+    SonicAudioProcessor sonicAudioProcessor = new SonicAudioProcessor();
+    sonicAudioProcessor.setOutputSampleRateHz(48000);
+    Effects effects =
+        new Effects(
+            ImmutableList.of(sonicAudioProcessor), /* videoEffects= */ ImmutableList.of());
+    EditedMediaItem editedMediaItem =
+        new EditedMediaItem.Builder(MediaItem.fromUri(ASSET_URI_PREFIX + FILE_AUDIO_VIDEO))
+            .setEffects(effects)
+            .build();
+    TrackSampleRecordingMuxerFactory baselineMuxerFactory =
+        new TrackSampleRecordingMuxerFactory(new TestMuxerFactory(testMuxerHolder));
+    Transformer baselineTransformer =
+        createTransformerBuilder(testMuxerHolder, /* enableFallback= */ false)
+            .setMuxerFactory(baselineMuxerFactory)
+            .build();
+    TrackSampleRecordingMuxerFactory muxerFactory =
+        new TrackSampleRecordingMuxerFactory(
+            new DefaultMuxer.Factory(/* maxDelayBetweenSamplesMs= */ C.TIME_UNSET));
+    Transformer transformer =
+        createTransformerBuilder(testMuxerHolder, /* enableFallback= */ false)
+            .setMuxerFactory(muxerFactory)
+            .experimentalSetProcessAudioOnSeparateThread(true)
+            .build();
+
+    baselineTransformer.start(editedMediaItem, outputPath);
+    ExportResult baselineExportResult = TransformerTestRunner.runLooper(baselineTransformer);
+    DumpFileAsserts.assertOutput(
+        context,
+        checkNotNull(testMuxerHolder.testMuxer),
+        getDumpFileName(FILE_AUDIO_VIDEO + ".48000hz"));
+    sonicAudioProcessor.reset();
+    transformer.start(editedMediaItem, outputPath);
+    ExportResult exportResult = TransformerTestRunner.runLooper(transformer);
+
+    // The interleaving of the audio and video samples depends on thread scheduling, but each
+    // track's samples must match the baseline export, in order.
+    assertThat(baselineMuxerFactory.samplesBySampleMimeType.keySet())
+        .containsExactly(MimeTypes.AUDIO_AAC, MimeTypes.VIDEO_H264);
+    assertThat(muxerFactory.samplesBySampleMimeType)
+        .isEqualTo(baselineMuxerFactory.samplesBySampleMimeType);
+    assertThat(exportResult.durationMs).isEqualTo(baselineExportResult.durationMs);
+    assertThat(exportResult.sampleRate).isEqualTo(48000);
+    assertThat(exportResult.videoFrameCount).isEqualTo(baselineExportResult.videoFrameCount);
+  }
+
   @Test
   public void start_audioAndVideo_completesSuccessfully() throws Exception {
     Transformer transformer =
@@ -1178,6 +1232,72 @@ public final class MediaItemExportTest {
     assertThat(illegalStateException.get()).isNotNull();
   }
 
+  /**
+   * A {@link Muxer.Factory} whose muxers record the samples written to each track, keyed by the
+   * track's sample MIME type. The muxers can be fed from several threads.
+   */
+  private static final class TrackSampleRecordingMuxerFactory implements Muxer.Factory {
+
+    public final Map<String, List<String>> samplesBySampleMimeType;
+
+    private final Muxer.Factory muxerFactory;
+
+    public TrackSampleRecordingMuxerFactory(Muxer.Factory muxerFactory) {
+      this.muxerFactory = muxerFactory;
+      samplesBySampleMimeType = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public Muxer create(String path) throws Muxer.MuxerException {
+      Muxer muxer = muxerFactory.create(path);
+      Map<Integer, List<String>> samplesByTrackIndex = new ConcurrentHashMap<>();
+      return new Muxer() {
+        @Override
+        public int addTrack(Format format) throws MuxerException {
+          int trackIndex = muxer.addTrack(format);
+          List<String> samples = Collections.synchronizedList(new ArrayList<>());
+          samplesByTrackIndex.put(trackIndex, samples);
+          samplesBySampleMimeType.put(checkNotNull(format.sampleMimeType), samples);
+          return trackIndex;
+        }
+
+        @Override
+        public void writeSampleData(
+            int trackIndex, ByteBuffer data, long presentationTimeUs, @C.BufferFlags int flags)
+            throws MuxerException {
+          byte[] sampleData = new byte[data.remaining()];
+          data.duplicate().get(sampleData);
+          checkNotNull(samplesByTrackIndex.get(trackIndex))
+              .add(
+                  Util.formatInvariant(
+                      "presentationTimeUs=%d, flags=%d, size=%d, dataHashCode=%d",
+                      presentationTimeUs, flags, sampleData.length, Arrays.hashCode(sampleData)));
+          muxer.writeSampleData(trackIndex, data, presentationTimeUs, flags);
+        }
+
+        @Override
+        public void addMetadata(Metadata metadata) {
+          muxer.addMetadata(metadata);
+        }
+
+        @Override
+        public void release(boolean forCancellation) throws MuxerException {
+          muxer.release(forCancellation);
+        }
+
+        @Override
+        public long getMaxDelayBetweenSamplesMs() {
+          return muxer.getMaxDelayBetweenSamplesMs();
+        }
+      };
+    }
+
+    @Override
+    public ImmutableList<String> getSupportedSampleMimeTypes(@C.TrackType int trackType) {
+      return muxerFactory.getSupportedSampleMimeTypes(trackType);
+    }
+  }
+
   private static final class SlowExtractorsFactory implements ExtractorsFactory {
 
     private final long delayBetweenReadsMs;
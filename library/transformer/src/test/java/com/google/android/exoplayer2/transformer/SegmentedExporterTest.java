@@ -0,0 +1,166 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.transformer;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link SegmentedExporter}. */
+@RunWith(AndroidJUnit4.class)
+public final class SegmentedExporterTest {
+
+  private static final EditedMediaItem EDITED_MEDIA_ITEM =
+      new EditedMediaItem.Builder(MediaItem.fromUri("asset:///media/mp4/sample.mp4")).build();
+  private static final Format AUDIO_FORMAT =
+      new Format.Builder()
+          .setSampleMimeType(MimeTypes.AUDIO_AAC)
+          .setChannelCount(2)
+          .setSampleRate(44_100)
+          .setInitializationData(ImmutableList.of(new byte[] {0x12, 0x10}))
+          .build();
+  private static final Format VIDEO_FORMAT =
+      new Format.Builder()
+          .setSampleMimeType(MimeTypes.VIDEO_H264)
+          .setWidth(1280)
+          .setHeight(720)
+          .setInitializationData(ImmutableList.of(new byte[] {0, 0, 0, 1, 0x67}))
+          .build();
+  private static final ExportResult EXPORT_RESULT =
+      new ExportResult.Builder()
+          .setChannelCount(2)
+          .setSampleRate(44_100)
+          .setWidth(1280)
+          .setHeight(720)
+          .build();
+
+  @Test
+  public void canExportInSegments_singleSequenceWithSeveralItems_returnsTrue() {
+    Composition composition =
+        new Composition.Builder(
+                ImmutableList.of(
+                    new EditedMediaItemSequence(
+                        ImmutableList.of(EDITED_MEDIA_ITEM, EDITED_MEDIA_ITEM))))
+            .build();
+
+    assertThat(SegmentedExporter.canExportInSegments(composition)).isTrue();
+  }
+
+  @Test
+  public void canExportInSegments_singleItem_returnsFalse() {
+    Composition composition =
+        new Composition.Builder(
+                ImmutableList.of(new EditedMediaItemSequence(ImmutableList.of(EDITED_MEDIA_ITEM))))
+            .build();
+
+    assertThat(SegmentedExporter.canExportInSegments(composition)).isFalse();
+  }
+
+  @Test
+  public void canExportInSegments_loopingSequence_returnsFalse() {
+    Composition composition =
+        new Composition.Builder(
+                ImmutableList.of(
+                    new EditedMediaItemSequence(
+                        ImmutableList.of(EDITED_MEDIA_ITEM, EDITED_MEDIA_ITEM),
+                        /* isLooping= */ true)))
+            .build();
+
+    assertThat(SegmentedExporter.canExportInSegments(composition)).isFalse();
+  }
+
+  @Test
+  public void canExportInSegments_multipleSequences_returnsFalse() {
+    EditedMediaItemSequence sequence =
+        new EditedMediaItemSequence(ImmutableList.of(EDITED_MEDIA_ITEM, EDITED_MEDIA_ITEM));
+    Composition composition =
+        new Composition.Builder(ImmutableList.of(sequence, sequence)).build();
+
+    assertThat(SegmentedExporter.canExportInSegments(composition)).isFalse();
+  }
+
+  @Test
+  public void getConcatenationIncompatibility_sameFormats_returnsNull() {
+    assertThat(
+            SegmentedExporter.getConcatenationIncompatibility(
+                ImmutableList.of(EXPORT_RESULT, EXPORT_RESULT),
+                ImmutableList.of(
+                    ImmutableList.of(AUDIO_FORMAT, VIDEO_FORMAT),
+                    ImmutableList.of(VIDEO_FORMAT, AUDIO_FORMAT))))
+        .isNull();
+  }
+
+  @Test
+  public void getConcatenationIncompatibility_differentResolutions_returnsIncompatibility() {
+    ExportResult exportResult1080p =
+        EXPORT_RESULT.buildUpon().setWidth(1920).setHeight(1080).build();
+    Format videoFormat1080p = VIDEO_FORMAT.buildUpon().setWidth(1920).setHeight(1080).build();
+
+    assertThat(
+            SegmentedExporter.getConcatenationIncompatibility(
+                ImmutableList.of(EXPORT_RESULT, exportResult1080p),
+                ImmutableList.of(
+                    ImmutableList.of(AUDIO_FORMAT, VIDEO_FORMAT),
+                    ImmutableList.of(AUDIO_FORMAT, videoFormat1080p))))
+        .isNotNull();
+  }
+
+  @Test
+  public void getConcatenationIncompatibility_differentSampleRates_returnsIncompatibility() {
+    Format audioFormat48k = AUDIO_FORMAT.buildUpon().setSampleRate(48_000).build();
+
+    assertThat(
+            SegmentedExporter.getConcatenationIncompatibility(
+                ImmutableList.of(EXPORT_RESULT, EXPORT_RESULT),
+                ImmutableList.of(
+                    ImmutableList.of(AUDIO_FORMAT, VIDEO_FORMAT),
+                    ImmutableList.of(audioFormat48k, VIDEO_FORMAT))))
+        .isNotNull();
+  }
+
+  @Test
+  public void getConcatenationIncompatibility_differentInitializationData_returnsIncompatibility() {
+    Format otherVideoFormat =
+        VIDEO_FORMAT
+            .buildUpon()
+            .setInitializationData(ImmutableList.of(new byte[] {0, 0, 0, 1, 0x68}))
+            .build();
+
+    assertThat(
+            SegmentedExporter.getConcatenationIncompatibility(
+                ImmutableList.of(EXPORT_RESULT, EXPORT_RESULT),
+                ImmutableList.of(
+                    ImmutableList.of(AUDIO_FORMAT, VIDEO_FORMAT),
+                    ImmutableList.of(AUDIO_FORMAT, otherVideoFormat))))
+        .isNotNull();
+  }
+
+  @Test
+  public void getConcatenationIncompatibility_missingTrack_returnsIncompatibility() {
+    assertThat(
+            SegmentedExporter.getConcatenationIncompatibility(
+                ImmutableList.of(EXPORT_RESULT, EXPORT_RESULT),
+                ImmutableList.of(
+                    ImmutableList.of(AUDIO_FORMAT, VIDEO_FORMAT), ImmutableList.of(VIDEO_FORMAT))))
+        .isNotNull();
+  }
+}
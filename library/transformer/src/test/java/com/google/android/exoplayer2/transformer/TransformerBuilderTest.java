@@ -56,4 +56,13 @@ public class TransformerBuilderTest {
                 .setTransformationRequest(transformationRequest)
                 .build());
   }
+
+  @Test
+  public void experimentalSetParallelExportWorkerCount_withNonPositiveCount_throws() {
+    Context context = ApplicationProvider.getApplicationContext();
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new Transformer.Builder(context).experimentalSetParallelExportWorkerCount(0));
+  }
 }
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.transformer;
+
+import static com.google.android.exoplayer2.transformer.TestUtil.ASSET_URI_PREFIX;
+import static com.google.android.exoplayer2.transformer.TestUtil.FILE_AUDIO_UNSUPPORTED_BY_MUXER;
+import static com.google.android.exoplayer2.transformer.TestUtil.FILE_AUDIO_VIDEO;
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import android.content.Context;
+import androidx.annotation.Nullable;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorInput;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.extractor.SeekPoint;
+import com.google.android.exoplayer2.extractor.TrackOutput;
+import com.google.android.exoplayer2.metadata.Metadata;
+import com.google.android.exoplayer2.transformer.TestUtil.TestMuxerFactory;
+import com.google.android.exoplayer2.transformer.TestUtil.TestMuxerFactory.TestMuxerHolder;
+import com.google.android.exoplayer2.upstream.ByteArrayDataSource;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link Transmuxer}. */
+@RunWith(AndroidJUnit4.class)
+public final class TransmuxerTest {
+
+  private Context context;
+  private String outputPath;
+  private TestMuxerHolder testMuxerHolder;
+  private Transmuxer transmuxer;
+
+  @Before
+  public void setUp() throws Exception {
+    context = ApplicationProvider.getApplicationContext();
+    outputPath = Util.createTempFile(context, "TransmuxerTest").getPath();
+    testMuxerHolder = new TestMuxerHolder();
+    transmuxer =
+        new Transmuxer.Builder(context)
+            .setMuxerFactory(new TestMuxerFactory(testMuxerHolder))
+            .build();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    Files.delete(Paths.get(outputPath));
+  }
+
+  @Test
+  public void transmux_audioAndVideo_writesAllSamples() throws Exception {
+    ExportResult exportResult =
+        transmuxer.transmux(MediaItem.fromUri(ASSET_URI_PREFIX + FILE_AUDIO_VIDEO), outputPath);
+
+    assertThat(testMuxerHolder.testMuxer).isNotNull();
+    assertThat(exportResult.videoFrameCount).isEqualTo(30);
+    assertThat(exportResult.width).isEqualTo(1080);
+    assertThat(exportResult.height).isEqualTo(720);
+    assertThat(exportResult.channelCount).isEqualTo(1);
+    assertThat(exportResult.sampleRate).isEqualTo(44100);
+    assertThat(exportResult.averageAudioBitrate).isGreaterThan(0);
+    assertThat(exportResult.averageVideoBitrate).isGreaterThan(0);
+    assertThat(exportResult.audioEncoderName).isNull();
+    assertThat(exportResult.videoEncoderName).isNull();
+  }
+
+  @Test
+  public void transmux_withClippingEndPosition_dropsSamplesAfterEnd() throws Exception {
+    MediaItem mediaItem =
+        new MediaItem.Builder()
+            .setUri(ASSET_URI_PREFIX + FILE_AUDIO_VIDEO)
+            .setClippingConfiguration(
+                new MediaItem.ClippingConfiguration.Builder().setEndPositionMs(500).build())
+            .build();
+
+    ExportResult exportResult = transmuxer.transmux(mediaItem, outputPath);
+
+    assertThat(exportResult.videoFrameCount).isGreaterThan(0);
+    assertThat(exportResult.videoFrameCount).isLessThan(30);
+    assertThat(exportResult.durationMs).isLessThan(500);
+  }
+
+  @Test
+  public void transmux_withClippingStartPosition_keepsBFramesThatFollowStartKeyFrame()
+      throws Exception {
+    RecordingMuxerFactory muxerFactory = new RecordingMuxerFactory();
+    Transmuxer transmuxer =
+        new Transmuxer.Builder(context)
+            .setDataSourceFactory(
+                () -> new ByteArrayDataSource(new byte[BFrameExtractor.SAMPLE_TIMES_US.length]))
+            .setExtractorsFactory(() -> new Extractor[] {new BFrameExtractor()})
+            .setMuxerFactory(muxerFactory)
+            .build();
+    MediaItem mediaItem =
+        new MediaItem.Builder()
+            .setUri("fake://bframes")
+            .setClippingConfiguration(
+                new MediaItem.ClippingConfiguration.Builder().setStartPositionMs(250).build())
+            .build();
+
+    ExportResult exportResult = transmuxer.transmux(mediaItem, outputPath);
+
+    // The output starts at the key frame at 200 ms, and keeps the B-frames that follow it in decode
+    // order but are presented before it. The output timestamps start at the earliest of these.
+    assertThat(exportResult.videoFrameCount).isEqualTo(6);
+    assertThat(muxerFactory.sampleTimesUs)
+        .containsExactly(40_000L, 0L, 20_000L, 100_000L, 60_000L, 80_000L)
+        .inOrder();
+    assertThat(muxerFactory.keyFrameSampleIndices).containsExactly(0);
+  }
+
+  @Test
+  public void transmux_sampleMimeTypeUnsupportedByMuxer_throws() {
+    MediaItem mediaItem = MediaItem.fromUri(ASSET_URI_PREFIX + FILE_AUDIO_UNSUPPORTED_BY_MUXER);
+
+    ExportException exception =
+        assertThrows(ExportException.class, () -> transmuxer.transmux(mediaItem, outputPath));
+
+    assertThat(exception.errorCode).isEqualTo(ExportException.ERROR_CODE_MUXING_FAILED);
+  }
+
+  /**
+   * An {@link Extractor} that outputs a video track with B-frames, one sample per input byte. The
+   * second group of pictures starts with two B-frames presented before its key frame.
+   */
+  private static final class BFrameExtractor implements Extractor {
+
+    /** The sample times, in decode order. */
+    public static final long[] SAMPLE_TIMES_US =
+        new long[] {0, 100_000, 50_000, 200_000, 160_000, 180_000, 260_000, 220_000, 240_000};
+
+    private static final int SECOND_KEY_FRAME_INDEX = 3;
+
+    @Nullable private TrackOutput trackOutput;
+
+    @Override
+    public boolean sniff(ExtractorInput input) {
+      return true;
+    }
+
+    @Override
+    public void init(ExtractorOutput output) {
+      trackOutput = output.track(/* id= */ 0, C.TRACK_TYPE_VIDEO);
+      trackOutput.format(
+          new Format.Builder()
+              .setSampleMimeType(MimeTypes.VIDEO_H264)
+              .setWidth(320)
+              .setHeight(240)
+              .build());
+      output.endTracks();
+      output.seekMap(
+          new SeekMap() {
+            @Override
+            public boolean isSeekable() {
+              return true;
+            }
+
+            @Override
+            public long getDurationUs() {
+              return 280_000;
+            }
+
+            @Override
+            public SeekPoints getSeekPoints(long timeUs) {
+              long keyFrameTimeUs = SAMPLE_TIMES_US[SECOND_KEY_FRAME_INDEX];
+              return new SeekPoints(
+                  timeUs >= keyFrameTimeUs
+                      ? new SeekPoint(keyFrameTimeUs, SECOND_KEY_FRAME_INDEX)
+                      : SeekPoint.START);
+            }
+          });
+    }
+
+    @Override
+    public int read(ExtractorInput input, PositionHolder seekPosition) throws IOException {
+      int sampleIndex = (int) input.getPosition();
+      TrackOutput trackOutput = checkNotNull(this.trackOutput);
+      if (trackOutput.sampleData(input, /* length= */ 1, /* allowEndOfInput= */ true)
+          == C.RESULT_END_OF_INPUT) {
+        return RESULT_END_OF_INPUT;
+      }
+      boolean isKeyFrame = sampleIndex == 0 || sampleIndex == SECOND_KEY_FRAME_INDEX;
+      trackOutput.sampleMetadata(
+          SAMPLE_TIMES_US[sampleIndex],
+          isKeyFrame ? C.BUFFER_FLAG_KEY_FRAME : 0,
+          /* size= */ 1,
+          /* offset= */ 0,
+          /* cryptoData= */ null);
+      return RESULT_CONTINUE;
+    }
+
+    @Override
+    public void seek(long position, long timeUs) {}
+
+    @Override
+    public void release() {}
+  }
+
+  /** A {@link Muxer.Factory} whose muxers record the samples written to them. */
+  private static final class RecordingMuxerFactory implements Muxer.Factory {
+
+    public final List<Long> sampleTimesUs;
+    public final List<Integer> keyFrameSampleIndices;
+
+    public RecordingMuxerFactory() {
+      sampleTimesUs = new ArrayList<>();
+      keyFrameSampleIndices = new ArrayList<>();
+    }
+
+    @Override
+    public Muxer create(String path) {
+      return new Muxer() {
+        @Override
+        public int addTrack(Format format) {
+          return 0;
+        }
+
+        @Override
+        public void writeSampleData(
+            int trackIndex, ByteBuffer data, long presentationTimeUs, @C.BufferFlags int flags) {
+          if ((flags & C.BUFFER_FLAG_KEY_FRAME) != 0) {
+            keyFrameSampleIndices.add(sampleTimesUs.size());
+          }
+          sampleTimesUs.add(presentationTimeUs);
+        }
+
+        @Override
+        public void addMetadata(Metadata metadata) {}
+
+        @Override
+        public void release(boolean forCancellation) {}
+
+        @Override
+        public long getMaxDelayBetweenSamplesMs() {
+          return C.TIME_UNSET;
+        }
+      };
+    }
+
+    @Override
+    public ImmutableList<String> getSupportedSampleMimeTypes(@C.TrackType int trackType) {
+      return ImmutableList.of(MimeTypes.VIDEO_H264);
+    }
+  }
+}
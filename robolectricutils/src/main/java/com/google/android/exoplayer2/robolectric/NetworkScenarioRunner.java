@@ -0,0 +1,334 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.robolectric;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+
+import android.content.Context;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.analytics.PlaybackStats;
+import com.google.android.exoplayer2.analytics.PlaybackStatsListener;
+import com.google.android.exoplayer2.source.DefaultMediaSourceFactory;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.testutil.FakeClock;
+import com.google.android.exoplayer2.testutil.NetworkEmulator;
+import com.google.android.exoplayer2.testutil.NetworkTrace;
+import com.google.android.exoplayer2.testutil.TestExoPlayerBuilder;
+import com.google.android.exoplayer2.trackselection.AdaptiveTrackSelection;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import com.google.android.exoplayer2.trackselection.ExoTrackSelection;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
+import com.google.android.exoplayer2.upstream.DefaultDataSource;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.util.concurrent.TimeoutException;
+import org.robolectric.shadows.ShadowLooper;
+
+/**
+ * Plays media through an {@link ExoPlayer} under network conditions replayed from a {@link
+ * NetworkTrace}, and reports quality of experience metrics.
+ *
+ * <p>Playback runs headlessly with fake renderers in the simulated time of a {@link FakeClock},
+ * which the runner advances in fixed steps. All loads go through a {@link NetworkEmulator}, and the
+ * player's bandwidth meter measures simulated time, so adaptive track selection and {@link
+ * LoadControl} decisions react to the trace as they would to a real network.
+ *
+ * <p>Runs are repeatable up to the scheduling of the player's threads, as described in {@link
+ * NetworkEmulator}. Assertions on the {@link Result} should allow for small variations.
+ *
+ * <p>Must be called from the main Robolectric test thread.
+ */
+public final class NetworkScenarioRunner {
+
+  /** Creates the {@link LoadControl} for a run. */
+  public interface LoadControlFactory {
+
+    /**
+     * Creates the {@link LoadControl}.
+     *
+     * @param bandwidthMeter The {@link BandwidthMeter} of the player, which measures the emulated
+     *     network.
+     * @return The {@link LoadControl}.
+     */
+    LoadControl createLoadControl(BandwidthMeter bandwidthMeter);
+  }
+
+  /** Creates the {@link MediaSource} to play in a run. */
+  public interface MediaSourceProvider {
+
+    /**
+     * Creates the {@link MediaSource} to play.
+     *
+     * @param dataSourceFactory A {@link DataSource.Factory} whose data sources load from the
+     *     upstream data sources under the emulated network conditions. All loads of the media
+     *     source should use it.
+     * @return The {@link MediaSource}.
+     */
+    MediaSource createMediaSource(DataSource.Factory dataSourceFactory);
+  }
+
+  /** Quality of experience metrics of a playback. */
+  public static final class Result {
+
+    /** The time from the start of playback to the first frame, in milliseconds. */
+    public final long startupTimeMs;
+    /** The number of rebuffers. */
+    public final int rebufferCount;
+    /** The total duration of rebuffers, in milliseconds. */
+    public final long totalRebufferTimeMs;
+    /**
+     * The mean bitrate of the played video formats, weighted by play time, or {@link
+     * C#LENGTH_UNSET} if unknown.
+     */
+    public final int meanVideoFormatBitrate;
+    /** The total number of bytes loaded over the emulated network. */
+    public final long bytesTransferred;
+
+    private Result(
+        long startupTimeMs,
+        int rebufferCount,
+        long totalRebufferTimeMs,
+        int meanVideoFormatBitrate,
+        long bytesTransferred) {
+      this.startupTimeMs = startupTimeMs;
+      this.rebufferCount = rebufferCount;
+      this.totalRebufferTimeMs = totalRebufferTimeMs;
+      this.meanVideoFormatBitrate = meanVideoFormatBitrate;
+      this.bytesTransferred = bytesTransferred;
+    }
+
+    @Override
+    public String toString() {
+      return "Result{startupTimeMs="
+          + startupTimeMs
+          + ", rebufferCount="
+          + rebufferCount
+          + ", totalRebufferTimeMs="
+          + totalRebufferTimeMs
+          + ", meanVideoFormatBitrate="
+          + meanVideoFormatBitrate
+          + ", bytesTransferred="
+          + bytesTransferred
+          + "}";
+    }
+  }
+
+  /** Builder for {@link NetworkScenarioRunner}. */
+  public static final class Builder {
+
+    private final Context context;
+    private final NetworkTrace trace;
+
+    private DataSource.Factory dataSourceFactory;
+    private ExoTrackSelection.Factory trackSelectionFactory;
+    @Nullable private LoadControlFactory loadControlFactory;
+    private long stepMs;
+    private long timeoutMs;
+
+    /**
+     * Creates a builder.
+     *
+     * @param context A {@link Context}.
+     * @param trace The {@link NetworkTrace} to replay.
+     */
+    public Builder(Context context, NetworkTrace trace) {
+      this.context = context;
+      this.trace = trace;
+      dataSourceFactory = new DefaultDataSource.Factory(context);
+      trackSelectionFactory = new AdaptiveTrackSelection.Factory();
+      stepMs = DEFAULT_STEP_MS;
+      timeoutMs = DEFAULT_TIMEOUT_MS;
+    }
+
+    /**
+     * Sets the {@link DataSource.Factory} for the upstream data sources whose loads are emulated.
+     * The default is a {@link DefaultDataSource.Factory}.
+     *
+     * @param dataSourceFactory The {@link DataSource.Factory}.
+     * @return This builder.
+     */
+    @CanIgnoreReturnValue
+    public Builder setDataSourceFactory(DataSource.Factory dataSourceFactory) {
+      this.dataSourceFactory = dataSourceFactory;
+      return this;
+    }
+
+    /**
+     * Sets the {@link ExoTrackSelection.Factory} used for adaptive track selection. The default is
+     * an {@link AdaptiveTrackSelection.Factory}.
+     *
+     * @param trackSelectionFactory The {@link ExoTrackSelection.Factory}.
+     * @return This builder.
+     */
+    @CanIgnoreReturnValue
+    public Builder setTrackSelectionFactory(ExoTrackSelection.Factory trackSelectionFactory) {
+      this.trackSelectionFactory = trackSelectionFactory;
+      return this;
+    }
+
+    /**
+     * Sets the factory of the {@link LoadControl} to use for each run. The default is the {@link
+     * TestExoPlayerBuilder} default.
+     *
+     * @param loadControlFactory The {@link LoadControlFactory}.
+     * @return This builder.
+     */
+    @CanIgnoreReturnValue
+    public Builder setLoadControlFactory(LoadControlFactory loadControlFactory) {
+      this.loadControlFactory = loadControlFactory;
+      return this;
+    }
+
+    /**
+     * Sets the step by which the simulated time is advanced, in milliseconds. The default is
+     * {@link #DEFAULT_STEP_MS}.
+     *
+     * @param stepMs The step in milliseconds.
+     * @return This builder.
+     */
+    @CanIgnoreReturnValue
+    public Builder setStepMs(long stepMs) {
+      checkArgument(stepMs > 0);
+      this.stepMs = stepMs;
+      return this;
+    }
+
+    /**
+     * Sets the simulated time after which a run fails, in milliseconds. The default is {@link
+     * #DEFAULT_TIMEOUT_MS}.
+     *
+     * @param timeoutMs The timeout in milliseconds.
+     * @return This builder.
+     */
+    @CanIgnoreReturnValue
+    public Builder setTimeoutMs(long timeoutMs) {
+      this.timeoutMs = timeoutMs;
+      return this;
+    }
+
+    /** Builds the {@link NetworkScenarioRunner}. */
+    public NetworkScenarioRunner build() {
+      return new NetworkScenarioRunner(this);
+    }
+  }
+
+  /** The default step by which the simulated time is advanced, in milliseconds. */
+  public static final long DEFAULT_STEP_MS = 10;
+
+  /** The default simulated time after which a run fails, in milliseconds. */
+  public static final long DEFAULT_TIMEOUT_MS = 10 * 60 * 1000;
+
+  private final Context context;
+  private final NetworkTrace trace;
+  private final DataSource.Factory dataSourceFactory;
+  private final ExoTrackSelection.Factory trackSelectionFactory;
+  @Nullable private final LoadControlFactory loadControlFactory;
+  private final long stepMs;
+  private final long timeoutMs;
+
+  private NetworkScenarioRunner(Builder builder) {
+    context = builder.context;
+    trace = builder.trace;
+    dataSourceFactory = builder.dataSourceFactory;
+    trackSelectionFactory = builder.trackSelectionFactory;
+    loadControlFactory = builder.loadControlFactory;
+    stepMs = builder.stepMs;
+    timeoutMs = builder.timeoutMs;
+  }
+
+  /**
+   * Plays the given media item to the end under the emulated network conditions.
+   *
+   * <p>If a playback error occurs it will be thrown wrapped in an {@link IllegalStateException}.
+   *
+   * @param mediaItem The {@link MediaItem} to play.
+   * @return The {@link Result} of the playback.
+   * @throws TimeoutException If playback doesn't end within the timeout in simulated time.
+   * @throws InterruptedException If the calling thread is interrupted.
+   */
+  public Result run(MediaItem mediaItem) throws TimeoutException, InterruptedException {
+    return run(
+        dataSourceFactory ->
+            new DefaultMediaSourceFactory(dataSourceFactory).createMediaSource(mediaItem));
+  }
+
+  /**
+   * Plays the media source created by the given provider to the end under the emulated network
+   * conditions.
+   *
+   * <p>If a playback error occurs it will be thrown wrapped in an {@link IllegalStateException}.
+   *
+   * @param mediaSourceProvider The {@link MediaSourceProvider} of the {@link MediaSource} to play.
+   * @return The {@link Result} of the playback.
+   * @throws TimeoutException If playback doesn't end within the timeout in simulated time.
+   * @throws InterruptedException If the calling thread is interrupted.
+   */
+  public Result run(MediaSourceProvider mediaSourceProvider)
+      throws TimeoutException, InterruptedException {
+    FakeClock clock = new FakeClock(/* isAutoAdvancing= */ false);
+    NetworkEmulator networkEmulator = new NetworkEmulator(clock, trace);
+    MediaSource mediaSource =
+        mediaSourceProvider.createMediaSource(
+            networkEmulator.createDataSourceFactory(dataSourceFactory));
+    BandwidthMeter bandwidthMeter =
+        new DefaultBandwidthMeter.Builder(context).setClock(clock).build();
+    TestExoPlayerBuilder playerBuilder =
+        new TestExoPlayerBuilder(context)
+            .setClock(clock)
+            .setBandwidthMeter(bandwidthMeter)
+            .setTrackSelector(new DefaultTrackSelector(context, trackSelectionFactory));
+    if (loadControlFactory != null) {
+      playerBuilder.setLoadControl(loadControlFactory.createLoadControl(bandwidthMeter));
+    }
+    ExoPlayer player = playerBuilder.build();
+    PlaybackStatsListener playbackStatsListener =
+        new PlaybackStatsListener(/* keepHistory= */ false, /* callback= */ null);
+    player.addAnalyticsListener(playbackStatsListener);
+    try {
+      player.setMediaSource(mediaSource);
+      player.prepare();
+      player.play();
+      while (player.getPlaybackState() != Player.STATE_ENDED) {
+        @Nullable ExoPlaybackException error = player.getPlayerError();
+        if (error != null) {
+          throw new IllegalStateException(error);
+        }
+        if (clock.elapsedRealtime() >= timeoutMs) {
+          throw new TimeoutException();
+        }
+        networkEmulator.advanceTime(stepMs);
+        ShadowLooper.idleMainLooper();
+      }
+      PlaybackStats playbackStats = checkNotNull(playbackStatsListener.getPlaybackStats());
+      return new Result(
+          playbackStats.getMeanJoinTimeMs(),
+          playbackStats.totalRebufferCount,
+          playbackStats.getTotalRebufferTimeMs(),
+          playbackStats.getMeanVideoFormatBitrate(),
+          networkEmulator.getBytesTransferred());
+    } finally {
+      player.release();
+    }
+  }
+}
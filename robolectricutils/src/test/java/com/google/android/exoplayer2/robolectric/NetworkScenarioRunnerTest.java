@@ -0,0 +1,287 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.robolectric;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import android.content.Context;
+import androidx.annotation.Nullable;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.AdaptiveLoadControl;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.source.MediaSource.MediaPeriodId;
+import com.google.android.exoplayer2.source.TrackGroup;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.testutil.FakeAdaptiveDataSet;
+import com.google.android.exoplayer2.testutil.FakeAdaptiveMediaSource;
+import com.google.android.exoplayer2.testutil.FakeChunkSource;
+import com.google.android.exoplayer2.testutil.FakeDataSource;
+import com.google.android.exoplayer2.testutil.FakeTimeline;
+import com.google.android.exoplayer2.testutil.FakeTimeline.TimelineWindowDefinition;
+import com.google.android.exoplayer2.testutil.NetworkTrace;
+import com.google.android.exoplayer2.trackselection.AdaptiveTrackSelection;
+import com.google.android.exoplayer2.trackselection.BolaTrackSelection;
+import com.google.android.exoplayer2.trackselection.ExoTrackSelection;
+import com.google.android.exoplayer2.trackselection.FixedTrackSelection;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.util.MimeTypes;
+import java.util.Random;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Unit test for {@link NetworkScenarioRunner}, comparing adaptive track selections and load
+ * controls on the same traces.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class NetworkScenarioRunnerTest {
+
+  private static final long MEDIA_DURATION_US = 20 * C.MICROS_PER_SECOND;
+  private static final long CHUNK_DURATION_US = 2 * C.MICROS_PER_SECOND;
+  private static final int LOW_BITRATE = 500_000;
+  private static final int MEDIUM_BITRATE = 1_000_000;
+  private static final int HIGH_BITRATE = 2_000_000;
+
+  private static final String FLUCTUATING_TRACE =
+      "# durationMs throughputKbps latencyMs lossPercent\n"
+          + "5000 6000 50\n"
+          + "5000 800 100 5\n";
+
+  private final Context context = ApplicationProvider.getApplicationContext();
+
+  @Test
+  public void run_sufficientThroughput_adaptiveAndBolaSelectHigherBitrateThanLowestTrack()
+      throws Exception {
+    NetworkTrace trace =
+        NetworkTrace.constant(/* throughputBps= */ 20_000_000, /* latencyMs= */ 20);
+
+    NetworkScenarioRunner.Result lowestTrackResult =
+        run(
+            trace,
+            new FixedBitrateTrackSelectionFactory(/* selectHighestBitrate= */ false),
+            /* useAdaptiveLoadControl= */ false);
+    NetworkScenarioRunner.Result adaptiveResult =
+        run(trace, new AdaptiveTrackSelection.Factory(), /* useAdaptiveLoadControl= */ false);
+    NetworkScenarioRunner.Result bolaResult =
+        run(trace, new BolaTrackSelection.Factory(), /* useAdaptiveLoadControl= */ false);
+
+    // With throughput to spare, adapting must pay off in quality without costing rebuffers.
+    assertWithMessage(adaptiveResult + " vs " + lowestTrackResult)
+        .that(adaptiveResult.meanVideoFormatBitrate)
+        .isGreaterThan(lowestTrackResult.meanVideoFormatBitrate);
+    assertWithMessage(adaptiveResult + " vs " + lowestTrackResult)
+        .that(adaptiveResult.rebufferCount)
+        .isAtMost(lowestTrackResult.rebufferCount);
+    assertWithMessage(bolaResult + " vs " + lowestTrackResult)
+        .that(bolaResult.meanVideoFormatBitrate)
+        .isGreaterThan(lowestTrackResult.meanVideoFormatBitrate);
+    assertWithMessage(bolaResult + " vs " + lowestTrackResult)
+        .that(bolaResult.rebufferCount)
+        .isAtMost(lowestTrackResult.rebufferCount);
+  }
+
+  @Test
+  public void run_throughputBelowHighestBitrate_adaptiveAndBolaRebufferLessThanHighestTrack()
+      throws Exception {
+    // Loading the highest bitrate track takes about 1.7 times as long as playing it, so playing it
+    // rebuffers for several seconds. The lowest bitrate track loads in well under real time.
+    NetworkTrace trace =
+        NetworkTrace.constant(/* throughputBps= */ 1_200_000, /* latencyMs= */ 20);
+
+    NetworkScenarioRunner.Result highestTrackResult =
+        run(
+            trace,
+            new FixedBitrateTrackSelectionFactory(/* selectHighestBitrate= */ true),
+            /* useAdaptiveLoadControl= */ false);
+    NetworkScenarioRunner.Result adaptiveResult =
+        run(trace, new AdaptiveTrackSelection.Factory(), /* useAdaptiveLoadControl= */ false);
+    NetworkScenarioRunner.Result bolaResult =
+        run(trace, new BolaTrackSelection.Factory(), /* useAdaptiveLoadControl= */ false);
+
+    assertWithMessage(adaptiveResult + " vs " + highestTrackResult)
+        .that(adaptiveResult.totalRebufferTimeMs)
+        .isLessThan(highestTrackResult.totalRebufferTimeMs);
+    assertWithMessage(bolaResult + " vs " + highestTrackResult)
+        .that(bolaResult.totalRebufferTimeMs)
+        .isLessThan(highestTrackResult.totalRebufferTimeMs);
+  }
+
+  @Test
+  public void run_throughputBelowLowestBitrate_adaptiveAndBolaRebuffer() throws Exception {
+    NetworkTrace trace = NetworkTrace.constant(/* throughputBps= */ 250_000, /* latencyMs= */ 20);
+
+    NetworkScenarioRunner.Result adaptiveResult =
+        run(trace, new AdaptiveTrackSelection.Factory(), /* useAdaptiveLoadControl= */ false);
+    NetworkScenarioRunner.Result bolaResult =
+        run(trace, new BolaTrackSelection.Factory(), /* useAdaptiveLoadControl= */ false);
+
+    assertWithMessage(adaptiveResult.toString())
+        .that(adaptiveResult.rebufferCount)
+        .isGreaterThan(0);
+    assertWithMessage(bolaResult.toString()).that(bolaResult.rebufferCount).isGreaterThan(0);
+  }
+
+  @Test
+  public void run_fluctuatingTrace_allConfigurationsAdaptBetweenLowestAndHighestTrack()
+      throws Exception {
+    NetworkTrace trace = NetworkTrace.parse(FLUCTUATING_TRACE);
+
+    NetworkScenarioRunner.Result lowestTrackResult =
+        run(
+            trace,
+            new FixedBitrateTrackSelectionFactory(/* selectHighestBitrate= */ false),
+            /* useAdaptiveLoadControl= */ false);
+    NetworkScenarioRunner.Result highestTrackResult =
+        run(
+            trace,
+            new FixedBitrateTrackSelectionFactory(/* selectHighestBitrate= */ true),
+            /* useAdaptiveLoadControl= */ false);
+    NetworkScenarioRunner.Result[] results =
+        new NetworkScenarioRunner.Result[] {
+          run(trace, new AdaptiveTrackSelection.Factory(), /* useAdaptiveLoadControl= */ false),
+          run(trace, new BolaTrackSelection.Factory(), /* useAdaptiveLoadControl= */ false),
+          run(trace, new AdaptiveTrackSelection.Factory(), /* useAdaptiveLoadControl= */ true),
+          run(trace, new BolaTrackSelection.Factory(), /* useAdaptiveLoadControl= */ true)
+        };
+
+    // The trace starts with a high throughput period, which every configuration should use to
+    // select a better track than the lowest one. None can exceed the highest track.
+    for (NetworkScenarioRunner.Result result : results) {
+      String message = result + " vs " + lowestTrackResult + " and " + highestTrackResult;
+      assertWithMessage(message)
+          .that(result.meanVideoFormatBitrate)
+          .isGreaterThan(lowestTrackResult.meanVideoFormatBitrate);
+      assertWithMessage(message)
+          .that(result.meanVideoFormatBitrate)
+          .isAtMost(highestTrackResult.meanVideoFormatBitrate);
+      assertWithMessage(message)
+          .that(result.bytesTransferred)
+          .isGreaterThan(lowestTrackResult.bytesTransferred);
+    }
+  }
+
+  private NetworkScenarioRunner.Result run(
+      NetworkTrace trace,
+      ExoTrackSelection.Factory trackSelectionFactory,
+      boolean useAdaptiveLoadControl)
+      throws Exception {
+    FakeDataSource.Factory upstreamDataSourceFactory = new FakeDataSource.Factory();
+    NetworkScenarioRunner.Builder runnerBuilder =
+        new NetworkScenarioRunner.Builder(context, trace)
+            .setDataSourceFactory(upstreamDataSourceFactory)
+            .setTrackSelectionFactory(trackSelectionFactory);
+    if (useAdaptiveLoadControl) {
+      runnerBuilder.setLoadControlFactory(
+          bandwidthMeter ->
+              new AdaptiveLoadControl.Builder(context).setBandwidthMeter(bandwidthMeter).build());
+    }
+    return runnerBuilder
+        .build()
+        .run(
+            dataSourceFactory ->
+                new FakeAdaptiveMediaSource(
+                    new FakeTimeline(
+                        new TimelineWindowDefinition(
+                            /* isSeekable= */ true, /* isDynamic= */ false, MEDIA_DURATION_US)),
+                    new TrackGroupArray(
+                        new TrackGroup(
+                            videoFormat(LOW_BITRATE),
+                            videoFormat(MEDIUM_BITRATE),
+                            videoFormat(HIGH_BITRATE))),
+                    new EmulatedChunkSourceFactory(upstreamDataSourceFactory, dataSourceFactory)));
+  }
+
+  private static Format videoFormat(int bitrate) {
+    return new Format.Builder()
+        .setSampleMimeType(MimeTypes.VIDEO_H264)
+        .setAverageBitrate(bitrate)
+        .build();
+  }
+
+  /** Creates selections of the lowest or the highest bitrate track of each group. */
+  private static final class FixedBitrateTrackSelectionFactory
+      implements ExoTrackSelection.Factory {
+
+    private final boolean selectHighestBitrate;
+
+    public FixedBitrateTrackSelectionFactory(boolean selectHighestBitrate) {
+      this.selectHighestBitrate = selectHighestBitrate;
+    }
+
+    @Override
+    public @NullableType ExoTrackSelection[] createTrackSelections(
+        @NullableType ExoTrackSelection.Definition[] definitions,
+        BandwidthMeter bandwidthMeter,
+        MediaPeriodId mediaPeriodId,
+        Timeline timeline) {
+      @NullableType ExoTrackSelection[] selections = new ExoTrackSelection[definitions.length];
+      for (int i = 0; i < definitions.length; i++) {
+        @Nullable ExoTrackSelection.Definition definition = definitions[i];
+        if (definition == null) {
+          continue;
+        }
+        int selectedTrack = definition.tracks[0];
+        for (int track : definition.tracks) {
+          int bitrate = definition.group.getFormat(track).bitrate;
+          int selectedBitrate = definition.group.getFormat(selectedTrack).bitrate;
+          if (selectHighestBitrate ? bitrate > selectedBitrate : bitrate < selectedBitrate) {
+            selectedTrack = track;
+          }
+        }
+        selections[i] = new FixedTrackSelection(definition.group, selectedTrack);
+      }
+      return selections;
+    }
+  }
+
+  /** Creates {@link FakeChunkSource FakeChunkSources} that load through the emulated network. */
+  private static final class EmulatedChunkSourceFactory extends FakeChunkSource.Factory {
+
+    private final DataSource.Factory emulatedDataSourceFactory;
+
+    public EmulatedChunkSourceFactory(
+        FakeDataSource.Factory upstreamDataSourceFactory,
+        DataSource.Factory emulatedDataSourceFactory) {
+      super(
+          new FakeAdaptiveDataSet.Factory(
+              CHUNK_DURATION_US, /* bitratePercentStdDev= */ 0, new Random(/* seed= */ 0)),
+          upstreamDataSourceFactory);
+      this.emulatedDataSourceFactory = emulatedDataSourceFactory;
+    }
+
+    @Override
+    public FakeChunkSource createChunkSource(
+        ExoTrackSelection trackSelection,
+        long durationUs,
+        @Nullable TransferListener transferListener) {
+      FakeAdaptiveDataSet dataSet =
+          dataSetFactory.createDataSet(trackSelection.getTrackGroup(), durationUs);
+      // The emulated data source creates its upstream data source immediately, from this data set.
+      dataSourceFactory.setFakeDataSet(dataSet);
+      DataSource dataSource = emulatedDataSourceFactory.createDataSource();
+      if (transferListener != null) {
+        dataSource.addTransferListener(transferListener);
+      }
+      return new FakeChunkSource(trackSelection, dataSource, dataSet);
+    }
+  }
+}
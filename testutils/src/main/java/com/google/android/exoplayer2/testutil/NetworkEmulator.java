@@ -0,0 +1,240 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.testutil;
+
+import static java.lang.Math.max;
+
+import android.net.Uri;
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.upstream.BaseDataSource;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Emulates network conditions described by a {@link NetworkTrace} in the simulated time of a
+ * {@link FakeClock}.
+ *
+ * <p>{@link DataSource DataSources} created by {@link #createDataSourceFactory(DataSource.Factory)}
+ * delay opening by the latency of the trace, and block each read until the simulated time at which
+ * the read data would have been received. All data sources of an emulator share a single link, so
+ * concurrent loads share the throughput of the trace. The upstream data sources may serve local
+ * data (for example from a {@link FakeDataSet} or assets), or remote data (for example from a
+ * {@code MockWebServer} using a {@link WebServerDispatcher}). The emulated data sources always
+ * report their transfers as network transfers, so that bandwidth meters measure them.
+ *
+ * <p>Simulated time only advances through {@link #advanceTime(long)}, which waits for all open
+ * transfers to block on a simulated time after the new time before returning. Transfers that
+ * aren't open yet, for example because the player hasn't started the next load, aren't waited for.
+ * Open transfers that don't block again within {@link #MAX_WAIT_FOR_TRANSFERS_MS} of wall-clock
+ * time, for example because the loading thread waits for the player, are treated as idle. Runs are
+ * therefore repeatable as long as the work between two reads of a transfer completes within this
+ * bound, but the start of new loads depends on thread scheduling.
+ */
+public final class NetworkEmulator {
+
+  /**
+   * The maximum wall-clock time {@link #advanceTime(long)} waits for open transfers to block, in
+   * milliseconds.
+   */
+  public static final long MAX_WAIT_FOR_TRANSFERS_MS = 1000;
+
+  private final FakeClock clock;
+  private final NetworkTrace trace;
+
+  @GuardedBy("this")
+  private long linkAvailableTimeUs;
+
+  @GuardedBy("this")
+  private int openTransferCount;
+
+  /** The simulated times until which transfers are blocked, in microseconds. */
+  @GuardedBy("this")
+  private final List<Long> blockedUntilTimesUs;
+
+  @GuardedBy("this")
+  private long bytesTransferred;
+
+  /**
+   * Creates an emulator.
+   *
+   * @param clock The {@link FakeClock} whose time is the simulated time. It should not be
+   *     auto-advancing.
+   * @param trace The {@link NetworkTrace} to replay, starting at time zero of the clock.
+   */
+  public NetworkEmulator(FakeClock clock, NetworkTrace trace) {
+    this.clock = clock;
+    this.trace = trace;
+    blockedUntilTimesUs = new ArrayList<>();
+  }
+
+  /**
+   * Returns a {@link DataSource.Factory} whose data sources load from data sources created by
+   * {@code upstreamFactory} under the emulated network conditions.
+   */
+  public DataSource.Factory createDataSourceFactory(DataSource.Factory upstreamFactory) {
+    return () -> new EmulatedDataSource(upstreamFactory.createDataSource());
+  }
+
+  /**
+   * Advances the simulated time and waits until all open transfers are blocked waiting for the
+   * simulated time to advance further.
+   *
+   * <p>Waits for at most {@link #MAX_WAIT_FOR_TRANSFERS_MS} of wall-clock time. See the class
+   * documentation for details.
+   *
+   * @param timeDiffMs The amount of time to advance, in milliseconds.
+   * @throws InterruptedException If the calling thread is interrupted.
+   */
+  public void advanceTime(long timeDiffMs) throws InterruptedException {
+    synchronized (this) {
+      clock.advanceTime(timeDiffMs);
+      notifyAll();
+      long deadlineNs = System.nanoTime() + MAX_WAIT_FOR_TRANSFERS_MS * 1_000_000;
+      while (getTransferCountBlockedAfterNow() < openTransferCount) {
+        long remainingMs = (deadlineNs - System.nanoTime()) / 1_000_000;
+        if (remainingMs <= 0) {
+          // A transfer is busy outside of the emulator, for example parsing data. Continue rather
+          // than block the simulation.
+          break;
+        }
+        wait(remainingMs);
+      }
+    }
+  }
+
+  /** Returns the total number of bytes transferred through the emulator. */
+  public synchronized long getBytesTransferred() {
+    return bytesTransferred;
+  }
+
+  private synchronized long getConnectionTimeUs() {
+    long nowUs = clock.elapsedRealtime() * 1000;
+    return nowUs + trace.getLatencyUs(nowUs);
+  }
+
+  private synchronized long reserveLink(int bytes) {
+    long startTimeUs = max(clock.elapsedRealtime() * 1000, linkAvailableTimeUs);
+    linkAvailableTimeUs = trace.getTransferEndTimeUs(startTimeUs, bytes);
+    bytesTransferred += bytes;
+    return linkAvailableTimeUs;
+  }
+
+  private synchronized void onTransferOpened() {
+    openTransferCount++;
+  }
+
+  private synchronized void onTransferClosed() {
+    openTransferCount--;
+    notifyAll();
+  }
+
+  private synchronized void waitUntil(long timeUs) throws InterruptedIOException {
+    // advanceTime only counts transfers blocked until a time after the current time, so that it
+    // also waits for transfers that have been released but haven't woken up yet.
+    blockedUntilTimesUs.add(timeUs);
+    notifyAll();
+    try {
+      while (clock.elapsedRealtime() * 1000 < timeUs) {
+        wait();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } finally {
+      blockedUntilTimesUs.remove((Long) timeUs);
+    }
+  }
+
+  @GuardedBy("this")
+  private int getTransferCountBlockedAfterNow() {
+    long nowUs = clock.elapsedRealtime() * 1000;
+    int count = 0;
+    for (int i = 0; i < blockedUntilTimesUs.size(); i++) {
+      if (blockedUntilTimesUs.get(i) > nowUs) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private final class EmulatedDataSource extends BaseDataSource {
+
+    private final DataSource upstream;
+
+    private boolean opened;
+    private boolean transferStarted;
+
+    public EmulatedDataSource(DataSource upstream) {
+      super(/* isNetwork= */ true);
+      this.upstream = upstream;
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+      opened = true;
+      onTransferOpened();
+      transferInitializing(dataSpec);
+      waitUntil(getConnectionTimeUs());
+      long bytesToRead = upstream.open(dataSpec);
+      transferStarted = true;
+      transferStarted(dataSpec);
+      return bytesToRead;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      int bytesRead = upstream.read(buffer, offset, length);
+      if (bytesRead > 0) {
+        waitUntil(reserveLink(bytesRead));
+        bytesTransferred(bytesRead);
+      }
+      return bytesRead;
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+      return upstream.getUri();
+    }
+
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+      return upstream.getResponseHeaders();
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        upstream.close();
+      } finally {
+        if (opened) {
+          opened = false;
+          onTransferClosed();
+        }
+        if (transferStarted) {
+          transferStarted = false;
+          transferEnded();
+        }
+      }
+    }
+  }
+}
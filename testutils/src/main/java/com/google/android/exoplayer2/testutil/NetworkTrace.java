@@ -0,0 +1,220 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.testutil;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+
+import com.google.android.exoplayer2.C;
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+
+/**
+ * A network condition trace, consisting of consecutive periods of constant throughput and latency.
+ * The trace repeats once its end is reached.
+ *
+ * <p>Packet loss is modeled as retransmission overhead: a period with a loss rate of {@code r}
+ * delivers data at {@code (1 - r)} times its throughput. Retransmission timeouts and connection
+ * drops aren't modeled. A period with zero throughput can be used for an outage instead.
+ *
+ * <p>Traces can be {@link #parse(String) parsed} from a text format with one period per line,
+ * consisting of the whitespace separated duration in milliseconds, throughput in kbit/s, and
+ * optionally the latency in milliseconds and the packet loss in percent. Empty lines and lines
+ * starting with {@code #} are ignored. For example, a trace of a lossy connection that drops out
+ * for a second every ten seconds:
+ *
+ * <pre>
+ * # durationMs throughputKbps latencyMs lossPercent
+ * 9000 4000 50 2
+ * 1000 0 50
+ * </pre>
+ */
+public final class NetworkTrace {
+
+  /** A period of constant network conditions. */
+  public static final class Period {
+
+    /** The duration of the period, in microseconds. */
+    public final long durationUs;
+    /** The throughput during the period, in bits per second. May be zero. */
+    public final long throughputBps;
+    /** The latency for opening a connection during the period, in microseconds. */
+    public final long latencyUs;
+    /** The fraction of packets that are lost and retransmitted during the period. */
+    public final float lossRate;
+
+    /**
+     * Creates a period without packet loss.
+     *
+     * @param durationMs The duration of the period, in milliseconds. Must be positive.
+     * @param throughputBps The throughput during the period, in bits per second.
+     * @param latencyMs The latency for opening a connection during the period, in milliseconds.
+     */
+    public Period(long durationMs, long throughputBps, long latencyMs) {
+      this(durationMs, throughputBps, latencyMs, /* lossRate= */ 0f);
+    }
+
+    /**
+     * Creates a period.
+     *
+     * @param durationMs The duration of the period, in milliseconds. Must be positive.
+     * @param throughputBps The throughput during the period, in bits per second.
+     * @param latencyMs The latency for opening a connection during the period, in milliseconds.
+     * @param lossRate The fraction of packets that are lost and retransmitted during the period.
+     *     Must be in the range [0, 1).
+     */
+    public Period(long durationMs, long throughputBps, long latencyMs, float lossRate) {
+      checkArgument(durationMs > 0 && throughputBps >= 0 && latencyMs >= 0);
+      checkArgument(lossRate >= 0f && lossRate < 1f);
+      this.durationUs = durationMs * 1000;
+      this.throughputBps = throughputBps;
+      this.latencyUs = latencyMs * 1000;
+      this.lossRate = lossRate;
+    }
+
+    /** Returns the rate at which data is delivered during the period, in bits per second. */
+    public double getGoodputBps() {
+      return throughputBps * (1d - lossRate);
+    }
+  }
+
+  /**
+   * Returns a trace with constant network conditions.
+   *
+   * @param throughputBps The throughput in bits per second. Must be positive.
+   * @param latencyMs The latency for opening a connection, in milliseconds.
+   */
+  public static NetworkTrace constant(long throughputBps, long latencyMs) {
+    return new NetworkTrace(
+        ImmutableList.of(new Period(/* durationMs= */ 1000, throughputBps, latencyMs)));
+  }
+
+  /**
+   * Parses a trace from the text format described in the class documentation.
+   *
+   * @param trace The trace in text format.
+   * @return The parsed trace.
+   * @throws IllegalArgumentException If the trace is malformed.
+   */
+  public static NetworkTrace parse(String trace) {
+    ImmutableList.Builder<Period> periods = new ImmutableList.Builder<>();
+    for (String line : trace.split("\n")) {
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      String[] values = line.split("\\s+");
+      checkArgument(values.length >= 2 && values.length <= 4, "Malformed trace line: " + line);
+      long durationMs = Long.parseLong(values[0]);
+      long throughputBps = Long.parseLong(values[1]) * 1000;
+      long latencyMs = values.length >= 3 ? Long.parseLong(values[2]) : 0;
+      float lossRate = values.length == 4 ? Float.parseFloat(values[3]) / 100 : 0f;
+      periods.add(new Period(durationMs, throughputBps, latencyMs, lossRate));
+    }
+    return new NetworkTrace(periods.build());
+  }
+
+  /** The periods of the trace. */
+  public final ImmutableList<Period> periods;
+
+  private final long durationUs;
+
+  /**
+   * Creates a trace.
+   *
+   * @param periods The periods of the trace. Must not be empty and at least one period must have
+   *     a positive throughput.
+   */
+  public NetworkTrace(List<Period> periods) {
+    this.periods = ImmutableList.copyOf(periods);
+    long durationUs = 0;
+    boolean hasThroughput = false;
+    for (int i = 0; i < periods.size(); i++) {
+      durationUs += periods.get(i).durationUs;
+      hasThroughput |= periods.get(i).throughputBps > 0;
+    }
+    checkArgument(hasThroughput, "The trace must have a period with positive throughput");
+    this.durationUs = durationUs;
+  }
+
+  /** Returns the duration of the trace before it repeats, in microseconds. */
+  public long getDurationUs() {
+    return durationUs;
+  }
+
+  /** Returns the throughput at the given time, in bits per second. */
+  public long getThroughputBps(long timeUs) {
+    return periods.get(getPeriodIndex(timeUs)).throughputBps;
+  }
+
+  /** Returns the latency for opening a connection at the given time, in microseconds. */
+  public long getLatencyUs(long timeUs) {
+    return periods.get(getPeriodIndex(timeUs)).latencyUs;
+  }
+
+  /** Returns the fraction of packets that are lost and retransmitted at the given time. */
+  public float getLossRate(long timeUs) {
+    return periods.get(getPeriodIndex(timeUs)).lossRate;
+  }
+
+  /**
+   * Returns the time at which a transfer of {@code bytes} bytes that starts at {@code startTimeUs}
+   * completes, in microseconds. Packet loss reduces the rate at which the bytes are delivered.
+   */
+  public long getTransferEndTimeUs(long startTimeUs, long bytes) {
+    if (bytes <= 0) {
+      return startTimeUs;
+    }
+    double remainingBits = bytes * (double) C.BITS_PER_BYTE;
+    long timeUs = startTimeUs;
+    int periodIndex = getPeriodIndex(timeUs);
+    long periodEndTimeUs = timeUs - getOffsetInTraceUs(timeUs) + getPeriodEndOffsetUs(periodIndex);
+    while (true) {
+      double goodputBps = periods.get(periodIndex).getGoodputBps();
+      long periodRemainingUs = periodEndTimeUs - timeUs;
+      double periodBits = goodputBps * periodRemainingUs / C.MICROS_PER_SECOND;
+      if (periodBits >= remainingBits) {
+        return timeUs + (long) Math.ceil(remainingBits * C.MICROS_PER_SECOND / goodputBps);
+      }
+      remainingBits -= periodBits;
+      timeUs = periodEndTimeUs;
+      periodIndex = (periodIndex + 1) % periods.size();
+      periodEndTimeUs += periods.get(periodIndex).durationUs;
+    }
+  }
+
+  private long getOffsetInTraceUs(long timeUs) {
+    return timeUs % durationUs;
+  }
+
+  private int getPeriodIndex(long timeUs) {
+    long offsetUs = getOffsetInTraceUs(timeUs);
+    for (int i = 0; i < periods.size(); i++) {
+      offsetUs -= periods.get(i).durationUs;
+      if (offsetUs < 0) {
+        return i;
+      }
+    }
+    return periods.size() - 1;
+  }
+
+  private long getPeriodEndOffsetUs(int periodIndex) {
+    long endOffsetUs = 0;
+    for (int i = 0; i <= periodIndex; i++) {
+      endOffsetUs += periods.get(i).durationUs;
+    }
+    return endOffsetUs;
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.testutil;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.util.ConditionVariable;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link NetworkEmulator}. */
+@RunWith(AndroidJUnit4.class)
+public final class NetworkEmulatorTest {
+
+  // At 8 Mbit/s, one byte is transferred per microsecond.
+  private static final long THROUGHPUT_BPS = 8_000_000;
+
+  private FakeClock clock;
+  private ExecutorService executorService;
+
+  @Before
+  public void setUp() {
+    clock = new FakeClock(/* isAutoAdvancing= */ false);
+    executorService = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void tearDown() {
+    executorService.shutdownNow();
+  }
+
+  @Test
+  public void read_blocksUntilDataWouldHaveBeenReceived() throws Exception {
+    NetworkEmulator networkEmulator =
+        new NetworkEmulator(clock, NetworkTrace.constant(THROUGHPUT_BPS, /* latencyMs= */ 0));
+
+    Future<Long> transferEndTimeMs = startTransfer(networkEmulator, /* length= */ 10_000);
+    networkEmulator.advanceTime(9);
+    boolean doneAfter9Ms = transferEndTimeMs.isDone();
+    networkEmulator.advanceTime(1);
+
+    assertThat(doneAfter9Ms).isFalse();
+    assertThat(transferEndTimeMs.get()).isEqualTo(10);
+    assertThat(networkEmulator.getBytesTransferred()).isEqualTo(10_000);
+  }
+
+  @Test
+  public void open_waitsForLatency() throws Exception {
+    NetworkEmulator networkEmulator =
+        new NetworkEmulator(clock, NetworkTrace.constant(THROUGHPUT_BPS, /* latencyMs= */ 100));
+
+    Future<Long> transferEndTimeMs = startTransfer(networkEmulator, /* length= */ 1000);
+    networkEmulator.advanceTime(100);
+    boolean doneAfter100Ms = transferEndTimeMs.isDone();
+    networkEmulator.advanceTime(1);
+
+    assertThat(doneAfter100Ms).isFalse();
+    assertThat(transferEndTimeMs.get()).isEqualTo(101);
+  }
+
+  @Test
+  public void concurrentTransfers_shareThroughput() throws Exception {
+    NetworkEmulator networkEmulator =
+        new NetworkEmulator(clock, NetworkTrace.constant(THROUGHPUT_BPS, /* latencyMs= */ 0));
+
+    Future<Long> transferEndTimeMs1 = startTransfer(networkEmulator, /* length= */ 5000);
+    Future<Long> transferEndTimeMs2 = startTransfer(networkEmulator, /* length= */ 5000);
+    networkEmulator.advanceTime(5);
+    networkEmulator.advanceTime(5);
+
+    assertThat(new long[] {transferEndTimeMs1.get(), transferEndTimeMs2.get()})
+        .asList()
+        .containsExactly(5L, 10L);
+    assertThat(networkEmulator.getBytesTransferred()).isEqualTo(10_000);
+  }
+
+  @Test
+  public void transfer_isReportedAsNetworkTransfer() throws Exception {
+    NetworkEmulator networkEmulator =
+        new NetworkEmulator(clock, NetworkTrace.constant(THROUGHPUT_BPS, /* latencyMs= */ 0));
+    AtomicBoolean reportedAsNetwork = new AtomicBoolean();
+    DataSource dataSource = createDataSource(networkEmulator, /* length= */ 1000);
+    dataSource.addTransferListener(
+        new TransferListener() {
+          @Override
+          public void onTransferInitializing(
+              DataSource source, DataSpec dataSpec, boolean isNetwork) {}
+
+          @Override
+          public void onTransferStart(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+            reportedAsNetwork.set(isNetwork);
+          }
+
+          @Override
+          public void onBytesTransferred(
+              DataSource source, DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {}
+
+          @Override
+          public void onTransferEnd(DataSource source, DataSpec dataSpec, boolean isNetwork) {}
+        });
+
+    Future<Long> transferEndTimeMs = startTransfer(networkEmulator, dataSource);
+    networkEmulator.advanceTime(1);
+
+    assertThat(transferEndTimeMs.get()).isEqualTo(1);
+    assertThat(reportedAsNetwork.get()).isTrue();
+  }
+
+  private Future<Long> startTransfer(NetworkEmulator networkEmulator, int length)
+      throws InterruptedException {
+    return startTransfer(networkEmulator, createDataSource(networkEmulator, length));
+  }
+
+  /**
+   * Starts reading all data from {@code dataSource} on a background thread, and returns once the
+   * transfer is blocked on the emulator. The returned future provides the simulated time at which
+   * the last read completed, in milliseconds.
+   */
+  private Future<Long> startTransfer(NetworkEmulator networkEmulator, DataSource dataSource)
+      throws InterruptedException {
+    ConditionVariable initializing = new ConditionVariable();
+    dataSource.addTransferListener(
+        new TransferListener() {
+          @Override
+          public void onTransferInitializing(
+              DataSource source, DataSpec dataSpec, boolean isNetwork) {
+            initializing.open();
+          }
+
+          @Override
+          public void onTransferStart(DataSource source, DataSpec dataSpec, boolean isNetwork) {}
+
+          @Override
+          public void onBytesTransferred(
+              DataSource source, DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {}
+
+          @Override
+          public void onTransferEnd(DataSource source, DataSpec dataSpec, boolean isNetwork) {}
+        });
+    Future<Long> transferEndTimeMs = executorService.submit(() -> readFully(dataSource));
+    initializing.block();
+    // The transfer is open, so this returns once it's blocked waiting for the simulated time.
+    networkEmulator.advanceTime(0);
+    return transferEndTimeMs;
+  }
+
+  private long readFully(DataSource dataSource) throws IOException {
+    try {
+      dataSource.open(new DataSpec(Uri.parse("test")));
+      byte[] buffer = new byte[10_000];
+      while (dataSource.read(buffer, /* offset= */ 0, buffer.length) != C.RESULT_END_OF_INPUT) {}
+      // Read the time before closing, as advanceTime may return as soon as the transfer is closed.
+      return clock.elapsedRealtime();
+    } finally {
+      dataSource.close();
+    }
+  }
+
+  private static DataSource createDataSource(NetworkEmulator networkEmulator, int length) {
+    FakeDataSet fakeDataSet = new FakeDataSet().newDefaultData().appendReadData(length).endData();
+    return networkEmulator
+        .createDataSourceFactory(() -> new FakeDataSource(fakeDataSet))
+        .createDataSource();
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.testutil;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link NetworkTrace}. */
+@RunWith(AndroidJUnit4.class)
+public final class NetworkTraceTest {
+
+  private static final String OUTAGE_TRACE =
+      "# durationMs throughputKbps latencyMs\n" + "1000 8000 50\n" + "\n" + "1000 0 200\n";
+
+  @Test
+  public void parse_readsPeriods() {
+    NetworkTrace trace = NetworkTrace.parse(OUTAGE_TRACE);
+
+    assertThat(trace.periods).hasSize(2);
+    assertThat(trace.periods.get(0).durationUs).isEqualTo(1_000_000);
+    assertThat(trace.periods.get(0).throughputBps).isEqualTo(8_000_000);
+    assertThat(trace.periods.get(0).latencyUs).isEqualTo(50_000);
+    assertThat(trace.periods.get(1).throughputBps).isEqualTo(0);
+    assertThat(trace.periods.get(1).latencyUs).isEqualTo(200_000);
+    assertThat(trace.getDurationUs()).isEqualTo(2_000_000);
+  }
+
+  @Test
+  public void parse_withoutPositiveThroughput_throws() {
+    assertThrows(IllegalArgumentException.class, () -> NetworkTrace.parse("1000 0"));
+  }
+
+  @Test
+  public void getTransferEndTimeUs_constantTrace_returnsSizeOverThroughput() {
+    NetworkTrace trace = NetworkTrace.constant(/* throughputBps= */ 8_000_000, /* latencyMs= */ 0);
+
+    assertThat(trace.getTransferEndTimeUs(/* startTimeUs= */ 0, /* bytes= */ 1000))
+        .isEqualTo(1000);
+    assertThat(trace.getTransferEndTimeUs(/* startTimeUs= */ 5_000_000, /* bytes= */ 3_000_000))
+        .isEqualTo(8_000_000);
+  }
+
+  @Test
+  public void getTransferEndTimeUs_acrossOutage_waitsForOutageToEnd() {
+    NetworkTrace trace = NetworkTrace.parse(OUTAGE_TRACE);
+
+    assertThat(trace.getTransferEndTimeUs(/* startTimeUs= */ 500_000, /* bytes= */ 1_000_000))
+        .isEqualTo(2_500_000);
+  }
+
+  @Test
+  public void parse_withLoss_readsLossRate() {
+    NetworkTrace trace = NetworkTrace.parse("1000 8000 50 25\n1000 8000");
+
+    assertThat(trace.periods.get(0).lossRate).isEqualTo(0.25f);
+    assertThat(trace.periods.get(1).lossRate).isEqualTo(0f);
+    assertThat(trace.getLossRate(/* timeUs= */ 500_000)).isEqualTo(0.25f);
+  }
+
+  @Test
+  public void getTransferEndTimeUs_withLoss_reducesDeliveryRate() {
+    NetworkTrace trace =
+        new NetworkTrace(
+            ImmutableList.of(
+                new NetworkTrace.Period(
+                    /* durationMs= */ 1000,
+                    /* throughputBps= */ 8_000_000,
+                    /* latencyMs= */ 0,
+                    /* lossRate= */ 0.5f)));
+
+    assertThat(trace.getTransferEndTimeUs(/* startTimeUs= */ 0, /* bytes= */ 1000))
+        .isEqualTo(2000);
+  }
+
+  @Test
+  public void getThroughputAndLatency_afterEndOfTrace_repeatsTrace() {
+    NetworkTrace trace = NetworkTrace.parse(OUTAGE_TRACE);
+
+    assertThat(trace.getThroughputBps(/* timeUs= */ 1_500_000)).isEqualTo(0);
+    assertThat(trace.getThroughputBps(/* timeUs= */ 2_100_000)).isEqualTo(8_000_000);
+    assertThat(trace.getLatencyUs(/* timeUs= */ 3_100_000)).isEqualTo(200_000);
+  }
+}